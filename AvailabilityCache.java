@@ -0,0 +1,347 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache di memori untuk status ketersediaan buku dan jumlah peminjaman aktif anggota
+ * - Diisi ulang (write-through) oleh LoanService setelah setiap commit
+ * - Setiap kunci dipetakan ke salah satu stripe; stripe memiliki lock dan epoch sendiri
+ * - Penulisan nilai hanya berhasil jika epoch stripe belum berubah sejak nilai itu dibaca
+ *   dari database, sehingga nilai lama tidak menimpa invalidasi yang lebih baru
+ * - Perubahan dari node lain dibaca berkala melalui kolom updated_at
+ * - Nilai disimpan dalam AtomicIntegerArray yang diindeks surrogate IdTable, tanpa objek per entri;
+ *   array diperbesar dengan memegang semua lock stripe sehingga penulisan tidak hilang saat disalin
+ * - ID dari permintaan tidak didaftarkan ke IdTable oleh putAvailable(); pemanggil lain hanya
+ *   menulis setelah database memastikan anggota atau buku itu ada
+ * Database tetap menjadi sumber kebenaran; penolakan dari cache dipastikan LoanService dengan
+ * satu pembacaan primary key sebelum permintaan ditolak.
+ */
+public class AvailabilityCache {
+    private static final int STRIPES = 64;
+    private static final long POLL_LAG_MILLIS = 5000L;
+    private static final int UNKNOWN = 0;
+    private static final int NOT_AVAILABLE = 1;
+    private static final int AVAILABLE = 2;
+
+    static final String SQL_CHANGED_TRANSACTIONS =
+            "SELECT book_id, member_id FROM transactions WHERE updated_at >= ?";
+
+    private final Database db;
+    /** Per surrogate buku: UNKNOWN, NOT_AVAILABLE atau AVAILABLE */
+    private volatile AtomicIntegerArray bookAvailable = new AtomicIntegerArray(0);
+    /** Per surrogate anggota: 0 jika tidak ada di cache, selain itu jumlah peminjaman aktif + 1 */
+    private volatile AtomicIntegerArray activeLoans = new AtomicIntegerArray(0);
+    private final Object growLock = new Object();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final AtomicLongArray bookEpochs = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray memberEpochs = new AtomicLongArray(STRIPES);
+    private ScheduledExecutorService poller;
+    private Timestamp mark;
+
+    /**
+     * Konstruktor untuk membuat cache kosong
+     * @param db Sumber koneksi database untuk sinkronisasi antar node
+     */
+    public AvailabilityCache(Database db) {
+        this.db = db;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Status ketersediaan buku yang tersimpan di cache
+     * @param bookId ID buku
+     * @return true/false jika diketahui, null jika tidak ada di cache
+     */
+    public Boolean isAvailable(String bookId) {
+        int state = read(bookAvailable, IdTable.BOOKS.find(bookId));
+        return state == UNKNOWN ? null : state == AVAILABLE;
+    }
+
+    /**
+     * Jumlah peminjaman aktif anggota yang tersimpan di cache
+     * @param memberId ID anggota
+     * @return Jumlah peminjaman aktif, null jika tidak ada di cache
+     */
+    public Integer getActiveLoans(String memberId) {
+        int state = read(activeLoans, IdTable.MEMBERS.find(memberId));
+        return state == 0 ? null : state - 1;
+    }
+
+    /**
+     * Mengambil epoch stripe untuk sebuah buku, dipanggil sebelum membaca nilainya dari database
+     */
+    public long bookStamp(String bookId) {
+        return bookEpochs.get(stripe(bookId));
+    }
+
+    /**
+     * Mengambil epoch stripe untuk seorang anggota, dipanggil sebelum membaca nilainya dari database
+     */
+    public long memberStamp(String memberId) {
+        return memberEpochs.get(stripe(memberId));
+    }
+
+    /**
+     * Menyimpan status buku jika stripe-nya tidak diinvalidasi sejak stamp diambil.
+     * Buku yang belum terdaftar di IdTable.BOOKS tidak disimpan.
+     * @return true jika nilai tersimpan
+     */
+    public boolean putAvailable(String bookId, boolean available, long stamp) {
+        int key = IdTable.BOOKS.find(bookId);
+        if (key < 0) {
+            return false;
+        }
+        ensureCapacity(key, true);
+        int stripe = stripe(bookId);
+        locks[stripe].lock();
+        try {
+            if (bookEpochs.get(stripe) != stamp) {
+                return false;
+            }
+            bookAvailable.set(key, available ? AVAILABLE : NOT_AVAILABLE);
+            return true;
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Menyimpan jumlah peminjaman aktif jika stripe-nya tidak diinvalidasi sejak stamp diambil
+     * @return true jika nilai tersimpan
+     */
+    public boolean putActiveLoans(String memberId, int count, long stamp) {
+        int key = IdTable.MEMBERS.intern(memberId);
+        ensureCapacity(key, false);
+        int stripe = stripe(memberId);
+        locks[stripe].lock();
+        try {
+            if (memberEpochs.get(stripe) != stamp) {
+                return false;
+            }
+            activeLoans.set(key, count + 1);
+            return true;
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Mencatat pengembalian yang sudah di-commit: buku menjadi tersedia dan jumlah
+     * peminjaman anggota dibuang karena tidak dihitung ulang saat pengembalian.
+     * Epoch dinaikkan agar hasil peminjaman yang lebih lama tidak menimpa status ini.
+     */
+    public void recordReturn(String bookId, String memberId) {
+        int key = IdTable.BOOKS.intern(bookId);
+        ensureCapacity(key, true);
+        int stripe = stripe(bookId);
+        locks[stripe].lock();
+        try {
+            bookEpochs.incrementAndGet(stripe);
+            bookAvailable.set(key, AVAILABLE);
+        } finally {
+            locks[stripe].unlock();
+        }
+        invalidateMember(memberId);
+    }
+
+    /**
+     * Menghapus status buku dari cache dan menaikkan epoch stripe-nya
+     */
+    public void invalidateBook(String bookId) {
+        invalidate(bookId, IdTable.BOOKS, true, bookEpochs);
+    }
+
+    /**
+     * Menghapus jumlah peminjaman anggota dari cache dan menaikkan epoch stripe-nya
+     */
+    public void invalidateMember(String memberId) {
+        invalidate(memberId, IdTable.MEMBERS, false, memberEpochs);
+    }
+
+    private void invalidate(String id, IdTable ids, boolean books, AtomicLongArray epochs) {
+        // An id that was never interned has no entry, but the epoch still has to move
+        int key = ids.find(id);
+        int stripe = stripe(id);
+        locks[stripe].lock();
+        try {
+            epochs.incrementAndGet(stripe);
+            AtomicIntegerArray states = books ? bookAvailable : activeLoans;
+            if (key >= 0 && key < states.length()) {
+                states.set(key, 0);
+            }
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Memperbesar array status agar memuat key. Dipanggil tanpa memegang lock stripe;
+     * semua lock stripe diambil selama penyalinan sehingga tidak ada penulisan ke array lama.
+     */
+    private void ensureCapacity(int key, boolean books) {
+        if (key < (books ? bookAvailable : activeLoans).length()) {
+            return;
+        }
+        synchronized (growLock) {
+            AtomicIntegerArray old = books ? bookAvailable : activeLoans;
+            if (key < old.length()) {
+                return;
+            }
+            for (ReentrantLock stripeLock : locks) {
+                stripeLock.lock();
+            }
+            try {
+                AtomicIntegerArray grown = new AtomicIntegerArray(
+                        Math.max(Math.max(old.length() * 2, key + 1), 1024));
+                for (int i = 0; i < old.length(); i++) {
+                    grown.set(i, old.get(i));
+                }
+                if (books) {
+                    bookAvailable = grown;
+                } else {
+                    activeLoans = grown;
+                }
+            } finally {
+                for (ReentrantLock stripeLock : locks) {
+                    stripeLock.unlock();
+                }
+            }
+        }
+    }
+
+    private static int read(AtomicIntegerArray states, int key) {
+        return key >= 0 && key < states.length() ? states.get(key) : 0;
+    }
+
+    /**
+     * Mulai membaca perubahan dari node lain secara berkala
+     * @param periodMillis Interval polling dalam milidetik
+     */
+    public synchronized void startSync(long periodMillis) {
+        if (poller != null) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "availability-cache-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                syncFromDatabase();
+            } catch (SQLException e) {
+                System.err.println("Error syncing availability cache: " + e.getMessage());
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Menghentikan polling perubahan
+     */
+    public synchronized void stopSync() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    /**
+     * Membaca buku dan transaksi yang berubah sejak polling terakhir lalu
+     * memperbarui entri cache yang terdampak
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public synchronized void syncFromDatabase() throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            if (mark == null) {
+                // Nothing is cached before the first mark, so there is nothing to catch up on
+                mark = serverTime(conn);
+                return;
+            }
+            Timestamp from = new Timestamp(mark.getTime() - POLL_LAG_MILLIS);
+            Timestamp newMark = serverTime(conn);
+
+            Set<String> touchedMembers = new TreeSet<>();
+            Set<String> touchedBooks = new TreeSet<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_CHANGED_TRANSACTIONS)) {
+                pstmt.setTimestamp(1, from);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        touchedBooks.add(rs.getString(1));
+                        touchedMembers.add(rs.getString(2));
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT id FROM books WHERE updated_at >= ?")) {
+                pstmt.setTimestamp(1, from);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        touchedBooks.add(rs.getString(1));
+                    }
+                }
+            }
+
+            for (String bookId : touchedBooks) {
+                if (isAvailable(bookId) != null) {
+                    refreshBook(conn, bookId);
+                }
+            }
+            for (String memberId : touchedMembers) {
+                if (getActiveLoans(memberId) != null) {
+                    refreshMember(conn, memberId);
+                }
+            }
+            mark = newMark;
+        }
+    }
+
+    private void refreshBook(Connection conn, String bookId) throws SQLException {
+        long stamp = bookStamp(bookId);
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT available FROM books WHERE id = ?")) {
+            pstmt.setString(1, bookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    putAvailable(bookId, rs.getBoolean(1), stamp);
+                } else {
+                    invalidateBook(bookId);
+                }
+            }
+        }
+    }
+
+    private void refreshMember(Connection conn, String memberId) throws SQLException {
+        long stamp = memberStamp(memberId);
+        try (PreparedStatement pstmt = conn.prepareStatement(LoanService.SQL_ACTIVE_LOANS)) {
+            pstmt.setString(1, memberId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                putActiveLoans(memberId, rs.next() ? rs.getInt(1) : 0, stamp);
+            }
+        }
+    }
+
+    private static Timestamp serverTime(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT CURRENT_TIMESTAMP(3)")) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
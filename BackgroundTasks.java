@@ -0,0 +1,239 @@
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Kelas untuk menjalankan pekerjaan database di luar EDT
+ * - Memakai virtual thread jika JDK mendukungnya (Java 21+), selain itu thread daemon biasa
+ * - Setiap pekerjaan memiliki batas waktu; hasil, error, dan timeout dikirim ke EDT
+ * - Pekerjaan dapat dibatalkan lewat Future yang dikembalikan
+ * - Coalescer menggabungkan permintaan berulang (misalnya klik refresh) menjadi
+ *   paling banyak satu eksekusi berjalan dan satu eksekusi menunggu
+ */
+public class BackgroundTasks implements AutoCloseable {
+
+    /**
+     * Penerima hasil pekerjaan; semua method dipanggil di EDT
+     * @param <T> Tipe hasil pekerjaan
+     */
+    public interface Callback<T> {
+        void succeeded(T result);
+
+        void failed(Throwable error);
+
+        /**
+         * Dipanggil ketika batas waktu terlewati tetapi pekerjaan tidak dibatalkan
+         * dan masih berjalan; succeeded/failed tetap dipanggil setelah selesai
+         */
+        default void stillRunning() {
+        }
+    }
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timer;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Konstruktor untuk membuat pelaksana pekerjaan latar belakang
+     * @param name Nama thread, dipakai jika virtual thread tidak tersedia
+     */
+    public BackgroundTasks(String name) {
+        this.executor = newExecutor(name);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-timeouts");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Membuat executor satu-thread-per-tugas: virtual thread jika tersedia, thread daemon jika tidak
+     * @param name Nama thread untuk fallback
+     * @return Executor baru
+     */
+    static ExecutorService newExecutor(String name) {
+        try {
+            // Looked up reflectively so the code still compiles and runs on Java 11
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Menjalankan pekerjaan di latar belakang
+     * @param work Pekerjaan yang akan dijalankan
+     * @param timeoutMillis Batas waktu dalam milidetik
+     * @param cancelOnTimeout true untuk membatalkan pekerjaan saat batas waktu terlewati
+     *        (dilaporkan sebagai TimeoutException), false untuk hanya memberi tahu lewat stillRunning
+     * @param callback Penerima hasil di EDT
+     * @return Future untuk membatalkan pekerjaan
+     */
+    public <T> Future<T> submit(Callable<T> work, long timeoutMillis, boolean cancelOnTimeout, Callback<T> callback) {
+        Task<T> task = new Task<>(work, callback);
+        inFlight.incrementAndGet();
+        task.guard = timer.schedule(() -> {
+            if (task.isDone()) {
+                return;
+            }
+            if (cancelOnTimeout) {
+                task.timedOut = true;
+                task.cancel(true);
+            } else {
+                SwingUtilities.invokeLater(callback::stillRunning);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Jumlah pekerjaan yang belum selesai
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Membuat penggabung permintaan untuk satu jenis pekerjaan
+     * @param work Pekerjaan yang akan dijalankan
+     * @param timeoutMillis Batas waktu setiap eksekusi; eksekusi yang melewatinya dibatalkan
+     * @param callback Penerima hasil setiap eksekusi di EDT
+     * @return Coalescer baru
+     */
+    public <T> Coalescer<T> coalescing(Callable<T> work, long timeoutMillis, Callback<T> callback) {
+        return new Coalescer<>(work, timeoutMillis, callback);
+    }
+
+    /**
+     * Membatalkan semua pekerjaan yang masih berjalan
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Pekerjaan yang melaporkan hasilnya ke EDT setelah selesai
+     */
+    private final class Task<T> extends FutureTask<T> {
+        private final Callback<T> callback;
+        volatile ScheduledFuture<?> guard;
+        volatile boolean timedOut = false;
+
+        Task(Callable<T> work, Callback<T> callback) {
+            super(work);
+            this.callback = callback;
+        }
+
+        @Override
+        protected void done() {
+            inFlight.decrementAndGet();
+            ScheduledFuture<?> g = guard;
+            if (g != null) {
+                g.cancel(false);
+            }
+            try {
+                T result = get();
+                SwingUtilities.invokeLater(() -> callback.succeeded(result));
+            } catch (CancellationException e) {
+                Throwable error = timedOut ? new TimeoutException("Operation timed out") : e;
+                SwingUtilities.invokeLater(() -> callback.failed(error));
+            } catch (ExecutionException e) {
+                SwingUtilities.invokeLater(() -> callback.failed(e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Penggabung permintaan: permintaan selama eksekusi berjalan hanya menandai bahwa
+     * satu eksekusi lagi dibutuhkan setelah eksekusi saat ini selesai
+     * @param <T> Tipe hasil pekerjaan
+     */
+    public final class Coalescer<T> {
+        private static final int IDLE = 0;
+        private static final int RUNNING = 1;
+        private static final int RUNNING_DIRTY = 2;
+
+        private final Callable<T> work;
+        private final long timeoutMillis;
+        private final Callback<T> callback;
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+
+        Coalescer(Callable<T> work, long timeoutMillis, Callback<T> callback) {
+            this.work = work;
+            this.timeoutMillis = timeoutMillis;
+            this.callback = callback;
+        }
+
+        /**
+         * Meminta eksekusi; digabung dengan eksekusi yang sedang berjalan atau menunggu
+         */
+        public void request() {
+            while (true) {
+                int current = state.get();
+                if (current == RUNNING_DIRTY) {
+                    return;
+                }
+                if (current == RUNNING) {
+                    if (state.compareAndSet(RUNNING, RUNNING_DIRTY)) {
+                        return;
+                    }
+                } else if (state.compareAndSet(IDLE, RUNNING)) {
+                    start();
+                    return;
+                }
+            }
+        }
+
+        private void start() {
+            submit(work, timeoutMillis, true, new Callback<T>() {
+                @Override
+                public void succeeded(T result) {
+                    // A throwing callback must not leave the coalescer RUNNING, or no request runs again
+                    try {
+                        callback.succeeded(result);
+                    } finally {
+                        finished();
+                    }
+                }
+
+                @Override
+                public void failed(Throwable error) {
+                    try {
+                        callback.failed(error);
+                    } finally {
+                        finished();
+                    }
+                }
+            });
+        }
+
+        private void finished() {
+            if (!state.compareAndSet(RUNNING, IDLE)) {
+                // Someone asked again while this run was in flight
+                state.set(RUNNING);
+                start();
+            }
+        }
+    }
+}
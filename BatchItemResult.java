@@ -0,0 +1,74 @@
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Hasil untuk satu operasi di dalam batch peminjaman/pengembalian
+ */
+public final class BatchItemResult {
+    /**
+     * Status akhir operasi
+     */
+    public enum Status {
+        OK,
+        BOOK_NOT_AVAILABLE,
+        LOAN_LIMIT_EXCEEDED,
+        NO_ACTIVE_LOAN,
+        UNKNOWN_BOOK,
+        UNKNOWN_MEMBER,
+        ERROR
+    }
+
+    private final LoanOperation operation;
+    private final Status status;
+    private final LocalDate dueDate;
+    private final String message;
+    private final SQLException error;
+
+    BatchItemResult(LoanOperation operation, Status status, LocalDate dueDate, String message) {
+        this(operation, status, dueDate, message, null);
+    }
+
+    BatchItemResult(LoanOperation operation, Status status, LocalDate dueDate, String message, SQLException error) {
+        this.operation = operation;
+        this.status = status;
+        this.dueDate = dueDate;
+        this.message = message;
+        this.error = error;
+    }
+
+    public LoanOperation getOperation() {
+        return operation;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    /**
+     * Tanggal jatuh tempo untuk peminjaman yang berhasil, selain itu null
+     */
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Error database yang membuat potongan operasi ini gagal, null jika status bukan ERROR
+     * atau operasi dilewati setelah potongan sebelumnya gagal
+     */
+    public SQLException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " -> " + status + (message != null ? " (" + message + ")" : "");
+    }
+}
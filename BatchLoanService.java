@@ -0,0 +1,484 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Layanan untuk memproses banyak peminjaman/pengembalian sekaligus, misalnya dari manifest hasil scan
+ * - Operasi dibagi menjadi potongan (chunk); setiap potongan adalah satu transaksi database
+ * - Anggota, buku dan peminjaman aktif dalam satu potongan dikunci dan dibaca dengan beberapa query IN
+ * - Aturan peminjaman divalidasi di memori sesuai urutan operasi, sehingga pengembalian
+ *   di awal potongan membebaskan kuota anggota untuk peminjaman berikutnya
+ * - Penulisan memakai addBatch/executeBatch
+ * - Setiap operasi mendapat BatchItemResult sesuai urutan input
+ * - Buku yang dikembalikan diberikan ke antrean pemesanan seperti pada LoanService
+ * - Peminjaman dicatat per judul; pengembalian melepas eksemplar ber-barcode jika peminjamannya memakai barcode
+ * - Ringkasan peminjaman anggota (member_loan_summary) dikunci bersama baris anggota dan diperbarui
+ *   dalam transaksi potongan yang sama
+ * - Operasi yang membawa kunci jurnal meja offline menyimpan kunci itu di baris transaksinya
+ * - Potongan yang gagal karena deadlock atau lock wait timeout diulang beberapa kali dengan jeda acak
+ */
+public class BatchLoanService {
+    /** Ukuran potongan bawaan, sekaligus batas jumlah parameter pada query IN */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    /** Jumlah percobaan sebuah potongan yang gagal karena deadlock atau lock wait timeout */
+    static final int CHUNK_ATTEMPTS = 4;
+    private static final long RETRY_BASE_MILLIS = 50L;
+
+    /**
+     * Pekerjaan tambahan yang dijalankan di dalam transaksi setiap potongan, tepat sebelum commit
+     */
+    interface ChunkHook {
+        /**
+         * @param conn Koneksi dengan transaksi potongan yang masih terbuka
+         * @param start Indeks operasi pertama potongan
+         * @param end Indeks setelah operasi terakhir potongan
+         * @throws SQLException jika pekerjaan gagal; potongan di-rollback
+         */
+        void beforeCommit(Connection conn, int start, int end) throws SQLException;
+    }
+
+    private final Database db;
+    private final AvailabilityCache cache;
+    private final HoldQueue holds;
+    private final int chunkSize;
+
+    /**
+     * Konstruktor dengan ukuran potongan bawaan
+     * @param db Sumber koneksi database
+     * @param cache Cache ketersediaan yang diinvalidasi setelah setiap commit, boleh null
+     */
+    public BatchLoanService(Database db, AvailabilityCache cache) {
+        this(db, cache, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Konstruktor dengan ukuran potongan tertentu
+     * @param db Sumber koneksi database
+     * @param cache Cache ketersediaan yang diinvalidasi setelah setiap commit, boleh null
+     * @param chunkSize Jumlah maksimal operasi per commit
+     */
+    public BatchLoanService(Database db, AvailabilityCache cache, int chunkSize) {
+        this(db, cache, new HoldQueue(db, cache), chunkSize);
+    }
+
+    /**
+     * Konstruktor dengan antrean pemesanan bersama
+     * @param db Sumber koneksi database
+     * @param cache Cache ketersediaan yang diinvalidasi setelah setiap commit, boleh null
+     * @param holds Antrean pemesanan yang menerima buku yang dikembalikan
+     * @param chunkSize Jumlah maksimal operasi per commit
+     */
+    public BatchLoanService(Database db, AvailabilityCache cache, HoldQueue holds, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.db = db;
+        this.cache = cache;
+        this.holds = holds;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Memproses daftar operasi secara berurutan
+     * @param operations Daftar operasi peminjaman/pengembalian
+     * @return Hasil per operasi dengan urutan yang sama seperti input
+     * @throws SQLException jika koneksi database tidak bisa diperoleh
+     */
+    public List<BatchItemResult> process(List<LoanOperation> operations) throws SQLException {
+        return process(operations, null);
+    }
+
+    /**
+     * Memproses daftar operasi secara berurutan dan menjalankan hook di setiap transaksi potongan.
+     * Dengan hook, pemrosesan berhenti pada potongan pertama yang gagal; operasi sesudahnya
+     * mendapat status ERROR tanpa dijalankan, sehingga urutan operasi tetap terjaga saat diulang.
+     * @param operations Daftar operasi peminjaman/pengembalian
+     * @param hook Pekerjaan sebelum setiap commit, boleh null
+     * @return Hasil per operasi dengan urutan yang sama seperti input
+     * @throws SQLException jika koneksi database tidak bisa diperoleh
+     */
+    List<BatchItemResult> process(List<LoanOperation> operations, ChunkHook hook) throws SQLException {
+        BatchItemResult[] results = new BatchItemResult[operations.size()];
+        long started = System.nanoTime();
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int start = 0;
+                while (start < operations.size()) {
+                    int end = chunkEnd(operations, start);
+                    if (!processChunk(conn, operations, start, end, results, hook) && hook != null) {
+                        for (int i = end; i < operations.size(); i++) {
+                            results[i] = new BatchItemResult(operations.get(i), BatchItemResult.Status.ERROR,
+                                    null, "Skipped after an earlier chunk failed");
+                        }
+                        break;
+                    }
+                    start = end;
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            Metrics.BATCH.recordSince(started);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Menentukan akhir potongan. Sebuah buku hanya boleh muncul sekali per potongan
+     * agar urutan pinjam/kembali buku yang sama selalu dilihat dari state yang sudah di-commit.
+     */
+    private int chunkEnd(List<LoanOperation> operations, int start) {
+        Set<String> books = new HashSet<>();
+        int end = start;
+        while (end < operations.size() && end - start < chunkSize
+                && books.add(operations.get(end).getBookId())) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Menjalankan satu potongan, mengulanginya jika ditolak karena deadlock atau lock wait timeout
+     * @return true jika potongan di-commit
+     */
+    private boolean processChunk(Connection conn, List<LoanOperation> operations, int start, int end,
+            BatchItemResult[] results, ChunkHook hook) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                runChunk(conn, operations, start, end, results, hook);
+                break;
+            } catch (SQLException e) {
+                rollbackQuietly(conn);
+                if (attempt < CHUNK_ATTEMPTS && isRetryable(e) && backOff(attempt)) {
+                    System.err.println("Retrying batch chunk after: " + e.getMessage());
+                    continue;
+                }
+                for (int i = start; i < end; i++) {
+                    results[i] = new BatchItemResult(operations.get(i), BatchItemResult.Status.ERROR, null,
+                            e.getMessage(), e);
+                }
+                System.err.println("Error processing batch chunk: " + e.getMessage());
+                return false;
+            }
+        }
+        // Counted only once the chunk commits, so a retried chunk does not count its rejections twice
+        for (int i = start; i < end; i++) {
+            if (!results[i].isOk()) {
+                Metrics.reject(Metrics.Rejection.valueOf(results[i].getStatus().name()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Memeriksa apakah error adalah penolakan sementara karena penguncian (deadlock atau lock wait timeout)
+     * sehingga transaksi yang sama bisa diulang
+     * @param e Error dari JDBC
+     * @return true untuk SQLState 40001 atau kode error MySQL 1213/1205
+     */
+    static boolean isRetryable(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransactionRollbackException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                SQLException sql = (SQLException) t;
+                if ("40001".equals(sql.getSQLState()) || sql.getErrorCode() == 1213 || sql.getErrorCode() == 1205) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Menunggu sebelum percobaan berikutnya, dengan jeda acak yang berlipat setiap percobaan
+     * @return false jika thread diinterupsi
+     */
+    private static boolean backOff(int attempt) {
+        long ceiling = RETRY_BASE_MILLIS << (attempt - 1);
+        try {
+            Thread.sleep(ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void runChunk(Connection conn, List<LoanOperation> operations, int start, int end,
+            BatchItemResult[] results, ChunkHook hook) throws SQLException {
+        List<LoanOperation> chunk = operations.subList(start, end);
+        Set<String> memberIds = new TreeSet<>();
+        Set<String> bookIds = new TreeSet<>();
+        for (LoanOperation op : chunk) {
+            memberIds.add(op.getMemberId());
+            bookIds.add(op.getBookId());
+        }
+
+        // Members, books, then open loans, each in primary key order: the order LoanService takes them
+        // in too, so concurrent batches and online desks cannot deadlock each other
+        Map<String, Member> members = new HashMap<>();
+        Map<String, Integer> activeLoans = new HashMap<>();
+        Set<String> missingSummaries = lockMembers(conn, memberIds, members, activeLoans);
+        if (!missingSummaries.isEmpty()) {
+            // Same as LoanService: create the rows in their own commit, then lock again
+            conn.rollback();
+            LoanService.createSummaries(conn, missingSummaries);
+            members.clear();
+            activeLoans.clear();
+            lockMembers(conn, memberIds, members, activeLoans);
+        }
+        Map<String, Boolean> available = lockBooks(conn, bookIds);
+        Map<String, Long> openLoans = new HashMap<>();
+        Map<String, String> loanCopies = new HashMap<>();
+        lockOpenLoans(conn, bookIds, openLoans, loanCopies);
+        Map<String, HoldQueue.Hold> released = new HashMap<>();
+        List<LoanOperation> fulfilled = new ArrayList<>();
+
+        try (PreparedStatement insertLoan = conn.prepareStatement(LoanService.SQL_INSERT_LOAN);
+                PreparedStatement claimBook = conn.prepareStatement(LoanService.SQL_CLAIM_COPY);
+                PreparedStatement closeLoan = conn.prepareStatement(LoanService.SQL_CLOSE_LOAN);
+                PreparedStatement releaseBook = conn.prepareStatement(LoanService.SQL_RELEASE_COPY);
+                PreparedStatement releaseCopy = conn.prepareStatement(LoanService.SQL_RELEASE_BARCODE);
+                PreparedStatement countLoan = conn.prepareStatement(LoanService.SQL_SUMMARY_LOAN);
+                PreparedStatement countReturn = conn.prepareStatement(LoanService.SQL_SUMMARY_RETURN)) {
+
+            for (int i = start; i < end; i++) {
+                LoanOperation op = operations.get(i);
+                Member member = members.get(op.getMemberId());
+                Boolean bookAvailable = available.get(op.getBookId());
+                if (member == null) {
+                    results[i] = reject(op, BatchItemResult.Status.UNKNOWN_MEMBER, "Member not found");
+                } else if (bookAvailable == null) {
+                    results[i] = reject(op, BatchItemResult.Status.UNKNOWN_BOOK, "Book not found");
+                } else if (op.getType() == LoanOperation.Type.LOAN) {
+                    results[i] = admitLoan(conn, op, member, bookAvailable, activeLoans, insertLoan, claimBook,
+                            fulfilled);
+                } else {
+                    results[i] = admitReturn(conn, op, openLoans, loanCopies, activeLoans, closeLoan, releaseBook,
+                            releaseCopy, released);
+                }
+                if (results[i].getStatus() == BatchItemResult.Status.OK) {
+                    PreparedStatement summary = op.getType() == LoanOperation.Type.LOAN ? countLoan : countReturn;
+                    LoanService.bindSummary(summary, op.getMemberId(), op.getDate());
+                    summary.addBatch();
+                }
+            }
+
+            insertLoan.executeBatch();
+            claimBook.executeBatch();
+            closeLoan.executeBatch();
+            releaseBook.executeBatch();
+            releaseCopy.executeBatch();
+            countLoan.executeBatch();
+            countReturn.executeBatch();
+        }
+        if (hook != null) {
+            hook.beforeCommit(conn, start, end);
+        }
+        conn.commit();
+        for (Map.Entry<String, HoldQueue.Hold> entry : released.entrySet()) {
+            holds.released(entry.getKey(), entry.getValue());
+        }
+        for (LoanOperation op : fulfilled) {
+            holds.fulfilled(op.getBookId(), op.getMemberId());
+        }
+        if (cache != null) {
+            for (String bookId : bookIds) {
+                cache.invalidateBook(bookId);
+            }
+            for (String memberId : memberIds) {
+                cache.invalidateMember(memberId);
+            }
+        }
+    }
+
+    private BatchItemResult admitLoan(Connection conn, LoanOperation op, Member member, boolean bookAvailable,
+            Map<String, Integer> activeLoans, PreparedStatement insertLoan, PreparedStatement claimBook,
+            List<LoanOperation> fulfilled) throws SQLException {
+        int current = activeLoans.get(member.getId());
+        if (current >= member.getLoanLimit()) {
+            return reject(op, BatchItemResult.Status.LOAN_LIMIT_EXCEEDED, "Member has reached their loan limit");
+        }
+        // As in LoanService, a member collecting a hold takes the copy kept aside for them; claiming a shelf
+        // copy instead would leave the kept copy out of circulation until the hold expires. The hold mirror
+        // may be stale on a desk replaying its journal, so the database is asked under the book lock.
+        if (holds.fulfill(conn, op.getBookId(), op.getMemberId(), op.getDate())) {
+            fulfilled.add(op);
+        } else if (bookAvailable) {
+            claimBook.setString(1, op.getBookId());
+            claimBook.addBatch();
+        } else {
+            return reject(op, BatchItemResult.Status.BOOK_NOT_AVAILABLE, "Book is not available for lending");
+        }
+        activeLoans.put(member.getId(), current + 1);
+
+        LocalDate dueDate = op.getDate().plusDays(member.getLoanPeriod());
+        insertLoan.setString(1, op.getBookId());
+        insertLoan.setString(2, op.getMemberId());
+        insertLoan.setDate(3, java.sql.Date.valueOf(op.getDate()));
+        insertLoan.setDate(4, java.sql.Date.valueOf(dueDate));
+        insertLoan.setNull(5, java.sql.Types.VARCHAR);
+        LoanService.bindJournalKey(insertLoan, 6, op.getJournalId(), op.getJournalSequence());
+        insertLoan.addBatch();
+        return new BatchItemResult(op, BatchItemResult.Status.OK, dueDate, null);
+    }
+
+    private BatchItemResult admitReturn(Connection conn, LoanOperation op, Map<String, Long> openLoans,
+            Map<String, String> loanCopies, Map<String, Integer> activeLoans, PreparedStatement closeLoan,
+            PreparedStatement releaseBook, PreparedStatement releaseCopy, Map<String, HoldQueue.Hold> released)
+            throws SQLException {
+        String key = loanKey(op.getBookId(), op.getMemberId());
+        Long transactionId = openLoans.get(key);
+        if (transactionId == null) {
+            return reject(op, BatchItemResult.Status.NO_ACTIVE_LOAN, "No active loan found for this book and member");
+        }
+        closeLoan.setDate(1, java.sql.Date.valueOf(op.getDate()));
+        LoanService.bindJournalKey(closeLoan, 2, op.getJournalId(), op.getJournalSequence());
+        closeLoan.setLong(4, transactionId);
+        closeLoan.addBatch();
+        // The book row is already locked for this chunk, so the next holder can be promoted right away
+        HoldQueue.Hold next = holds.promoteNext(conn, op.getBookId(), op.getDate());
+        if (next == null) {
+            releaseBook.setString(1, op.getBookId());
+            releaseBook.addBatch();
+        }
+        String barcode = loanCopies.get(key);
+        if (barcode != null) {
+            releaseCopy.setString(1, barcode);
+            releaseCopy.addBatch();
+        }
+        released.put(op.getBookId(), next);
+        activeLoans.merge(op.getMemberId(), -1, Integer::sum);
+        return new BatchItemResult(op, BatchItemResult.Status.OK, null, null);
+    }
+
+    /**
+     * Mengunci anggota beserta ringkasan peminjamannya
+     * @return ID anggota yang belum memiliki baris ringkasan
+     */
+    private static Set<String> lockMembers(Connection conn, Collection<String> ids, Map<String, Member> members,
+            Map<String, Integer> activeLoans) throws SQLException {
+        Set<String> missingSummaries = new TreeSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(lockMembersSql(ids.size()))) {
+            bindAll(pstmt, ids);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Member member = Member.create(rs.getString(1), rs.getString(2), rs.getString(3));
+                    members.put(member.getId(), member);
+                    activeLoans.put(member.getId(), rs.getInt(4));
+                    if (rs.wasNull()) {
+                        missingSummaries.add(member.getId());
+                    }
+                }
+            }
+        }
+        return missingSummaries;
+    }
+
+    private static Map<String, Boolean> lockBooks(Connection conn, Collection<String> ids) throws SQLException {
+        Map<String, Boolean> available = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(lockBooksSql(ids.size()))) {
+            bindAll(pstmt, ids);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    available.put(rs.getString(1), rs.getBoolean(2));
+                }
+            }
+        }
+        return available;
+    }
+
+    private static void lockOpenLoans(Connection conn, Collection<String> bookIds, Map<String, Long> openLoans,
+            Map<String, String> loanCopies) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(lockOpenLoansSql(bookIds.size()))) {
+            bindAll(pstmt, bookIds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    // Oldest loan first when a member holds several copies of one title, as in LoanService
+                    String key = loanKey(rs.getString(2), rs.getString(3));
+                    long id = rs.getLong(1);
+                    Long current = openLoans.get(key);
+                    if (current == null || id < current) {
+                        openLoans.put(key, id);
+                        loanCopies.put(key, rs.getString(4));
+                    }
+                }
+            }
+        }
+    }
+
+    static String lockMembersSql(int count) {
+        return "SELECT m.id, m.name, m.type, s.active_loans FROM members m "
+                + "LEFT JOIN member_loan_summary s ON s.member_id = m.id "
+                + "WHERE m.id IN (" + placeholders(count) + ") ORDER BY m.id FOR UPDATE";
+    }
+
+    static String lockBooksSql(int count) {
+        return "SELECT id, available FROM books WHERE id IN (" + placeholders(count) + ") ORDER BY id FOR UPDATE";
+    }
+
+    static String lockOpenLoansSql(int count) {
+        return "SELECT id, book_id, member_id, copy_barcode FROM transactions WHERE book_id IN ("
+                + placeholders(count) + ") AND return_date IS NULL FOR UPDATE";
+    }
+
+    private static String loanKey(String bookId, String memberId) {
+        return bookId + '\u0000' + memberId;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.toString();
+    }
+
+    private static void bindAll(PreparedStatement pstmt, Collection<String> values) throws SQLException {
+        int index = 1;
+        for (String value : values) {
+            pstmt.setString(index++, value);
+        }
+    }
+
+    private static BatchItemResult reject(LoanOperation op, BatchItemResult.Status status, String message) {
+        return new BatchItemResult(op, status, null, message);
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            System.err.println("Error rolling back batch chunk: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Menghitung ringkasan jumlah hasil per status
+     * @param results Hasil batch
+     * @return Jumlah hasil per status
+     */
+    public static Map<BatchItemResult.Status, Integer> summarize(List<BatchItemResult> results) {
+        Map<BatchItemResult.Status, Integer> summary = new HashMap<>();
+        for (BatchItemResult result : results) {
+            summary.merge(result.getStatus(), 1, Integer::sum);
+        }
+        return summary;
+    }
+}
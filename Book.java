@@ -1,12 +1,14 @@
 /**
  * Kelas yang merepresentasikan buku di perpustakaan
  * Mengimplementasikan interface Loanable untuk mendukung fungsi peminjaman
+ * Satu judul dapat memiliki beberapa eksemplar; buku tersedia selama masih ada eksemplar di rak
  */
 public class Book implements Loanable {
     private String id;
     private String title;
     private String author;
-    private boolean available;
+    private volatile int availableCopies;
+    private volatile int totalCopies;
 
     /**
      * Konstruktor untuk membuat buku baru
@@ -18,25 +20,60 @@ public class Book implements Loanable {
         this.id = id;
         this.title = title;
         this.author = author;
-        this.available = true;
+        this.availableCopies = 1;
+        this.totalCopies = 1;
     }
 
     /**
      * Memeriksa ketersediaan buku untuk dipinjam
-     * @return true jika buku tersedia, false jika sedang dipinjam
+     * @return true jika masih ada eksemplar tersedia, false jika semua sedang dipinjam
      */
     @Override
     public boolean isAvailable() {
-        return available;
+        return availableCopies > 0;
     }
 
     /**
-     * Mengubah status ketersediaan buku
-     * @param status true jika buku tersedia, false jika sedang dipinjam
+     * Mengubah status ketersediaan buku tanpa mengetahui jumlah eksemplarnya
+     * @param status true jika buku tersedia, false jika semua eksemplar sedang dipinjam
      */
     @Override
     public void setAvailable(boolean status) {
-        this.available = status;
+        this.availableCopies = status ? Math.max(availableCopies, 1) : 0;
+    }
+
+    /**
+     * Mengubah jumlah eksemplar sesuai data di database
+     * @param available Jumlah eksemplar tersedia
+     * @param total Jumlah seluruh eksemplar
+     */
+    public void setCopies(int available, int total) {
+        this.totalCopies = total;
+        this.availableCopies = available;
+    }
+
+    @Override
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+    @Override
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+
+    /**
+     * Mencatat satu eksemplar keluar setelah peminjaman di-commit
+     */
+    void checkedOut() {
+        availableCopies = Math.max(availableCopies - 1, 0);
+    }
+
+    /**
+     * Mencatat satu eksemplar kembali ke rak setelah pengembalian di-commit
+     */
+    void checkedIn() {
+        availableCopies = Math.min(availableCopies + 1, Math.max(totalCopies, 1));
     }
 
     /**
@@ -66,6 +103,9 @@ public class Book implements Loanable {
 
     @Override
     public String toString() {
-        return title + " by " + author + (available ? " (Available)" : " (Not Available)");
+        if (totalCopies > 1) {
+            return title + " by " + author + " (" + availableCopies + " of " + totalCopies + " available)";
+        }
+        return title + " by " + author + (isAvailable() ? " (Available)" : " (Not Available)");
     }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@
  * Exception yang dilempar ketika mencoba meminjam buku yang tidak tersedia
  */
 public class BookNotAvailableException extends Exception {
+    private static final long serialVersionUID = 1L;
+
     /**
      * Konstruktor dengan pesan error
      * @param message Pesan yang menjelaskan alasan exception
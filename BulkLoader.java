@@ -0,0 +1,369 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Kelas untuk memuat data CSV/TSV berukuran besar sebagai bagian dari migrasi
+ * Migrasi jenis ini ditulis sebagai file V<versi>__<nama>.load berformat properties:
+ *   file=data/registry_books.tsv     (wajib, relatif terhadap direktori migrasi)
+ *   table=books                      (wajib)
+ *   columns=id,title,author          (opsional, bawaan diambil dari baris header)
+ *   format=tsv                       (csv atau tsv, bawaan dari ekstensi file data)
+ *   header=true                      (apakah baris pertama berisi nama kolom)
+ *   null=\N                          (teks yang dibaca sebagai NULL)
+ *   encoding=UTF-8
+ *   batch.rows=1000                  (baris per INSERT multi-baris)
+ *   commit.rows=50000                (baris per commit dan checkpoint)
+ * - Baris dimasukkan dengan INSERT multi-baris lewat PreparedStatement
+ * - Setiap commit juga memperbarui checkpoint di tabel schema_load_checkpoint dalam
+ *   transaksi yang sama, sehingga pemuatan yang gagal dilanjutkan dari commit terakhir
+ *   tanpa baris ganda
+ * - Kecepatan (baris per detik) dilaporkan setiap commit
+ */
+public class BulkLoader {
+    static final String CHECKPOINT_TABLE = "schema_load_checkpoint";
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9_]+");
+    /** Batas placeholder per prepared statement di MySQL */
+    private static final int MAX_PARAMETERS = 65535;
+
+    private final Connection connection;
+
+    /**
+     * Konstruktor untuk membuat pemuat data
+     * @param connection Koneksi database yang aktif
+     */
+    public BulkLoader(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Membuat tabel checkpoint jika belum ada
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    void createCheckpointTable() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS " + CHECKPOINT_TABLE + " (" +
+                "version VARCHAR(50) PRIMARY KEY," +
+                "rows_loaded BIGINT NOT NULL," +
+                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP)"
+            );
+        }
+    }
+
+    /**
+     * Memuat data sesuai file deskripsi .load, dilanjutkan dari checkpoint jika ada
+     * @param version Nomor versi migrasi
+     * @param descriptor File .load yang menjelaskan sumber dan tujuan data
+     * @return Jumlah total baris yang sudah dimuat untuk versi ini
+     * @throws SQLException jika terjadi kesalahan pada database
+     * @throws IOException jika file tidak bisa dibaca atau deskripsinya tidak valid
+     */
+    public long load(String version, File descriptor) throws SQLException, IOException {
+        Properties spec = new Properties();
+        try (Reader in = new InputStreamReader(new FileInputStream(descriptor), "UTF-8")) {
+            spec.load(in);
+        }
+        String fileName = required(spec, "file", descriptor);
+        File dataFile = new File(descriptor.getParentFile(), fileName);
+        String table = identifier(required(spec, "table", descriptor), descriptor);
+        boolean tsv = spec.getProperty("format", fileName.endsWith(".tsv") ? "tsv" : "csv").equalsIgnoreCase("tsv");
+        boolean header = Boolean.parseBoolean(spec.getProperty("header", "true"));
+        String nullText = spec.getProperty("null", "\\N");
+        int batchRows = Integer.parseInt(spec.getProperty("batch.rows", "1000"));
+        int commitRows = Integer.parseInt(spec.getProperty("commit.rows", "50000"));
+        Charset charset = Charset.forName(spec.getProperty("encoding", "UTF-8"));
+
+        createCheckpointTable();
+        long done = readCheckpoint(version);
+
+        try (RecordReader records = new RecordReader(
+                new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), charset), 1 << 16), tsv)) {
+            List<String> columns;
+            String[] first = header ? records.next() : null;
+            if (spec.getProperty("columns") != null) {
+                columns = Arrays.asList(spec.getProperty("columns").split("\\s*,\\s*"));
+            } else if (first != null) {
+                columns = Arrays.asList(first);
+            } else {
+                throw new IOException(descriptor.getName() + ": 'columns' is required when the file has no header");
+            }
+            for (String column : columns) {
+                identifier(column, descriptor);
+            }
+            batchRows = Math.max(1, Math.min(batchRows, MAX_PARAMETERS / columns.size()));
+
+            // Rows before the checkpoint were committed by an earlier run
+            for (long skipped = 0; skipped < done; skipped++) {
+                if (records.next() == null) {
+                    throw new IOException(dataFile.getName() + " has fewer rows than the checkpoint for version "
+                            + version + " (" + done + ")");
+                }
+            }
+            if (done > 0) {
+                System.out.println("Resuming load " + version + " into " + table + " after row " + done);
+            }
+            return insertAll(version, table, columns, records, nullText, batchRows, commitRows, done);
+        }
+    }
+
+    private long insertAll(String version, String table, List<String> columns, RecordReader records,
+            String nullText, int batchRows, int commitRows, long done) throws SQLException, IOException {
+        long start = System.nanoTime();
+        long loadedThisRun = 0;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement fullBatch = connection.prepareStatement(insertSql(table, columns, batchRows))) {
+            List<String[]> pending = new ArrayList<>(batchRows);
+            long sinceCommit = 0;
+            String[] row;
+            while ((row = records.next()) != null) {
+                if (row.length != columns.size()) {
+                    throw new IOException("Row " + (done + loadedThisRun + pending.size() + 1) + " has "
+                            + row.length + " fields, expected " + columns.size());
+                }
+                pending.add(row);
+                if (pending.size() == batchRows) {
+                    bindRows(fullBatch, pending, nullText);
+                    fullBatch.executeUpdate();
+                    sinceCommit += pending.size();
+                    loadedThisRun += pending.size();
+                    pending.clear();
+                    if (sinceCommit >= commitRows) {
+                        checkpoint(version, done + loadedThisRun);
+                        sinceCommit = 0;
+                        report(version, table, done + loadedThisRun, loadedThisRun, start);
+                    }
+                }
+            }
+            if (!pending.isEmpty()) {
+                try (PreparedStatement tail = connection.prepareStatement(insertSql(table, columns, pending.size()))) {
+                    bindRows(tail, pending, nullText);
+                    tail.executeUpdate();
+                }
+                loadedThisRun += pending.size();
+                sinceCommit += pending.size();
+            }
+            checkpoint(version, done + loadedThisRun);
+            if (sinceCommit > 0) {
+                report(version, table, done + loadedThisRun, loadedThisRun, start);
+            }
+            return done + loadedThisRun;
+        } catch (SQLException | IOException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Menyimpan jumlah baris yang sudah dimuat lalu commit bersama baris-baris tersebut
+     */
+    private void checkpoint(String version, long rowsLoaded) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "INSERT INTO " + CHECKPOINT_TABLE + " (version, rows_loaded) VALUES (?, ?) "
+                + "ON DUPLICATE KEY UPDATE rows_loaded = VALUES(rows_loaded)")) {
+            pstmt.setString(1, version);
+            pstmt.setLong(2, rowsLoaded);
+            pstmt.executeUpdate();
+        }
+        connection.commit();
+    }
+
+    private long readCheckpoint(String version) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT rows_loaded FROM " + CHECKPOINT_TABLE + " WHERE version = ?")) {
+            pstmt.setString(1, version);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+    }
+
+    /**
+     * Menghapus checkpoint setelah migrasi tercatat di schema_version
+     * @param version Nomor versi migrasi
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    void clearCheckpoint(String version) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "DELETE FROM " + CHECKPOINT_TABLE + " WHERE version = ?")) {
+            pstmt.setString(1, version);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void report(String version, String table, long total, long loadedThisRun, long start) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        System.out.printf("Load %s into %s: %d rows (%.0f rows/s)%n", version, table, total, loadedThisRun / seconds);
+    }
+
+    private static void bindRows(PreparedStatement pstmt, List<String[]> rows, String nullText) throws SQLException {
+        int index = 1;
+        for (String[] row : rows) {
+            for (String value : row) {
+                pstmt.setString(index++, value == null || value.equals(nullText) ? null : value);
+            }
+        }
+    }
+
+    static String insertSql(String table, List<String> columns, int rows) {
+        StringBuilder sb = new StringBuilder("INSERT INTO `").append(table).append("` (");
+        for (int i = 0; i < columns.size(); i++) {
+            sb.append(i == 0 ? "`" : ", `").append(columns.get(i)).append('`');
+        }
+        sb.append(") VALUES ");
+        StringBuilder tuple = new StringBuilder("(");
+        for (int i = 0; i < columns.size(); i++) {
+            tuple.append(i == 0 ? "?" : ", ?");
+        }
+        tuple.append(')');
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                sb.append(", ");
+            }
+            sb.append(tuple);
+        }
+        return sb.toString();
+    }
+
+    private static String required(Properties spec, String key, File descriptor) throws IOException {
+        String value = spec.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IOException(descriptor.getName() + ": '" + key + "' is required");
+        }
+        return value.trim();
+    }
+
+    private static String identifier(String name, File descriptor) throws IOException {
+        if (!IDENTIFIER.matcher(name).matches()) {
+            throw new IOException(descriptor.getName() + ": invalid table or column name '" + name + "'");
+        }
+        return name;
+    }
+
+    /**
+     * Pembaca record CSV (RFC 4180) atau TSV (escape gaya LOAD DATA) secara streaming
+     * - CSV: field boleh diapit tanda kutip ganda, "" berarti satu tanda kutip, dan
+     *   field berkutip boleh memuat baris baru
+     * - TSV: \t, \n, \r dan \\ di-escape dengan backslash; \N tetap dikembalikan apa adanya
+     */
+    static final class RecordReader implements AutoCloseable {
+        private final Reader in;
+        private final boolean tsv;
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private int peeked = -2;
+
+        RecordReader(Reader in, boolean tsv) {
+            this.in = in;
+            this.tsv = tsv;
+        }
+
+        /**
+         * Membaca record berikutnya
+         * @return Daftar field, atau null jika data habis
+         * @throws IOException jika terjadi kesalahan membaca
+         */
+        String[] next() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            int c = read();
+            while (c == '\n' || c == '\r') {
+                // Blank lines between records carry no data
+                c = read();
+            }
+            if (c == -1) {
+                return null;
+            }
+            boolean quoted = false;
+            boolean fieldStart = true;
+            while (true) {
+                if (c == -1) {
+                    break;
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            read();
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == (tsv ? '\t' : ',')) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    fieldStart = true;
+                    c = read();
+                    continue;
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r' && peek() == '\n') {
+                        read();
+                    }
+                    break;
+                } else if (!tsv && c == '"' && fieldStart) {
+                    quoted = true;
+                } else if (tsv && c == '\\') {
+                    int escaped = read();
+                    if (escaped == 't') {
+                        field.append('\t');
+                    } else if (escaped == 'n') {
+                        field.append('\n');
+                    } else if (escaped == 'r') {
+                        field.append('\r');
+                    } else if (escaped == 'N') {
+                        field.append("\\N");
+                    } else if (escaped != -1) {
+                        field.append((char) escaped);
+                    }
+                } else {
+                    field.append((char) c);
+                }
+                fieldStart = false;
+                c = read();
+            }
+            fields.add(field.toString());
+            return fields.toArray(new String[0]);
+        }
+
+        private int read() throws IOException {
+            if (peeked != -2) {
+                int c = peeked;
+                peeked = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) {
+                peeked = in.read();
+            }
+            return peeked;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
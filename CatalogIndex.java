@@ -0,0 +1,551 @@
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indeks terbalik (inverted index) di memori untuk pencarian katalog berdasarkan judul dan penulis
+ * - Setiap kata judul/penulis dinormalisasi (huruf kecil, tanpa diakritik) menjadi term;
+ *   setiap kata pada query dicocokkan sebagai awalan (prefix) sehingga cocok untuk typeahead
+ * - Peringkat: kata pertama judul, lalu kata judul lain, lalu penulis; kata yang sama persis
+ *   di atas yang hanya berawalan sama; seri dipecah dengan judul yang lebih pendek
+ * - Posting setiap term disimpan sebagai long[] yang sudah terurut menurut peringkat, sehingga
+ *   query satu kata cukup menggabungkan (k-way merge) posting term yang berawalan sama dan
+ *   berhenti setelah hasil ke-limit
+ * - Query beberapa kata dibaca dari posting kata yang paling selektif dengan urutan peringkat;
+ *   kata lain diperiksa pada daftar id term dokumen (int[]) dan pembacaan berhenti begitu
+ *   batas atas skor posting berikutnya tidak bisa lagi masuk hasil
+ * - Perubahan buku diterapkan satu per satu (upsert); dokumen lama ditandai terhapus dan
+ *   posting dipadatkan ulang saat dokumen terhapus melebihi seperempat dokumen hidup
+ * - Buku dicari lewat surrogate IdTable (int[] surrogate -> dokumen), bukan map berkunci String
+ * - Query berjalan paralel di bawah read lock, perubahan memakai write lock
+ */
+public class CatalogIndex {
+    /** Jumlah baris per putaran saat memuat katalog penuh */
+    private static final int LOAD_FETCH_SIZE = 5000;
+    /** Pemadatan tidak dijalankan untuk jumlah dokumen terhapus sekecil ini */
+    private static final int MIN_COMPACT_DEAD = 1024;
+
+    private static final int TITLE_FIRST = 3;
+    private static final int TITLE = 2;
+    private static final int AUTHOR = 1;
+    private static final int MAX_SCORE_PER_WORD = TITLE_FIRST * 2 + 1;
+    private static final long DOC_MASK = 0xFFFFFFFFL;
+    private static final long TIE_MASK = 0xFFFFFFFFFFFFL;
+
+    /**
+     * Posting satu term. Setiap entri adalah kunci peringkat:
+     * (3 - bobot) << 48 | panjang judul << 32 | docId, sehingga urutan naik = peringkat terbaik dulu
+     */
+    private static final class Postings {
+        final int id;
+        long[] keys = new long[2];
+        int size;
+
+        Postings(int id) {
+            this.id = id;
+        }
+
+        void append(long key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            keys[size++] = key;
+        }
+
+        void insert(long key) {
+            int pos = Arrays.binarySearch(keys, 0, size, key);
+            pos = pos < 0 ? -pos - 1 : pos;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+            keys[pos] = key;
+            size++;
+        }
+    }
+
+    /**
+     * Posisi baca pada posting satu term selama penggabungan (k-way merge)
+     */
+    private static final class Cursor {
+        final long[] keys;
+        final int size;
+        final int termId;
+        final int bonus;
+        int pos;
+
+        Cursor(Postings postings, boolean exact) {
+            this.keys = postings.keys;
+            this.size = postings.size;
+            this.termId = postings.id;
+            this.bonus = exact ? 1 : 0;
+        }
+
+        int score() {
+            return (3 - (int) (keys[pos] >>> 48)) * 2 + bonus;
+        }
+
+        long rank() {
+            return ((long) (MAX_SCORE_PER_WORD - score()) << 48) | (keys[pos] & TIE_MASK);
+        }
+    }
+
+    /**
+     * Term yang cocok dengan satu kata query
+     */
+    private static final class WordMatch {
+        final NavigableMap<String, Postings> range;
+        final BitSet termIds = new BitSet();
+        int exactId = -1;
+        int maxScore = -1;
+        long postings;
+
+        WordMatch(String word, NavigableMap<String, Postings> range) {
+            this.range = range;
+            for (Map.Entry<String, Postings> entry : range.entrySet()) {
+                Postings p = entry.getValue();
+                boolean exact = entry.getKey().equals(word);
+                termIds.set(p.id);
+                if (exact) {
+                    exactId = p.id;
+                }
+                if (p.size > 0) {
+                    maxScore = Math.max(maxScore, (3 - (int) (p.keys[0] >>> 48)) * 2 + (exact ? 1 : 0));
+                    postings += p.size;
+                }
+            }
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final BitSet deleted = new BitSet();
+    /** Dokumen hidup setiap buku, diindeks surrogate IdTable.BOOKS; -1 jika tidak ada */
+    private int[] docOfBook = new int[0];
+    /** Surrogate buku setiap dokumen */
+    private int[] bookOfDoc = new int[1024];
+    private String[] titles = new String[1024];
+    private String[] authors = new String[1024];
+    private int[] availableCopies = new int[1024];
+    private int[] totalCopies = new int[1024];
+    /** Term setiap dokumen sebagai (id term << 2 | bobot terbaik), untuk memeriksa query beberapa kata */
+    private int[][] docEntries = new int[1024][];
+    private int docCount;
+    private int liveCount;
+    private int deadCount;
+    private int nextTermId;
+    private volatile boolean ready;
+    private ScheduledExecutorService syncer;
+
+    /**
+     * Memuat seluruh katalog secara streaming, menggantikan isi indeks
+     * @param catalog Pembaca katalog
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public void load(CatalogReader catalog) throws SQLException {
+        CatalogIndex fresh = new CatalogIndex();
+        catalog.streamBooks(LOAD_FETCH_SIZE, book -> fresh.addDocument(book, false));
+        for (Postings postings : fresh.terms.values()) {
+            Arrays.sort(postings.keys, 0, postings.size);
+        }
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            terms.putAll(fresh.terms);
+            deleted.clear();
+            docOfBook = fresh.docOfBook;
+            bookOfDoc = fresh.bookOfDoc;
+            titles = fresh.titles;
+            authors = fresh.authors;
+            availableCopies = fresh.availableCopies;
+            totalCopies = fresh.totalCopies;
+            docEntries = fresh.docEntries;
+            docCount = fresh.docCount;
+            liveCount = fresh.liveCount;
+            deadCount = 0;
+            nextTermId = fresh.nextTermId;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+    }
+
+    /**
+     * Apakah katalog sudah dimuat sehingga indeks bisa dipakai
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Jumlah buku di indeks
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Menambahkan atau memperbarui satu buku
+     * Jika judul dan penulis tidak berubah, hanya jumlah eksemplarnya yang diperbarui
+     * @param book Buku terbaru dari database
+     */
+    public void upsert(Book book) {
+        lock.writeLock().lock();
+        try {
+            int key = IdTable.BOOKS.find(book.getId());
+            int doc = key >= 0 && key < docOfBook.length ? docOfBook[key] : -1;
+            if (doc >= 0) {
+                if (titles[doc].equals(book.getTitle()) && authors[doc].equals(book.getAuthor())) {
+                    availableCopies[doc] = book.getAvailableCopies();
+                    totalCopies[doc] = book.getTotalCopies();
+                    return;
+                }
+                deleted.set(doc);
+                deadCount++;
+            }
+            addDocument(book, true);
+            if (deadCount >= MIN_COMPACT_DEAD && deadCount * 4 > liveCount) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Mencari buku berdasarkan awalan kata judul atau penulis
+     * @param query Teks yang diketik pengguna, misalnya "java prog"
+     * @param availableOnly true untuk hanya mengembalikan buku yang masih memiliki eksemplar tersedia
+     * @param limit Jumlah maksimal hasil
+     * @return Buku berurutan berdasarkan peringkat, kosong jika query tidak memiliki kata
+     */
+    public List<Book> search(String query, boolean availableOnly, int limit) {
+        long start = System.nanoTime();
+        String[] words = normalize(query);
+        List<Book> results = new ArrayList<>();
+        if (words.length == 0 || limit <= 0) {
+            return results;
+        }
+        lock.readLock().lock();
+        try {
+            int[] docs = words.length == 1
+                    ? searchOneWord(words[0], availableOnly, limit)
+                    : searchWords(words, availableOnly, limit);
+            for (int doc : docs) {
+                Book book = new Book(IdTable.BOOKS.id(bookOfDoc[doc]), titles[doc], authors[doc]);
+                book.setCopies(availableCopies[doc], totalCopies[doc]);
+                results.add(book);
+            }
+        } finally {
+            lock.readLock().unlock();
+            Metrics.SEARCH.recordSince(start);
+        }
+        return results;
+    }
+
+    /**
+     * Satu kata: posting setiap term sudah terurut menurut peringkat, jadi penggabungan
+     * berhenti setelah limit hasil tanpa membaca seluruh posting
+     */
+    private int[] searchOneWord(String word, boolean availableOnly, int limit) {
+        PriorityQueue<Cursor> merge = cursors(word, prefixRange(word));
+        Set<Integer> taken = new HashSet<>();
+        int[] docs = new int[limit];
+        int found = 0;
+        while (found < limit && !merge.isEmpty()) {
+            Cursor cursor = merge.poll();
+            int doc = (int) (cursor.keys[cursor.pos] & DOC_MASK);
+            // A book with two terms under the prefix shows up again later with a lower rank
+            if (!deleted.get(doc) && (!availableOnly || availableCopies[doc] > 0) && taken.add(doc)) {
+                docs[found++] = doc;
+            }
+            if (++cursor.pos < cursor.size) {
+                merge.add(cursor);
+            }
+        }
+        return Arrays.copyOf(docs, found);
+    }
+
+    /**
+     * Beberapa kata: posting kata yang paling selektif dibaca menurut peringkat, kata lain
+     * diperiksa pada term dokumen, dan limit teratas disimpan dalam heap. Batas atas skor
+     * posting berikutnya (skornya ditambah skor maksimum kata lain) tidak pernah naik,
+     * jadi pembacaan berhenti begitu batas itu kalah dari hasil terburuk di heap.
+     */
+    private int[] searchWords(String[] words, boolean availableOnly, int limit) {
+        WordMatch[] matches = new WordMatch[words.length];
+        int driver = 0;
+        int othersMax = 0;
+        for (int w = 0; w < words.length; w++) {
+            matches[w] = new WordMatch(words[w], prefixRange(words[w]));
+            if (matches[w].postings == 0) {
+                return new int[0];
+            }
+            othersMax += matches[w].maxScore;
+            if (matches[w].postings < matches[driver].postings) {
+                driver = w;
+            }
+        }
+        othersMax -= matches[driver].maxScore;
+        int maxTotal = words.length * MAX_SCORE_PER_WORD;
+
+        PriorityQueue<Cursor> merge = cursors(words[driver], matches[driver].range);
+        // Worst result on top so it can be replaced; ranks are unique because they end with the doc id
+        PriorityQueue<Long> best = new PriorityQueue<>(limit + 1, Collections.reverseOrder());
+        while (!merge.isEmpty()) {
+            Cursor cursor = merge.poll();
+            long key = cursor.keys[cursor.pos];
+            int driverScore = cursor.score();
+            int termId = cursor.termId;
+            if (++cursor.pos < cursor.size) {
+                merge.add(cursor);
+            }
+            if (best.size() == limit
+                    && (((long) (maxTotal - driverScore - othersMax) << 48) | (key & TIE_MASK)) > best.peek()) {
+                break;
+            }
+            int doc = (int) (key & DOC_MASK);
+            if (deleted.get(doc) || (availableOnly && availableCopies[doc] <= 0)) {
+                continue;
+            }
+            int score = score(docEntries[doc], matches, driver, termId);
+            if (score < 0) {
+                continue;
+            }
+            long rank = ((long) (maxTotal - score) << 48) | (key & TIE_MASK);
+            if (best.size() < limit) {
+                best.add(rank);
+            } else if (rank < best.peek()) {
+                best.poll();
+                best.add(rank);
+            }
+        }
+        int[] docs = new int[best.size()];
+        for (int i = docs.length - 1; i >= 0; i--) {
+            docs[i] = (int) (best.poll() & DOC_MASK);
+        }
+        return docs;
+    }
+
+    /**
+     * Jumlah skor terbaik setiap kata query pada dokumen
+     * @param driverTerm Term posting yang sedang dibaca; dokumen dengan beberapa term berawalan kata
+     *                   penggerak hanya dihitung pada term terbaiknya agar tidak muncul dua kali
+     * @return Skor, atau -1 jika ada kata yang tidak cocok atau dokumen dihitung pada term lain
+     */
+    private static int score(int[] entries, WordMatch[] matches, int driver, int driverTerm) {
+        int total = 0;
+        for (int w = 0; w < matches.length; w++) {
+            WordMatch match = matches[w];
+            int bestScore = -1;
+            int bestTerm = -1;
+            for (int entry : entries) {
+                int term = entry >>> 2;
+                if (match.termIds.get(term)) {
+                    int s = (entry & 3) * 2 + (term == match.exactId ? 1 : 0);
+                    if (s > bestScore || (s == bestScore && term < bestTerm)) {
+                        bestScore = s;
+                        bestTerm = term;
+                    }
+                }
+            }
+            if (bestScore < 0 || (w == driver && bestTerm != driverTerm)) {
+                return -1;
+            }
+            total += bestScore;
+        }
+        return total;
+    }
+
+    private PriorityQueue<Cursor> cursors(String word, NavigableMap<String, Postings> range) {
+        PriorityQueue<Cursor> merge = new PriorityQueue<>(Math.max(range.size(), 1),
+                (a, b) -> Long.compare(a.rank(), b.rank()));
+        for (Map.Entry<String, Postings> entry : range.entrySet()) {
+            if (entry.getValue().size > 0) {
+                merge.add(new Cursor(entry.getValue(), entry.getKey().equals(word)));
+            }
+        }
+        return merge;
+    }
+
+    private NavigableMap<String, Postings> prefixRange(String prefix) {
+        return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Mulai menerapkan perubahan katalog secara berkala; putaran pertama memuat katalog penuh
+     * @param db Sumber koneksi database
+     * @param periodMillis Interval polling dalam milidetik
+     */
+    public synchronized void start(Database db, long periodMillis) {
+        if (syncer != null) {
+            return;
+        }
+        CatalogReader catalog = new CatalogReader(db);
+        CatalogSync sync = new CatalogSync(db);
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalog-index-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(() -> {
+            try {
+                if (!ready) {
+                    // Mark first so changes committed during the load are picked up by the next poll
+                    sync.markNow();
+                    long started = System.currentTimeMillis();
+                    load(catalog);
+                    System.out.println("Catalog index loaded: " + size() + " books in "
+                            + (System.currentTimeMillis() - started) + " ms");
+                    return;
+                }
+                for (Book book : sync.pollBooks()) {
+                    upsert(book);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error syncing catalog index: " + e.getMessage());
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Menghentikan polling perubahan katalog
+     */
+    public synchronized void stop() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+            syncer = null;
+        }
+    }
+
+    /**
+     * Menambahkan dokumen baru beserta postingnya
+     * @param sorted true untuk menyisipkan posting di posisi urutnya; false saat pemuatan penuh,
+     *               yang mengurutkan semua posting sekali di akhir
+     */
+    private void addDocument(Book book, boolean sorted) {
+        if (docCount == bookOfDoc.length) {
+            int capacity = docCount * 2;
+            bookOfDoc = Arrays.copyOf(bookOfDoc, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            authors = Arrays.copyOf(authors, capacity);
+            availableCopies = Arrays.copyOf(availableCopies, capacity);
+            totalCopies = Arrays.copyOf(totalCopies, capacity);
+            docEntries = Arrays.copyOf(docEntries, capacity);
+        }
+        int doc = docCount++;
+        int bookKey = IdTable.BOOKS.intern(book.getId());
+        docOfBook = IdTable.ensure(docOfBook, bookKey, -1);
+        if (docOfBook[bookKey] < 0) {
+            liveCount++;
+        }
+        docOfBook[bookKey] = doc;
+        bookOfDoc[doc] = bookKey;
+        titles[doc] = book.getTitle();
+        authors[doc] = book.getAuthor();
+        availableCopies[doc] = book.getAvailableCopies();
+        totalCopies[doc] = book.getTotalCopies();
+
+        // Each term once per document, with the best field it appears in
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        String[] titleWords = normalize(book.getTitle());
+        for (int i = 0; i < titleWords.length; i++) {
+            weights.merge(titleWords[i], i == 0 ? TITLE_FIRST : TITLE, Math::max);
+        }
+        for (String word : normalize(book.getAuthor())) {
+            weights.merge(word, AUTHOR, Math::max);
+        }
+        int[] entries = new int[weights.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            Postings postings = terms.computeIfAbsent(entry.getKey(), k -> new Postings(nextTermId++));
+            long key = ((long) (3 - entry.getValue()) << 48) | ((long) titleLength(book.getTitle()) << 32) | doc;
+            if (sorted) {
+                postings.insert(key);
+            } else {
+                postings.append(key);
+            }
+            entries[i++] = (postings.id << 2) | entry.getValue();
+        }
+        docEntries[doc] = entries;
+    }
+
+    /**
+     * Membuang dokumen terhapus dari semua posting; id dokumen dan id term tidak dipakai ulang
+     */
+    private void compact() {
+        Iterator<Postings> it = terms.values().iterator();
+        while (it.hasNext()) {
+            Postings postings = it.next();
+            int kept = 0;
+            for (int i = 0; i < postings.size; i++) {
+                if (!deleted.get((int) (postings.keys[i] & DOC_MASK))) {
+                    postings.keys[kept++] = postings.keys[i];
+                }
+            }
+            postings.size = kept;
+            if (kept == 0) {
+                it.remove();
+            }
+        }
+        for (int doc = deleted.nextSetBit(0); doc >= 0; doc = deleted.nextSetBit(doc + 1)) {
+            titles[doc] = null;
+            authors[doc] = null;
+            docEntries[doc] = null;
+        }
+        // Dead documents no longer appear in any posting, so they need no mark
+        deleted.clear();
+        deadCount = 0;
+    }
+
+    private static int titleLength(String title) {
+        return Math.min(title.length(), 0xFFFF);
+    }
+
+    /**
+     * Mengubah teks menjadi kata-kata huruf kecil tanpa diakritik
+     */
+    static String[] normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,222 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Kelas untuk membaca katalog buku dan anggota per halaman
+ * - Halaman berikutnya dicari dengan keyset (id > id terakhir), bukan OFFSET
+ * - Filter pencarian berupa awalan (prefix) judul/penulis atau nama/ID anggota
+ * - Pembacaan penuh dilakukan secara streaming dengan fetch size
+ */
+public class CatalogReader {
+    /** Jumlah baris bawaan per halaman */
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    private static final String BOOK_COLUMNS = "SELECT id, title, author, available_copies, total_copies FROM books ";
+    private static final String MEMBER_COLUMNS = "SELECT id, name, type FROM members ";
+
+    static final String SQL_BOOK_PAGE = BOOK_COLUMNS + "WHERE id > ? ORDER BY id LIMIT ?";
+    /**
+     * Halaman buku dengan filter awalan. Judul dan penulis dicari terpisah agar masing-masing
+     * memakai indeksnya (OR dalam satu WHERE membuat seluruh tabel dibaca), lalu digabung dengan UNION.
+     */
+    static final String SQL_BOOK_PREFIX_PAGE =
+            "(" + BOOK_COLUMNS + "WHERE title LIKE ? ESCAPE '!' AND id > ? ORDER BY id LIMIT ?)"
+            + " UNION (" + BOOK_COLUMNS + "WHERE author LIKE ? ESCAPE '!' AND id > ? ORDER BY id LIMIT ?)"
+            + " ORDER BY id LIMIT ?";
+    static final String SQL_MEMBER_PAGE = MEMBER_COLUMNS + "WHERE id > ? ORDER BY id LIMIT ?";
+    /**
+     * Halaman anggota dengan filter awalan nama (idx_members_name) atau ID (primary key)
+     */
+    static final String SQL_MEMBER_PREFIX_PAGE =
+            "(" + MEMBER_COLUMNS + "WHERE name LIKE ? ESCAPE '!' AND id > ? ORDER BY id LIMIT ?)"
+            + " UNION (" + MEMBER_COLUMNS + "WHERE id LIKE ? ESCAPE '!' AND id > ? ORDER BY id LIMIT ?)"
+            + " ORDER BY id LIMIT ?";
+
+    private final Database db;
+
+    /**
+     * Konstruktor untuk membuat pembaca katalog
+     * @param db Sumber koneksi database
+     */
+    public CatalogReader(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * Membaca satu halaman buku setelah ID tertentu
+     * @param afterId ID terakhir dari halaman sebelumnya, null untuk halaman pertama
+     * @param prefix Awalan judul atau penulis, null atau kosong untuk semua buku
+     * @param limit Jumlah maksimal baris
+     * @return Daftar buku berurutan berdasarkan ID
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public List<Book> readBooks(String afterId, String prefix, int limit) throws SQLException {
+        boolean filtered = prefix != null && !prefix.isEmpty();
+        List<Book> books = new ArrayList<>();
+        long start = System.nanoTime();
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(filtered ? SQL_BOOK_PREFIX_PAGE : SQL_BOOK_PAGE)) {
+            bindPage(pstmt, afterId, filtered ? likePrefix(prefix) : null, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    books.add(toBook(rs));
+                }
+            }
+        } finally {
+            Metrics.CATALOG_LOAD.recordSince(start);
+        }
+        return books;
+    }
+
+    /**
+     * Membaca satu halaman anggota setelah ID tertentu
+     * @param afterId ID terakhir dari halaman sebelumnya, null untuk halaman pertama
+     * @param prefix Awalan nama atau ID anggota, null atau kosong untuk semua anggota
+     * @param limit Jumlah maksimal baris
+     * @return Daftar anggota berurutan berdasarkan ID
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public List<Member> readMembers(String afterId, String prefix, int limit) throws SQLException {
+        boolean filtered = prefix != null && !prefix.isEmpty();
+        List<Member> members = new ArrayList<>();
+        long start = System.nanoTime();
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(filtered ? SQL_MEMBER_PREFIX_PAGE : SQL_MEMBER_PAGE)) {
+            bindPage(pstmt, afterId, filtered ? likePrefix(prefix) : null, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    members.add(toMember(rs));
+                }
+            }
+        } finally {
+            Metrics.CATALOG_LOAD.recordSince(start);
+        }
+        return members;
+    }
+
+    /**
+     * Membaca seluruh buku secara streaming tanpa menampung semua baris di memori
+     * @param fetchSize Jumlah baris yang diambil dari server per putaran
+     * @param consumer Penerima setiap buku
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public void streamBooks(int fetchSize, Consumer<Book> consumer) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(BOOK_COLUMNS + "ORDER BY id")) {
+            pstmt.setFetchSize(fetchSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(toBook(rs));
+                }
+            }
+        } finally {
+            Metrics.CATALOG_LOAD.recordSince(start);
+        }
+    }
+
+    /**
+     * Membaca seluruh anggota secara streaming tanpa menampung semua baris di memori
+     * @param fetchSize Jumlah baris yang diambil dari server per putaran
+     * @param consumer Penerima setiap anggota
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public void streamMembers(int fetchSize, Consumer<Member> consumer) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(MEMBER_COLUMNS + "ORDER BY id")) {
+            pstmt.setFetchSize(fetchSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(toMember(rs));
+                }
+            }
+        } finally {
+            Metrics.CATALOG_LOAD.recordSince(start);
+        }
+    }
+
+    /**
+     * Mencari satu buku berdasarkan ID
+     * @param id ID buku
+     * @return Buku, atau null jika tidak ditemukan
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public Book findBook(String id) throws SQLException {
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(BOOK_COLUMNS + "WHERE id = ?")) {
+            pstmt.setString(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? toBook(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Mencari satu anggota berdasarkan ID
+     * @param id ID anggota
+     * @return Anggota, atau null jika tidak ditemukan
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public Member findMember(String id) throws SQLException {
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(MEMBER_COLUMNS + "WHERE id = ?")) {
+            pstmt.setString(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? toMember(rs) : null;
+            }
+        }
+    }
+
+    static Book toBook(ResultSet rs) throws SQLException {
+        // Ids read from the database are interned so every copy of a book shares one id string
+        Book book = new Book(IdTable.BOOKS.canonical(rs.getString("id")), rs.getString("title"),
+                rs.getString("author"));
+        book.setCopies(rs.getInt("available_copies"), rs.getInt("total_copies"));
+        return book;
+    }
+
+    static Member toMember(ResultSet rs) throws SQLException {
+        return Member.create(IdTable.MEMBERS.canonical(rs.getString("id")), rs.getString("name"),
+                rs.getString("type"));
+    }
+
+    /**
+     * Mengisi parameter halaman; dengan filter, setiap sisi UNION mendapat pola, ID terakhir dan limit
+     */
+    private static void bindPage(PreparedStatement pstmt, String afterId, String pattern, int limit)
+            throws SQLException {
+        String after = afterId != null ? afterId : "";
+        if (pattern == null) {
+            pstmt.setString(1, after);
+            pstmt.setInt(2, limit);
+            return;
+        }
+        for (int side = 0; side < 2; side++) {
+            pstmt.setString(side * 3 + 1, pattern);
+            pstmt.setString(side * 3 + 2, after);
+            pstmt.setInt(side * 3 + 3, limit);
+        }
+        pstmt.setInt(7, limit);
+    }
+
+    /**
+     * Mengubah teks pencarian menjadi pola LIKE awalan dengan karakter khusus di-escape
+     */
+    private static String likePrefix(String prefix) {
+        StringBuilder sb = new StringBuilder(prefix.length() + 1);
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c == '!' || c == '%' || c == '_') {
+                sb.append('!');
+            }
+            sb.append(c);
+        }
+        return sb.append('%').toString();
+    }
+}
@@ -0,0 +1,128 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kelas untuk sinkronisasi inkremental katalog berdasarkan kolom updated_at
+ * - Menyimpan high-water mark terakhir untuk buku dan anggota
+ * - Setiap polling hanya membaca baris yang berubah sejak mark tersebut
+ * - Jendela tumpang tindih (lag) menangkap transaksi yang commit terlambat;
+ *   perubahan diterapkan berdasarkan ID sehingga baris ganda tidak bermasalah
+ */
+public class CatalogSync {
+    /** Mundur sekian milidetik dari mark untuk menangkap commit yang terlambat */
+    private static final long DEFAULT_LAG_MILLIS = 5000L;
+    private static final int PAGE_SIZE = 500;
+
+    private final Database db;
+    private final long lagMillis;
+    private Timestamp booksMark;
+    private Timestamp membersMark;
+
+    /**
+     * Konstruktor untuk membuat sinkronisasi dengan jendela lag bawaan
+     * @param db Sumber koneksi database
+     */
+    public CatalogSync(Database db) {
+        this(db, DEFAULT_LAG_MILLIS);
+    }
+
+    /**
+     * Konstruktor untuk membuat sinkronisasi
+     * @param db Sumber koneksi database
+     * @param lagMillis Lebar jendela tumpang tindih dalam milidetik
+     */
+    public CatalogSync(Database db, long lagMillis) {
+        this.db = db;
+        this.lagMillis = lagMillis;
+    }
+
+    /**
+     * Menetapkan mark ke waktu server database saat ini, dipanggil sebelum pemuatan penuh
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public synchronized void markNow() throws SQLException {
+        try (Connection conn = db.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT CURRENT_TIMESTAMP(3)")) {
+            rs.next();
+            booksMark = rs.getTimestamp(1);
+            membersMark = booksMark;
+        }
+    }
+
+    /**
+     * Membaca buku yang berubah sejak polling terakhir
+     * @return Buku yang berubah, berurutan berdasarkan waktu perubahan
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public synchronized List<Book> pollBooks() throws SQLException {
+        List<Book> changed = new ArrayList<>();
+        if (booksMark == null) {
+            markNow();
+            return changed;
+        }
+        booksMark = poll("SELECT id, title, author, available_copies, total_copies, updated_at FROM books ", booksMark,
+                rs -> changed.add(CatalogReader.toBook(rs)));
+        return changed;
+    }
+
+    /**
+     * Membaca anggota yang berubah sejak polling terakhir
+     * @return Anggota yang berubah, berurutan berdasarkan waktu perubahan
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public synchronized List<Member> pollMembers() throws SQLException {
+        List<Member> changed = new ArrayList<>();
+        if (membersMark == null) {
+            markNow();
+            return changed;
+        }
+        membersMark = poll("SELECT id, name, type, updated_at FROM members ", membersMark,
+                rs -> changed.add(CatalogReader.toMember(rs)));
+        return changed;
+    }
+
+    private interface RowHandler {
+        void accept(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Membaca baris dengan updated_at setelah mark secara keyset (updated_at, id)
+     * @return Mark baru, yaitu updated_at terbesar yang terbaca
+     */
+    private Timestamp poll(String select, Timestamp mark, RowHandler handler) throws SQLException {
+        Timestamp from = new Timestamp(mark.getTime() - lagMillis);
+        Timestamp newMark = mark;
+        String sql = select + "WHERE updated_at > ? OR (updated_at = ? AND id > ?) ORDER BY updated_at, id LIMIT ?";
+        String lastId = "";
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int rows;
+            do {
+                pstmt.setTimestamp(1, from);
+                pstmt.setTimestamp(2, from);
+                pstmt.setString(3, lastId);
+                pstmt.setInt(4, PAGE_SIZE);
+                rows = 0;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        handler.accept(rs);
+                        from = rs.getTimestamp("updated_at");
+                        lastId = rs.getString("id");
+                        if (from.after(newMark)) {
+                            newMark = from;
+                        }
+                        rows++;
+                    }
+                }
+            } while (rows == PAGE_SIZE);
+        }
+        return newMark;
+    }
+}
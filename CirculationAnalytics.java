@@ -0,0 +1,696 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analitik sirkulasi: rollup harian yang diperbarui bertahap dan laporan yang hanya membaca rollup
+ * - Peminjaman baru dibaca per rentang id (id > ? AND id <= ?) sehingga setiap potongan adalah
+ *   range scan primary key yang pendek; potongan dibaca paralel dengan fork-join di pool sendiri
+ *   yang dibatasi ANALYTICS_PARALLELISM agar meja peminjaman tidak kehabisan koneksi
+ * - Setiap potongan dijumlahkan ke map berkunci long primitif (hari dan kode buku/tipe/jam
+ *   dikemas menjadi satu long) tanpa objek per baris, lalu hasil potongan digabung
+ * - Pengembalian atas peminjaman yang sudah dihitung run sebelumnya dibaca dari jendela updated_at
+ *   lewat indeks idx_transactions_updated_at; sebuah baris transaksi hanya berubah saat dikembalikan
+ * - Baris yang lebih baru dari batas (waktu server dikurangi OverdueEngine.CHANGE_LAG_MILLIS) dibaca
+ *   pada run berikutnya, seperti pada OverdueEngine
+ * - Selisih ditambahkan ke tabel rollup dan posisi (id terakhir dan batas waktu) disimpan di
+ *   job_watermarks dalam satu transaksi, sehingga run yang terputus tidak menghitung dua kali
+ * - Hanya satu node yang menjalankan rollup pada satu waktu (GET_LOCK)
+ */
+public class CirculationAnalytics {
+    /** Jumlah id bawaan per potongan yang dibaca satu tugas fork-join */
+    public static final int DEFAULT_CHUNK_IDS = 20000;
+    /** Jumlah id bawaan per commit; run pertama atas riwayat panjang dibagi menjadi beberapa commit */
+    public static final int DEFAULT_IDS_PER_COMMIT = 500000;
+
+    private static final String JOB = "circulation.rollup";
+    private static final String LOCK_PREFIX = "circulation_rollup.";
+    /** TO_DAYS('1970-01-01'); TO_DAYS dipakai agar tanggal dibaca sebagai int, bukan objek Date */
+    private static final int EPOCH_TO_DAYS = 719528;
+    private static final int FETCH_SIZE = 1000;
+    private static final int WRITE_BATCH = 1000;
+
+    static final String SQL_MAX_ID =
+            "SELECT MAX(id) FROM transactions WHERE id > ? AND (created_at IS NULL OR created_at < ?)";
+    // STRAIGHT_JOIN keeps the id/updated_at range on transactions as the driving side; when a range covers
+    // most of a small table the optimizer would otherwise scan members and re-read every loan per chunk
+    private static final String EVENT_COLUMNS = "SELECT t.book_id, m.type, TO_DAYS(t.loan_date), "
+            + "HOUR(COALESCE(t.created_at, t.loan_date)), TO_DAYS(t.return_date), HOUR(t.updated_at), "
+            + "TO_DAYS(t.due_date), t.updated_at < ? FROM transactions t STRAIGHT_JOIN members m ON m.id = t.member_id ";
+    static final String SQL_LOAN_CHUNK = EVENT_COLUMNS + "WHERE t.id > ? AND t.id <= ?";
+    static final String SQL_RETURN_WINDOW = EVENT_COLUMNS
+            + "WHERE t.updated_at >= ? AND t.updated_at < ? AND t.id <= ? AND t.return_date IS NOT NULL";
+    static final String SQL_MERGE_TITLE =
+            "INSERT INTO circulation_daily_title (day, book_id, loans, returns) VALUES (?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE loans = loans + VALUES(loans), returns = returns + VALUES(returns)";
+    static final String SQL_MERGE_MEMBER_TYPE =
+            "INSERT INTO circulation_daily_member_type (day, member_type, loans, returns, loan_days, late_returns) "
+            + "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE loans = loans + VALUES(loans), "
+            + "returns = returns + VALUES(returns), loan_days = loan_days + VALUES(loan_days), "
+            + "late_returns = late_returns + VALUES(late_returns)";
+    static final String SQL_MERGE_HOUR =
+            "INSERT INTO circulation_hourly (day, hour, loans, returns) VALUES (?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE loans = loans + VALUES(loans), returns = returns + VALUES(returns)";
+    static final String SQL_BUSIEST_TITLES =
+            "SELECT book_id, SUM(loans) AS total FROM circulation_daily_title WHERE day BETWEEN ? AND ? "
+            + "GROUP BY book_id HAVING total > 0 ORDER BY total DESC, book_id LIMIT ?";
+    static final String SQL_DURATIONS =
+            "SELECT member_type, SUM(loans), SUM(returns), SUM(loan_days), SUM(late_returns) "
+            + "FROM circulation_daily_member_type WHERE day BETWEEN ? AND ? GROUP BY member_type ORDER BY member_type";
+    static final String SQL_HOURLY =
+            "SELECT hour, SUM(loans), SUM(returns) FROM circulation_hourly WHERE day BETWEEN ? AND ? "
+            + "GROUP BY hour ORDER BY hour";
+
+    /**
+     * Jumlah peminjaman satu judul
+     */
+    public static final class TitleCount {
+        private final String bookId;
+        private final long loans;
+
+        TitleCount(String bookId, long loans) {
+            this.bookId = bookId;
+            this.loans = loans;
+        }
+
+        public String getBookId() {
+            return bookId;
+        }
+
+        public long getLoans() {
+            return loans;
+        }
+    }
+
+    /**
+     * Durasi peminjaman untuk satu tipe anggota
+     */
+    public static final class MemberTypeDurations {
+        private final String memberType;
+        private final long loans;
+        private final long returns;
+        private final long loanDays;
+        private final long lateReturns;
+
+        MemberTypeDurations(String memberType, long loans, long returns, long loanDays, long lateReturns) {
+            this.memberType = memberType;
+            this.loans = loans;
+            this.returns = returns;
+            this.loanDays = loanDays;
+            this.lateReturns = lateReturns;
+        }
+
+        public String getMemberType() {
+            return memberType;
+        }
+
+        public long getLoans() {
+            return loans;
+        }
+
+        public long getReturns() {
+            return returns;
+        }
+
+        /**
+         * Rata-rata lama peminjaman dalam hari untuk buku yang dikembalikan, 0 jika belum ada
+         */
+        public double getAverageDays() {
+            return returns == 0 ? 0.0 : (double) loanDays / returns;
+        }
+
+        public long getLateReturns() {
+            return lateReturns;
+        }
+    }
+
+    /**
+     * Beban meja pada satu jam dalam sehari
+     */
+    public static final class HourlyLoad {
+        private final int hour;
+        private final long loans;
+        private final long returns;
+
+        HourlyLoad(int hour, long loans, long returns) {
+            this.hour = hour;
+            this.loans = loans;
+            this.returns = returns;
+        }
+
+        public int getHour() {
+            return hour;
+        }
+
+        public long getLoans() {
+            return loans;
+        }
+
+        public long getReturns() {
+            return returns;
+        }
+    }
+
+    /**
+     * Map dari kunci long ke beberapa penghitung long dengan open addressing;
+     * kunci dan penghitung disimpan di array primitif
+     */
+    static final class LongCounters {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private final int width;
+        private long[] keys;
+        private long[] counts;
+        private int size;
+
+        LongCounters(int width) {
+            this.width = width;
+            this.keys = new long[64];
+            Arrays.fill(keys, EMPTY);
+            this.counts = new long[keys.length * width];
+        }
+
+        void add(long key, int slot, long delta) {
+            // indexOf may grow the arrays, so it has to run before counts is read
+            int index = indexOf(key) * width + slot;
+            counts[index] += delta;
+        }
+
+        void addAll(LongCounters other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.keys[i] != EMPTY) {
+                    int target = indexOf(other.keys[i]) * width;
+                    for (int s = 0; s < width; s++) {
+                        counts[target + s] += other.counts[i * width + s];
+                    }
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        interface Visitor {
+            void visit(long key, long[] counts, int offset) throws SQLException;
+        }
+
+        void forEach(Visitor visitor) throws SQLException {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    visitor.visit(keys[i], counts, i * width);
+                }
+            }
+        }
+
+        private int indexOf(long key) {
+            int mask = keys.length - 1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int i = (int) (h ^ (h >>> 32)) & mask;
+            while (true) {
+                long k = keys[i];
+                if (k == key) {
+                    return i;
+                }
+                if (k == EMPTY) {
+                    if ((size + 1) * 2 > keys.length) {
+                        grow();
+                        return indexOf(key);
+                    }
+                    keys[i] = key;
+                    size++;
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            counts = new long[keys.length * width];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    System.arraycopy(oldCounts, i * width, counts, indexOf(oldKeys[i]) * width, width);
+                }
+            }
+        }
+    }
+
+    /**
+     * Kode int untuk ID buku dan tipe anggota selama satu run
+     */
+    private static final class Codes {
+        private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        int code(String name) {
+            Integer code = codes.get(name);
+            return code != null ? code : add(name);
+        }
+
+        private synchronized int add(String name) {
+            return codes.computeIfAbsent(name, n -> {
+                names.add(n);
+                return names.size() - 1;
+            });
+        }
+
+        synchronized String name(int code) {
+            return names.get(code);
+        }
+    }
+
+    /**
+     * Selisih rollup dari sebagian transaksi
+     */
+    private static final class Rollup {
+        // (day << 32 | book code) -> loans, returns
+        final LongCounters titles = new LongCounters(2);
+        // (day << 8 | member type code) -> loans, returns, loan days, late returns
+        final LongCounters memberTypes = new LongCounters(4);
+        // day * 24 + hour -> loans, returns
+        final LongCounters hours = new LongCounters(2);
+        long loans;
+        long returns;
+
+        void merge(Rollup other) {
+            titles.addAll(other.titles);
+            memberTypes.addAll(other.memberTypes);
+            hours.addAll(other.hours);
+            loans += other.loans;
+            returns += other.returns;
+        }
+    }
+
+    /**
+     * Membawa SQLException keluar dari tugas fork-join
+     */
+    private static final class ScanFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ScanFailure(SQLException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Membaca rentang id (from, to], dibagi dua sampai sebesar satu potongan
+     */
+    private final class ScanTask extends RecursiveTask<Rollup> {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final String horizon;
+        private final Codes books;
+        private final Codes types;
+
+        ScanTask(long from, long to, String horizon, Codes books, Codes types) {
+            this.from = from;
+            this.to = to;
+            this.horizon = horizon;
+            this.books = books;
+            this.types = types;
+        }
+
+        @Override
+        protected Rollup compute() {
+            if (to - from <= chunkIds) {
+                try {
+                    return readEvents(SQL_LOAN_CHUNK, true, books, types, horizon, from, to);
+                } catch (SQLException e) {
+                    throw new ScanFailure(e);
+                }
+            }
+            long middle = from + (to - from) / 2;
+            ScanTask left = new ScanTask(from, middle, horizon, books, types);
+            left.fork();
+            Rollup rollup = new ScanTask(middle, to, horizon, books, types).compute();
+            Rollup other = left.join();
+            other.merge(rollup);
+            return other;
+        }
+    }
+
+    private final Database db;
+    private final int parallelism;
+    private final int chunkIds;
+    private final int idsPerCommit;
+    private ScheduledExecutorService scheduler;
+    // Created on first use and shut down by stop()
+    private ForkJoinPool pool;
+
+    /**
+     * Konstruktor dengan pengaturan dari system property/environment variable
+     * - ANALYTICS_PARALLELISM (bawaan 2) jumlah potongan yang dibaca bersamaan
+     * - ANALYTICS_CHUNK_IDS (bawaan 20000) jumlah id per potongan
+     * @param db Sumber koneksi database
+     */
+    public CirculationAnalytics(Database db) {
+        this(db, Integer.parseInt(Database.setting("ANALYTICS_PARALLELISM", "2")),
+                Integer.parseInt(Database.setting("ANALYTICS_CHUNK_IDS", String.valueOf(DEFAULT_CHUNK_IDS))),
+                DEFAULT_IDS_PER_COMMIT);
+    }
+
+    /**
+     * Konstruktor dengan pengaturan tertentu
+     * @param db Sumber koneksi database
+     * @param parallelism Jumlah potongan yang dibaca bersamaan, masing-masing dengan satu koneksi
+     * @param chunkIds Jumlah id per potongan
+     * @param idsPerCommit Jumlah id per commit rollup
+     */
+    public CirculationAnalytics(Database db, int parallelism, int chunkIds, int idsPerCommit) {
+        if (parallelism < 1 || chunkIds < 1 || idsPerCommit < 1) {
+            throw new IllegalArgumentException("Parallelism, chunk and commit sizes must be positive");
+        }
+        this.db = db;
+        this.parallelism = parallelism;
+        this.chunkIds = chunkIds;
+        this.idsPerCommit = idsPerCommit;
+    }
+
+    /**
+     * Menjalankan satu putaran rollup sampai semua transaksi yang sudah mapan terhitung
+     * @return Jumlah peminjaman dan pengembalian yang ditambahkan, 0 jika node lain sedang menjalankan rollup
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public long run() throws SQLException {
+        long start = System.nanoTime();
+        try (Connection conn = db.getConnection()) {
+            if (!OverdueEngine.tryLock(conn, LOCK_PREFIX)) {
+                System.out.println("Circulation rollup skipped: another node is running it");
+                return 0;
+            }
+            try {
+                Timestamp horizon = new Timestamp(OverdueEngine.serverTime(conn).getTime()
+                        - OverdueEngine.CHANGE_LAG_MILLIS);
+                Timestamp previous = null;
+                long lastId = 0;
+                try (PreparedStatement pstmt = conn.prepareStatement(OverdueEngine.SQL_READ_MARK)) {
+                    pstmt.setString(1, JOB);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            previous = rs.getTimestamp(1);
+                            lastId = rs.getLong(2);
+                        }
+                    }
+                }
+                long maxId = maxSettledId(conn, lastId, horizon);
+                long loans = 0;
+                long returns = 0;
+                boolean first = true;
+                // The return window is read once, with the first slice of new loans; later slices share its horizon
+                while (first || lastId < maxId) {
+                    long to = Math.min(maxId, lastId + idsPerCommit);
+                    Codes books = new Codes();
+                    Codes types = new Codes();
+                    Rollup rollup = to > lastId ? scan(lastId, to, horizon, books, types) : new Rollup();
+                    if (first && previous != null && lastId > 0) {
+                        rollup.merge(readEvents(SQL_RETURN_WINDOW, false, books, types, horizon.toString(),
+                                previous.toString(), horizon.toString(), lastId));
+                    }
+                    write(conn, rollup, books, types, horizon, to);
+                    loans += rollup.loans;
+                    returns += rollup.returns;
+                    lastId = to;
+                    first = false;
+                }
+                System.out.println("Circulation rollup: " + loans + " loans, " + returns + " returns up to id "
+                        + maxId + " in " + (System.nanoTime() - start) / 1_000_000L + " ms");
+                return loans + returns;
+            } finally {
+                OverdueEngine.unlock(conn, LOCK_PREFIX);
+            }
+        } finally {
+            Metrics.ANALYTICS_RUN.recordSince(start);
+        }
+    }
+
+    private Rollup scan(long from, long to, Timestamp horizon, Codes books, Codes types) throws SQLException {
+        try {
+            return pool().invoke(new ScanTask(from, to, horizon.toString(), books, types));
+        } catch (ScanFailure e) {
+            throw (SQLException) e.getCause();
+        }
+    }
+
+    private static long maxSettledId(Connection conn, long lastId, Timestamp horizon) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_MAX_ID)) {
+            pstmt.setLong(1, lastId);
+            pstmt.setString(2, horizon.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                long max = rs.getLong(1);
+                return rs.wasNull() ? lastId : max;
+            }
+        }
+    }
+
+    /**
+     * Membaca peristiwa peminjaman/pengembalian dari satu query dengan koneksinya sendiri
+     * @param countLoans true untuk potongan id (peminjaman baru), false untuk jendela pengembalian
+     * @param params Parameter query; parameter pertama selalu batas waktu
+     */
+    private Rollup readEvents(String sql, boolean countLoans, Codes books, Codes types, Object... params)
+            throws SQLException {
+        Rollup rollup = new Rollup();
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int book = books.code(rs.getString(1));
+                    int type = types.code(rs.getString(2));
+                    int loanDay = rs.getInt(3) - EPOCH_TO_DAYS;
+                    if (countLoans) {
+                        count(rollup, book, type, loanDay, rs.getInt(4), 0);
+                        rollup.loans++;
+                    }
+                    int returnDay = rs.getInt(5);
+                    // A return closed after the horizon is counted by the return window of a later run
+                    if (rs.wasNull() || !rs.getBoolean(8)) {
+                        continue;
+                    }
+                    returnDay -= EPOCH_TO_DAYS;
+                    count(rollup, book, type, returnDay, rs.getInt(6), 1);
+                    long dueDay = rs.getLong(7);
+                    boolean late = !rs.wasNull() && returnDay > dueDay - EPOCH_TO_DAYS;
+                    long typeKey = (long) returnDay << 8 | type;
+                    rollup.memberTypes.add(typeKey, 2, returnDay - loanDay);
+                    rollup.memberTypes.add(typeKey, 3, late ? 1 : 0);
+                    rollup.returns++;
+                }
+            }
+        }
+        return rollup;
+    }
+
+    /**
+     * Menambahkan satu peminjaman (slot 0) atau pengembalian (slot 1) pada hari dan jamnya
+     */
+    private static void count(Rollup rollup, int book, int type, int day, int hour, int slot) {
+        rollup.titles.add((long) day << 32 | book, slot, 1);
+        rollup.memberTypes.add((long) day << 8 | type, slot, 1);
+        rollup.hours.add((long) day * 24 + hour, slot, 1);
+    }
+
+    /**
+     * Menambahkan selisih ke tabel rollup dan menyimpan posisi dalam satu transaksi
+     */
+    private static void write(Connection conn, Rollup rollup, Codes books, Codes types, Timestamp horizon,
+            long lastId) throws SQLException {
+        conn.setAutoCommit(false);
+        try (PreparedStatement titles = conn.prepareStatement(SQL_MERGE_TITLE);
+                PreparedStatement memberTypes = conn.prepareStatement(SQL_MERGE_MEMBER_TYPE);
+                PreparedStatement hours = conn.prepareStatement(SQL_MERGE_HOUR);
+                PreparedStatement saveMark = conn.prepareStatement(OverdueEngine.SQL_SAVE_MARK)) {
+            int[] pending = new int[1];
+            rollup.titles.forEach((key, counts, offset) -> {
+                titles.setDate(1, dayOf(key >> 32));
+                titles.setString(2, books.name((int) key));
+                titles.setLong(3, counts[offset]);
+                titles.setLong(4, counts[offset + 1]);
+                addToBatch(titles, pending);
+            });
+            titles.executeBatch();
+            rollup.memberTypes.forEach((key, counts, offset) -> {
+                memberTypes.setDate(1, dayOf(key >> 8));
+                memberTypes.setString(2, types.name((int) (key & 0xFF)));
+                for (int s = 0; s < 4; s++) {
+                    memberTypes.setLong(3 + s, counts[offset + s]);
+                }
+                addToBatch(memberTypes, pending);
+            });
+            memberTypes.executeBatch();
+            rollup.hours.forEach((key, counts, offset) -> {
+                hours.setDate(1, dayOf(Math.floorDiv(key, 24)));
+                hours.setInt(2, Math.floorMod(key, 24));
+                hours.setLong(3, counts[offset]);
+                hours.setLong(4, counts[offset + 1]);
+                addToBatch(hours, pending);
+            });
+            hours.executeBatch();
+            saveMark.setString(1, JOB);
+            saveMark.setString(2, horizon.toString());
+            saveMark.setLong(3, lastId);
+            saveMark.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static void addToBatch(PreparedStatement pstmt, int[] pending) throws SQLException {
+        pstmt.addBatch();
+        if (++pending[0] % WRITE_BATCH == 0) {
+            pstmt.executeBatch();
+        }
+    }
+
+    private static java.sql.Date dayOf(long epochDay) {
+        return java.sql.Date.valueOf(LocalDate.ofEpochDay(epochDay));
+    }
+
+    /**
+     * Judul yang paling sering dipinjam dalam rentang tanggal
+     * @param from Tanggal awal (inklusif)
+     * @param to Tanggal akhir (inklusif)
+     * @param limit Jumlah maksimal judul
+     * @return Judul berurutan dari yang paling sering dipinjam
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public List<TitleCount> busiestTitles(LocalDate from, LocalDate to, int limit) throws SQLException {
+        List<TitleCount> titles = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_BUSIEST_TITLES)) {
+            pstmt.setDate(1, java.sql.Date.valueOf(from));
+            pstmt.setDate(2, java.sql.Date.valueOf(to));
+            pstmt.setInt(3, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    titles.add(new TitleCount(rs.getString(1), rs.getLong(2)));
+                }
+            }
+        }
+        return titles;
+    }
+
+    /**
+     * Jumlah peminjaman dan lama peminjaman per tipe anggota dalam rentang tanggal
+     * @param from Tanggal awal (inklusif)
+     * @param to Tanggal akhir (inklusif)
+     * @return Satu baris per tipe anggota
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public List<MemberTypeDurations> loanDurations(LocalDate from, LocalDate to) throws SQLException {
+        List<MemberTypeDurations> durations = new ArrayList<>();
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_DURATIONS)) {
+            pstmt.setDate(1, java.sql.Date.valueOf(from));
+            pstmt.setDate(2, java.sql.Date.valueOf(to));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    durations.add(new MemberTypeDurations(rs.getString(1), rs.getLong(2), rs.getLong(3),
+                            rs.getLong(4), rs.getLong(5)));
+                }
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * Beban meja per jam dalam rentang tanggal
+     * @param from Tanggal awal (inklusif)
+     * @param to Tanggal akhir (inklusif)
+     * @return 24 baris, satu per jam, termasuk jam tanpa aktivitas
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public List<HourlyLoad> hourlyLoad(LocalDate from, LocalDate to) throws SQLException {
+        long[][] totals = new long[24][2];
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_HOURLY)) {
+            pstmt.setDate(1, java.sql.Date.valueOf(from));
+            pstmt.setDate(2, java.sql.Date.valueOf(to));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    totals[rs.getInt(1)][0] = rs.getLong(2);
+                    totals[rs.getInt(1)][1] = rs.getLong(3);
+                }
+            }
+        }
+        List<HourlyLoad> load = new ArrayList<>(24);
+        for (int hour = 0; hour < 24; hour++) {
+            load.add(new HourlyLoad(hour, totals[hour][0], totals[hour][1]));
+        }
+        return load;
+    }
+
+    /**
+     * Mulai menjalankan rollup secara berkala
+     * @param periodMillis Interval antar run dalam milidetik
+     */
+    public synchronized void start(long periodMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "circulation-analytics");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                run();
+            } catch (SQLException e) {
+                System.err.println("Error running circulation rollup: " + e.getMessage());
+            } catch (RuntimeException e) {
+                // Caught here too: once the task throws, the executor silently stops scheduling it
+                System.err.println("Error running circulation rollup: " + e);
+                e.printStackTrace();
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Menghentikan run berkala dan pool pembaca potongan; run() berikutnya membuat pool baru
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,389 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Kelas untuk mengelola kumpulan (pool) koneksi database dengan ukuran terbatas
+ * - Jumlah koneksi minimum dan maksimum dapat dikonfigurasi
+ * - Koneksi yang terlalu lama menganggur ditutup secara berkala
+ * - Koneksi divalidasi setiap kali dipinjam
+ * - Mencatat metrik waktu tunggu dan jumlah timeout peminjaman
+ */
+public class ConnectionPool implements AutoCloseable, ConnectionPoolMXBean {
+
+    /**
+     * Konfigurasi pool koneksi
+     */
+    public static class Config {
+        String url;
+        String user;
+        String password;
+        Properties properties = new Properties();
+        int minSize = 2;
+        int maxSize = 10;
+        long idleTimeoutMillis = 5 * 60 * 1000L;
+        long borrowTimeoutMillis = 5000L;
+        int validationTimeoutSeconds = 2;
+
+        /**
+         * Konstruktor konfigurasi pool
+         * @param url URL JDBC database
+         * @param user Nama pengguna database
+         * @param password Kata sandi database
+         */
+        public Config(String url, String user, String password) {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+        }
+
+        public Config minSize(int minSize) {
+            this.minSize = minSize;
+            return this;
+        }
+
+        public Config maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public Config idleTimeoutMillis(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        public Config borrowTimeoutMillis(long borrowTimeoutMillis) {
+            this.borrowTimeoutMillis = borrowTimeoutMillis;
+            return this;
+        }
+
+        public Config validationTimeoutSeconds(int validationTimeoutSeconds) {
+            this.validationTimeoutSeconds = validationTimeoutSeconds;
+            return this;
+        }
+
+        public Config property(String key, String value) {
+            properties.setProperty(key, value);
+            return this;
+        }
+    }
+
+    /**
+     * Koneksi fisik beserta waktu terakhir dikembalikan ke pool
+     */
+    private static final class PooledEntry {
+        final Connection physical;
+        volatile long lastReturnedNanos;
+
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+            this.lastReturnedNanos = System.nanoTime();
+        }
+    }
+
+    private final Config config;
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LatencyHistogram waitHistogram = new LatencyHistogram("pool_wait");
+
+    /**
+     * Konstruktor untuk membuat pool dan membuka koneksi minimum
+     * @param config Konfigurasi pool
+     * @throws SQLException jika koneksi awal gagal dibuat
+     */
+    public ConnectionPool(Config config) throws SQLException {
+        if (config.minSize < 0 || config.maxSize < 1 || config.minSize > config.maxSize) {
+            throw new IllegalArgumentException(
+                    "Invalid pool size: min=" + config.minSize + ", max=" + config.maxSize);
+        }
+        this.config = config;
+        this.permits = new Semaphore(config.maxSize, true);
+
+        for (int i = 0; i < config.minSize; i++) {
+            idle.offerLast(new PooledEntry(openPhysical()));
+        }
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000L, config.idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Meminjam koneksi dari pool. Koneksi harus ditutup oleh pemanggil agar
+     * dikembalikan ke pool.
+     * @return Koneksi yang valid
+     * @throws SQLException jika pool ditutup, waktu tunggu habis, atau koneksi gagal dibuat
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(config.borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        recordWait(waited);
+        if (!acquired) {
+            borrowTimeouts.increment();
+            throw new SQLTimeoutException("Timed out after " + config.borrowTimeoutMillis
+                    + " ms waiting for a database connection (max " + config.maxSize + ")");
+        }
+
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (isUsable(entry.physical)) {
+                    return wrap(entry);
+                }
+                validationFailures.increment();
+                discard(entry);
+            }
+            return wrap(new PooledEntry(openPhysical()));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Mengembalikan koneksi fisik ke pool setelah mengembalikan status transaksinya
+     */
+    private void giveBack(PooledEntry entry) {
+        try {
+            if (closed || entry.physical.isClosed()) {
+                discard(entry);
+                return;
+            }
+            if (!entry.physical.getAutoCommit()) {
+                // A borrower left a transaction open; never leak it to the next caller
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+            entry.lastReturnedNanos = System.nanoTime();
+            idle.offerFirst(entry);
+        } catch (SQLException e) {
+            discard(entry);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isUsable(Connection physical) {
+        try {
+            return !physical.isClosed() && physical.isValid(config.validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Properties props = new Properties();
+        props.putAll(config.properties);
+        if (config.user != null) {
+            props.setProperty("user", config.user);
+        }
+        if (config.password != null) {
+            props.setProperty("password", config.password);
+        }
+        Connection physical = DriverManager.getConnection(config.url, props);
+        totalConnections.incrementAndGet();
+        return physical;
+    }
+
+    private void discard(PooledEntry entry) {
+        totalConnections.decrementAndGet();
+        try {
+            entry.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Menutup koneksi menganggur yang melewati batas idle, menyisakan minimal minSize koneksi
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        long limit = TimeUnit.MILLISECONDS.toNanos(config.idleTimeoutMillis);
+        // Oldest entries sit at the tail because borrowing and returning use the head
+        Iterator<PooledEntry> it = idle.descendingIterator();
+        while (it.hasNext() && totalConnections.get() > config.minSize) {
+            PooledEntry entry = it.next();
+            if (now - entry.lastReturnedNanos > limit && idle.remove(entry)) {
+                discard(entry);
+            }
+        }
+    }
+
+    private void recordWait(long nanos) {
+        borrowCount.increment();
+        totalWaitNanos.add(nanos);
+        waitHistogram.record(nanos);
+        long current;
+        while (nanos > (current = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(current, nanos)) {
+                break;
+            }
+        }
+    }
+
+    private Connection wrap(PooledEntry entry) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new LeaseHandler(entry));
+    }
+
+    /**
+     * Handler proxy yang mengembalikan koneksi ke pool saat close() dipanggil
+     */
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        private boolean released = false;
+
+        LeaseHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (!released) {
+                    released = true;
+                    giveBack(entry);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return released || entry.physical.isClosed();
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("toString")) {
+                return "PooledConnection[" + entry.physical + "]";
+            }
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Jumlah koneksi fisik yang sedang terbuka (dipinjam maupun menganggur)
+     */
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    /**
+     * Jumlah koneksi yang sedang menganggur di pool
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * Jumlah koneksi yang sedang dipinjam
+     */
+    public int getActiveConnections() {
+        return config.maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Ukuran maksimum pool
+     */
+    public int getMaxSize() {
+        return config.maxSize;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.sum();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    /**
+     * Rata-rata waktu tunggu peminjaman dalam milidetik
+     */
+    public double getAverageWaitMillis() {
+        long count = borrowCount.sum();
+        return count == 0 ? 0.0 : totalWaitNanos.sum() / (double) count / 1_000_000.0;
+    }
+
+    /**
+     * Waktu tunggu peminjaman terlama dalam milidetik
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Histogram waktu tunggu peminjaman koneksi
+     */
+    public LatencyHistogram getWaitHistogram() {
+        return waitHistogram;
+    }
+
+    /**
+     * Menutup pool beserta semua koneksi yang menganggur. Koneksi yang masih
+     * dipinjam akan ditutup saat dikembalikan.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Antarmuka JMX untuk metrik pool koneksi
+ */
+public interface ConnectionPoolMXBean {
+    int getTotalConnections();
+
+    int getIdleConnections();
+
+    int getActiveConnections();
+
+    int getMaxSize();
+
+    long getBorrowCount();
+
+    long getBorrowTimeouts();
+
+    long getValidationFailures();
+
+    double getAverageWaitMillis();
+
+    double getMaxWaitMillis();
+}
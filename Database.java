@@ -0,0 +1,194 @@
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kelas untuk mengelola koneksi database dan migrasi
+ */
+class Database {
+    private static final String DB_URL = setting("DB_URL", "jdbc:mysql://localhost/library");
+    private static final String USER = setting("DB_USER", "root");
+    private static final String PASS = setting("DB_PASSWORD", "");
+    private static ConnectionPool pool = null;
+    private static boolean closed = false;
+    /** Jeda minimal antar percobaan koneksi selama database tidak bisa dihubungi */
+    private static final long RECONNECT_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.parseLong(setting("DB_RECONNECT_MS", "5000")));
+    private static long nextAttemptNanos;
+
+    /**
+     * Konstruktor untuk inisialisasi pool koneksi database dan menjalankan migrasi
+     * Jika database tidak bisa dihubungi, aplikasi tetap berjalan tanpa pool; getConnection()
+     * mencoba lagi paling sering sekali per DB_RECONNECT_MS
+     */
+    public Database() {
+        synchronized (Database.class) {
+            closed = false;
+            if (pool == null) {
+                try {
+                    Class.forName(setting("DB_DRIVER", "com.mysql.cj.jdbc.Driver"));
+                    nextAttemptNanos = System.nanoTime() + RECONNECT_NANOS;
+                    connect();
+                } catch (ClassNotFoundException e) {
+                    System.err.println("MySQL JDBC driver not found: " + e.getMessage());
+                    System.exit(1);
+                } catch (SQLTransientConnectionException e) {
+                    System.err.println("Database connection error: " + e.getMessage()
+                            + " (continuing without a database, retrying on demand)");
+                } catch (SQLException e) {
+                    System.err.println("Database connection error: " + e.getMessage());
+                    System.exit(1);
+                } catch (IOException e) {
+                    System.err.println("Error reading migrations: " + e.getMessage());
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Membuka pool koneksi dan menjalankan migrasi jika diaktifkan; dipanggil dengan kunci Database.class
+     * @throws SQLTransientConnectionException jika database tidak bisa dihubungi
+     * @throws SQLException jika migrasi gagal
+     * @throws IOException jika terjadi kesalahan membaca file migrasi
+     */
+    private static void connect() throws SQLException, IOException {
+        ConnectionPool.Config config = new ConnectionPool.Config(DB_URL, USER, PASS)
+                .minSize(Integer.parseInt(setting("DB_POOL_MIN", "2")))
+                .maxSize(Integer.parseInt(setting("DB_POOL_MAX", "10")))
+                .idleTimeoutMillis(Long.parseLong(setting("DB_POOL_IDLE_TIMEOUT_MS", "300000")))
+                .borrowTimeoutMillis(Long.parseLong(setting("DB_POOL_BORROW_TIMEOUT_MS", "5000")));
+        if (DB_URL.startsWith("jdbc:mysql:")) {
+            // Let Connector/J collapse addBatch() rows into multi-row statements
+            config.property("rewriteBatchedStatements", "true");
+            // Honour setFetchSize() so catalog streaming does not buffer whole tables
+            config.property("useCursorFetch", "true");
+            // An unreachable server should fail a desk quickly rather than hang on the OS timeout
+            config.property("connectTimeout", setting("DB_CONNECT_TIMEOUT_MS", "5000"));
+        }
+        ConnectionPool opened;
+        try {
+            opened = new ConnectionPool(config);
+        } catch (SQLException e) {
+            // Only an unreachable server is worth waiting out; bad credentials or URLs still fail
+            if (e.getSQLState() == null || !e.getSQLState().startsWith("08")) {
+                throw e;
+            }
+            throw new SQLTransientConnectionException(e.getMessage(), e.getSQLState(), e);
+        }
+        pool = opened;
+        System.out.println("Connected to MySQL database (pool max " + opened.getMaxSize() + ")");
+
+        // Run database migrations; V1 recreates the tables, so this stays opt-in for
+        // databases that were set up by hand before schema_version existed
+        if (Boolean.parseBoolean(setting("DB_MIGRATE", "false"))) {
+            try {
+                migrate();
+            } catch (SQLException | IOException e) {
+                pool = null;
+                opened.close();
+                throw e;
+            }
+        }
+        Metrics.register(opened);
+    }
+
+    /**
+     * Mencoba membuka pool lagi setelah database sebelumnya tidak bisa dihubungi
+     * @return Pool yang aktif
+     * @throws SQLTransientConnectionException jika database masih tidak bisa dihubungi
+     *         atau percobaan terakhir belum lewat DB_RECONNECT_MS
+     * @throws SQLException jika database sudah ditutup atau migrasi gagal
+     */
+    private static ConnectionPool reconnect() throws SQLException {
+        synchronized (Database.class) {
+            if (pool != null) {
+                return pool;
+            }
+            if (closed) {
+                throw new SQLException("Database is closed");
+            }
+            long now = System.nanoTime();
+            if (now - nextAttemptNanos < 0) {
+                // Callers fail fast between attempts instead of each waiting on a connect timeout
+                throw new SQLTransientConnectionException("Database is unavailable, next connection attempt in "
+                        + TimeUnit.NANOSECONDS.toMillis(nextAttemptNanos - now) + " ms", "08001");
+            }
+            nextAttemptNanos = now + RECONNECT_NANOS;
+            try {
+                connect();
+            } catch (IOException e) {
+                throw new SQLException("Error reading migrations: " + e.getMessage(), e);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Menjalankan migrasi dengan satu koneksi dari pool. Node lain yang mulai bersamaan
+     * menunggu kunci migrasi, lalu tidak menjalankan apa pun karena semua sudah diaplikasikan.
+     * @throws SQLException jika terjadi kesalahan pada database atau waktu tunggu kunci habis
+     * @throws IOException jika terjadi kesalahan membaca file migrasi
+     */
+    private static void migrate() throws SQLException, IOException {
+        String migrationsPath = new File(setting("DB_MIGRATIONS_PATH", "migrations")).getAbsolutePath();
+        try (Connection conn = pool.borrow()) {
+            DatabaseMigration migration = new DatabaseMigration(conn, migrationsPath);
+            migration.setLockTimeoutSeconds(Integer.parseInt(setting("DB_MIGRATE_LOCK_TIMEOUT_S", "300")));
+            migration.migrate();
+        }
+    }
+
+    /**
+     * Membaca pengaturan dari system property, lalu environment variable
+     * @param name Nama pengaturan
+     * @param defaultValue Nilai bawaan jika tidak diatur
+     * @return Nilai pengaturan
+     */
+    static String setting(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            value = System.getenv(name);
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Meminjam koneksi dari pool. Koneksi harus ditutup setelah dipakai agar
+     * kembali ke pool.
+     * @return Koneksi database yang aktif
+     * @throws SQLTransientConnectionException jika database tidak bisa dihubungi
+     * @throws SQLException jika terjadi kesalahan koneksi atau waktu tunggu habis
+     */
+    public Connection getConnection() throws SQLException {
+        ConnectionPool current = pool;
+        if (current == null) {
+            current = reconnect();
+        }
+        return current.borrow();
+    }
+
+    /**
+     * Mendapatkan pool koneksi untuk keperluan metrik
+     * @return Pool koneksi yang aktif, atau null jika database belum bisa dihubungi
+     */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Menutup pool koneksi database
+     */
+    public void close() {
+        synchronized (Database.class) {
+            closed = true;
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
+        }
+    }
+}
@@ -1,20 +1,44 @@
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
 
 /**
  * Kelas untuk mengelola migrasi skema database
+ * - File .sql berisi pernyataan SQL biasa
+ * - File .load memuat data CSV/TSV berukuran besar lewat BulkLoader
+ * - Migrasi dijalankan berurutan berdasarkan nomor versi; checksum setiap file disimpan
+ *   di schema_version sehingga file yang diubah setelah diaplikasikan terdeteksi
+ * - Aman dijalankan bersamaan dari banyak node: satu node memegang kunci GET_LOCK
+ *   dan menjalankan migrasi, node lain menunggu lalu mendapati tidak ada yang tertunda
  */
 public class DatabaseMigration {
     private static final String MIGRATION_TABLE = "schema_version";
+    private static final String LOCK_PREFIX = "schema_migration.";
+    /** Batas bawaan menunggu node lain selesai migrasi */
+    private static final int DEFAULT_LOCK_TIMEOUT_SECONDS = 300;
+    // GET_LOCK rejects names over 64 characters and a schema name alone may be that long, so such a name
+    // uses the schema's MD5 instead. Names that fit are unchanged and still exclude nodes on older builds.
+    static final String SQL_LOCK_NAME = "IF(CHAR_LENGTH(?) + CHAR_LENGTH(DATABASE()) <= 64, "
+            + "CONCAT(?, DATABASE()), CONCAT(?, MD5(DATABASE())))";
+
     private final Connection connection;
     private final String migrationsPath;
+    private int lockTimeoutSeconds = DEFAULT_LOCK_TIMEOUT_SECONDS;
 
     /**
      * Konstruktor untuk membuat instance DatabaseMigration
@@ -26,24 +50,174 @@ public class DatabaseMigration {
         this.migrationsPath = migrationsPath;
     }
 
+    /**
+     * File migrasi beserta versi numeriknya
+     */
+    static final class Migration {
+        final String version;
+        final long number;
+        final File file;
+        final long checksum;
+
+        Migration(String version, long number, File file, long checksum) {
+            this.version = version;
+            this.number = number;
+            this.file = file;
+            this.checksum = checksum;
+        }
+
+        boolean isLoad() {
+            return file.getName().endsWith(".load");
+        }
+    }
+
     /**
      * Menjalankan semua file migrasi yang belum diaplikasikan
      * @throws SQLException jika terjadi kesalahan pada database
+     * @throws MigrationValidationException jika file migrasi tidak sesuai dengan riwayat
      * @throws IOException jika terjadi kesalahan membaca file
      */
     public void migrate() throws SQLException, IOException {
-        createVersioningTable();
-        File migrationsDir = new File(migrationsPath);
-        File[] migrationFiles = migrationsDir.listFiles((dir, name) -> name.endsWith(".sql"));
-        
-        if (migrationFiles != null) {
-            for (File migrationFile : migrationFiles) {
-                String version = extractVersion(migrationFile.getName());
-                if (!isMigrationApplied(version)) {
-                    applyMigration(version, migrationFile);
+        acquireLock();
+        try {
+            // Everything below runs under the lock, so nodes that waited see the finished plan
+            createVersioningTable();
+            for (Migration migration : plan()) {
+                if (migration.isLoad()) {
+                    applyLoad(migration);
+                } else {
+                    applyMigration(migration);
+                }
+            }
+        } finally {
+            releaseLock();
+        }
+    }
+
+    /**
+     * Mengatur lama menunggu kunci migrasi yang dipegang node lain
+     * @param seconds Batas waktu dalam detik
+     */
+    public void setLockTimeoutSeconds(int seconds) {
+        this.lockTimeoutSeconds = seconds;
+    }
+
+    /**
+     * Mengambil advisory lock MySQL untuk database ini. Kunci terikat pada sesi koneksi,
+     * sehingga dilepas otomatis oleh server jika node yang memegangnya mati.
+     * @throws SQLTimeoutException jika node lain masih memegang kunci setelah batas waktu
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    private void acquireLock() throws SQLException {
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT GET_LOCK(" + SQL_LOCK_NAME + ", ?)")) {
+            stmt.setInt(bindLockName(stmt, LOCK_PREFIX), lockTimeoutSeconds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                int result = rs.getInt(1);
+                if (rs.wasNull() || result != 1) {
+                    throw new SQLTimeoutException("Timed out after " + lockTimeoutSeconds
+                            + " s waiting for the migration lock held by another node");
                 }
             }
         }
+        long waitedMillis = (System.nanoTime() - start) / 1_000_000L;
+        if (waitedMillis >= 1000L) {
+            System.out.println("Acquired migration lock after " + waitedMillis + " ms");
+        }
+    }
+
+    private void releaseLock() {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT RELEASE_LOCK(" + SQL_LOCK_NAME + ")")) {
+            bindLockName(stmt, LOCK_PREFIX);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            // The server drops the lock with the session anyway
+            System.err.println("Error releasing migration lock: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Mengisi parameter SQL_LOCK_NAME mulai dari parameter pertama
+     * @param prefix Awalan nama kunci, paling panjang 32 karakter
+     * @return Indeks parameter berikutnya
+     */
+    static int bindLockName(PreparedStatement stmt, String prefix) throws SQLException {
+        for (int i = 1; i <= 3; i++) {
+            stmt.setString(i, prefix);
+        }
+        return 4;
+    }
+
+    /**
+     * Menyusun daftar migrasi yang belum diaplikasikan
+     * - Versi yang sudah diaplikasikan dibaca dengan satu query
+     * - File diurutkan berdasarkan nomor versi numerik, bukan urutan dari sistem berkas
+     * - Checksum file yang sudah diaplikasikan dibandingkan dengan yang tersimpan;
+     *   checksum yang belum ada (riwayat lama) diisi dari file saat ini
+     * - Hanya checksum yang dihitung di sini; isi file baru dibaca saat diaplikasikan
+     * @return Migrasi yang tertunda, berurutan berdasarkan versi
+     * @throws SQLException jika terjadi kesalahan pada database
+     * @throws MigrationValidationException jika file diubah, diurutkan ulang, atau versinya ganda
+     * @throws IOException jika terjadi kesalahan membaca file
+     */
+    List<Migration> plan() throws SQLException, IOException {
+        Map<String, Long> applied = readAppliedVersions();
+        long highestApplied = Long.MIN_VALUE;
+        for (String version : applied.keySet()) {
+            highestApplied = Math.max(highestApplied, parseVersion(version, MIGRATION_TABLE));
+        }
+
+        List<Migration> migrations = scan();
+        List<Migration> pending = new ArrayList<>();
+        for (Migration migration : migrations) {
+            if (!applied.containsKey(migration.version)) {
+                if (migration.number < highestApplied) {
+                    throw new MigrationValidationException("Migration " + migration.file.getName()
+                            + " is older than the latest applied version " + highestApplied
+                            + "; add it with a higher version instead");
+                }
+                pending.add(migration);
+                continue;
+            }
+            Long stored = applied.remove(migration.version);
+            if (stored == null) {
+                recordChecksum(migration);
+            } else if (stored != migration.checksum) {
+                throw new MigrationValidationException("Migration " + migration.file.getName()
+                        + " was changed after it was applied (checksum " + migration.checksum
+                        + ", recorded " + stored + ")");
+            }
+        }
+        for (String missing : applied.keySet()) {
+            System.err.println("Applied migration " + missing + " has no file in " + migrationsPath);
+        }
+        return pending;
+    }
+
+    /**
+     * Membaca daftar file migrasi dan mengurutkannya berdasarkan nomor versi
+     */
+    private List<Migration> scan() throws IOException, MigrationValidationException {
+        File[] files = new File(migrationsPath).listFiles(
+                (dir, name) -> name.startsWith("V") && (name.endsWith(".sql") || name.endsWith(".load")));
+        List<Migration> migrations = new ArrayList<>();
+        if (files == null) {
+            return migrations;
+        }
+        for (File file : files) {
+            String version = extractVersion(file.getName());
+            migrations.add(new Migration(version, parseVersion(version, file.getName()), file, checksum(file)));
+        }
+        migrations.sort(Comparator.comparingLong(m -> m.number));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).number == migrations.get(i - 1).number) {
+                throw new MigrationValidationException("Duplicate migration version " + migrations.get(i).number
+                        + ": " + migrations.get(i - 1).file.getName() + " and " + migrations.get(i).file.getName());
+            }
+        }
+        return migrations;
     }
 
     /**
@@ -55,63 +229,151 @@ public class DatabaseMigration {
             stmt.execute(
                 "CREATE TABLE IF NOT EXISTS " + MIGRATION_TABLE + " (" +
                 "version VARCHAR(50) PRIMARY KEY," +
-                "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)"    
+                "checksum BIGINT NULL," +
+                "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)"
             );
         }
+        // Tables created before checksums were stored lack the column
+        try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, MIGRATION_TABLE, "checksum")) {
+            if (rs.next()) {
+                return;
+            }
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE " + MIGRATION_TABLE + " ADD checksum BIGINT NULL AFTER version");
+        }
     }
 
     /**
-     * Memeriksa apakah versi migrasi sudah diaplikasikan
-     * @param version Nomor versi migrasi
-     * @return true jika migrasi sudah diaplikasikan
+     * Membaca semua versi yang sudah diaplikasikan beserta checksum-nya dalam satu query
+     * @return Peta versi ke checksum (null untuk riwayat tanpa checksum)
      * @throws SQLException jika terjadi kesalahan pada database
      */
-    private boolean isMigrationApplied(String version) throws SQLException {
-        String sql = "SELECT version FROM " + MIGRATION_TABLE + " WHERE version = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, version);
-            try (ResultSet rs = stmt.executeQuery()) {
-                return rs.next();
+    private Map<String, Long> readAppliedVersions() throws SQLException {
+        Map<String, Long> applied = new HashMap<>();
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM " + MIGRATION_TABLE)) {
+            while (rs.next()) {
+                String version = rs.getString(1);
+                long checksum = rs.getLong(2);
+                applied.put(version, rs.wasNull() ? null : checksum);
+            }
+        }
+        return applied;
+    }
+
+    private void recordChecksum(Migration migration) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "UPDATE " + MIGRATION_TABLE + " SET checksum = ? WHERE version = ?")) {
+            stmt.setLong(1, migration.checksum);
+            stmt.setString(2, migration.version);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Menghitung CRC32 isi file tanpa mem-parsing-nya. Karakter CR diabaikan agar
+     * checkout dengan akhir baris Windows menghasilkan checksum yang sama.
+     * Untuk migrasi .load hanya file deskripsinya yang dihitung, bukan file datanya.
+     */
+    static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                int kept = 0;
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] != '\r') {
+                        buffer[kept++] = buffer[i];
+                    }
+                }
+                crc.update(buffer, 0, kept);
             }
         }
+        return crc.getValue();
     }
 
     /**
      * Mengaplikasikan file migrasi ke database
-     * @param version Nomor versi migrasi
-     * @param migrationFile File SQL migrasi yang akan dijalankan
+     * @param migration Migrasi SQL yang akan dijalankan
      * @throws SQLException jika terjadi kesalahan pada database
      * @throws IOException jika terjadi kesalahan membaca file
      */
-    private void applyMigration(String version, File migrationFile) throws SQLException, IOException {
-        String[] sqlStatements = readFile(migrationFile).split(";");
+    private void applyMigration(Migration migration) throws SQLException, IOException {
+        File migrationFile = migration.file;
+        String version = migration.version;
+        long start = System.nanoTime();
+        int executed = 0;
         connection.setAutoCommit(false);
         try {
-            // Execute each SQL statement separately
-            try (Statement stmt = connection.createStatement()) {
-                for (String sql : sqlStatements) {
-                    sql = sql.trim();
-                    if (!sql.isEmpty()) {
+            // Execute each SQL statement separately, streaming them from the file
+            try (SqlScriptReader script = new SqlScriptReader(new InputStreamReader(
+                        new FileInputStream(migrationFile), StandardCharsets.UTF_8));
+                    Statement stmt = connection.createStatement()) {
+                String sql;
+                while ((sql = script.next()) != null) {
+                    try {
                         stmt.execute(sql);
-                        System.out.println("Executed SQL: " + sql);
+                    } catch (SQLException e) {
+                        throw new SQLException(migrationFile.getName() + " line " + script.getStatementLine()
+                                + ": " + e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
                     }
+                    executed++;
                 }
             }
 
-            // Record migration
-            String insertSql = "INSERT INTO " + MIGRATION_TABLE + " (version) VALUES (?)";
-            try (PreparedStatement stmt = connection.prepareStatement(insertSql)) {
-                stmt.setString(1, version);
-                stmt.executeUpdate();
-            }
-
+            recordVersion(migration);
             connection.commit();
-            System.out.println("Applied migration: " + version);
+            System.out.println("Applied migration: " + version + " (" + executed + " statements, "
+                    + (System.nanoTime() - start) / 1_000_000L + " ms)");
         } catch (SQLException e) {
             connection.rollback();
             throw e;
         } finally {
             connection.setAutoCommit(true);
+            Metrics.MIGRATION_STEP.recordSince(start);
+        }
+    }
+
+    /**
+     * Mengaplikasikan migrasi pemuatan data (.load). Data di-commit per potongan oleh
+     * BulkLoader; versi baru dicatat setelah semua baris termuat.
+     * @param migration Migrasi .load yang akan dijalankan
+     * @throws SQLException jika terjadi kesalahan pada database
+     * @throws IOException jika terjadi kesalahan membaca file
+     */
+    private void applyLoad(Migration migration) throws SQLException, IOException {
+        String version = migration.version;
+        long start = System.nanoTime();
+        try {
+            BulkLoader loader = new BulkLoader(connection);
+            long rows = loader.load(version, migration.file);
+
+            connection.setAutoCommit(false);
+            try {
+                recordVersion(migration);
+                loader.clearCheckpoint(version);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            System.out.println("Applied migration: " + version + " (" + rows + " rows, "
+                    + (System.nanoTime() - start) / 1_000_000L + " ms)");
+        } finally {
+            Metrics.MIGRATION_STEP.recordSince(start);
+        }
+    }
+
+    private void recordVersion(Migration migration) throws SQLException {
+        String insertSql = "INSERT INTO " + MIGRATION_TABLE + " (version, checksum) VALUES (?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(insertSql)) {
+            stmt.setString(1, migration.version);
+            stmt.setLong(2, migration.checksum);
+            stmt.executeUpdate();
         }
     }
 
@@ -124,24 +386,12 @@ public class DatabaseMigration {
         return filename.substring(1, filename.indexOf('_'));
     }
 
-    /**
-     * Membaca isi file migrasi dan mengabaikan komentar
-     * @param file File migrasi yang akan dibaca
-     * @return Isi file dalam bentuk string
-     * @throws IOException jika terjadi kesalahan membaca file
-     */
-    private String readFile(File file) throws IOException {
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Skip comment lines and empty lines
-                line = line.trim();
-                if (!line.isEmpty() && !line.startsWith("--")) {
-                    content.append(line).append('\n');
-                }
-            }
+    private static long parseVersion(String version, String source) throws MigrationValidationException {
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException e) {
+            throw new MigrationValidationException("Migration version '" + version + "' in " + source
+                    + " is not a number");
         }
-        return content.toString();
     }
-}
\ No newline at end of file
+}
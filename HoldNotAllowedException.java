@@ -0,0 +1,15 @@
+/**
+ * Exception yang dilempar ketika anggota tidak dapat memesan (hold) sebuah buku,
+ * misalnya karena buku sedang tersedia atau anggota sudah berada di antrean
+ */
+public class HoldNotAllowedException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Konstruktor dengan pesan error
+     * @param message Pesan yang menjelaskan alasan exception
+     */
+    public HoldNotAllowedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,544 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Antrean pemesanan (hold) untuk buku yang sedang dipinjam
+ * - Tabel holds adalah sumber kebenaran; urutan antrean mengikuti id sehingga yang datang
+ *   lebih dulu dilayani lebih dulu
+ * - Saat satu eksemplar dikembalikan, pemesan berikutnya dipromosikan menjadi READY di dalam transaksi
+ *   pengembalian yang sama; eksemplar itu tidak dihitung tersedia bagi anggota lain sampai expires_at
+ * - Pemesanan hanya boleh dibuat saat semua eksemplar sedang dipinjam atau disimpan
+ * - Baris buku selalu dikunci sebelum baris holds, sehingga pemesanan, pengembalian,
+ *   pembatalan dan kedaluwarsa untuk buku yang sama berjalan berurutan tanpa deadlock
+ * - Salinan antrean di memori dibaca LoanService tanpa lock untuk jalur cepat;
+ *   salinan ini dimuat ulang dari database setiap kali sweep kedaluwarsa berjalan
+ */
+public class HoldQueue {
+    /** Lama buku disimpan untuk pemesan setelah dikembalikan */
+    private static final int DEFAULT_EXPIRY_DAYS = 3;
+
+    static final String SQL_LOCK_BOOK =
+            "SELECT available FROM books WHERE id = ? FOR UPDATE";
+    static final String SQL_HOLD_CONFLICTS =
+            "SELECT (SELECT COUNT(*) FROM holds WHERE member_id = ? AND book_id = ? AND status IN ('WAITING', 'READY')), "
+            + "(SELECT COUNT(*) FROM transactions WHERE book_id = ? AND member_id = ? AND return_date IS NULL), "
+            + "(SELECT COUNT(*) FROM holds WHERE book_id = ? AND status = 'WAITING')";
+    static final String SQL_INSERT_HOLD =
+            "INSERT INTO holds (book_id, member_id) VALUES (?, ?)";
+    static final String SQL_NEXT_WAITING =
+            "SELECT id, member_id FROM holds WHERE book_id = ? AND status = 'WAITING' ORDER BY id LIMIT 1 FOR UPDATE";
+    static final String SQL_MARK_READY =
+            "UPDATE holds SET status = 'READY', ready_at = CURRENT_TIMESTAMP, expires_at = ? WHERE id = ?";
+    static final String SQL_FULFILL =
+            "UPDATE holds SET status = 'FULFILLED' "
+            + "WHERE book_id = ? AND member_id = ? AND status = 'READY' AND expires_at >= ?";
+    static final String SQL_DUE_FOR_EXPIRY =
+            "SELECT id, book_id FROM holds WHERE status = 'READY' AND expires_at < ?";
+    static final String SQL_EXPIRE =
+            "UPDATE holds SET status = 'EXPIRED' WHERE id = ? AND status = 'READY'";
+    static final String SQL_LOCK_ACTIVE_HOLD =
+            "SELECT id, status FROM holds WHERE member_id = ? AND book_id = ? AND status IN ('WAITING', 'READY') "
+            + "FOR UPDATE";
+    static final String SQL_CANCEL =
+            "UPDATE holds SET status = 'CANCELLED' WHERE id = ?";
+    static final String SQL_ACTIVE_HOLDS =
+            "SELECT id, book_id, member_id, status, expires_at FROM holds "
+            + "WHERE status IN ('WAITING', 'READY') ORDER BY id";
+
+    /**
+     * Satu pemesanan aktif
+     */
+    public static final class Hold {
+        private final long id;
+        private final String bookId;
+        private final String memberId;
+        private final LocalDate expiresAt;
+
+        Hold(long id, String bookId, String memberId, LocalDate expiresAt) {
+            this.id = id;
+            this.bookId = bookId;
+            this.memberId = memberId;
+            this.expiresAt = expiresAt;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getBookId() {
+            return bookId;
+        }
+
+        public String getMemberId() {
+            return memberId;
+        }
+
+        /**
+         * Batas pengambilan buku, null selama pemesanan masih menunggu
+         */
+        public LocalDate getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    private final Database db;
+    private final AvailabilityCache cache;
+    private final int expiryDays;
+    private volatile ConcurrentHashMap<String, ConcurrentLinkedQueue<Hold>> waiting = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String, ConcurrentLinkedQueue<Hold>> ready = new ConcurrentHashMap<>();
+    /** Menyerialkan penulis mirror dengan reload(); pembaca tidak pernah mengambil kunci ini */
+    private final Object mirrorLock = new Object();
+    private long mirrorChanges = 0;
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Konstruktor dengan masa simpan dari HOLD_EXPIRY_DAYS (bawaan 3 hari)
+     * @param db Sumber koneksi database
+     * @param cache Cache ketersediaan yang diinvalidasi saat buku dilepas, boleh null
+     */
+    public HoldQueue(Database db, AvailabilityCache cache) {
+        this(db, cache, Integer.parseInt(Database.setting("HOLD_EXPIRY_DAYS", String.valueOf(DEFAULT_EXPIRY_DAYS))));
+    }
+
+    /**
+     * Konstruktor dengan masa simpan tertentu
+     * @param db Sumber koneksi database
+     * @param cache Cache ketersediaan yang diinvalidasi saat buku dilepas, boleh null
+     * @param expiryDays Jumlah hari buku disimpan untuk pemesan setelah dikembalikan
+     */
+    public HoldQueue(Database db, AvailabilityCache cache, int expiryDays) {
+        if (expiryDays < 0) {
+            throw new IllegalArgumentException("Hold expiry must not be negative: " + expiryDays);
+        }
+        this.db = db;
+        this.cache = cache;
+        this.expiryDays = expiryDays;
+    }
+
+    /**
+     * Memesan buku yang sedang dipinjam
+     * @param book Buku yang dipesan
+     * @param member Anggota yang memesan
+     * @return Posisi anggota di antrean, dimulai dari 1
+     * @throws HoldNotAllowedException jika buku tersedia, anggota sudah memesan atau sedang meminjamnya
+     * @throws SQLException jika buku tidak ditemukan atau terjadi kesalahan pada database
+     */
+    public int place(Book book, Member member) throws HoldNotAllowedException, SQLException {
+        Hold hold;
+        int position;
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // Holding the book row lock means no return can promote or release it until this commits
+                Boolean available = lockBook(conn, book.getId());
+                if (available == null) {
+                    conn.rollback();
+                    Metrics.reject(Metrics.Rejection.UNKNOWN_BOOK);
+                    throw new SQLException("Book not found: " + book.getId());
+                }
+                if (available) {
+                    conn.rollback();
+                    rejectHold();
+                    throw new HoldNotAllowedException("A copy is available, borrow it instead");
+                }
+
+                int ahead;
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_HOLD_CONFLICTS)) {
+                    pstmt.setString(1, member.getId());
+                    pstmt.setString(2, book.getId());
+                    pstmt.setString(3, book.getId());
+                    pstmt.setString(4, member.getId());
+                    pstmt.setString(5, book.getId());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        rs.next();
+                        if (rs.getInt(1) > 0) {
+                            conn.rollback();
+                            rejectHold();
+                            throw new HoldNotAllowedException("Member already has a hold on this book");
+                        }
+                        if (rs.getInt(2) > 0) {
+                            conn.rollback();
+                            rejectHold();
+                            throw new HoldNotAllowedException("Member is currently borrowing this book");
+                        }
+                        ahead = rs.getInt(3);
+                    }
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_HOLD, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setString(1, book.getId());
+                    pstmt.setString(2, member.getId());
+                    pstmt.executeUpdate();
+                    try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                        keys.next();
+                        hold = new Hold(keys.getLong(1), book.getId(), member.getId(), null);
+                    }
+                }
+                conn.commit();
+                position = ahead + 1;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        synchronized (mirrorLock) {
+            waiting.computeIfAbsent(hold.bookId, k -> new ConcurrentLinkedQueue<>()).add(hold);
+            mirrorChanges++;
+        }
+        return position;
+    }
+
+    /**
+     * Membatalkan pemesanan aktif anggota; jika eksemplar sedang disimpan untuknya,
+     * eksemplar diberikan ke pemesan berikutnya atau menjadi tersedia
+     * @param book Buku yang dipesan
+     * @param member Anggota yang memesan
+     * @param date Tanggal pembatalan, dipakai untuk menghitung batas pemesan berikutnya
+     * @return true jika ada pemesanan yang dibatalkan
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public boolean cancel(Book book, Member member, LocalDate date) throws SQLException {
+        long holdId;
+        Hold next = null;
+        boolean wasReady;
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                lockBook(conn, book.getId());
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_LOCK_ACTIVE_HOLD)) {
+                    pstmt.setString(1, member.getId());
+                    pstmt.setString(2, book.getId());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.rollback();
+                            return false;
+                        }
+                        holdId = rs.getLong(1);
+                        wasReady = "READY".equals(rs.getString(2));
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_CANCEL)) {
+                    pstmt.setLong(1, holdId);
+                    pstmt.executeUpdate();
+                }
+                if (wasReady) {
+                    next = releaseBook(conn, book.getId(), date);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        synchronized (mirrorLock) {
+            removeFromMirror(book.getId(), holdId);
+        }
+        if (wasReady) {
+            released(book.getId(), next);
+        }
+        return true;
+    }
+
+    /**
+     * Melepas satu eksemplar yang baru kembali: diberikan ke pemesan berikutnya atau menambah eksemplar tersedia
+     * Harus dipanggil di dalam transaksi yang sudah mengunci baris buku atau baris peminjamannya;
+     * setelah commit, pemanggil melaporkan hasilnya lewat released()
+     * @param conn Koneksi dengan transaksi yang sedang berjalan
+     * @param bookId ID buku
+     * @param date Tanggal pelepasan, awal masa simpan
+     * @return Pemesanan yang dipromosikan, atau null jika eksemplar menjadi tersedia
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    Hold releaseBook(Connection conn, String bookId, LocalDate date) throws SQLException {
+        Hold next = promoteNext(conn, bookId, date);
+        if (next == null) {
+            try (PreparedStatement pstmt = conn.prepareStatement(LoanService.SQL_RELEASE_COPY)) {
+                pstmt.setString(1, bookId);
+                pstmt.executeUpdate();
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Mempromosikan pemesan terlama yang masih menunggu menjadi READY tanpa mengubah baris buku
+     * @return Pemesanan yang dipromosikan, atau null jika antrean kosong
+     */
+    Hold promoteNext(Connection conn, String bookId, LocalDate date) throws SQLException {
+        // Lock the book first, like place(), so a hold committed concurrently is either seen here or rejected there
+        lockBook(conn, bookId);
+        long id;
+        String memberId;
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_NEXT_WAITING)) {
+            pstmt.setString(1, bookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                id = rs.getLong(1);
+                memberId = rs.getString(2);
+            }
+        }
+        LocalDate expiresAt = date.plusDays(expiryDays);
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_MARK_READY)) {
+            pstmt.setDate(1, java.sql.Date.valueOf(expiresAt));
+            pstmt.setLong(2, id);
+            pstmt.executeUpdate();
+        }
+        return new Hold(id, bookId, memberId, expiresAt);
+    }
+
+    /**
+     * Memenuhi pemesanan READY milik anggota; eksemplarnya sudah tidak dihitung tersedia sejak
+     * dipromosikan sehingga peminjaman cukup mencatat transaksinya
+     * @return true jika anggota memiliki pemesanan READY yang belum kedaluwarsa
+     */
+    boolean fulfill(Connection conn, String bookId, String memberId, LocalDate date) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_FULFILL)) {
+            pstmt.setString(1, bookId);
+            pstmt.setString(2, memberId);
+            pstmt.setDate(3, java.sql.Date.valueOf(date));
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Memperbarui salinan di memori setelah releaseBook() di-commit
+     * @param bookId ID buku yang dilepas
+     * @param next Pemesanan yang dipromosikan, atau null jika eksemplar menjadi tersedia
+     */
+    void released(String bookId, Hold next) {
+        if (next != null) {
+            synchronized (mirrorLock) {
+                removeFromMirror(bookId, next.id);
+                ready.computeIfAbsent(bookId, k -> new ConcurrentLinkedQueue<>()).add(next);
+                mirrorChanges++;
+            }
+        }
+        if (cache != null) {
+            cache.invalidateBook(bookId);
+        }
+    }
+
+    /**
+     * Memperbarui salinan di memori setelah fulfill() di-commit
+     */
+    void fulfilled(String bookId, String memberId) {
+        synchronized (mirrorLock) {
+            ConcurrentLinkedQueue<Hold> queue = ready.get(bookId);
+            if (queue != null && queue.removeIf(h -> h.memberId.equals(memberId))) {
+                if (queue.isEmpty()) {
+                    ready.remove(bookId, queue);
+                }
+                mirrorChanges++;
+            }
+        }
+    }
+
+    /**
+     * Apakah buku sedang disimpan untuk anggota ini menurut salinan di memori
+     */
+    public boolean isReadyFor(String bookId, String memberId) {
+        ConcurrentLinkedQueue<Hold> queue = ready.get(bookId);
+        if (queue != null) {
+            for (Hold hold : queue) {
+                if (hold.memberId.equals(memberId)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pemesanan READY terbaru untuk sebuah buku menurut salinan di memori
+     * @return Pemesanan, atau null jika tidak ada eksemplar yang disimpan untuk siapa pun
+     */
+    public Hold getReady(String bookId) {
+        ConcurrentLinkedQueue<Hold> queue = ready.get(bookId);
+        Hold latest = null;
+        if (queue != null) {
+            for (Hold hold : queue) {
+                latest = hold;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Jumlah pemesan yang masih menunggu sebuah buku menurut salinan di memori
+     */
+    public int getWaitingCount(String bookId) {
+        ConcurrentLinkedQueue<Hold> queue = waiting.get(bookId);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Membatalkan pemesanan READY yang melewati batas pengambilan; eksemplarnya diberikan
+     * ke pemesan berikutnya atau menjadi tersedia. Setiap pemesanan diproses dalam transaksinya sendiri.
+     * @param today Tanggal hari ini
+     * @return Jumlah pemesanan yang kedaluwarsa
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public int expireDue(LocalDate today) throws SQLException {
+        int expired = 0;
+        try (Connection conn = db.getConnection()) {
+            List<Hold> due = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_DUE_FOR_EXPIRY)) {
+                pstmt.setDate(1, java.sql.Date.valueOf(today));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        due.add(new Hold(rs.getLong(1), rs.getString(2), null, null));
+                    }
+                }
+            }
+
+            conn.setAutoCommit(false);
+            try {
+                for (Hold hold : due) {
+                    lockBook(conn, hold.bookId);
+                    int changed;
+                    try (PreparedStatement pstmt = conn.prepareStatement(SQL_EXPIRE)) {
+                        pstmt.setLong(1, hold.id);
+                        changed = pstmt.executeUpdate();
+                    }
+                    if (changed == 0) {
+                        // Picked up or cancelled since the scan
+                        conn.rollback();
+                        continue;
+                    }
+                    Hold next = releaseBook(conn, hold.bookId, today);
+                    conn.commit();
+                    expired++;
+                    synchronized (mirrorLock) {
+                        removeFromMirror(hold.bookId, hold.id);
+                    }
+                    released(hold.bookId, next);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Memuat ulang salinan di memori dari database, termasuk perubahan dari node lain
+     * Jika salinan berubah selama pembacaan, pemuatan dilewati dan diulang pada sweep berikutnya
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public void reload() throws SQLException {
+        long before;
+        synchronized (mirrorLock) {
+            before = mirrorChanges;
+        }
+        ConcurrentHashMap<String, ConcurrentLinkedQueue<Hold>> newWaiting = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, ConcurrentLinkedQueue<Hold>> newReady = new ConcurrentHashMap<>();
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_ACTIVE_HOLDS);
+                ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                java.sql.Date expires = rs.getDate(5);
+                Hold hold = new Hold(rs.getLong(1), rs.getString(2), rs.getString(3),
+                        expires != null ? expires.toLocalDate() : null);
+                boolean isReady = "READY".equals(rs.getString(4));
+                (isReady ? newReady : newWaiting).computeIfAbsent(hold.bookId, k -> new ConcurrentLinkedQueue<>())
+                        .add(hold);
+            }
+        }
+        synchronized (mirrorLock) {
+            if (mirrorChanges == before) {
+                waiting = newWaiting;
+                ready = newReady;
+            }
+        }
+    }
+
+    /**
+     * Memuat salinan di memori lalu mulai menjalankan sweep kedaluwarsa secara berkala
+     * @param periodMillis Interval sweep dalam milidetik
+     */
+    public synchronized void start(long periodMillis) {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hold-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                reload();
+                int expired = expireDue(LocalDate.now());
+                if (expired > 0) {
+                    System.out.println("Expired " + expired + " uncollected hold(s)");
+                }
+            } catch (SQLException e) {
+                System.err.println("Error sweeping holds: " + e.getMessage());
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Menghentikan sweep kedaluwarsa
+     */
+    public synchronized void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    private void removeFromMirror(String bookId, long holdId) {
+        removeFromQueue(waiting, bookId, holdId);
+        removeFromQueue(ready, bookId, holdId);
+        mirrorChanges++;
+    }
+
+    private static void removeFromQueue(ConcurrentHashMap<String, ConcurrentLinkedQueue<Hold>> map, String bookId,
+            long holdId) {
+        ConcurrentLinkedQueue<Hold> queue = map.get(bookId);
+        if (queue != null) {
+            queue.removeIf(h -> h.id == holdId);
+            if (queue.isEmpty()) {
+                map.remove(bookId, queue);
+            }
+        }
+    }
+
+    /**
+     * Mengunci baris buku di transaksi yang sedang berjalan
+     * @return Status tersedia buku, atau null jika buku tidak ada
+     */
+    static Boolean lockBook(Connection conn, String bookId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_LOCK_BOOK)) {
+            pstmt.setString(1, bookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getBoolean(1) : null;
+            }
+        }
+    }
+
+    private static void rejectHold() {
+        Metrics.reject(Metrics.Rejection.HOLD_NOT_ALLOWED);
+    }
+}
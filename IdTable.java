@@ -0,0 +1,151 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Tabel ID yang memetakan ID teks (misalnya "B001") ke surrogate int yang rapat (0, 1, 2, ...)
+ * - Struktur di memori (CatalogIndex, AvailabilityCache, snapshot OfflineDesk) menyimpan status
+ *   dalam array primitif yang diindeks surrogate, bukan map berkunci String
+ * - Setiap ID disimpan sekali; pemanggil yang memakai id(int) berbagi objek String yang sama
+ * - Surrogate hanya berlaku di proses ini dan tidak pernah dipakai ulang, sehingga array yang
+ *   diindeks surrogate tetap benar tanpa pembersihan; database tetap memakai ID teks
+ * - find() dan id() tidak memakai lock; intern() untuk ID baru memakai kunci tabel
+ */
+public final class IdTable {
+    /** ID buku */
+    static final IdTable BOOKS = new IdTable();
+    /** ID anggota */
+    static final IdTable MEMBERS = new IdTable();
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Isi tabel yang diterbitkan bersama. slots adalah tabel hash open addressing berisi
+     * surrogate + 1 (0 = kosong); ids[surrogate] diisi sebelum slot-nya sehingga pembaca yang
+     * melihat slot juga melihat ID-nya.
+     */
+    private static final class Table {
+        final AtomicIntegerArray slots;
+        final String[] ids;
+
+        Table(int capacity) {
+            this.slots = new AtomicIntegerArray(capacity * 2);
+            this.ids = new String[capacity];
+        }
+    }
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private volatile int size;
+
+    /**
+     * Mencari surrogate sebuah ID tanpa menambahkannya
+     * @param id ID teks
+     * @return Surrogate, atau -1 jika ID belum pernah didaftarkan
+     */
+    public int find(String id) {
+        Table t = table;
+        int mask = t.slots.length() - 1;
+        for (int i = spread(id.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int slot = t.slots.get(i);
+            if (slot == 0) {
+                return -1;
+            }
+            if (t.ids[slot - 1].equals(id)) {
+                return slot - 1;
+            }
+        }
+    }
+
+    /**
+     * Mendapatkan surrogate sebuah ID, mendaftarkannya jika belum ada.
+     * Hanya untuk ID yang berasal dari database agar tabel tidak bertambah oleh masukan sembarang.
+     * @param id ID teks
+     * @return Surrogate ID
+     */
+    public int intern(String id) {
+        int key = find(id);
+        return key >= 0 ? key : add(id);
+    }
+
+    /**
+     * Mendapatkan objek String bersama untuk sebuah ID, mendaftarkannya jika belum ada
+     * @param id ID teks, misalnya dari ResultSet
+     * @return String yang sama isinya, dipakai bersama oleh semua pemanggil
+     */
+    public String canonical(String id) {
+        return id(intern(id));
+    }
+
+    /**
+     * Mendapatkan ID teks dari surrogate
+     * @param key Surrogate dari find() atau intern()
+     * @return ID teks
+     */
+    public String id(int key) {
+        return table.ids[key];
+    }
+
+    /**
+     * Jumlah ID yang terdaftar; semua surrogate lebih kecil dari nilai ini
+     */
+    public int size() {
+        return size;
+    }
+
+    private synchronized int add(String id) {
+        // Another thread may have added it since the lock-free lookup
+        int key = find(id);
+        if (key >= 0) {
+            return key;
+        }
+        key = size;
+        Table t = table;
+        if (key == t.ids.length) {
+            t = grow(t);
+        }
+        t.ids[key] = id;
+        insert(t, id, key);
+        size = key + 1;
+        return key;
+    }
+
+    /**
+     * Membangun tabel dua kali lebih besar lalu menerbitkannya; pembaca tabel lama tetap
+     * melihat isi yang benar sampai mereka membaca ulang field table
+     */
+    private Table grow(Table old) {
+        Table t = new Table(old.ids.length * 2);
+        System.arraycopy(old.ids, 0, t.ids, 0, old.ids.length);
+        for (int key = 0; key < old.ids.length; key++) {
+            insert(t, old.ids[key], key);
+        }
+        table = t;
+        return t;
+    }
+
+    private static void insert(Table t, String id, int key) {
+        int mask = t.slots.length() - 1;
+        int i = spread(id.hashCode()) & mask;
+        while (t.slots.get(i) != 0) {
+            i = (i + 1) & mask;
+        }
+        t.slots.set(i, key + 1);
+    }
+
+    /**
+     * Menyalin array int yang diindeks surrogate ke ukuran yang cukup untuk key, diisi fill
+     */
+    static int[] ensure(int[] array, int key, int fill) {
+        if (key < array.length) {
+            return array;
+        }
+        int capacity = Math.max(Math.max(array.length * 2, key + 1), INITIAL_CAPACITY);
+        int[] grown = Arrays.copyOf(array, capacity);
+        Arrays.fill(grown, array.length, capacity, fill);
+        return grown;
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,170 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Layanan pengelolaan eksemplar (holding) sebuah judul
+ * - Eksemplar baru langsung diberikan ke antrean pemesanan jika ada yang menunggu,
+ *   sama seperti eksemplar yang dikembalikan
+ * - Penghitung total_copies/available_copies di baris books diubah di transaksi yang sama
+ *   dengan tabel book_copies, setelah baris buku dikunci
+ * - Judul lama sudah menghitung eksemplarnya di total_copies (bawaan 1) tanpa baris book_copies;
+ *   barcode untuk eksemplar yang sudah terhitung tidak menambah penghitung
+ * - Peminjaman per judul tidak menandai eksemplar mana yang dibawa (on_loan), jadi eksemplar hanya
+ *   bisa dikeluarkan jika sisa total_copies masih mencukupi semua peminjaman aktif judul itu
+ */
+public class InventoryService {
+    static final String SQL_LOCK_BOOK =
+            "SELECT total_copies FROM books WHERE id = ? FOR UPDATE";
+    static final String SQL_COUNT_COPIES =
+            "SELECT COUNT(*) FROM book_copies WHERE book_id = ?";
+    static final String SQL_COUNT_OPEN_LOANS =
+            "SELECT COUNT(*) FROM transactions WHERE book_id = ? AND return_date IS NULL";
+    static final String SQL_INSERT_COPY =
+            "INSERT INTO book_copies (barcode, book_id) VALUES (?, ?)";
+    static final String SQL_ADD_TO_TOTAL =
+            "UPDATE books SET total_copies = total_copies + 1 WHERE id = ?";
+    // Only a copy on the shelf can be withdrawn, so both counters drop together
+    static final String SQL_WITHDRAW_FROM_TOTAL =
+            "UPDATE books SET total_copies = total_copies - 1, available_copies = available_copies - 1, "
+            + "available = available_copies > 0 WHERE id = ? AND available_copies > 0";
+    static final String SQL_DELETE_COPY =
+            "DELETE FROM book_copies WHERE barcode = ? AND on_loan = 0";
+
+    private final Database db;
+    private final HoldQueue holds;
+
+    /**
+     * Konstruktor untuk membuat layanan eksemplar
+     * @param db Sumber koneksi database
+     * @param holds Antrean pemesanan yang menerima eksemplar baru
+     */
+    public InventoryService(Database db, HoldQueue holds) {
+        this.db = db;
+        this.holds = holds;
+    }
+
+    /**
+     * Mendaftarkan eksemplar baru untuk sebuah judul
+     * @param bookId ID buku
+     * @param barcode Barcode eksemplar, unik di seluruh perpustakaan
+     * @param date Tanggal pendaftaran, awal masa simpan jika eksemplar langsung diberikan ke pemesan
+     * @return Pemesanan yang menerima eksemplar ini, atau null jika eksemplar menjadi tersedia
+     *         atau barcode diberikan ke eksemplar yang sudah terhitung di total_copies
+     * @throws SQLException jika buku tidak ditemukan, barcode sudah terdaftar, atau terjadi kesalahan pada database
+     */
+    public HoldQueue.Hold addCopy(String bookId, String barcode, LocalDate date) throws SQLException {
+        HoldQueue.Hold next = null;
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int total = lockBook(conn, bookId);
+                if (total < 0) {
+                    conn.rollback();
+                    Metrics.reject(Metrics.Rejection.UNKNOWN_BOOK);
+                    throw new SQLException("Book not found: " + bookId);
+                }
+                // Until every counted copy has a barcode, a new barcode labels one of them
+                if (count(conn, SQL_COUNT_COPIES, bookId) >= total) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(SQL_ADD_TO_TOTAL)) {
+                        pstmt.setString(1, bookId);
+                        pstmt.executeUpdate();
+                    }
+                    next = holds.releaseBook(conn, bookId, date);
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_COPY)) {
+                    pstmt.setString(1, barcode);
+                    pstmt.setString(2, bookId);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        holds.released(bookId, next);
+        return next;
+    }
+
+    /**
+     * Mengeluarkan eksemplar yang hilang atau rusak dari koleksi
+     * @param barcode Barcode eksemplar
+     * @return true jika eksemplar dikeluarkan, false jika tidak dikenal, sedang dipinjam,
+     *         tidak ada eksemplar judul ini yang sedang di rak, atau sisa eksemplar tidak
+     *         mencukupi peminjaman aktif judul ini
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public boolean withdrawCopy(String barcode) throws SQLException {
+        String bookId;
+        try (Connection conn = db.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(LoanService.SQL_FIND_BARCODE)) {
+                pstmt.setString(1, barcode);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    bookId = rs.getString(1);
+                }
+            }
+            conn.setAutoCommit(false);
+            try {
+                // Title-only loans do not mark a copy, so every open loan still needs a copy after this one goes
+                int total = lockBook(conn, bookId);
+                if (total < 0 || count(conn, SQL_COUNT_OPEN_LOANS, bookId) >= total) {
+                    conn.rollback();
+                    return false;
+                }
+                int changed;
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_WITHDRAW_FROM_TOTAL)) {
+                    pstmt.setString(1, bookId);
+                    changed = pstmt.executeUpdate();
+                }
+                if (changed > 0) {
+                    try (PreparedStatement pstmt = conn.prepareStatement(SQL_DELETE_COPY)) {
+                        pstmt.setString(1, barcode);
+                        changed = pstmt.executeUpdate();
+                    }
+                }
+                if (changed == 0) {
+                    conn.rollback();
+                    return false;
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        holds.released(bookId, null);
+        return true;
+    }
+
+    /**
+     * Mengunci baris buku
+     * @return total_copies buku, atau -1 jika buku tidak ditemukan
+     */
+    private static int lockBook(Connection conn, String bookId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_LOCK_BOOK)) {
+            pstmt.setString(1, bookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    private static int count(Connection conn, String sql, String bookId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, bookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+}
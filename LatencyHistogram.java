@@ -0,0 +1,165 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram latensi dengan bucket log-linear tetap
+ * - Setiap pangkat dua dibagi menjadi 8 sub-bucket, sehingga galat relatif paling besar 12,5%
+ * - Rentang 1 mikrodetik sampai sekitar 25 hari; nilai di luar rentang masuk bucket terakhir
+ * - Pencatatan tidak mengalokasikan objek dan tidak memakai lock, sehingga aman
+ *   dipanggil dari banyak thread dan dibiarkan aktif di produksi
+ * - Operasi yang melebihi ambang lambat (METRICS_SLOW_MS) dicatat ke System.err
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_SHIFT = 37;
+    private static final int BUCKETS = (MAX_SHIFT + 2) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /** Ambang operasi lambat; bawaan tidak pernah tercapai sehingga tidak ada yang dicatat */
+    private static final long SLOW_NANOS = Long.parseLong(
+            Database.setting("METRICS_SLOW_MS", String.valueOf(Long.MAX_VALUE / 1_000_000L))) * 1_000_000L;
+
+    /**
+     * Konstruktor untuk membuat histogram kosong
+     * @param name Nama operasi yang diukur, dipakai sebagai label metrik
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Mencatat durasi sejak waktu mulai
+     * @param startNanos Nilai System.nanoTime() saat operasi dimulai
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Mencatat satu durasi
+     * @param nanos Durasi dalam nanodetik
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0L, nanos / 1000L);
+        counts.incrementAndGet(bucketFor(micros));
+        count.increment();
+        totalMicros.add(micros);
+        long current;
+        while (micros > (current = maxMicros.get())) {
+            if (maxMicros.compareAndSet(current, micros)) {
+                break;
+            }
+        }
+        if (nanos >= SLOW_NANOS) {
+            System.err.println("Slow " + name + ": " + (nanos / 1_000_000L) + " ms");
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Total durasi yang tercatat dalam detik
+     */
+    public double getSumSeconds() {
+        return totalMicros.sum() / 1_000_000.0;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : totalMicros.sum() / (double) n / 1000.0;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileMillis(0.5);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileMillis(0.99);
+    }
+
+    @Override
+    public double getP999Millis() {
+        return percentileMillis(0.999);
+    }
+
+    /**
+     * Memperkirakan persentil dari isi bucket
+     * @param quantile Nilai antara 0 dan 1, misalnya 0.99
+     * @return Batas atas bucket yang memuat persentil tersebut, dalam milidetik
+     */
+    public double percentileMillis(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+        long target = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                // Never report more than the largest value actually seen
+                return Math.min(upperBound(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Mengosongkan histogram, misalnya setelah pemanasan benchmark
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        totalMicros.reset();
+        maxMicros.set(0);
+    }
+
+    static int bucketFor(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKETS - 1;
+        }
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * Antarmuka JMX untuk histogram latensi satu operasi
+ */
+public interface LatencyHistogramMXBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+}
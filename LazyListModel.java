@@ -0,0 +1,249 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import javax.swing.AbstractListModel;
+import javax.swing.BoundedRangeModel;
+import javax.swing.ComboBoxModel;
+import javax.swing.JComboBox;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+import javax.swing.plaf.basic.ComboPopup;
+
+/**
+ * Model combo box yang memuat data per halaman hanya ketika dibutuhkan
+ * - Hanya halaman pertama yang dimuat di awal; halaman berikutnya dimuat ketika
+ *   popup combo box digulir mendekati akhir data yang sudah dimuat
+ * - Query dijalankan di thread latar belakang, hasil diterapkan di EDT
+ * - Mendukung filter awalan untuk pencarian sambil mengetik (type-ahead)
+ * - Perubahan dari CatalogSync diterapkan per elemen tanpa memuat ulang
+ * @param <T> Tipe elemen (Book atau Member)
+ */
+public class LazyListModel<T> extends AbstractListModel<T> implements ComboBoxModel<T> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Sumber data per halaman
+     * @param <T> Tipe elemen
+     */
+    public interface PageLoader<T> {
+        /**
+         * Memuat satu halaman data
+         * @param afterId ID terakhir yang sudah dimuat, null untuk halaman pertama
+         * @param filter Filter awalan, kosong untuk semua data
+         * @param limit Jumlah maksimal baris
+         * @return Daftar elemen berurutan berdasarkan ID
+         * @throws SQLException jika terjadi kesalahan pada database
+         */
+        List<T> load(String afterId, String filter, int limit) throws SQLException;
+    }
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "catalog-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final PageLoader<T> loader;
+    private final Function<T, String> idOf;
+    private final int pageSize;
+
+    // Only touched on the EDT
+    private final List<T> items = new ArrayList<>();
+    private Object selected;
+    private String filter = "";
+    private boolean exhausted = false;
+    private boolean loading = false;
+    private int generation = 0;
+
+    /**
+     * Konstruktor untuk membuat model
+     * @param loader Sumber data per halaman
+     * @param idOf Fungsi untuk mengambil ID elemen sebagai kunci keyset
+     * @param pageSize Jumlah baris per halaman
+     */
+    public LazyListModel(PageLoader<T> loader, Function<T, String> idOf, int pageSize) {
+        this.loader = loader;
+        this.idOf = idOf;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public int getSize() {
+        return items.size();
+    }
+
+    @Override
+    public T getElementAt(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * Memasang pemuat halaman berikutnya pada scroll bar popup combo box
+     * @param combo Combo box yang memakai model ini
+     */
+    public void attachTo(JComboBox<T> combo) {
+        Object child = combo.getUI().getAccessibleChild(combo, 0);
+        if (!(child instanceof ComboPopup)) {
+            return;
+        }
+        JScrollPane scroller = (JScrollPane) SwingUtilities.getAncestorOfClass(
+                JScrollPane.class, ((ComboPopup) child).getList());
+        if (scroller == null) {
+            return;
+        }
+        scroller.getVerticalScrollBar().addAdjustmentListener(e -> {
+            BoundedRangeModel range = ((JScrollBar) e.getAdjustable()).getModel();
+            // Prefetch once the visible window reaches the last quarter of what is loaded
+            int remaining = range.getMaximum() - (range.getValue() + range.getExtent());
+            if (remaining <= range.getMaximum() / 4) {
+                loadNextPage();
+            }
+        });
+    }
+
+    @Override
+    public void setSelectedItem(Object item) {
+        if (item == null ? selected != null : !item.equals(selected)) {
+            selected = item;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+
+    @Override
+    public Object getSelectedItem() {
+        return selected;
+    }
+
+    /**
+     * Mengganti filter pencarian dan memuat ulang dari halaman pertama
+     * @param newFilter Teks awalan yang dicari
+     */
+    public void setFilter(String newFilter) {
+        filter = newFilter == null ? "" : newFilter.trim();
+        reload();
+    }
+
+    /**
+     * Mengosongkan data yang sudah dimuat dan memuat ulang halaman pertama
+     */
+    public void reload() {
+        generation++;
+        int oldSize = items.size();
+        items.clear();
+        exhausted = false;
+        loading = false;
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        loadNextPage();
+    }
+
+    /**
+     * Menerapkan elemen yang berubah ke data yang sudah dimuat, harus dipanggil di EDT
+     * - Elemen yang sudah dimuat diganti dengan salinan terbaru
+     * - Elemen baru disisipkan sesuai urutan ID jika berada dalam rentang yang sudah dimuat
+     *   dan tidak ada filter aktif; selain itu akan muncul saat halaman terkait dimuat
+     * @param changed Elemen yang berubah
+     */
+    public void applyChanges(List<T> changed) {
+        for (T item : changed) {
+            String id = idOf.apply(item);
+            int index = indexOf(id);
+            if (index >= 0) {
+                items.set(index, item);
+                fireContentsChanged(this, index, index);
+                if (selected != null && idOf.apply(asElement(selected)).equals(id)) {
+                    selected = item;
+                    fireContentsChanged(this, -1, -1);
+                }
+            } else if (filter.isEmpty() && (exhausted || -index - 1 < items.size())) {
+                int insertAt = -index - 1;
+                items.add(insertAt, item);
+                fireIntervalAdded(this, insertAt, insertAt);
+            }
+        }
+    }
+
+    /**
+     * Mencari posisi elemen berdasarkan ID dengan binary search, karena data terurut berdasarkan ID
+     * @return Indeks elemen, atau (-(posisi sisip) - 1) jika tidak ditemukan
+     */
+    private int indexOf(String id) {
+        int low = 0;
+        int high = items.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = idOf.apply(items.get(mid)).compareTo(id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void loadNextPage() {
+        if (loading || exhausted) {
+            return;
+        }
+        loading = true;
+        final int requestGeneration = generation;
+        final String afterId = items.isEmpty() ? null : idOf.apply(items.get(items.size() - 1));
+        final String requestFilter = filter;
+        LOADER.execute(() -> {
+            try {
+                List<T> page = loader.load(afterId, requestFilter, pageSize);
+                SwingUtilities.invokeLater(() -> applyPage(requestGeneration, page));
+            } catch (SQLException | RuntimeException e) {
+                // Any failure must clear loading, or the list never asks for another page
+                System.err.println("Error loading catalog page: " + e);
+                SwingUtilities.invokeLater(() -> {
+                    if (requestGeneration == generation) {
+                        loading = false;
+                    }
+                });
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private T asElement(Object item) {
+        return (T) item;
+    }
+
+    private void applyPage(int requestGeneration, List<T> page) {
+        if (requestGeneration != generation) {
+            // The filter changed or the model was reloaded while this page was in flight
+            return;
+        }
+        loading = false;
+        exhausted = page.size() < pageSize;
+        if (page.isEmpty()) {
+            return;
+        }
+        int first = items.size();
+        items.addAll(page);
+        fireIntervalAdded(this, first, items.size() - 1);
+        if (selected == null) {
+            setSelectedItem(items.get(0));
+        } else if (first == 0) {
+            // Swap a selection kept across reload for its fresh copy so its state is current
+            String selectedId = idOf.apply(asElement(selected));
+            for (T item : page) {
+                if (idOf.apply(item).equals(selectedId)) {
+                    selected = item;
+                    fireContentsChanged(this, -1, -1);
+                    break;
+                }
+            }
+        }
+    }
+}
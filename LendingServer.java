@@ -0,0 +1,872 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTimeoutException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Server HTTP/JSON untuk kios peminjaman mandiri dan aplikasi mobile
+ * Endpoint:
+ *   POST /loans                      {"bookId":"B001","memberId":"M001","date":"2024-01-31"}
+ *                                    atau {"barcode":"B001-2","memberId":"M001"} untuk eksemplar tertentu
+ *   POST /returns                    {"bookId":"B001","memberId":"M001"}
+ *   POST /holds                      {"bookId":"B001","memberId":"M001"}
+ *   POST /copies                     {"bookId":"B001","barcode":"B001-2"} (staf, lihat SERVER_ADMIN_TOKEN)
+ *   POST /batch                      manifest teks, satu operasi per baris (staf, lihat SERVER_ADMIN_TOKEN):
+ *                                    loan<TAB>B001<TAB>M001[<TAB>2024-01-31] atau return<TAB>B001<TAB>M001
+ *   GET  /books/{id}/availability
+ *   GET  /members/{id}/loans
+ *   GET  /members/{id}/history?view=active|returned|overdue&cursor=...&limit=20
+ *   GET  /search?q=java%20prog&available=true&limit=10
+ *   GET  /analytics/titles?from=2024-01-01&to=2024-01-31&limit=10
+ *   GET  /analytics/durations?from=...&to=...
+ *   GET  /analytics/hourly?from=...&to=...
+ *   GET  /metrics                    (format teks Prometheus)
+ * - Setiap request ditangani di virtual thread sendiri jika JDK mendukungnya
+ * - Jumlah request yang memakai database dibatasi semaphore seukuran pool koneksi;
+ *   request yang tidak mendapat giliran dalam SERVER_QUEUE_TIMEOUT_MS dijawab 503
+ * - Field "date" opsional, bawaannya tanggal hari ini
+ * - Endpoint /analytics hanya membaca tabel rollup; rentang bawaannya 30 hari terakhir
+ * - POST /copies mengubah koleksi, jadi hanya aktif jika SERVER_ADMIN_TOKEN diatur dan
+ *   request membawa header "Authorization: Bearer <token>"; begitu juga POST /batch
+ * - POST /batch memproses manifest hasil scan lewat BatchLoanService dan menjawab status per baris
+ *   dengan urutan yang sama; baris kosong dan baris yang diawali # dilewati
+ */
+public class LendingServer {
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_MANIFEST_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final int MAX_HISTORY_PAGE = 100;
+    private static final int MAX_ANALYTICS_TITLES = 100;
+    private static final int DEFAULT_ANALYTICS_DAYS = 30;
+
+    private final LoanService loanService;
+    private final CatalogReader catalog;
+    private final InventoryService inventory;
+    private final BatchLoanService batch;
+    private final CatalogIndex index = new CatalogIndex();
+    private final LoanHistory history;
+    private final OverdueEngine overdue;
+    private final CirculationAnalytics analytics;
+    private final Semaphore admission;
+    private final long queueTimeoutMillis;
+    private HttpServer server;
+    private ExecutorService executor;
+    private byte[] adminToken;
+
+    /**
+     * Konstruktor untuk membuat server peminjaman
+     * @param db Sumber koneksi database
+     * @param maxInFlight Jumlah maksimal request yang memakai database bersamaan
+     * @param queueTimeoutMillis Lama menunggu giliran sebelum request ditolak dengan 503
+     */
+    public LendingServer(Database db, int maxInFlight, long queueTimeoutMillis) {
+        this.loanService = new LoanService(db);
+        this.catalog = new CatalogReader(db);
+        this.inventory = new InventoryService(db, loanService.getHolds());
+        this.batch = new BatchLoanService(db, loanService.getCache(), loanService.getHolds(),
+                BatchLoanService.DEFAULT_CHUNK_SIZE);
+        this.history = new LoanHistory(db);
+        this.overdue = new OverdueEngine(db);
+        this.analytics = new CirculationAnalytics(db);
+        this.admission = new Semaphore(maxInFlight, true);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    /**
+     * Menjalankan server dengan pengaturan dari system property/environment variable
+     * - SERVER_PORT (bawaan 8080)
+     * - SERVER_MAX_IN_FLIGHT (bawaan ukuran maksimum pool koneksi)
+     * - SERVER_QUEUE_TIMEOUT_MS (bawaan 2000)
+     * - OVERDUE_INTERVAL_MS (bawaan 3600000, 0 untuk mematikan) interval penilaian denda
+     * - SEARCH_SYNC_MS (bawaan 2000) interval pembaruan indeks pencarian katalog
+     * - ANALYTICS_INTERVAL_MS (bawaan 300000, 0 untuk mematikan) interval rollup sirkulasi
+     * - SERVER_ADMIN_TOKEN (bawaan kosong) token staf untuk POST /copies dan POST /batch; tanpa token
+     *   kedua endpoint itu tidak aktif
+     * @return Server yang sudah berjalan
+     * @throws IOException jika port tidak bisa dibuka
+     */
+    public static LendingServer startFromSettings() throws IOException {
+        Database db = new Database();
+        // Same default as the pool size, which may not exist yet if the database is still unreachable
+        int maxInFlight = Integer.parseInt(Database.setting("SERVER_MAX_IN_FLIGHT",
+                Database.setting("DB_POOL_MAX", "10")));
+        long queueTimeout = Long.parseLong(Database.setting("SERVER_QUEUE_TIMEOUT_MS", "2000"));
+        LendingServer lendingServer = new LendingServer(db, maxInFlight, queueTimeout);
+        lendingServer.start(Integer.parseInt(Database.setting("SERVER_PORT", "8080")));
+        lendingServer.loanService.start();
+        long overdueInterval = Long.parseLong(Database.setting("OVERDUE_INTERVAL_MS", "3600000"));
+        if (overdueInterval > 0) {
+            lendingServer.overdue.start(overdueInterval);
+        }
+        lendingServer.index.start(db, Long.parseLong(Database.setting("SEARCH_SYNC_MS", "2000")));
+        long analyticsInterval = Long.parseLong(Database.setting("ANALYTICS_INTERVAL_MS", "300000"));
+        if (analyticsInterval > 0) {
+            lendingServer.analytics.start(analyticsInterval);
+        }
+        return lendingServer;
+    }
+
+    /**
+     * Membuka port dan mulai melayani request
+     * @param port Port HTTP
+     * @throws IOException jika port tidak bisa dibuka
+     */
+    public void start(int port) throws IOException {
+        int backlog = Integer.parseInt(Database.setting("SERVER_BACKLOG", "1024"));
+        server = HttpServer.create(new InetSocketAddress(port), backlog);
+        executor = BackgroundTasks.newExecutor("http");
+        server.setExecutor(executor);
+        server.createContext("/loans", exchange -> handle(exchange, "POST", this::loan));
+        server.createContext("/returns", exchange -> handle(exchange, "POST", this::returnBook));
+        server.createContext("/holds", exchange -> handle(exchange, "POST", this::placeHold));
+        String token = Database.setting("SERVER_ADMIN_TOKEN", "");
+        if (!token.isEmpty()) {
+            // Kiosks and the mobile app are unauthenticated, so staff endpoints stay off without a token
+            adminToken = token.getBytes(StandardCharsets.UTF_8);
+            server.createContext("/copies", exchange -> handle(exchange, "POST", this::addCopy));
+            server.createContext("/batch", exchange -> handle(exchange, "POST", this::processManifest));
+        }
+        server.createContext("/books/", exchange -> handle(exchange, "GET", this::availability));
+        server.createContext("/members/", exchange -> handle(exchange, "GET",
+                exchange.getRequestURI().getPath().endsWith("/history") ? this::memberHistory : this::memberLoans));
+        server.createContext("/search", exchange -> handle(exchange, "GET", this::search));
+        server.createContext("/analytics/titles", exchange -> handle(exchange, "GET", this::busiestTitles));
+        server.createContext("/analytics/durations", exchange -> handle(exchange, "GET", this::loanDurations));
+        server.createContext("/analytics/hourly", exchange -> handle(exchange, "GET", this::hourlyLoad));
+        server.createContext("/metrics", exchange -> {
+            try {
+                send(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", Metrics.scrape());
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        System.out.println("Lending server listening on port " + port + " (max " + admission.availablePermits()
+                + " requests in flight)");
+    }
+
+    /**
+     * Menghentikan server
+     * @param delaySeconds Waktu tunggu untuk request yang sedang berjalan
+     */
+    public void stop(int delaySeconds) {
+        if (server != null) {
+            server.stop(delaySeconds);
+            executor.shutdownNow();
+            loanService.stop();
+            overdue.stop();
+            analytics.stop();
+            index.stop();
+            server = null;
+        }
+    }
+
+    /**
+     * Respons endpoint: status HTTP dan isi JSON
+     */
+    private static final class Response {
+        final int status;
+        final Map<String, Object> body;
+
+        Response(int status, Map<String, Object> body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private interface Endpoint {
+        Response serve(HttpExchange exchange) throws Exception;
+    }
+
+    /**
+     * Kesalahan request yang langsung dijawab dengan status HTTP tertentu
+     */
+    private static final class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+        final String code;
+
+        RequestException(int status, String code, String message) {
+            super(message);
+            this.status = status;
+            this.code = code;
+        }
+
+        static RequestException badRequest(String message) {
+            return new RequestException(400, "bad_request", message);
+        }
+    }
+
+    /**
+     * Menjalankan endpoint di dalam batas admission dan mengubah exception menjadi status HTTP
+     */
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        try {
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", method);
+                sendJson(exchange, 405, error("method_not_allowed", "Use " + method));
+                return;
+            }
+            if (!admission.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                // Shed load before it reaches the connection pool
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendJson(exchange, 503, error("busy", "Server is busy, try again shortly"));
+                return;
+            }
+            Response response;
+            try {
+                response = endpoint.serve(exchange);
+            } finally {
+                admission.release();
+            }
+            sendJson(exchange, response.status, response.body);
+        } catch (RequestException e) {
+            sendJson(exchange, e.status, error(e.code, e.getMessage()));
+        } catch (BookNotAvailableException e) {
+            sendJson(exchange, 409, error("book_not_available", e.getMessage()));
+        } catch (LoanLimitExceededException e) {
+            sendJson(exchange, 409, error("loan_limit_exceeded", e.getMessage()));
+        } catch (NoActiveLoanException e) {
+            sendJson(exchange, 409, error("no_active_loan", e.getMessage()));
+        } catch (HoldNotAllowedException e) {
+            sendJson(exchange, 409, error("hold_not_allowed", e.getMessage()));
+        } catch (SQLTimeoutException e) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendJson(exchange, 503, error("busy", "Server is busy, try again shortly"));
+        } catch (SQLException e) {
+            // Driver messages can carry SQL and schema details, so they only go to the log
+            System.err.println("Error handling " + exchange.getRequestURI() + ": " + e);
+            e.printStackTrace();
+            sendJson(exchange, 500, error("database_error", "Database error"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendJson(exchange, 503, error("busy", "Interrupted"));
+        } catch (Exception e) {
+            System.err.println("Error handling " + exchange.getRequestURI() + ": " + e);
+            e.printStackTrace();
+            sendJson(exchange, 500, error("internal_error", "Internal error"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response loan(HttpExchange exchange) throws Exception {
+        Map<String, String> request = readJson(exchange);
+        Member member = requireMember(request);
+        String barcode = request.get("barcode");
+        LoanResult result;
+        if (barcode != null && !barcode.isEmpty()) {
+            result = loanService.loanCopy(barcode, member, dateOf(request));
+        } else {
+            String bookId = require(request, "bookId");
+            Book book = catalog.findBook(bookId);
+            if (book == null) {
+                Metrics.reject(Metrics.Rejection.UNKNOWN_BOOK);
+                return new Response(404, error("unknown_book", "Book not found: " + bookId));
+            }
+            result = loanService.loan(book, member, dateOf(request));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("transactionId", result.getTransactionId());
+        body.put("bookId", result.getBookId());
+        body.put("memberId", result.getMemberId());
+        body.put("date", result.getDate().toString());
+        body.put("dueDate", result.getDueDate().toString());
+        return new Response(201, body);
+    }
+
+    private Response returnBook(HttpExchange exchange) throws Exception {
+        Map<String, String> request = readJson(exchange);
+        Member member = requireMember(request);
+        Book book = new Book(require(request, "bookId"), "", "");
+        LoanResult result = loanService.returnBook(book, member, dateOf(request));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("bookId", result.getBookId());
+        body.put("memberId", result.getMemberId());
+        body.put("date", result.getDate().toString());
+        return new Response(200, body);
+    }
+
+    private Response placeHold(HttpExchange exchange) throws Exception {
+        Map<String, String> request = readJson(exchange);
+        Member member = requireMember(request);
+        String bookId = require(request, "bookId");
+        Book book = catalog.findBook(bookId);
+        if (book == null) {
+            Metrics.reject(Metrics.Rejection.UNKNOWN_BOOK);
+            return new Response(404, error("unknown_book", "Book not found: " + bookId));
+        }
+        int position = loanService.getHolds().place(book, member);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("bookId", bookId);
+        body.put("memberId", member.getId());
+        body.put("position", position);
+        return new Response(201, body);
+    }
+
+    private Response addCopy(HttpExchange exchange) throws Exception {
+        requireAdmin(exchange);
+        Map<String, String> request = readJson(exchange);
+        String bookId = require(request, "bookId");
+        String barcode = require(request, "barcode");
+        if (catalog.findBook(bookId) == null) {
+            Metrics.reject(Metrics.Rejection.UNKNOWN_BOOK);
+            return new Response(404, error("unknown_book", "Book not found: " + bookId));
+        }
+        HoldQueue.Hold heldFor;
+        try {
+            heldFor = inventory.addCopy(bookId, barcode, dateOf(request));
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return new Response(409, error("duplicate_barcode", "Barcode already registered: " + barcode));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("bookId", bookId);
+        body.put("barcode", barcode);
+        body.put("heldFor", heldFor != null ? heldFor.getMemberId() : null);
+        return new Response(201, body);
+    }
+
+    private Response processManifest(HttpExchange exchange) throws Exception {
+        requireAdmin(exchange);
+        List<LoanOperation> operations = parseManifest(readBody(exchange, MAX_MANIFEST_BYTES));
+        if (operations.isEmpty()) {
+            throw RequestException.badRequest("Manifest has no operations");
+        }
+        List<BatchItemResult> results = batch.process(operations);
+        List<Object> items = new ArrayList<>(results.size());
+        for (BatchItemResult result : results) {
+            LoanOperation op = result.getOperation();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("type", op.getType().name().toLowerCase(Locale.ROOT));
+            item.put("bookId", op.getBookId());
+            item.put("memberId", op.getMemberId());
+            item.put("status", result.getStatus().name());
+            item.put("dueDate", result.getDueDate() != null ? result.getDueDate().toString() : null);
+            // Failed chunks carry the driver message, which stays in the log like other database errors
+            item.put("message", result.getStatus() == BatchItemResult.Status.ERROR ? "Database error"
+                    : result.getMessage());
+            items.add(item);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("summary", new EnumMap<>(BatchLoanService.summarize(results)));
+        body.put("results", items);
+        return new Response(200, body);
+    }
+
+    /**
+     * Mem-parsing manifest POST /batch: jenis, ID buku, ID anggota dan tanggal opsional dipisah tab
+     */
+    static List<LoanOperation> parseManifest(String manifest) throws RequestException {
+        List<LoanOperation> operations = new ArrayList<>();
+        String[] lines = manifest.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            if (fields.length < 3 || fields.length > 4) {
+                throw RequestException.badRequest("Line " + (i + 1)
+                        + ": expected type, bookId, memberId and optional date");
+            }
+            LocalDate date;
+            try {
+                date = fields.length == 4 ? LocalDate.parse(fields[3].trim()) : LocalDate.now();
+            } catch (DateTimeParseException e) {
+                throw RequestException.badRequest("Line " + (i + 1) + ": invalid date: " + fields[3]);
+            }
+            String bookId = fields[1].trim();
+            String memberId = fields[2].trim();
+            if (bookId.isEmpty() || memberId.isEmpty()) {
+                throw RequestException.badRequest("Line " + (i + 1) + ": missing bookId or memberId");
+            }
+            switch (fields[0].trim().toLowerCase(Locale.ROOT)) {
+                case "loan": operations.add(LoanOperation.loan(bookId, memberId, date)); break;
+                case "return": operations.add(LoanOperation.ret(bookId, memberId, date)); break;
+                default: throw RequestException.badRequest("Line " + (i + 1) + ": unknown type: " + fields[0]);
+            }
+        }
+        return operations;
+    }
+
+    private Response availability(HttpExchange exchange) throws Exception {
+        String id = pathId(exchange, "/books/", "/availability");
+        // A single counter read; the cache only knows whether a copy is left, not how many
+        Book book = catalog.findBook(id);
+        if (book == null) {
+            return new Response(404, error("unknown_book", "Book not found: " + id));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("bookId", id);
+        body.put("available", book.isAvailable());
+        body.put("availableCopies", book.getAvailableCopies());
+        body.put("totalCopies", book.getTotalCopies());
+        body.put("waitingHolds", loanService.getHolds().getWaitingCount(id));
+        return new Response(200, body);
+    }
+
+    private Response memberLoans(HttpExchange exchange) throws Exception {
+        String id = pathId(exchange, "/members/", "/loans");
+        Member member = catalog.findMember(id);
+        if (member == null) {
+            return new Response(404, error("unknown_member", "Member not found: " + id));
+        }
+        LoanHistory.Summary summary = history.getSummary(id);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("memberId", id);
+        body.put("type", member.getType());
+        body.put("activeLoans", summary.getActiveLoans());
+        body.put("loanLimit", member.getLoanLimit());
+        body.put("totalLoans", summary.getTotalLoans());
+        body.put("lastActivity", summary.getLastActivity());
+        body.put("accruedFines", overdue.getAccruedFines(id, LocalDate.now()));
+        return new Response(200, body);
+    }
+
+    private Response memberHistory(HttpExchange exchange) throws Exception {
+        String id = pathId(exchange, "/members/", "/history");
+        Map<String, String> params = queryParams(exchange);
+        LoanHistory.View view;
+        int limit;
+        try {
+            view = LoanHistory.View.valueOf(params.getOrDefault("view", "active").toUpperCase(Locale.ROOT));
+            limit = Integer.parseInt(params.getOrDefault("limit", String.valueOf(LoanHistory.DEFAULT_PAGE_SIZE)));
+        } catch (IllegalArgumentException e) {
+            throw RequestException.badRequest("Expected view=active|returned|overdue and a numeric limit");
+        }
+        if (limit < 1 || limit > MAX_HISTORY_PAGE) {
+            throw RequestException.badRequest("Limit must be between 1 and " + MAX_HISTORY_PAGE);
+        }
+        if (catalog.findMember(id) == null) {
+            return new Response(404, error("unknown_member", "Member not found: " + id));
+        }
+        LoanHistory.Page page;
+        try {
+            page = history.read(id, view, params.get("cursor"), LocalDate.now(), limit);
+        } catch (IllegalArgumentException e) {
+            throw RequestException.badRequest(e.getMessage());
+        }
+        List<Map<String, Object>> loans = new ArrayList<>();
+        for (LoanHistory.Entry entry : page.getEntries()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("transactionId", entry.getTransactionId());
+            item.put("bookId", entry.getBookId());
+            item.put("title", entry.getTitle());
+            item.put("loanDate", entry.getLoanDate());
+            item.put("dueDate", entry.getDueDate());
+            item.put("returnDate", entry.getReturnDate());
+            item.put("barcode", entry.getCopyBarcode());
+            loans.add(item);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("memberId", id);
+        body.put("view", view.name().toLowerCase(Locale.ROOT));
+        body.put("loans", loans);
+        body.put("nextCursor", page.getNextCursor());
+        return new Response(200, body);
+    }
+
+    private Response search(HttpExchange exchange) throws Exception {
+        Map<String, String> params = queryParams(exchange);
+        String q = params.getOrDefault("q", "").trim();
+        if (q.isEmpty()) {
+            throw RequestException.badRequest("Missing query parameter: q");
+        }
+        boolean availableOnly = Boolean.parseBoolean(params.get("available"));
+        int limit;
+        try {
+            limit = Math.min(Integer.parseInt(params.getOrDefault("limit", "10")), MAX_SEARCH_RESULTS);
+        } catch (NumberFormatException e) {
+            throw RequestException.badRequest("Invalid limit: " + params.get("limit"));
+        }
+        if (limit < 1) {
+            throw RequestException.badRequest("Invalid limit: " + limit);
+        }
+        List<Book> books;
+        if (index.isReady()) {
+            books = index.search(q, availableOnly, limit);
+        } else {
+            // Until the first load finishes, fall back to a title prefix match in the database
+            books = new ArrayList<>();
+            for (Book book : catalog.readBooks(null, q, limit)) {
+                if (!availableOnly || book.isAvailable()) {
+                    books.add(book);
+                }
+            }
+        }
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Book book : books) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("bookId", book.getId());
+            item.put("title", book.getTitle());
+            item.put("author", book.getAuthor());
+            item.put("availableCopies", book.getAvailableCopies());
+            item.put("totalCopies", book.getTotalCopies());
+            results.add(item);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("query", q);
+        body.put("indexed", index.isReady());
+        body.put("results", results);
+        return new Response(200, body);
+    }
+
+    private Response busiestTitles(HttpExchange exchange) throws Exception {
+        Map<String, String> params = queryParams(exchange);
+        LocalDate[] range = analyticsRange(params);
+        int limit;
+        try {
+            limit = Math.min(Integer.parseInt(params.getOrDefault("limit", "10")), MAX_ANALYTICS_TITLES);
+        } catch (NumberFormatException e) {
+            throw RequestException.badRequest("Invalid limit: " + params.get("limit"));
+        }
+        if (limit < 1) {
+            throw RequestException.badRequest("Invalid limit: " + limit);
+        }
+        List<Map<String, Object>> titles = new ArrayList<>();
+        for (CirculationAnalytics.TitleCount title : analytics.busiestTitles(range[0], range[1], limit)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("bookId", title.getBookId());
+            item.put("loans", title.getLoans());
+            titles.add(item);
+        }
+        Map<String, Object> body = analyticsBody(range);
+        body.put("titles", titles);
+        return new Response(200, body);
+    }
+
+    private Response loanDurations(HttpExchange exchange) throws Exception {
+        LocalDate[] range = analyticsRange(queryParams(exchange));
+        List<Map<String, Object>> memberTypes = new ArrayList<>();
+        for (CirculationAnalytics.MemberTypeDurations durations : analytics.loanDurations(range[0], range[1])) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("memberType", durations.getMemberType());
+            item.put("loans", durations.getLoans());
+            item.put("returns", durations.getReturns());
+            item.put("averageDays", durations.getAverageDays());
+            item.put("lateReturns", durations.getLateReturns());
+            memberTypes.add(item);
+        }
+        Map<String, Object> body = analyticsBody(range);
+        body.put("memberTypes", memberTypes);
+        return new Response(200, body);
+    }
+
+    private Response hourlyLoad(HttpExchange exchange) throws Exception {
+        LocalDate[] range = analyticsRange(queryParams(exchange));
+        List<Map<String, Object>> hours = new ArrayList<>();
+        for (CirculationAnalytics.HourlyLoad load : analytics.hourlyLoad(range[0], range[1])) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("hour", load.getHour());
+            item.put("loans", load.getLoans());
+            item.put("returns", load.getReturns());
+            hours.add(item);
+        }
+        Map<String, Object> body = analyticsBody(range);
+        body.put("hours", hours);
+        return new Response(200, body);
+    }
+
+    private static LocalDate[] analyticsRange(Map<String, String> params) throws RequestException {
+        LocalDate to;
+        LocalDate from;
+        try {
+            to = params.containsKey("to") ? LocalDate.parse(params.get("to")) : LocalDate.now();
+            from = params.containsKey("from") ? LocalDate.parse(params.get("from"))
+                    : to.minusDays(DEFAULT_ANALYTICS_DAYS - 1);
+        } catch (DateTimeParseException e) {
+            throw RequestException.badRequest("Invalid date: " + e.getParsedString());
+        }
+        if (from.isAfter(to)) {
+            throw RequestException.badRequest("from must not be after to");
+        }
+        return new LocalDate[] {from, to};
+    }
+
+    private static Map<String, Object> analyticsBody(LocalDate[] range) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("from", range[0]);
+        body.put("to", range[1]);
+        return body;
+    }
+
+    private void requireAdmin(HttpExchange exchange) throws RequestException {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        byte[] presented = header != null && header.startsWith("Bearer ")
+                ? header.substring(7).getBytes(StandardCharsets.UTF_8) : new byte[0];
+        // Constant time, so the token cannot be guessed from response times
+        if (!MessageDigest.isEqual(presented, adminToken)) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            throw new RequestException(401, "unauthorized", "Staff token required");
+        }
+    }
+
+    private Member requireMember(Map<String, String> request) throws RequestException, SQLException {
+        String memberId = require(request, "memberId");
+        Member member = catalog.findMember(memberId);
+        if (member == null) {
+            Metrics.reject(Metrics.Rejection.UNKNOWN_MEMBER);
+            throw new RequestException(404, "unknown_member", "Member not found: " + memberId);
+        }
+        return member;
+    }
+
+    private static String pathId(HttpExchange exchange, String prefix, String suffix) throws RequestException {
+        String path = exchange.getRequestURI().getPath();
+        if (!path.startsWith(prefix) || !path.endsWith(suffix) || path.length() <= prefix.length() + suffix.length()) {
+            throw RequestException.badRequest("Expected " + prefix + "{id}" + suffix);
+        }
+        return path.substring(prefix.length(), path.length() - suffix.length());
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new LinkedHashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String require(Map<String, String> request, String field) throws RequestException {
+        String value = request.get(field);
+        if (value == null || value.isEmpty()) {
+            throw RequestException.badRequest("Missing field: " + field);
+        }
+        return value;
+    }
+
+    private static LocalDate dateOf(Map<String, String> request) throws RequestException {
+        String date = request.get("date");
+        if (date == null || date.isEmpty()) {
+            return LocalDate.now();
+        }
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw RequestException.badRequest("Invalid date: " + date);
+        }
+    }
+
+    private static Map<String, Object> error(String code, String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", code);
+        body.put("message", message);
+        return body;
+    }
+
+    private static Map<String, String> readJson(HttpExchange exchange) throws IOException, RequestException {
+        return parseObject(readBody(exchange, MAX_BODY_BYTES));
+    }
+
+    private static String readBody(HttpExchange exchange, int maxBytes) throws IOException, RequestException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] chunk = new byte[4096];
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                if (buffer.size() + n > maxBytes) {
+                    throw RequestException.badRequest("Request body too large");
+                }
+                buffer.write(chunk, 0, n);
+            }
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Mem-parsing objek JSON datar; nilai angka dan boolean dikembalikan sebagai teks
+     */
+    static Map<String, String> parseObject(String json) throws RequestException {
+        Map<String, String> result = new LinkedHashMap<>();
+        int[] pos = { skipSpace(json, 0) };
+        expect(json, pos, '{');
+        if (peek(json, pos) == '}') {
+            pos[0]++;
+            return result;
+        }
+        while (true) {
+            String key = readString(json, pos);
+            expect(json, pos, ':');
+            String value;
+            if (peek(json, pos) == '"') {
+                value = readString(json, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(pos[0])) < 0) {
+                    pos[0]++;
+                }
+                value = json.substring(start, pos[0]);
+                if (value.isEmpty() || value.startsWith("{") || value.startsWith("[")) {
+                    throw RequestException.badRequest("Only flat JSON objects are accepted");
+                }
+                if (value.equals("null")) {
+                    value = null;
+                }
+            }
+            result.put(key, value);
+            char next = peek(json, pos);
+            pos[0]++;
+            if (next == '}') {
+                return result;
+            }
+            if (next != ',') {
+                throw RequestException.badRequest("Malformed JSON at offset " + (pos[0] - 1));
+            }
+        }
+    }
+
+    private static String readString(String json, int[] pos) throws RequestException {
+        expect(json, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (pos[0] < json.length()) {
+            char c = json.charAt(pos[0]++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c == '\\' && pos[0] < json.length()) {
+                char escaped = json.charAt(pos[0]++);
+                switch (escaped) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos[0] + 4 > json.length()) {
+                            throw RequestException.badRequest("Malformed unicode escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw RequestException.badRequest("Malformed unicode escape");
+                        }
+                        pos[0] += 4;
+                        break;
+                    default: sb.append(escaped);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        throw RequestException.badRequest("Unterminated string");
+    }
+
+    private static void expect(String json, int[] pos, char expected) throws RequestException {
+        if (peek(json, pos) != expected) {
+            throw RequestException.badRequest("Expected '" + expected + "' at offset " + pos[0]);
+        }
+        pos[0] = skipSpace(json, pos[0] + 1);
+    }
+
+    private static char peek(String json, int[] pos) {
+        pos[0] = skipSpace(json, pos[0]);
+        return pos[0] < json.length() ? json.charAt(pos[0]) : 0;
+    }
+
+    private static int skipSpace(String json, int pos) {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    static String toJson(Map<String, Object> body) {
+        StringBuilder sb = new StringBuilder();
+        appendObject(sb, body);
+        return sb.toString();
+    }
+
+    private static void appendObject(StringBuilder sb, Map<?, ?> object) {
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : object.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendString(sb, entry.getKey().toString());
+            sb.append(':');
+            appendValue(sb, entry.getValue());
+        }
+        sb.append('}');
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Map) {
+            appendObject(sb, (Map<?, ?>) value);
+        } else if (value instanceof List) {
+            sb.append('[');
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendValue(sb, list.get(i));
+            }
+            sb.append(']');
+        } else {
+            appendString(sb, value.toString());
+        }
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", toJson(body));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,1024 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Snapshot kolumnar terkompresi dari katalog dan log transaksi, untuk cadangan dan serah terima data
+ * - Setiap tabel ditulis sebagai blok berisi paling banyak blockRows baris; di dalam blok nilai
+ *   disimpan per kolom lalu blok dikompresi dengan Deflate, sehingga ekspor dan restore hanya
+ *   memegang satu blok di memori
+ * - ID buku dan anggota di tabel lain disimpan sebagai nomor urut di kamus yang dibentuk oleh
+ *   kolom id tabel books dan members; teks yang banyak berulang dalam satu blok (tipe anggota,
+ *   status hold) memakai kamus per blok
+ * - Angka, tanggal dan waktu disimpan sebagai selisih dari nilai sebelumnya di kolom yang sama
+ *   (varint zigzag), jadi id berurutan dan tanggal yang berdekatan hanya memakai satu atau dua byte
+ * - Ekspor membaca semua tabel dalam satu transaksi REPEATABLE READ dan menulis lewat FileChannel ke
+ *   file sementara yang dipindahkan ke tujuannya setelah di-fsync
+ * - Restore membaca file lewat memory mapping dan memasukkan blok dengan INSERT multi-baris lewat
+ *   beberapa koneksi ke skema kosong yang dibuat migrasi; ringkasan peminjaman anggota dihitung ulang,
+ *   rollup sirkulasi dibangun kembali oleh run analitik berikutnya
+ */
+public class LibrarySnapshot {
+    /** Jumlah baris bawaan per blok */
+    public static final int DEFAULT_BLOCK_ROWS = 65536;
+
+    // Distinct from the offline desk's snapshot.dat ("LBS1"), so importing that file fails clearly
+    private static final int MAGIC = 0x4c425831; // "LBX1"
+    private static final int VERSION = 1;
+    // row count, raw length, compressed length, CRC32 of the raw bytes
+    private static final int BLOCK_HEADER_BYTES = 16;
+    /** Ukuran jendela memory mapping saat restore; file yang lebih besar dipetakan bertahap */
+    private static final long MAP_WINDOW_BYTES = 64L << 20;
+    private static final int FETCH_SIZE = 5000;
+    /** Panjang satu INSERT multi-baris, jauh di bawah max_allowed_packet bawaan server */
+    private static final int INSERT_STATEMENT_CHARS = 1 << 20;
+    /** V1 mengisi tiga buku dan tiga anggota contoh; restore menggantinya */
+    private static final int SEED_ROWS = 3;
+
+    // Same statement as V8, which only ran against the seed rows of the restored schema
+    static final String SQL_REBUILD_SUMMARY =
+            "INSERT INTO member_loan_summary (member_id, active_loans, total_loans, last_activity) "
+            + "SELECT m.id, COALESCE(SUM(t.id IS NOT NULL AND t.return_date IS NULL), 0), COUNT(t.id), "
+            + "DATE(GREATEST(MAX(t.loan_date), COALESCE(MAX(t.return_date), MAX(t.loan_date)))) "
+            + "FROM members m LEFT JOIN transactions t ON t.member_id = m.id GROUP BY m.id";
+
+    private enum Kind {
+        /** Teks, dengan kamus per blok jika banyak nilai berulang */
+        TEXT,
+        /** Kolom id books atau members; urutannya membentuk kamus untuk kolom REF */
+        BOOK_ID, MEMBER_ID,
+        /** Nomor urut di kamus buku atau anggota */
+        BOOK_REF, MEMBER_REF,
+        INT, DATE, DATETIME, DATETIME_MS
+    }
+
+    private static final class Column {
+        final String name;
+        final Kind kind;
+        final boolean nullable;
+
+        Column(String name, Kind kind, boolean nullable) {
+            this.name = name;
+            this.kind = kind;
+            this.nullable = nullable;
+        }
+
+        boolean isText() {
+            return kind == Kind.TEXT || kind == Kind.BOOK_ID || kind == Kind.MEMBER_ID;
+        }
+    }
+
+    private static final class Table {
+        final String name;
+        final String orderBy;
+        final Column[] columns;
+
+        Table(String name, String orderBy, Column... columns) {
+            this.name = name;
+            this.orderBy = orderBy;
+            this.columns = columns;
+        }
+
+        String columnList() {
+            StringBuilder list = new StringBuilder();
+            for (Column column : columns) {
+                list.append(list.length() == 0 ? "" : ", ").append(column.name);
+            }
+            return list.toString();
+        }
+
+        String selectSql() {
+            return "SELECT " + columnList() + " FROM " + name + " ORDER BY " + orderBy;
+        }
+    }
+
+    private static Column col(String name, Kind kind) {
+        return new Column(name, kind, false);
+    }
+
+    private static Column nullable(String name, Kind kind) {
+        return new Column(name, kind, true);
+    }
+
+    // In foreign key order, so the dictionaries exist before the tables that refer to them.
+    // member_loan_summary and the circulation rollups are derived and rebuilt instead.
+    private static final Table[] TABLES = {
+        new Table("books", "id", col("id", Kind.BOOK_ID), col("title", Kind.TEXT), col("author", Kind.TEXT),
+                nullable("available", Kind.INT), nullable("created_at", Kind.DATETIME),
+                col("updated_at", Kind.DATETIME_MS), col("total_copies", Kind.INT),
+                col("available_copies", Kind.INT)),
+        new Table("members", "id", col("id", Kind.MEMBER_ID), col("name", Kind.TEXT), col("type", Kind.TEXT),
+                nullable("created_at", Kind.DATETIME), col("updated_at", Kind.DATETIME_MS)),
+        new Table("book_copies", "barcode", col("barcode", Kind.TEXT), col("book_id", Kind.BOOK_REF),
+                col("on_loan", Kind.INT), nullable("created_at", Kind.DATETIME),
+                col("updated_at", Kind.DATETIME_MS)),
+        new Table("transactions", "id", col("id", Kind.INT), col("book_id", Kind.BOOK_REF),
+                col("member_id", Kind.MEMBER_REF), col("loan_date", Kind.DATETIME),
+                nullable("created_at", Kind.DATETIME), col("updated_at", Kind.DATETIME_MS),
+                nullable("due_date", Kind.DATETIME), nullable("return_date", Kind.DATETIME),
+                nullable("copy_barcode", Kind.TEXT), nullable("journal_id", Kind.TEXT),
+                nullable("journal_sequence", Kind.INT), nullable("return_journal_id", Kind.TEXT),
+                nullable("return_journal_sequence", Kind.INT)),
+        new Table("holds", "id", col("id", Kind.INT), col("book_id", Kind.BOOK_REF),
+                col("member_id", Kind.MEMBER_REF), col("status", Kind.TEXT), nullable("ready_at", Kind.DATETIME),
+                nullable("expires_at", Kind.DATE), nullable("created_at", Kind.DATETIME),
+                col("updated_at", Kind.DATETIME_MS)),
+        new Table("fines", "transaction_id", col("transaction_id", Kind.INT), col("member_id", Kind.MEMBER_REF),
+                col("due_date", Kind.DATE), col("daily_rate", Kind.INT), nullable("returned_on", Kind.DATE),
+                nullable("amount", Kind.INT), nullable("created_at", Kind.DATETIME),
+                col("updated_at", Kind.DATETIME_MS)),
+        // Desk replay positions, so journals replayed before the snapshot are not replayed again
+        new Table("offline_replay", "journal_id", col("journal_id", Kind.TEXT), col("last_sequence", Kind.INT),
+                col("replayed_at", Kind.DATETIME_MS)),
+    };
+
+    /**
+     * Nilai satu blok, per kolom
+     */
+    private static final class Block {
+        final String[][] texts;
+        final long[][] numbers;
+        final boolean[][] nulls;
+        int rows;
+
+        Block(Table table, int capacity) {
+            texts = new String[table.columns.length][];
+            numbers = new long[table.columns.length][];
+            nulls = new boolean[table.columns.length][capacity];
+            for (int c = 0; c < table.columns.length; c++) {
+                if (table.columns[c].isText()) {
+                    texts[c] = new String[capacity];
+                } else {
+                    numbers[c] = new long[capacity];
+                }
+            }
+        }
+    }
+
+    /**
+     * Penyangga byte yang tumbuh sendiri untuk menyusun isi blok
+     */
+    private static final class Encoder {
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        void putByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void putString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            putVarLong(utf8.length);
+            putBytes(utf8);
+        }
+
+        void putBytes(byte[] values) {
+            ensure(values.length);
+            System.arraycopy(values, 0, bytes, size, values.length);
+            size += values.length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+    private final Database db;
+    private final int blockRows;
+    private final int restoreParallelism;
+
+    /**
+     * Konstruktor dengan pengaturan dari system property/environment variable
+     * - SNAPSHOT_BLOCK_ROWS (bawaan 65536) jumlah baris per blok
+     * - SNAPSHOT_RESTORE_PARALLELISM (bawaan 4) jumlah koneksi yang memasukkan blok bersamaan
+     * @param db Sumber koneksi database
+     */
+    public LibrarySnapshot(Database db) {
+        this(db, Integer.parseInt(Database.setting("SNAPSHOT_BLOCK_ROWS", String.valueOf(DEFAULT_BLOCK_ROWS))),
+                Integer.parseInt(Database.setting("SNAPSHOT_RESTORE_PARALLELISM", "4")));
+    }
+
+    /**
+     * Konstruktor dengan pengaturan tertentu
+     * @param db Sumber koneksi database
+     * @param blockRows Jumlah baris per blok; menentukan memori yang dipakai ekspor dan restore
+     * @param restoreParallelism Jumlah koneksi yang memasukkan blok bersamaan saat restore
+     */
+    public LibrarySnapshot(Database db, int blockRows, int restoreParallelism) {
+        if (blockRows < 1 || restoreParallelism < 1) {
+            throw new IllegalArgumentException("Block size and restore parallelism must be positive");
+        }
+        this.db = db;
+        this.blockRows = blockRows;
+        this.restoreParallelism = restoreParallelism;
+    }
+
+    /**
+     * Menulis snapshot seluruh katalog dan log transaksi ke file
+     * @param file Lokasi file snapshot; file lama diganti setelah snapshot baru lengkap
+     * @return Jumlah baris yang ditulis
+     * @throws SQLException jika terjadi kesalahan pada database
+     * @throws IOException jika file tidak bisa ditulis
+     */
+    public long export(Path file) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long total = 0;
+        try (Connection conn = db.getConnection();
+                FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            int isolation = conn.getTransactionIsolation();
+            // One read view for every table, so copies and loans agree with the counters on books
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(20);
+                header.putInt(MAGIC).putInt(VERSION).putInt(schemaVersion(conn)).putLong(System.currentTimeMillis());
+                writeFully(channel, header.flip());
+                Map<Kind, Map<String, Integer>> dictionaries = new HashMap<>();
+                dictionaries.put(Kind.BOOK_ID, new HashMap<>());
+                dictionaries.put(Kind.MEMBER_ID, new HashMap<>());
+                Encoder raw = new Encoder();
+                Deflater deflater = new Deflater();
+                try {
+                    for (Table table : TABLES) {
+                        long rows = exportTable(conn, table, channel, dictionaries, raw, deflater);
+                        System.out.println("Exported " + rows + " rows from " + table.name);
+                        total += rows;
+                    }
+                } finally {
+                    deflater.end();
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+                conn.setTransactionIsolation(isolation);
+            }
+            channel.force(true);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Snapshot " + file + ": " + total + " rows, " + Files.size(file) + " bytes in "
+                + (System.nanoTime() - start) / 1_000_000L + " ms");
+        return total;
+    }
+
+    private long exportTable(Connection conn, Table table, FileChannel channel,
+            Map<Kind, Map<String, Integer>> dictionaries, Encoder raw, Deflater deflater)
+            throws SQLException, IOException {
+        Encoder layout = new Encoder();
+        layout.putString(table.name);
+        layout.putVarLong(table.columns.length);
+        for (Column column : table.columns) {
+            layout.putString(column.name);
+            layout.putByte(column.kind.ordinal());
+        }
+        writeFully(channel, ByteBuffer.wrap(layout.bytes, 0, layout.size));
+
+        long rows = 0;
+        Block block = new Block(table, blockRows);
+        try (PreparedStatement pstmt = conn.prepareStatement(table.selectSql())) {
+            pstmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    readRow(rs, table, block, dictionaries);
+                    if (++block.rows == blockRows) {
+                        writeBlock(channel, table, block, raw, deflater);
+                        rows += block.rows;
+                        block.rows = 0;
+                    }
+                }
+            }
+        }
+        if (block.rows > 0) {
+            writeBlock(channel, table, block, raw, deflater);
+            rows += block.rows;
+        }
+        // A block of zero rows ends the table
+        writeFully(channel, ByteBuffer.allocate(BLOCK_HEADER_BYTES));
+        return rows;
+    }
+
+    private static void readRow(ResultSet rs, Table table, Block block, Map<Kind, Map<String, Integer>> dictionaries)
+            throws SQLException {
+        int row = block.rows;
+        for (int c = 0; c < table.columns.length; c++) {
+            Column column = table.columns[c];
+            int index = c + 1;
+            long number = 0;
+            switch (column.kind) {
+                case TEXT:
+                    block.texts[c][row] = rs.getString(index);
+                    break;
+                case BOOK_ID:
+                case MEMBER_ID:
+                    String id = rs.getString(index);
+                    Map<String, Integer> dictionary = dictionaries.get(column.kind);
+                    dictionary.put(id, dictionary.size());
+                    block.texts[c][row] = id;
+                    break;
+                case BOOK_REF:
+                case MEMBER_REF:
+                    String ref = rs.getString(index);
+                    Integer code = dictionaries.get(column.kind == Kind.BOOK_REF ? Kind.BOOK_ID : Kind.MEMBER_ID).get(ref);
+                    if (code == null) {
+                        throw new SQLException(table.name + "." + column.name + " refers to an unknown id: " + ref);
+                    }
+                    number = code;
+                    break;
+                case INT:
+                    number = rs.getLong(index);
+                    break;
+                case DATE:
+                    LocalDate date = rs.getObject(index, LocalDate.class);
+                    number = date != null ? date.toEpochDay() : 0;
+                    break;
+                default:
+                    LocalDateTime time = rs.getObject(index, LocalDateTime.class);
+                    if (time != null) {
+                        number = time.toEpochSecond(ZoneOffset.UTC);
+                        if (column.kind == Kind.DATETIME_MS) {
+                            number = number * 1000 + time.getNano() / 1_000_000;
+                        }
+                    }
+                    break;
+            }
+            block.nulls[c][row] = rs.wasNull();
+            if (!column.isText()) {
+                block.numbers[c][row] = number;
+            }
+        }
+    }
+
+    private static void writeBlock(FileChannel channel, Table table, Block block, Encoder raw, Deflater deflater)
+            throws IOException {
+        raw.reset();
+        for (int c = 0; c < table.columns.length; c++) {
+            Column column = table.columns[c];
+            if (column.isText()) {
+                encodeText(raw, column, block.texts[c], block.nulls[c], block.rows);
+            } else {
+                encodeNumbers(raw, column, block.numbers[c], block.nulls[c], block.rows);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw.bytes, 0, raw.size);
+        deflater.reset();
+        deflater.setInput(raw.bytes, 0, raw.size);
+        deflater.finish();
+        byte[] compressed = new byte[Math.max(64, raw.size + raw.size / 1000 + 64)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        header.putInt(block.rows).putInt(raw.size).putInt(length).putInt((int) crc.getValue());
+        writeFully(channel, header.flip());
+        writeFully(channel, ByteBuffer.wrap(compressed, 0, length));
+    }
+
+    /**
+     * Teks ditulis apa adanya, atau sebagai kamus blok lalu nomor urut jika nilai yang berbeda
+     * paling banyak separuh jumlah baris. Kolom nullable menulis 0 untuk NULL dan panjang/nomor + 1.
+     */
+    private static void encodeText(Encoder out, Column column, String[] values, boolean[] nulls, int rows) {
+        Map<String, Integer> dictionary = null;
+        if (column.kind == Kind.TEXT) {
+            dictionary = new LinkedHashMap<>();
+            for (int i = 0; i < rows && dictionary.size() * 2 <= rows; i++) {
+                if (!nulls[i]) {
+                    dictionary.putIfAbsent(values[i], dictionary.size());
+                }
+            }
+            if (dictionary.size() * 2 > rows) {
+                dictionary = null;
+            }
+        }
+        int offset = column.nullable ? 1 : 0;
+        if (dictionary == null) {
+            out.putByte(0);
+            for (int i = 0; i < rows; i++) {
+                if (nulls[i]) {
+                    out.putVarLong(0);
+                } else {
+                    byte[] utf8 = values[i].getBytes(StandardCharsets.UTF_8);
+                    out.putVarLong(utf8.length + offset);
+                    out.putBytes(utf8);
+                }
+            }
+            return;
+        }
+        out.putByte(1);
+        out.putVarLong(dictionary.size());
+        for (String value : dictionary.keySet()) {
+            out.putString(value);
+        }
+        for (int i = 0; i < rows; i++) {
+            out.putVarLong(nulls[i] ? 0 : dictionary.get(values[i]) + offset);
+        }
+    }
+
+    /**
+     * Angka ditulis sebagai selisih zigzag dari nilai bukan-NULL sebelumnya di blok yang sama,
+     * sehingga setiap blok bisa dibaca sendiri
+     */
+    private static void encodeNumbers(Encoder out, Column column, long[] values, boolean[] nulls, int rows) {
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            if (nulls[i]) {
+                out.putVarLong(0);
+                continue;
+            }
+            long delta = values[i] - previous;
+            previous = values[i];
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            out.putVarLong(column.nullable ? zigzag + 1 : zigzag);
+        }
+    }
+
+    /**
+     * Memulihkan snapshot ke skema kosong yang baru dibuat migrasi
+     * - Tabel yang dipulihkan harus kosong, kecuali buku dan anggota contoh dari V1 yang diganti
+     * - Versi skema tujuan tidak boleh lebih lama dari versi skema saat snapshot dibuat
+     * - Blok dimasukkan paralel dan setiap blok di-commit sendiri; restore yang gagal meninggalkan
+     *   data sebagian, jadi skema perlu dibuat ulang sebelum mencoba lagi
+     * @param file File snapshot
+     * @return Jumlah baris yang dipulihkan
+     * @throws SQLException jika terjadi kesalahan pada database
+     * @throws IOException jika file tidak bisa dibaca atau bukan snapshot yang valid
+     * @throws IllegalStateException jika skema tujuan tidak kosong atau terlalu lama
+     */
+    public long restore(Path file) throws SQLException, IOException {
+        long start = System.nanoTime();
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                Connection conn = db.getConnection()) {
+            MappedInput in = new MappedInput(channel);
+            ByteBuffer header = in.region(20);
+            int magic = header.getInt();
+            if (magic == OfflineDesk.SNAPSHOT_MAGIC) {
+                throw new IOException("This is an offline desk snapshot, not a library export: " + file);
+            }
+            if (magic != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a library snapshot (version " + VERSION + "): " + file);
+            }
+            checkEmpty(conn, header.getInt());
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM member_loan_summary");
+                stmt.executeUpdate("DELETE FROM books");
+                stmt.executeUpdate("DELETE FROM members");
+            }
+            List<String> bookIds = new ArrayList<>();
+            List<String> memberIds = new ArrayList<>();
+            Inflater inflater = new Inflater();
+            try (BlockLoader loader = new BlockLoader(restoreParallelism)) {
+                for (Table table : TABLES) {
+                    long rows = restoreTable(table, in, inflater, loader, bookIds, memberIds);
+                    System.out.println("Restored " + rows + " rows into " + table.name);
+                    total += rows;
+                }
+            } finally {
+                inflater.end();
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(SQL_REBUILD_SUMMARY);
+            }
+        }
+        System.out.println("Restored " + total + " rows from " + file + " in "
+                + (System.nanoTime() - start) / 1_000_000L + " ms");
+        return total;
+    }
+
+    private static void checkEmpty(Connection conn, int snapshotSchema) throws SQLException {
+        int targetSchema = schemaVersion(conn);
+        if (targetSchema < snapshotSchema) {
+            throw new IllegalStateException("Snapshot needs schema version " + snapshotSchema
+                    + ", database is at " + targetSchema + "; run the migrations first");
+        }
+        for (Table table : TABLES) {
+            long rows;
+            try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table.name)) {
+                rs.next();
+                rows = rs.getLong(1);
+            }
+            boolean seeded = table.name.equals("books") || table.name.equals("members");
+            if (rows > (seeded ? SEED_ROWS : 0)) {
+                throw new IllegalStateException("Restore needs an empty schema, but " + table.name + " has "
+                        + rows + " rows");
+            }
+        }
+    }
+
+    private static int schemaVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT MAX(CAST(version AS UNSIGNED)) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * Membaca blok satu tabel berurutan dan menyerahkannya ke loader; kembali setelah semua blok
+     * tabel itu di-commit, sehingga kamus id sudah lengkap sebelum tabel yang merujuknya
+     */
+    private static long restoreTable(Table table, MappedInput in, Inflater inflater, BlockLoader loader,
+            List<String> bookIds, List<String> memberIds) throws SQLException, IOException {
+        readLayout(in, table);
+        long rows = 0;
+        while (true) {
+            ByteBuffer header = in.region(BLOCK_HEADER_BYTES);
+            int count = header.getInt();
+            int rawLength = header.getInt();
+            int compressedLength = header.getInt();
+            int expectedCrc = header.getInt();
+            if (count == 0) {
+                loader.await();
+                return rows;
+            }
+            if (count < 0 || rawLength < 0 || compressedLength < 0) {
+                throw new IOException("Corrupt block header in " + table.name);
+            }
+            byte[] raw = new byte[rawLength];
+            inflate(inflater, in.region(compressedLength), raw, rawLength, table);
+            CRC32 crc = new CRC32();
+            crc.update(raw, 0, rawLength);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Checksum mismatch in a " + table.name + " block");
+            }
+            // Blocks in flight are still being inserted, so every block gets its own buffers
+            Block block = new Block(table, count);
+            decodeBlock(ByteBuffer.wrap(raw), table, block, count, bookIds, memberIds);
+            loader.submit(table, block, bookIds, memberIds);
+            rows += count;
+        }
+    }
+
+    /**
+     * Memasukkan blok lewat beberapa koneksi sekaligus, masing-masing dengan transaksinya sendiri.
+     * Paling banyak dua blok per koneksi menunggu atau sedang dimasukkan, jadi memori tetap terbatas.
+     */
+    private final class BlockLoader implements AutoCloseable {
+        private final List<Connection> opened = new ArrayList<>();
+        private final BlockingQueue<Connection> idle;
+        private final ExecutorService workers;
+        private final Semaphore slots;
+        private final List<Future<?>> pending = new ArrayList<>();
+        private boolean backslashEscapes = true;
+
+        BlockLoader(int parallelism) throws SQLException {
+            idle = new ArrayBlockingQueue<>(parallelism);
+            slots = new Semaphore(parallelism * 2);
+            AtomicInteger counter = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(parallelism, r -> {
+                Thread t = new Thread(r, "snapshot-restore-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                for (int i = 0; i < parallelism; i++) {
+                    Connection conn = db.getConnection();
+                    opened.add(conn);
+                    try (Statement stmt = conn.createStatement()) {
+                        // The snapshot was taken in one read view, so its references are already consistent
+                        stmt.execute("SET foreign_key_checks = 0, unique_checks = 0");
+                        try (ResultSet rs = stmt.executeQuery("SELECT @@SESSION.sql_mode")) {
+                            backslashEscapes = !(rs.next() && rs.getString(1).contains("NO_BACKSLASH_ESCAPES"));
+                        }
+                    }
+                    conn.setAutoCommit(false);
+                    idle.add(conn);
+                }
+            } catch (SQLException e) {
+                close();
+                throw e;
+            }
+        }
+
+        void submit(Table table, Block block, List<String> bookIds, List<String> memberIds)
+                throws SQLException, IOException {
+            checkFailures(false);
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Restore interrupted", e);
+            }
+            pending.add(workers.submit(() -> {
+                Connection conn = idle.take();
+                try (Statement stmt = conn.createStatement()) {
+                    insertBlock(stmt, table, block, bookIds, memberIds, backslashEscapes);
+                    conn.commit();
+                } catch (SQLException | IOException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    idle.add(conn);
+                    slots.release();
+                }
+                return null;
+            }));
+        }
+
+        /**
+         * Menunggu semua blok yang sudah diserahkan
+         */
+        void await() throws SQLException, IOException {
+            checkFailures(true);
+        }
+
+        private void checkFailures(boolean wait) throws SQLException, IOException {
+            for (Iterator<Future<?>> it = pending.iterator(); it.hasNext(); ) {
+                Future<?> future = it.next();
+                if (!wait && !future.isDone()) {
+                    continue;
+                }
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Restore interrupted", e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof SQLException) {
+                        throw (SQLException) cause;
+                    }
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IllegalStateException("Error restoring block: " + cause, cause);
+                }
+                it.remove();
+            }
+        }
+
+        @Override
+        public void close() {
+            workers.shutdownNow();
+            try {
+                workers.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Connection conn : opened) {
+                try (Statement stmt = conn.createStatement()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                    stmt.execute("SET foreign_key_checks = 1, unique_checks = 1");
+                } catch (SQLException e) {
+                    System.err.println("Error resetting restore connection: " + e.getMessage());
+                }
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing restore connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void readLayout(MappedInput in, Table table) throws IOException {
+        ByteBuffer layout = in.remaining();
+        int start = layout.position();
+        boolean matches = table.name.equals(readString(layout)) && readVarLong(layout) == table.columns.length;
+        for (int c = 0; matches && c < table.columns.length; c++) {
+            matches = table.columns[c].name.equals(readString(layout))
+                    && layout.get() == table.columns[c].kind.ordinal();
+        }
+        if (!matches) {
+            throw new IOException("Snapshot layout does not match table " + table.name);
+        }
+        in.skip(layout.position() - start);
+    }
+
+    private static void inflate(Inflater inflater, ByteBuffer compressed, byte[] raw, int rawLength, Table table)
+            throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawLength) {
+                throw new IOException("Truncated " + table.name + " block");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt " + table.name + " block: " + e.getMessage(), e);
+        }
+    }
+
+    private static void decodeBlock(ByteBuffer in, Table table, Block block, int rows, List<String> bookIds,
+            List<String> memberIds) throws IOException {
+        block.rows = rows;
+        try {
+            for (int c = 0; c < table.columns.length; c++) {
+                Column column = table.columns[c];
+                int offset = column.nullable ? 1 : 0;
+                boolean[] nulls = block.nulls[c];
+                if (column.isText()) {
+                    String[] values = block.texts[c];
+                    boolean dictionary = in.get() == 1;
+                    String[] words = null;
+                    if (dictionary) {
+                        words = new String[(int) readVarLong(in)];
+                        for (int i = 0; i < words.length; i++) {
+                            words[i] = readString(in);
+                        }
+                    }
+                    for (int i = 0; i < rows; i++) {
+                        long code = readVarLong(in);
+                        nulls[i] = column.nullable && code == 0;
+                        if (nulls[i]) {
+                            values[i] = null;
+                        } else if (dictionary) {
+                            values[i] = words[(int) code - offset];
+                        } else {
+                            values[i] = readBytes(in, (int) code - offset);
+                        }
+                    }
+                    if (column.kind == Kind.BOOK_ID) {
+                        bookIds.addAll(Arrays.asList(values).subList(0, rows));
+                    } else if (column.kind == Kind.MEMBER_ID) {
+                        memberIds.addAll(Arrays.asList(values).subList(0, rows));
+                    }
+                } else {
+                    long[] values = block.numbers[c];
+                    long previous = 0;
+                    for (int i = 0; i < rows; i++) {
+                        long code = readVarLong(in);
+                        nulls[i] = column.nullable && code == 0;
+                        if (!nulls[i]) {
+                            long zigzag = code - offset;
+                            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                            values[i] = previous;
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Buffer underflows and bad dictionary codes from a damaged file that still passed the CRC
+            throw new IOException("Corrupt " + table.name + " block: " + e, e);
+        }
+    }
+
+    /**
+     * Memasukkan blok sebagai INSERT multi-baris berbentuk teks, seperti isi dump SQL. Prepared statement
+     * di pool dijalankan di server (useCursorFetch), dan batch seperti itu menghabiskan CPU klien untuk
+     * menyiapkan ulang statement multi-baris di setiap blok.
+     */
+    private static void insertBlock(Statement stmt, Table table, Block block, List<String> bookIds,
+            List<String> memberIds, boolean backslashEscapes) throws SQLException, IOException {
+        String prefix = "INSERT INTO " + table.name + " (" + table.columnList() + ") VALUES ";
+        StringBuilder sql = new StringBuilder(INSERT_STATEMENT_CHARS + 4096);
+        for (int row = 0; row < block.rows; row++) {
+            sql.append(sql.length() == 0 ? prefix : ",").append('(');
+            for (int c = 0; c < table.columns.length; c++) {
+                Column column = table.columns[c];
+                if (c > 0) {
+                    sql.append(',');
+                }
+                if (block.nulls[c][row]) {
+                    sql.append("NULL");
+                    continue;
+                }
+                long number = column.isText() ? 0 : block.numbers[c][row];
+                switch (column.kind) {
+                    case TEXT:
+                    case BOOK_ID:
+                    case MEMBER_ID:
+                        appendQuoted(sql, block.texts[c][row], backslashEscapes);
+                        break;
+                    case BOOK_REF:
+                        appendQuoted(sql, lookup(bookIds, number, table, column), backslashEscapes);
+                        break;
+                    case MEMBER_REF:
+                        appendQuoted(sql, lookup(memberIds, number, table, column), backslashEscapes);
+                        break;
+                    case INT:
+                        sql.append(number);
+                        break;
+                    // Dates and times go in as literals, so no time zone conversion touches them
+                    case DATE:
+                        appendDate(sql.append('\''), number).append('\'');
+                        break;
+                    case DATETIME:
+                        appendTime(sql.append('\''), number, -1).append('\'');
+                        break;
+                    default:
+                        appendTime(sql.append('\''), Math.floorDiv(number, 1000), Math.floorMod(number, 1000))
+                                .append('\'');
+                        break;
+                }
+            }
+            sql.append(')');
+            if (sql.length() >= INSERT_STATEMENT_CHARS) {
+                stmt.executeUpdate(sql.toString());
+                sql.setLength(0);
+            }
+        }
+        if (sql.length() > 0) {
+            stmt.executeUpdate(sql.toString());
+        }
+    }
+
+    /**
+     * Menulis string literal SQL; tanpa NO_BACKSLASH_ESCAPES backslash dan karakter kontrol juga di-escape
+     */
+    private static void appendQuoted(StringBuilder sql, String value, boolean backslashEscapes) {
+        sql.append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\'') {
+                sql.append("''");
+            } else if (!backslashEscapes) {
+                sql.append(ch);
+            } else if (ch == '\\') {
+                sql.append("\\\\");
+            } else if (ch == 0) {
+                sql.append("\\0");
+            } else if (ch == '\n') {
+                sql.append("\\n");
+            } else if (ch == '\r') {
+                sql.append("\\r");
+            } else if (ch == '\u001a') {
+                sql.append("\\Z");
+            } else {
+                sql.append(ch);
+            }
+        }
+        sql.append('\'');
+    }
+
+    private static StringBuilder appendDate(StringBuilder sql, long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        sql.append(date.getYear()).append('-');
+        return appendTwoDigits(appendTwoDigits(sql, date.getMonthValue()).append('-'), date.getDayOfMonth());
+    }
+
+    /**
+     * Menulis 'yyyy-MM-dd HH:mm:ss', ditambah .SSS jika millis tidak negatif
+     */
+    private static StringBuilder appendTime(StringBuilder sql, long epochSecond, int millis) {
+        int second = (int) Math.floorMod(epochSecond, 86400L);
+        appendDate(sql, Math.floorDiv(epochSecond, 86400L)).append(' ');
+        appendTwoDigits(sql, second / 3600).append(':');
+        appendTwoDigits(sql, second / 60 % 60).append(':');
+        appendTwoDigits(sql, second % 60);
+        if (millis >= 0) {
+            sql.append('.').append((char) ('0' + millis / 100)).append((char) ('0' + millis / 10 % 10))
+                    .append((char) ('0' + millis % 10));
+        }
+        return sql;
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder sql, int value) {
+        return sql.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static String lookup(List<String> ids, long code, Table table, Column column) throws IOException {
+        if (code < 0 || code >= ids.size()) {
+            throw new IOException(table.name + "." + column.name + " refers to an unknown id #" + code);
+        }
+        return ids.get((int) code);
+    }
+
+    /**
+     * Membaca file snapshot lewat jendela memory mapping yang bergeser ke depan
+     */
+    private static final class MappedInput {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+
+        MappedInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        /**
+         * Bagian file berikutnya sepanjang length byte; posisi baca maju sejauh itu
+         */
+        ByteBuffer region(int length) throws IOException {
+            if (position + length > size) {
+                throw new IOException("Snapshot is truncated at byte " + position);
+            }
+            map(length);
+            ByteBuffer region = window.duplicate();
+            region.position((int) (position - windowStart));
+            region.limit(region.position() + length);
+            position += length;
+            return region.slice();
+        }
+
+        /**
+         * Sisa jendela mulai dari posisi baca, tanpa memajukan posisi
+         */
+        ByteBuffer remaining() throws IOException {
+            map((int) Math.min(size - position, 4096));
+            ByteBuffer rest = window.duplicate();
+            rest.position((int) (position - windowStart));
+            return rest;
+        }
+
+        void skip(int length) {
+            position += length;
+        }
+
+        private void map(int length) throws IOException {
+            if (window == null || position < windowStart || position + length > windowStart + window.capacity()) {
+                long span = Math.min(size - position, Math.max(MAP_WINDOW_BYTES, length));
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, span);
+                windowStart = position;
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        return readBytes(in, (int) readVarLong(in));
+    }
+
+    private static String readBytes(ByteBuffer in, int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
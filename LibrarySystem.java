@@ -1,27 +1,78 @@
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.GridLayout;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.ResultSet;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.List;
 
 import javax.swing.ButtonGroup;
-import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 /**
  * Kelas utama sistem perpustakaan yang menginisialisasi aplikasi
  */
 public class LibrarySystem {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--server")) {
+            // Headless kiosk/mobile mode: serve the lending API instead of opening a window
+            try {
+                LendingServer.startFromSettings();
+            } catch (IOException e) {
+                System.err.println("Error starting lending server: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--overdue")) {
+            // One-off fine assessment, e.g. from a nightly cron entry
+            try {
+                new OverdueEngine(new Database()).run(java.time.LocalDate.now());
+            } catch (SQLException e) {
+                System.err.println("Error running overdue engine: " + e.getMessage());
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+        if (args.length > 0 && args[0].equals("--analytics")) {
+            // One-off circulation rollup, e.g. to backfill history before enabling the scheduled one
+            try {
+                new CirculationAnalytics(new Database()).run();
+            } catch (SQLException e) {
+                System.err.println("Error running circulation rollup: " + e.getMessage());
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+        if (args.length > 1 && (args[0].equals("--export") || args[0].equals("--import"))) {
+            // Columnar snapshot for backups and data hand-offs; --import expects a freshly migrated schema
+            try {
+                LibrarySnapshot snapshot = new LibrarySnapshot(new Database());
+                java.nio.file.Path file = java.nio.file.Paths.get(args[1]);
+                if (args[0].equals("--export")) {
+                    snapshot.export(file);
+                } else {
+                    snapshot.restore(file);
+                }
+            } catch (SQLException | IOException | IllegalStateException e) {
+                System.err.println("Error " + (args[0].equals("--export") ? "exporting" : "restoring")
+                        + " snapshot: " + e.getMessage());
+                System.exit(1);
+            }
+            System.exit(0);
+        }
         SwingUtilities.invokeLater(() -> {
             try {
                 new LibraryGUI();
@@ -35,85 +86,77 @@ public class LibrarySystem {
 }
 
 /**
- * Kelas untuk mengelola koneksi database dan migrasi
+ * Kelas antarmuka grafis untuk sistem perpustakaan
  */
-class Database {
-    private static final String DB_URL = System.getenv("DB_URL") != null ? System.getenv("DB_URL")
-            : "jdbc:mysql://localhost/library";
-    private static final String USER = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "root";
-    private static final String PASS = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "";
-    private static Connection conn = null;
+class LibraryGUI extends JFrame {
+    private static final long serialVersionUID = 1L;
 
-    /**
-     * Konstruktor untuk inisialisasi koneksi database dan menjalankan migrasi
-     */
-    public Database() {
-        if (conn == null) {
-            try {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                conn = DriverManager.getConnection(DB_URL, USER, PASS);
-                System.out.println("Connected to MySQL database");
-                
-                // Run database migrations
-                // String migrationsPath = new File("migrations").getAbsolutePath();
-                // DatabaseMigration migration = new DatabaseMigration(conn, migrationsPath);
-                // migration.migrate();
-                
-            } catch (ClassNotFoundException e) {
-                System.err.println("MySQL JDBC driver not found: " + e.getMessage());
-                System.exit(1);
-            } catch (SQLException e) {
-                System.err.println("Database connection error: " + e.getMessage());
-                System.exit(1);
-            } 
-        }
-    }
+    /** Jeda setelah ketikan terakhir sebelum pencarian dijalankan */
+    private static final int SEARCH_DELAY_MS = 250;
+    /** Batas waktu satu refresh; refresh yang lebih lama dibatalkan */
+    private static final long REFRESH_TIMEOUT_MS = 10000L;
+    /** Interval pembaruan indikator mode offline */
+    private static final int OFFLINE_STATUS_MS = 1000;
 
-    /**
-     * Mendapatkan koneksi database yang aktif
-     * @return Koneksi database yang aktif
-     * @throws SQLException jika terjadi kesalahan koneksi
-     */
-    public Connection getConnection() throws SQLException {
-        if (conn == null || conn.isClosed()) {
-            try {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                conn = DriverManager.getConnection(DB_URL, USER, PASS);
-                System.out.println("Reconnected to database");
-            } catch (ClassNotFoundException e) {
-                System.err.println("MySQL JDBC driver not found: " + e.getMessage());
-                System.exit(1);
-            }
-        }
-        return conn;
-    }
+    private Database db;
+    private CatalogReader catalog;
+    private CatalogSync sync;
+    private BackgroundTasks tasks;
+    private BackgroundTasks.Coalescer<CatalogChanges> refresher;
+    private OfflineDesk desk;
+    private LazyListModel<Book> bookModel;
+    private LazyListModel<Member> memberModel;
+    private JLabel statusLabel;
+    private JLabel offlineLabel;
 
     /**
-     * Menutup koneksi database
+     * Buku dan anggota yang berubah sejak refresh terakhir
      */
-    public void close() {
-        try {
-            if (conn != null)
-                conn.close();
-        } catch (SQLException e) {
-            System.out.println("Error closing connection: " + e.getMessage());
+    private static final class CatalogChanges {
+        final List<Book> books;
+        final List<Member> members;
+
+        CatalogChanges(List<Book> books, List<Member> members) {
+            this.books = books;
+            this.members = members;
         }
     }
-}
-
-/**
- * Kelas antarmuka grafis untuk sistem perpustakaan
- */
-class LibraryGUI extends JFrame {
-    private Database db;
-    private DefaultComboBoxModel<Book> bookModel;
-    private DefaultComboBoxModel<Member> memberModel;
 
     /**
      * Konstruktor untuk membuat antarmuka grafis perpustakaan
      */
     public LibraryGUI() {
         db = new Database();
+        catalog = new CatalogReader(db);
+        sync = new CatalogSync(db);
+        tasks = new BackgroundTasks("desk");
+        Transaction.getLoanService().start();
+        try {
+            desk = OfflineDesk.openFromSettings(db, Transaction.getLoanService());
+            Transaction.useOfflineDesk(desk);
+            desk.start();
+        } catch (IOException e) {
+            // The desk still works online; it just cannot keep lending through an outage
+            System.err.println("Offline mode unavailable: " + e.getMessage());
+        }
+        // Repeated refresh requests collapse into the one in flight plus at most one more
+        refresher = tasks.coalescing(() -> new CatalogChanges(sync.pollBooks(), sync.pollMembers()),
+                REFRESH_TIMEOUT_MS, new BackgroundTasks.Callback<CatalogChanges>() {
+                    @Override
+                    public void succeeded(CatalogChanges changes) {
+                        bookModel.applyChanges(changes.books);
+                        memberModel.applyChanges(changes.members);
+                    }
+
+                    @Override
+                    public void failed(Throwable error) {
+                        if (desk != null && desk.isOffline()) {
+                            return;
+                        }
+                        System.err.println("Error refreshing data: " + error.getMessage());
+                        showStatus("Refresh failed: " + error.getMessage(), false);
+                    }
+                });
         initializeUI();
     }
 
@@ -123,16 +166,26 @@ class LibraryGUI extends JFrame {
     private void initializeUI() {
         setTitle("Library Book Lending System");
         setSize(500, 400);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                exitApplication();
+            }
+        });
         setLayout(new BorderLayout());
 
         // Input panel
-        JPanel inputPanel = new JPanel(new GridLayout(5, 2, 5, 5));
+        JPanel inputPanel = new JPanel(new GridLayout(7, 2, 5, 5));
 
-        // Book combo box
-        bookModel = new DefaultComboBoxModel<>();
-        loadBooks();
+        // Book search and combo box
+        bookModel = new LazyListModel<>(desk != null ? desk.bookPages(catalog) : catalog::readBooks, Book::getId,
+                CatalogReader.DEFAULT_PAGE_SIZE);
         JComboBox<Book> bookCombo = new JComboBox<>(bookModel);
+        bookCombo.setPrototypeDisplayValue(new Book("", "XXXXXXXXXXXXXXXXXXXXXXXXX", "XXXXXXXXXXXXXXX"));
+        bookModel.attachTo(bookCombo);
+        inputPanel.add(new JLabel("Search Book:"));
+        inputPanel.add(createSearchField(bookModel));
         inputPanel.add(new JLabel("Select Book:"));
         inputPanel.add(bookCombo);
 
@@ -148,10 +201,14 @@ class LibraryGUI extends JFrame {
         inputPanel.add(new JLabel("Member Type:"));
         inputPanel.add(radioPanel);
 
-        // Member combo box
-        memberModel = new DefaultComboBoxModel<>();
-        loadMembers();
+        // Member search and combo box
+        memberModel = new LazyListModel<>(desk != null ? desk.memberPages(catalog) : catalog::readMembers,
+                Member::getId, CatalogReader.DEFAULT_PAGE_SIZE);
         JComboBox<Member> memberCombo = new JComboBox<>(memberModel);
+        memberCombo.setPrototypeDisplayValue(new Student("", "XXXXXXXXXXXXXXXXXXXX"));
+        memberModel.attachTo(memberCombo);
+        inputPanel.add(new JLabel("Search Member:"));
+        inputPanel.add(createSearchField(memberModel));
         inputPanel.add(new JLabel("Select Member:"));
         inputPanel.add(memberCombo);
 
@@ -163,32 +220,55 @@ class LibraryGUI extends JFrame {
         // Buttons
         JButton loanButton = new JButton("Borrow Book");
         JButton returnButton = new JButton("Return Book");
+        JButton holdButton = new JButton("Reserve Book");
         JButton refreshButton = new JButton("Refresh Data");
 
+        // Loans and returns run in the background so staff can keep scanning while they commit
         loanButton.addActionListener(e -> {
             Book selectedBook = (Book) bookCombo.getSelectedItem();
             Member selectedMember = (Member) memberCombo.getSelectedItem();
-            new Transaction(selectedBook, selectedMember, dateField.getText()).processLoan();
-            refreshData();
+            new Transaction(selectedBook, selectedMember, dateField.getText()).submitLoan(tasks, transactionListener());
+            showProgress();
         });
 
         returnButton.addActionListener(e -> {
             Book selectedBook = (Book) bookCombo.getSelectedItem();
             Member selectedMember = (Member) memberCombo.getSelectedItem();
-            new Transaction(selectedBook, selectedMember, dateField.getText()).processReturn();
-            refreshData();
+            new Transaction(selectedBook, selectedMember, dateField.getText()).submitReturn(tasks, transactionListener());
+            showProgress();
+        });
+
+        holdButton.addActionListener(e -> {
+            Book selectedBook = (Book) bookCombo.getSelectedItem();
+            Member selectedMember = (Member) memberCombo.getSelectedItem();
+            new Transaction(selectedBook, selectedMember, dateField.getText()).submitHold(tasks, transactionListener());
+            showProgress();
         });
 
         refreshButton.addActionListener(e -> refreshData());
 
         add(inputPanel, BorderLayout.CENTER);
 
-        // Button panel
+        // Button panel with a status line for background operations
         JPanel buttonPanel = new JPanel();
         buttonPanel.add(loanButton);
         buttonPanel.add(returnButton);
+        buttonPanel.add(holdButton);
         buttonPanel.add(refreshButton);
-        add(buttonPanel, BorderLayout.SOUTH);
+        statusLabel = new JLabel(" ");
+        offlineLabel = new JLabel(" ");
+        JPanel statusPanel = new JPanel(new GridLayout(2, 1));
+        statusPanel.add(statusLabel);
+        statusPanel.add(offlineLabel);
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(buttonPanel, BorderLayout.CENTER);
+        southPanel.add(statusPanel, BorderLayout.SOUTH);
+        add(southPanel, BorderLayout.SOUTH);
+        if (desk != null) {
+            new Timer(OFFLINE_STATUS_MS, e -> showOfflineStatus()).start();
+        }
+
+        loadInitialData();
 
         pack();
         setLocationRelativeTo(null);
@@ -196,59 +276,137 @@ class LibraryGUI extends JFrame {
     }
 
     /**
-     * Memuat daftar buku dari database ke dalam combo box
+     * Membuat kolom pencarian yang memfilter model setelah pengguna berhenti mengetik
+     * @param model Model yang akan difilter
+     * @return Kolom teks pencarian
      */
-    private void loadBooks() {
-        bookModel.removeAllElements();
-        try (Statement stmt = db.getConnection().createStatement();
-                ResultSet rs = stmt.executeQuery("SELECT * FROM books")) {
-
-            while (rs.next()) {
-                Book book = new Book(
-                        rs.getString("id"),
-                        rs.getString("title"),
-                        rs.getString("author"));
-                book.setAvailable(rs.getBoolean("available"));
-                bookModel.addElement(book);
+    private JTextField createSearchField(LazyListModel<?> model) {
+        JTextField field = new JTextField();
+        Timer debounce = new Timer(SEARCH_DELAY_MS, e -> model.setFilter(field.getText()));
+        debounce.setRepeats(false);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
             }
-        } catch (SQLException e) {
-            System.err.println("Error loading books: " + e.getMessage());
-            e.printStackTrace();
-        }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+        return field;
     }
 
     /**
-     * Memuat daftar anggota dari database ke dalam combo box
+     * Menetapkan high-water mark lalu memuat halaman pertama buku dan anggota
      */
-    private void loadMembers() {
-        memberModel.removeAllElements();
-        try (Statement stmt = db.getConnection().createStatement();
-                ResultSet rs = stmt.executeQuery("SELECT * FROM members")) {
-
-            while (rs.next()) {
-                Member member;
-                String id = rs.getString("id");
-                String name = rs.getString("name");
-                String type = rs.getString("type");
-
-                if (type.equals("Staff")) {
-                    member = new Staff(id, name);
-                } else {
-                    member = new Student(id, name);
-                }
-                memberModel.addElement(member);
+    private void loadInitialData() {
+        tasks.submit(() -> {
+            sync.markNow();
+            return null;
+        }, REFRESH_TIMEOUT_MS, true, new BackgroundTasks.Callback<Object>() {
+            @Override
+            public void succeeded(Object result) {
             }
-        } catch (SQLException e) {
-            System.err.println("Error loading members: " + e.getMessage());
-            e.printStackTrace();
-        }
+
+            @Override
+            public void failed(Throwable error) {
+                System.err.println("Error reading change mark: " + error.getMessage());
+            }
+        });
+        bookModel.reload();
+        memberModel.reload();
     }
 
     /**
      * Memperbarui tampilan data buku dan anggota
+     * Hanya baris yang berubah sejak refresh terakhir yang dibaca dan diterapkan
      */
     private void refreshData() {
-        loadBooks();
-        loadMembers();
+        refresher.request();
     }
-}
\ No newline at end of file
+
+    /**
+     * Penerima hasil peminjaman/pengembalian: menampilkan hasil di baris status
+     * tanpa dialog modal, lalu meminta refresh
+     */
+    private Transaction.Listener transactionListener() {
+        return new Transaction.Listener() {
+            @Override
+            public void completed(boolean success, String message) {
+                showStatus(message, success);
+                if (success) {
+                    refreshData();
+                }
+            }
+
+            @Override
+            public void pending(String message) {
+                showStatus(message, true);
+            }
+        };
+    }
+
+    private void showProgress() {
+        int running = tasks.getInFlight();
+        if (running > 0) {
+            showStatus(running + " operation(s) in progress...", true);
+        }
+    }
+
+    /**
+     * Menampilkan pesan di baris status beserta jumlah operasi yang masih berjalan
+     */
+    private void showStatus(String message, boolean ok) {
+        int running = tasks.getInFlight();
+        statusLabel.setForeground(ok ? Color.DARK_GRAY : Color.RED);
+        statusLabel.setText(running > 0 ? message + " (" + running + " still running)" : message);
+    }
+
+    /**
+     * Menampilkan apakah meja sedang offline, jumlah operasi yang menunggu sinkronisasi,
+     * dan jumlah konflik pemutaran ulang
+     */
+    private void showOfflineStatus() {
+        int pending = desk.getPendingCount();
+        int conflicts = desk.getConflictCount();
+        String text = " ";
+        if (desk.isOffline()) {
+            text = "OFFLINE: " + pending + " operation(s) waiting to sync";
+        } else if (conflicts > 0) {
+            text = conflicts + " offline operation(s) conflicted, see " + desk.getConflictsFile();
+        }
+        offlineLabel.setForeground(desk.isOffline() || conflicts > 0 ? Color.RED : Color.DARK_GRAY);
+        offlineLabel.setText(text);
+    }
+
+    /**
+     * Menutup aplikasi; jika masih ada operasi yang berjalan, pengguna diminta konfirmasi
+     * karena operasi tersebut akan dibatalkan
+     */
+    private void exitApplication() {
+        int running = tasks.getInFlight();
+        if (running > 0 && JOptionPane.showConfirmDialog(this,
+                running + " operation(s) are still running and will be cancelled. Exit anyway?",
+                "Exit", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+            return;
+        }
+        tasks.close();
+        dispose();
+        if (desk != null) {
+            try {
+                desk.close();
+            } catch (IOException e) {
+                System.err.println("Error closing offline journal: " + e.getMessage());
+            }
+        }
+        db.close();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,317 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kelas untuk membaca riwayat peminjaman seorang anggota per halaman
+ * - Halaman berikutnya dicari dengan keyset cursor, bukan OFFSET, lewat indeks
+ *   idx_transactions_member_open (member_id, return_date, id), sehingga biaya setiap halaman
+ *   sebanding dengan ukuran halaman, bukan panjang riwayat
+ * - Peminjaman aktif dan terlambat diurutkan dari yang terbaru (id turun); peminjaman aktif
+ *   seorang anggota dibatasi batas peminjamannya, jadi filter jatuh tempo hanya membaca sedikit baris
+ * - Peminjaman yang sudah dikembalikan diurutkan dari tanggal pengembalian terbaru
+ * - Query halaman hanya membaca id dan return_date yang sudah ada di indeks itu; baris lengkap dan
+ *   judul buku dibaca sesudahnya berdasarkan primary key. Kolom lain atau join di query halaman
+ *   membuat optimizer memakai ref atas (member_id, return_date) lalu menyaring id sambil membaca
+ *   mundur seluruh riwayat yang sudah dilewati
+ * - Ringkasan (jumlah aktif, total, aktivitas terakhir) dibaca dari tabel member_loan_summary
+ */
+public class LoanHistory {
+    /** Jumlah baris bawaan per halaman */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    private static final String PAGE_COLUMNS = "SELECT id, return_date FROM transactions ";
+    static final String SQL_ACTIVE = PAGE_COLUMNS
+            + "WHERE member_id = ? AND return_date IS NULL AND id < ? ORDER BY id DESC LIMIT ?";
+    // Not covered by the index because of due_date, but a member only has a few open loans
+    static final String SQL_OVERDUE = PAGE_COLUMNS
+            + "WHERE member_id = ? AND return_date IS NULL AND due_date < ? AND id < ? ORDER BY id DESC LIMIT ?";
+    static final String SQL_RETURNED_FIRST = PAGE_COLUMNS
+            + "WHERE member_id = ? AND return_date IS NOT NULL ORDER BY return_date DESC, id DESC LIMIT ?";
+    // Two queries instead of (return_date, id) < (?, ?), which the optimizer cannot turn into a range
+    static final String SQL_RETURNED_TIES = PAGE_COLUMNS
+            + "WHERE member_id = ? AND return_date = ? AND id < ? ORDER BY id DESC LIMIT ?";
+    static final String SQL_RETURNED_AFTER = PAGE_COLUMNS
+            + "WHERE member_id = ? AND return_date < ? ORDER BY return_date DESC, id DESC LIMIT ?";
+    private static final String SQL_ENTRIES =
+            "SELECT t.id, t.book_id, b.title, t.loan_date, t.due_date, t.return_date, t.copy_barcode "
+            + "FROM transactions t LEFT JOIN books b ON b.id = t.book_id WHERE t.id IN (";
+    static final String SQL_SUMMARY =
+            "SELECT active_loans, total_loans, last_activity FROM member_loan_summary WHERE member_id = ?";
+
+    /**
+     * Jenis riwayat yang dibaca
+     */
+    public enum View {
+        ACTIVE, RETURNED, OVERDUE
+    }
+
+    /**
+     * Satu peminjaman dalam riwayat anggota
+     */
+    public static final class Entry {
+        private final long transactionId;
+        private final String bookId;
+        private final String title;
+        private final LocalDate loanDate;
+        private final LocalDate dueDate;
+        private final LocalDate returnDate;
+        private final String copyBarcode;
+
+        Entry(long transactionId, String bookId, String title, LocalDate loanDate, LocalDate dueDate,
+                LocalDate returnDate, String copyBarcode) {
+            this.transactionId = transactionId;
+            this.bookId = bookId;
+            this.title = title;
+            this.loanDate = loanDate;
+            this.dueDate = dueDate;
+            this.returnDate = returnDate;
+            this.copyBarcode = copyBarcode;
+        }
+
+        public long getTransactionId() {
+            return transactionId;
+        }
+
+        public String getBookId() {
+            return bookId;
+        }
+
+        /**
+         * Judul buku, null jika buku sudah dihapus dari katalog
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        public LocalDate getLoanDate() {
+            return loanDate;
+        }
+
+        public LocalDate getDueDate() {
+            return dueDate;
+        }
+
+        /**
+         * Tanggal pengembalian, null selama buku masih dipinjam
+         */
+        public LocalDate getReturnDate() {
+            return returnDate;
+        }
+
+        /**
+         * Barcode eksemplar, null untuk peminjaman per judul
+         */
+        public String getCopyBarcode() {
+            return copyBarcode;
+        }
+    }
+
+    /**
+     * Satu halaman riwayat beserta cursor halaman berikutnya
+     */
+    public static final class Page {
+        private final List<Entry> entries;
+        private final String nextCursor;
+
+        Page(List<Entry> entries, String nextCursor) {
+            this.entries = entries;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        /**
+         * Cursor untuk halaman berikutnya, null jika ini halaman terakhir
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * Ringkasan peminjaman anggota
+     */
+    public static final class Summary {
+        private final int activeLoans;
+        private final long totalLoans;
+        private final LocalDate lastActivity;
+
+        Summary(int activeLoans, long totalLoans, LocalDate lastActivity) {
+            this.activeLoans = activeLoans;
+            this.totalLoans = totalLoans;
+            this.lastActivity = lastActivity;
+        }
+
+        public int getActiveLoans() {
+            return activeLoans;
+        }
+
+        public long getTotalLoans() {
+            return totalLoans;
+        }
+
+        /**
+         * Tanggal peminjaman atau pengembalian terakhir, null jika anggota belum pernah meminjam
+         */
+        public LocalDate getLastActivity() {
+            return lastActivity;
+        }
+    }
+
+    private final Database db;
+
+    /**
+     * Konstruktor untuk membuat pembaca riwayat peminjaman
+     * @param db Sumber koneksi database
+     */
+    public LoanHistory(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * Membaca ringkasan peminjaman anggota dengan satu pembacaan primary key
+     * @param memberId ID anggota
+     * @return Ringkasan; semua nol jika anggota belum pernah meminjam
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public Summary getSummary(String memberId) throws SQLException {
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_SUMMARY)) {
+            pstmt.setString(1, memberId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return new Summary(0, 0, null);
+                }
+                return new Summary(rs.getInt(1), rs.getLong(2), toLocalDate(rs.getDate(3)));
+            }
+        }
+    }
+
+    /**
+     * Membaca satu halaman riwayat peminjaman anggota
+     * @param memberId ID anggota
+     * @param view Jenis riwayat
+     * @param cursor Cursor dari halaman sebelumnya, null untuk halaman pertama
+     * @param today Tanggal acuan untuk riwayat terlambat
+     * @param limit Jumlah maksimal baris
+     * @return Halaman riwayat
+     * @throws IllegalArgumentException jika cursor tidak valid
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public Page read(String memberId, View view, String cursor, LocalDate today, int limit) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        // return_date as stored, so a cursor binds back exactly the same value
+        List<String> returnDates = new ArrayList<>();
+        try (Connection conn = db.getConnection()) {
+            if (view == View.RETURNED) {
+                String[] position = cursor == null ? null : returnedCursor(cursor);
+                if (position == null) {
+                    readPage(conn, SQL_RETURNED_FIRST, ids, returnDates, memberId, limit + 1);
+                } else {
+                    readPage(conn, SQL_RETURNED_TIES, ids, returnDates, memberId, position[0],
+                            Long.parseLong(position[1]), limit + 1);
+                    if (ids.size() <= limit) {
+                        readPage(conn, SQL_RETURNED_AFTER, ids, returnDates, memberId, position[0],
+                                limit + 1 - ids.size());
+                    }
+                }
+            } else {
+                long beforeId = cursor == null ? Long.MAX_VALUE : idCursor(cursor);
+                if (view == View.OVERDUE) {
+                    readPage(conn, SQL_OVERDUE, ids, returnDates, memberId, Date.valueOf(today), beforeId, limit + 1);
+                } else {
+                    readPage(conn, SQL_ACTIVE, ids, returnDates, memberId, beforeId, limit + 1);
+                }
+            }
+            // One extra row tells whether another page exists, so the last page never comes back empty
+            String nextCursor = null;
+            if (ids.size() > limit) {
+                ids = ids.subList(0, limit);
+                long lastId = ids.get(limit - 1);
+                nextCursor = view == View.RETURNED ? returnDates.get(limit - 1) + "~" + lastId : String.valueOf(lastId);
+            }
+            return new Page(readEntries(conn, ids), nextCursor);
+        }
+    }
+
+    private static void readPage(Connection conn, String sql, List<Long> ids, List<String> returnDates,
+            Object... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                    returnDates.add(rs.getString(2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Membaca baris lengkap dan judul buku untuk id di halaman, dengan urutan yang sama
+     */
+    private static List<Entry> readEntries(Connection conn, List<Long> ids) throws SQLException {
+        List<Entry> entries = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return entries;
+        }
+        StringBuilder sql = new StringBuilder(SQL_ENTRIES);
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        Map<Long, Entry> byId = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.append(')').toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setLong(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    byId.put(rs.getLong(1), new Entry(rs.getLong(1), rs.getString(2), rs.getString(3),
+                            toLocalDate(rs.getDate(4)), toLocalDate(rs.getDate(5)), toLocalDate(rs.getDate(6)),
+                            rs.getString(7)));
+                }
+            }
+        }
+        for (Long id : ids) {
+            Entry entry = byId.get(id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static long idCursor(String cursor) {
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static String[] returnedCursor(String cursor) {
+        int split = cursor.lastIndexOf('~');
+        if (split <= 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        String[] position = {cursor.substring(0, split), cursor.substring(split + 1)};
+        idCursor(position[1]);
+        return position;
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date != null ? date.toLocalDate() : null;
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Exception yang dilempar ketika anggota sudah mencapai batas maksimal peminjaman
+ */
+public class LoanLimitExceededException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Konstruktor dengan pesan error
+     * @param message Pesan yang menjelaskan alasan exception
+     */
+    public LoanLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,92 @@
+import java.time.LocalDate;
+
+/**
+ * Satu operasi peminjaman atau pengembalian di dalam batch, misalnya satu baris manifest hasil scan
+ */
+public final class LoanOperation {
+    /**
+     * Jenis operasi
+     */
+    public enum Type {
+        LOAN, RETURN
+    }
+
+    private final Type type;
+    private final String bookId;
+    private final String memberId;
+    private final LocalDate date;
+    private final String journalId;
+    private final long journalSequence;
+
+    /**
+     * Konstruktor untuk membuat operasi batch
+     * @param type Jenis operasi
+     * @param bookId ID buku
+     * @param memberId ID anggota
+     * @param date Tanggal peminjaman atau pengembalian
+     */
+    public LoanOperation(Type type, String bookId, String memberId, LocalDate date) {
+        this(type, bookId, memberId, date, null, 0L);
+    }
+
+    private LoanOperation(Type type, String bookId, String memberId, LocalDate date, String journalId,
+            long journalSequence) {
+        this.type = type;
+        this.bookId = bookId;
+        this.memberId = memberId;
+        this.date = date;
+        this.journalId = journalId;
+        this.journalSequence = journalSequence;
+    }
+
+    public static LoanOperation loan(String bookId, String memberId, LocalDate date) {
+        return new LoanOperation(Type.LOAN, bookId, memberId, date);
+    }
+
+    public static LoanOperation ret(String bookId, String memberId, LocalDate date) {
+        return new LoanOperation(Type.RETURN, bookId, memberId, date);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Salinan operasi dengan kunci idempotensi dari jurnal meja offline; kunci ini disimpan
+     * di baris transaksi sehingga operasi yang sama tidak tercatat dua kali
+     * @param journalId ID jurnal
+     * @param sequence Nomor urut operasi di jurnal
+     * @return Operasi yang sama dengan kunci jurnal
+     */
+    public LoanOperation withJournalKey(String journalId, long sequence) {
+        return new LoanOperation(type, bookId, memberId, date, journalId, sequence);
+    }
+
+    /**
+     * ID jurnal asal operasi, null jika operasi tidak berasal dari jurnal
+     */
+    public String getJournalId() {
+        return journalId;
+    }
+
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    @Override
+    public String toString() {
+        return type + "[book=" + bookId + ", member=" + memberId + ", date=" + date + "]";
+    }
+}
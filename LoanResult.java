@@ -0,0 +1,54 @@
+import java.time.LocalDate;
+
+/**
+ * Hasil dari operasi peminjaman atau pengembalian buku yang berhasil
+ */
+public final class LoanResult {
+    private final long transactionId;
+    private final String bookId;
+    private final String memberId;
+    private final LocalDate date;
+    private final LocalDate dueDate;
+
+    /**
+     * Konstruktor untuk membuat hasil transaksi
+     * @param transactionId ID baris transaksi, atau -1 jika tidak diketahui
+     * @param bookId ID buku
+     * @param memberId ID anggota
+     * @param date Tanggal peminjaman atau pengembalian
+     * @param dueDate Tanggal jatuh tempo, null untuk pengembalian
+     */
+    public LoanResult(long transactionId, String bookId, String memberId, LocalDate date, LocalDate dueDate) {
+        this.transactionId = transactionId;
+        this.bookId = bookId;
+        this.memberId = memberId;
+        this.date = date;
+        this.dueDate = dueDate;
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    @Override
+    public String toString() {
+        return "LoanResult[transaction=" + transactionId + ", book=" + bookId + ", member=" + memberId
+                + ", date=" + date + (dueDate != null ? ", due=" + dueDate : "") + "]";
+    }
+}
@@ -0,0 +1,593 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Layanan peminjaman dan pengembalian buku tanpa ketergantungan pada antarmuka grafis
+ * - Tidak menyimpan state per transaksi sehingga aman dipanggil dari banyak thread
+ * - Setiap operasi meminjam koneksi sendiri dari pool
+ * - Hasil dikembalikan sebagai LoanResult, kegagalan sebagai exception bertipe
+ * - Penolakan dari AvailabilityCache dipastikan dengan satu pembacaan primary key tanpa transaksi,
+ *   karena perubahan dari node lain baru masuk ke cache pada sinkronisasi berikutnya
+ * - Sinkronisasi cache dan sweep pemesanan berjalan setelah start() dipanggil, sekali per proses
+ * - Buku yang dikembalikan diberikan ke antrean pemesanan (HoldQueue) sebelum menjadi tersedia
+ * - Ketersediaan judul adalah penghitung eksemplar di baris books yang dikurangi/ditambah secara atomik;
+ *   peminjaman dengan barcode juga menandai eksemplar fisiknya di book_copies
+ * - Jumlah peminjaman aktif anggota dibaca dan diperbarui di member_loan_summary dalam transaksi
+ *   yang sama, sehingga pemeriksaan batas peminjaman tidak menghitung baris transactions
+ */
+public class LoanService {
+    static final String SQL_ACTIVE_LOANS =
+            "SELECT active_loans FROM member_loan_summary WHERE member_id = ?";
+    static final String SQL_AVAILABLE_COPIES =
+            "SELECT available_copies FROM books WHERE id = ?";
+    static final String SQL_INSERT_LOAN =
+            "INSERT INTO transactions (book_id, member_id, loan_date, due_date, copy_barcode, journal_id, journal_sequence) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    // Locks the summary row together with the member row; active_loans is NULL if the row is missing
+    static final String SQL_LOCK_MEMBER_AND_LOANS =
+            "SELECT s.active_loans FROM members m "
+            + "LEFT JOIN member_loan_summary s ON s.member_id = m.id WHERE m.id = ? FOR UPDATE";
+    static final String SQL_CREATE_SUMMARY =
+            "INSERT IGNORE INTO member_loan_summary (member_id) VALUES (?)";
+    static final String SQL_SUMMARY_LOAN =
+            "UPDATE member_loan_summary SET active_loans = active_loans + 1, total_loans = total_loans + 1, "
+            + "last_activity = GREATEST(COALESCE(last_activity, ?), ?) WHERE member_id = ?";
+    static final String SQL_SUMMARY_RETURN =
+            "UPDATE member_loan_summary SET active_loans = active_loans - 1, "
+            + "last_activity = GREATEST(COALESCE(last_activity, ?), ?) WHERE member_id = ? AND active_loans > 0";
+    // Assignments run left to right, so available is computed from the decremented counter
+    static final String SQL_CLAIM_COPY =
+            "UPDATE books SET available_copies = available_copies - 1, available = available_copies > 0 "
+            + "WHERE id = ? AND available_copies > 0";
+    static final String SQL_RELEASE_COPY =
+            "UPDATE books SET available_copies = available_copies + 1, available = 1 "
+            + "WHERE id = ? AND available_copies < total_copies";
+    static final String SQL_FIND_BARCODE =
+            "SELECT book_id FROM book_copies WHERE barcode = ?";
+    static final String SQL_CLAIM_BARCODE =
+            "UPDATE book_copies SET on_loan = 1 WHERE barcode = ? AND on_loan = 0";
+    static final String SQL_RELEASE_BARCODE =
+            "UPDATE book_copies SET on_loan = 0 WHERE barcode = ?";
+    static final String SQL_LOCK_OPEN_LOAN =
+            "SELECT id, copy_barcode FROM transactions WHERE book_id = ? AND member_id = ? AND return_date IS NULL "
+            + "ORDER BY id LIMIT 1 FOR UPDATE";
+    static final String SQL_CLOSE_LOAN =
+            "UPDATE transactions SET return_date = ?, return_journal_id = ?, return_journal_sequence = ? "
+            + "WHERE id = ? AND return_date IS NULL";
+
+    /** Interval bawaan untuk membaca perubahan dari node lain ke cache */
+    private static final long CACHE_SYNC_MILLIS = 2000L;
+    /** Interval bawaan sweep pemesanan yang kedaluwarsa */
+    private static final long HOLD_SWEEP_MILLIS = 60000L;
+
+    private final Database db;
+    private final AvailabilityCache cache;
+    private final HoldQueue holds;
+
+    /**
+     * Konstruktor untuk membuat layanan peminjaman dengan cache dan antrean pemesanan sendiri
+     * Thread latar belakang baru berjalan setelah start()
+     * @param db Sumber koneksi database
+     */
+    public LoanService(Database db) {
+        this(db, new AvailabilityCache(db));
+    }
+
+    /**
+     * Konstruktor untuk membuat layanan peminjaman dengan cache bersama
+     * @param db Sumber koneksi database
+     * @param cache Cache ketersediaan yang dipakai bersama layanan lain
+     */
+    public LoanService(Database db, AvailabilityCache cache) {
+        this(db, cache, new HoldQueue(db, cache));
+    }
+
+    /**
+     * Konstruktor untuk membuat layanan peminjaman dengan cache dan antrean pemesanan bersama
+     * @param db Sumber koneksi database
+     * @param cache Cache ketersediaan yang dipakai bersama layanan lain
+     * @param holds Antrean pemesanan yang dipakai bersama layanan lain
+     */
+    public LoanService(Database db, AvailabilityCache cache, HoldQueue holds) {
+        this.db = db;
+        this.cache = cache;
+        this.holds = holds;
+    }
+
+    /**
+     * Mulai membaca perubahan dari node lain ke cache dan menjalankan sweep pemesanan kedaluwarsa
+     * - CACHE_SYNC_MS (bawaan 2000) interval sinkronisasi cache
+     * - HOLD_SWEEP_MS (bawaan 60000) interval sweep pemesanan
+     */
+    public void start() {
+        cache.startSync(Long.parseLong(Database.setting("CACHE_SYNC_MS", String.valueOf(CACHE_SYNC_MILLIS))));
+        holds.start(Long.parseLong(Database.setting("HOLD_SWEEP_MS", String.valueOf(HOLD_SWEEP_MILLIS))));
+    }
+
+    /**
+     * Menghentikan sinkronisasi cache dan sweep pemesanan
+     */
+    public void stop() {
+        cache.stopSync();
+        holds.stop();
+    }
+
+    /**
+     * Mendapatkan cache ketersediaan yang dipakai layanan ini
+     * @return Cache ketersediaan
+     */
+    public AvailabilityCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Mendapatkan antrean pemesanan yang dipakai layanan ini
+     * @return Antrean pemesanan
+     */
+    public HoldQueue getHolds() {
+        return holds;
+    }
+
+    /**
+     * Meminjamkan buku kepada anggota
+     * Kedua aturan diperiksa di dalam satu transaksi database:
+     * - Baris anggota dikunci sehingga hitungan peminjaman tidak berubah sampai commit
+     * - Satu eksemplar diambil dengan mengurangi penghitung secara bersyarat sehingga dua meja
+     *   tidak bisa meminjamkan eksemplar terakhir yang sama
+     * - Eksemplar yang sedang disimpan untuk anggota ini (pemesanan READY) diambil dengan memenuhi pemesanannya
+     * @param book Buku yang akan dipinjam
+     * @param member Anggota yang meminjam
+     * @param date Tanggal peminjaman
+     * @return Hasil peminjaman beserta tanggal jatuh tempo
+     * @throws BookNotAvailableException jika semua eksemplar sedang dipinjam atau buku tidak ada
+     * @throws LoanLimitExceededException jika anggota sudah mencapai batas peminjaman
+     * @throws SQLException jika terjadi kesalahan pada database atau anggota tidak ditemukan
+     */
+    public LoanResult loan(Book book, Member member, LocalDate date)
+            throws BookNotAvailableException, LoanLimitExceededException, SQLException {
+        return loan(book, member, date, null, 0L);
+    }
+
+    /**
+     * Meminjamkan buku dengan kunci idempotensi dari jurnal meja offline, disimpan di baris transaksi
+     * @param journalId ID jurnal, null jika tanpa kunci
+     * @param journalSequence Nomor urut operasi di jurnal
+     */
+    LoanResult loan(Book book, Member member, LocalDate date, String journalId, long journalSequence)
+            throws BookNotAvailableException, LoanLimitExceededException, SQLException {
+        long start = System.nanoTime();
+        try {
+            return admitLoan(book, null, member, date, journalId, journalSequence);
+        } finally {
+            Metrics.LOAN.recordSince(start);
+        }
+    }
+
+    /**
+     * Meminjamkan eksemplar tertentu berdasarkan barcode yang di-scan di meja
+     * Aturannya sama dengan loan(); eksemplar ditandai sedang dipinjam dan dicatat di transaksi
+     * sehingga pengembaliannya melepas eksemplar yang sama
+     * @param barcode Barcode eksemplar
+     * @param member Anggota yang meminjam
+     * @param date Tanggal peminjaman
+     * @return Hasil peminjaman beserta tanggal jatuh tempo
+     * @throws BookNotAvailableException jika eksemplar tidak dikenal, sedang dipinjam, atau disimpan untuk pemesan lain
+     * @throws LoanLimitExceededException jika anggota sudah mencapai batas peminjaman
+     * @throws SQLException jika terjadi kesalahan pada database atau anggota tidak ditemukan
+     */
+    public LoanResult loanCopy(String barcode, Member member, LocalDate date)
+            throws BookNotAvailableException, LoanLimitExceededException, SQLException {
+        long start = System.nanoTime();
+        try {
+            String bookId = findBookOfCopy(barcode);
+            if (bookId == null) {
+                Metrics.reject(Metrics.Rejection.UNKNOWN_BOOK);
+                throw new BookNotAvailableException("Copy not found: " + barcode);
+            }
+            return admitLoan(new Book(bookId, "", ""), barcode, member, date, null, 0L);
+        } finally {
+            Metrics.LOAN.recordSince(start);
+        }
+    }
+
+    private LoanResult admitLoan(Book book, String barcode, Member member, LocalDate date, String journalId,
+            long journalSequence) throws BookNotAvailableException, LoanLimitExceededException, SQLException {
+        boolean readyForMember = holds.isReadyFor(book.getId(), member.getId());
+        if (Boolean.FALSE.equals(cache.isAvailable(book.getId())) && !readyForMember
+                && confirmedUnavailable(book.getId())) {
+            book.setAvailable(false);
+            Metrics.reject(Metrics.Rejection.BOOK_NOT_AVAILABLE);
+            throw new BookNotAvailableException("Book is not available for lending");
+        }
+        Integer cachedLoans = cache.getActiveLoans(member.getId());
+        if (cachedLoans != null && cachedLoans >= member.getLoanLimit()
+                && confirmedLoans(member.getId()) >= member.getLoanLimit()) {
+            Metrics.reject(Metrics.Rejection.LOAN_LIMIT_EXCEEDED);
+            throw new LoanLimitExceededException("Member has reached their loan limit");
+        }
+        // Stamps are taken before reading the database so stale results cannot overwrite newer invalidations
+        long bookStamp = cache.bookStamp(book.getId());
+        long memberStamp = cache.memberStamp(member.getId());
+        LocalDate dueDate = date.plusDays(member.getLoanPeriod());
+
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // Lock the member row first so concurrent loans for one member serialize here
+                int currentLoans = lockMemberAndReadLoans(conn, member.getId());
+                if (currentLoans < 0) {
+                    // First loan of a member added after the summary table: the locking read left a gap
+                    // lock that concurrent first loans would deadlock on, so create the row on its own
+                    conn.rollback();
+                    createSummaries(conn, Collections.singleton(member.getId()));
+                    currentLoans = lockMemberAndReadLoans(conn, member.getId());
+                }
+                if (currentLoans >= member.getLoanLimit()) {
+                    conn.rollback();
+                    cache.putActiveLoans(member.getId(), currentLoans, memberStamp);
+                    Metrics.reject(Metrics.Rejection.LOAN_LIMIT_EXCEEDED);
+                    throw new LoanLimitExceededException("Member has reached their loan limit");
+                }
+
+                // A member collecting a hold takes the copy kept aside for them rather than another shelf copy
+                boolean fromHold = readyForMember && holds.fulfill(conn, book.getId(), member.getId(), date);
+                if (!fromHold) {
+                    int claimed;
+                    try (PreparedStatement pstmt = conn.prepareStatement(SQL_CLAIM_COPY)) {
+                        pstmt.setString(1, book.getId());
+                        claimed = pstmt.executeUpdate();
+                    }
+                    // The hold may have been promoted on another node after the mirror was last loaded
+                    fromHold = claimed == 0 && holds.fulfill(conn, book.getId(), member.getId(), date);
+                    if (claimed == 0 && !fromHold) {
+                        boolean known = bookExists(conn, book.getId());
+                        conn.rollback();
+                        if (!known) {
+                            Metrics.reject(Metrics.Rejection.UNKNOWN_BOOK);
+                            throw new BookNotAvailableException("Book not found: " + book.getId());
+                        }
+                        // Only ids the database has confirmed are registered, so requests cannot grow the table
+                        IdTable.BOOKS.intern(book.getId());
+                        cache.putAvailable(book.getId(), false, bookStamp);
+                        book.setAvailable(false);
+                        Metrics.reject(Metrics.Rejection.BOOK_NOT_AVAILABLE);
+                        throw new BookNotAvailableException("Book is not available for lending");
+                    }
+                }
+                if (barcode != null && !claimBarcode(conn, barcode)) {
+                    conn.rollback();
+                    Metrics.reject(Metrics.Rejection.BOOK_NOT_AVAILABLE);
+                    throw new BookNotAvailableException("Copy " + barcode + " is already on loan");
+                }
+
+                long transactionId;
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_LOAN, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setString(1, book.getId());
+                    pstmt.setString(2, member.getId());
+                    pstmt.setDate(3, java.sql.Date.valueOf(date));
+                    pstmt.setDate(4, java.sql.Date.valueOf(dueDate));
+                    pstmt.setString(5, barcode);
+                    bindJournalKey(pstmt, 6, journalId, journalSequence);
+                    pstmt.executeUpdate();
+                    transactionId = generatedKey(pstmt);
+                }
+                countLoan(conn, member.getId(), date);
+
+                conn.commit();
+                if (fromHold) {
+                    holds.fulfilled(book.getId(), member.getId());
+                }
+                // Other copies may remain, and the next claim tells which; only a failed claim is cached
+                cache.invalidateBook(book.getId());
+                cache.putActiveLoans(member.getId(), currentLoans + 1, memberStamp);
+                if (!fromHold) {
+                    book.checkedOut();
+                }
+                return new LoanResult(transactionId, book.getId(), member.getId(), date, dueDate);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Memeriksa ulang status "tidak tersedia" dari cache; jika ternyata ada eksemplar di rak
+     * (misalnya dikembalikan di node lain), entri cache dibuang
+     * @return true jika buku memang tidak tersedia atau tidak ada
+     */
+    private boolean confirmedUnavailable(String bookId) throws SQLException {
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_AVAILABLE_COPIES)) {
+            pstmt.setString(1, bookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    cache.invalidateBook(bookId);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean bookExists(Connection conn, String bookId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_AVAILABLE_COPIES)) {
+            pstmt.setString(1, bookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Membaca ulang jumlah peminjaman aktif yang di cache sudah mencapai batas; jika ternyata
+     * lebih kecil, entri cache dibuang
+     */
+    private int confirmedLoans(String memberId) throws SQLException {
+        long stamp = cache.memberStamp(memberId);
+        int loans;
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_ACTIVE_LOANS)) {
+            pstmt.setString(1, memberId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                loans = rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+        cache.putActiveLoans(memberId, loans, stamp);
+        return loans;
+    }
+
+    /**
+     * Mencatat pengembalian buku oleh anggota
+     * Jika ada pemesan yang menunggu, eksemplar langsung disimpan untuk pemesan terlama
+     * dan tidak menambah eksemplar tersedia bagi anggota lain
+     * Jika anggota meminjam beberapa eksemplar judul yang sama, peminjaman terlama yang ditutup
+     * @param book Buku yang dikembalikan
+     * @param member Anggota yang mengembalikan
+     * @param date Tanggal pengembalian
+     * @return Hasil pengembalian
+     * @throws NoActiveLoanException jika tidak ada peminjaman aktif untuk buku dan anggota ini
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public LoanResult returnBook(Book book, Member member, LocalDate date)
+            throws NoActiveLoanException, SQLException {
+        return returnBook(book, member, date, null, 0L);
+    }
+
+    /**
+     * Mencatat pengembalian dengan kunci idempotensi dari jurnal meja offline, disimpan di baris transaksi
+     * @param journalId ID jurnal, null jika tanpa kunci
+     * @param journalSequence Nomor urut operasi di jurnal
+     */
+    LoanResult returnBook(Book book, Member member, LocalDate date, String journalId, long journalSequence)
+            throws NoActiveLoanException, SQLException {
+        long start = System.nanoTime();
+        try {
+            return closeLoan(book, member, date, journalId, journalSequence);
+        } finally {
+            Metrics.RETURN.recordSince(start);
+        }
+    }
+
+    private LoanResult closeLoan(Book book, Member member, LocalDate date, String journalId, long journalSequence)
+            throws NoActiveLoanException, SQLException {
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // Same order as the loan path and BatchLoanService (member and summary, book, then loans),
+                // so a return cannot deadlock with a batch chunk touching the same member or title
+                if (!lockMember(conn, member.getId())) {
+                    conn.rollback();
+                    Metrics.reject(Metrics.Rejection.NO_ACTIVE_LOAN);
+                    throw new NoActiveLoanException("No active loan found for this book and member");
+                }
+                HoldQueue.lockBook(conn, book.getId());
+                long transactionId;
+                String barcode;
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_LOCK_OPEN_LOAN)) {
+                    pstmt.setString(1, book.getId());
+                    pstmt.setString(2, member.getId());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.rollback();
+                            Metrics.reject(Metrics.Rejection.NO_ACTIVE_LOAN);
+                            throw new NoActiveLoanException("No active loan found for this book and member");
+                        }
+                        transactionId = rs.getLong(1);
+                        barcode = rs.getString(2);
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_CLOSE_LOAN)) {
+                    pstmt.setDate(1, java.sql.Date.valueOf(date));
+                    bindJournalKey(pstmt, 2, journalId, journalSequence);
+                    pstmt.setLong(4, transactionId);
+                    pstmt.executeUpdate();
+                }
+
+                HoldQueue.Hold next = holds.releaseBook(conn, book.getId(), date);
+                if (barcode != null) {
+                    releaseBarcode(conn, barcode);
+                }
+                countReturn(conn, member.getId(), date);
+
+                conn.commit();
+                if (next == null) {
+                    cache.recordReturn(book.getId(), member.getId());
+                    book.checkedIn();
+                } else {
+                    holds.released(book.getId(), next);
+                    cache.invalidateMember(member.getId());
+                }
+                return new LoanResult(transactionId, book.getId(), member.getId(), date, null);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Mendapatkan jumlah buku yang sedang dipinjam oleh anggota dari ringkasan peminjamannya
+     * @param memberId ID anggota yang akan diperiksa
+     * @return Jumlah buku yang sedang dipinjam
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public int getCurrentLoans(String memberId) throws SQLException {
+        try (Connection conn = db.getConnection()) {
+            return readActiveLoans(conn, memberId);
+        }
+    }
+
+    private static int readActiveLoans(Connection conn, String memberId) throws SQLException {
+        long start = System.nanoTime();
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_ACTIVE_LOANS)) {
+            pstmt.setString(1, memberId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } finally {
+            Metrics.LOAN_COUNT.recordSince(start);
+        }
+    }
+
+    /**
+     * Mengunci baris anggota beserta ringkasannya dan membaca jumlah peminjaman aktif dalam satu query
+     * @param conn Koneksi dengan transaksi yang sedang berjalan
+     * @param memberId ID anggota
+     * @return Jumlah peminjaman aktif anggota, atau -1 jika anggota belum memiliki baris ringkasan
+     * @throws SQLException jika anggota tidak ditemukan atau terjadi kesalahan pada database
+     */
+    private static int lockMemberAndReadLoans(Connection conn, String memberId) throws SQLException {
+        long start = System.nanoTime();
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_LOCK_MEMBER_AND_LOANS)) {
+            pstmt.setString(1, memberId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    Metrics.reject(Metrics.Rejection.UNKNOWN_MEMBER);
+                    throw new SQLException("Member not found: " + memberId);
+                }
+                int activeLoans = rs.getInt(1);
+                return rs.wasNull() ? -1 : activeLoans;
+            }
+        } finally {
+            Metrics.LOAN_COUNT.recordSince(start);
+        }
+    }
+
+    /**
+     * Mengunci baris anggota beserta ringkasannya tanpa membaca jumlah peminjaman
+     * @return false jika anggota tidak ditemukan
+     */
+    private static boolean lockMember(Connection conn, String memberId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_LOCK_MEMBER_AND_LOANS)) {
+            pstmt.setString(1, memberId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Membuat baris ringkasan kosong untuk anggota yang belum memilikinya dan langsung commit
+     * @param conn Koneksi tanpa transaksi yang sedang berjalan
+     * @param memberIds ID anggota
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    static void createSummaries(Connection conn, Collection<String> memberIds) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_CREATE_SUMMARY)) {
+            for (String memberId : memberIds) {
+                pstmt.setString(1, memberId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        conn.commit();
+    }
+
+    /**
+     * Menambah peminjaman aktif dan total peminjaman di ringkasan anggota
+     */
+    static void countLoan(Connection conn, String memberId, LocalDate date) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_SUMMARY_LOAN)) {
+            bindSummary(pstmt, memberId, date);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Mengurangi peminjaman aktif di ringkasan anggota
+     */
+    static void countReturn(Connection conn, String memberId, LocalDate date) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_SUMMARY_RETURN)) {
+            bindSummary(pstmt, memberId, date);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Mengisi parameter SQL_SUMMARY_LOAN/SQL_SUMMARY_RETURN
+     */
+    static void bindSummary(PreparedStatement pstmt, String memberId, LocalDate date) throws SQLException {
+        pstmt.setDate(1, java.sql.Date.valueOf(date));
+        pstmt.setDate(2, java.sql.Date.valueOf(date));
+        pstmt.setString(3, memberId);
+    }
+
+    /**
+     * Mengisi kunci jurnal (ID jurnal dan nomor urut) mulai dari parameter index; NULL jika tanpa kunci
+     */
+    static void bindJournalKey(PreparedStatement pstmt, int index, String journalId, long sequence)
+            throws SQLException {
+        if (journalId == null) {
+            pstmt.setNull(index, java.sql.Types.CHAR);
+            pstmt.setNull(index + 1, java.sql.Types.BIGINT);
+        } else {
+            pstmt.setString(index, journalId);
+            pstmt.setLong(index + 1, sequence);
+        }
+    }
+
+    private String findBookOfCopy(String barcode) throws SQLException {
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_FIND_BARCODE)) {
+            pstmt.setString(1, barcode);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Menandai eksemplar sedang dipinjam; dipanggil setelah baris buku dikunci
+     * @return true jika eksemplar belum dipinjam
+     */
+    static boolean claimBarcode(Connection conn, String barcode) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_CLAIM_BARCODE)) {
+            pstmt.setString(1, barcode);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    static void releaseBarcode(Connection conn, String barcode) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_RELEASE_BARCODE)) {
+            pstmt.setString(1, barcode);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static long generatedKey(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+            return keys.next() ? keys.getLong(1) : -1;
+        }
+    }
+}
@@ -12,6 +12,16 @@ public interface Loanable {
      * @param status true jika tersedia, false jika sedang dipinjam
      */
     void setAvailable(boolean status);
+    /**
+     * Mendapatkan jumlah eksemplar yang tersedia untuk dipinjam
+     * @return Jumlah eksemplar tersedia
+     */
+    int getAvailableCopies();
+    /**
+     * Mendapatkan jumlah seluruh eksemplar
+     * @return Jumlah eksemplar
+     */
+    int getTotalCopies();
     /**
      * Mendapatkan ID unik objek
      * @return ID objek
@@ -18,6 +18,20 @@ public abstract class Member {
         this.type = type;
     }
 
+    /**
+     * Membuat objek anggota sesuai tipe keanggotaan yang tersimpan di database
+     * @param id ID unik anggota
+     * @param name Nama anggota
+     * @param type Tipe keanggotaan (Student/Staff)
+     * @return Objek Staff untuk tipe "Staff", selain itu Student
+     */
+    public static Member create(String id, String name, String type) {
+        if ("Staff".equals(type)) {
+            return new Staff(id, name);
+        }
+        return new Student(id, name);
+    }
+
     /**
      * Mendapatkan ID anggota
      * @return ID anggota
@@ -57,4 +71,9 @@ public abstract class Member {
      * @return Jumlah hari maksimal peminjaman
      */
     public abstract int getLoanPeriod();
+    /**
+     * Mendapatkan denda per hari keterlambatan pengembalian
+     * @return Denda per hari dalam rupiah
+     */
+    public abstract int getDailyFine();
 }
\ No newline at end of file
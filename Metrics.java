@@ -0,0 +1,217 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Registri metrik operasi perpustakaan
+ * - Histogram latensi per operasi (peminjaman, pengembalian, cek jumlah pinjaman,
+ *   pemuatan katalog, langkah migrasi, batch, run denda keterlambatan, pencarian katalog)
+ * - Penghitung penolakan per alasan
+ * - Waktu tunggu dan status pool koneksi
+ * Metrik diekspor lewat JMX (domain "library") dan sebagai teks format Prometheus
+ * pada endpoint /metrics jika METRICS_PORT diatur.
+ */
+public final class Metrics {
+
+    /**
+     * Alasan penolakan permintaan peminjaman atau pengembalian
+     */
+    public enum Rejection {
+        BOOK_NOT_AVAILABLE,
+        LOAN_LIMIT_EXCEEDED,
+        NO_ACTIVE_LOAN,
+        UNKNOWN_BOOK,
+        UNKNOWN_MEMBER,
+        HOLD_NOT_ALLOWED
+    }
+
+    /**
+     * Antarmuka JMX untuk penghitung penolakan
+     */
+    public interface RejectionsMXBean {
+        Map<String, Long> getRejections();
+    }
+
+    public static final LatencyHistogram LOAN = new LatencyHistogram("loan");
+    public static final LatencyHistogram RETURN = new LatencyHistogram("return");
+    public static final LatencyHistogram LOAN_COUNT = new LatencyHistogram("loan_count_check");
+    public static final LatencyHistogram CATALOG_LOAD = new LatencyHistogram("catalog_load");
+    public static final LatencyHistogram MIGRATION_STEP = new LatencyHistogram("migration_step");
+    public static final LatencyHistogram BATCH = new LatencyHistogram("batch");
+    public static final LatencyHistogram OVERDUE_RUN = new LatencyHistogram("overdue_run");
+    public static final LatencyHistogram SEARCH = new LatencyHistogram("catalog_search");
+    public static final LatencyHistogram ANALYTICS_RUN = new LatencyHistogram("analytics_run");
+
+    private static final LatencyHistogram[] OPERATIONS = {
+        LOAN, RETURN, LOAN_COUNT, CATALOG_LOAD, MIGRATION_STEP, BATCH, OVERDUE_RUN, SEARCH, ANALYTICS_RUN
+    };
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final LongAdder[] REJECTIONS = new LongAdder[Rejection.values().length];
+    static {
+        for (int i = 0; i < REJECTIONS.length; i++) {
+            REJECTIONS[i] = new LongAdder();
+        }
+    }
+
+    private static volatile ConnectionPool pool;
+    private static boolean jmxRegistered = false;
+    private static HttpServer httpServer;
+
+    private Metrics() {
+    }
+
+    /**
+     * Mencatat satu penolakan
+     * @param reason Alasan penolakan
+     */
+    public static void reject(Rejection reason) {
+        REJECTIONS[reason.ordinal()].increment();
+    }
+
+    /**
+     * Jumlah penolakan untuk satu alasan
+     * @param reason Alasan penolakan
+     * @return Jumlah penolakan sejak aplikasi berjalan
+     */
+    public static long rejections(Rejection reason) {
+        return REJECTIONS[reason.ordinal()].sum();
+    }
+
+    /**
+     * Mendaftarkan pool koneksi dan memulai ekspor metrik sesuai pengaturan
+     * - METRICS_JMX (bawaan true) mendaftarkan MBean ke platform MBean server
+     * - METRICS_PORT (bawaan tidak aktif) membuka endpoint HTTP /metrics
+     * @param connectionPool Pool koneksi yang aktif
+     */
+    public static synchronized void register(ConnectionPool connectionPool) {
+        pool = connectionPool;
+        if (Boolean.parseBoolean(Database.setting("METRICS_JMX", "true"))) {
+            registerJmx(connectionPool);
+        }
+        String port = Database.setting("METRICS_PORT", "");
+        if (!port.isEmpty() && httpServer == null) {
+            try {
+                startHttp(Integer.parseInt(port));
+            } catch (IOException e) {
+                System.err.println("Error starting metrics endpoint: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void registerJmx(ConnectionPool connectionPool) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            // The pool is re-created after Database.close(), so its bean is always replaced
+            ObjectName poolName = new ObjectName("library:type=ConnectionPool");
+            if (server.isRegistered(poolName)) {
+                server.unregisterMBean(poolName);
+            }
+            server.registerMBean(new StandardMBean(connectionPool, ConnectionPoolMXBean.class, true), poolName);
+            if (jmxRegistered) {
+                return;
+            }
+            for (LatencyHistogram histogram : OPERATIONS) {
+                server.registerMBean(new StandardMBean(histogram, LatencyHistogramMXBean.class, true),
+                        new ObjectName("library:type=Latency,name=" + histogram.getName()));
+            }
+            RejectionsMXBean rejections = Metrics::rejectionCounts;
+            server.registerMBean(new StandardMBean(rejections, RejectionsMXBean.class, true),
+                    new ObjectName("library:type=Rejections"));
+            jmxRegistered = true;
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBeans: " + e.getMessage());
+        }
+    }
+
+    private static void startHttp(int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        httpServer.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        httpServer.start();
+        System.out.println("Metrics available at http://localhost:" + port + "/metrics");
+    }
+
+    /**
+     * Menghentikan endpoint HTTP metrik jika aktif
+     */
+    public static synchronized void stopHttp() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+    }
+
+    private static Map<String, Long> rejectionCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Rejection reason : Rejection.values()) {
+            counts.put(reason.name().toLowerCase(Locale.ROOT), rejections(reason));
+        }
+        return counts;
+    }
+
+    /**
+     * Menyusun semua metrik dalam format teks Prometheus
+     * @return Isi untuk endpoint /metrics
+     */
+    public static String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# TYPE library_operation_seconds summary\n");
+        for (LatencyHistogram histogram : OPERATIONS) {
+            appendSummary(sb, "library_operation_seconds", "operation=\"" + histogram.getName() + "\"", histogram);
+        }
+
+        sb.append("# TYPE library_rejections_total counter\n");
+        for (Map.Entry<String, Long> entry : rejectionCounts().entrySet()) {
+            sb.append("library_rejections_total{reason=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue()).append('\n');
+        }
+
+        ConnectionPool current = pool;
+        if (current != null) {
+            sb.append("# TYPE library_pool_wait_seconds summary\n");
+            appendSummary(sb, "library_pool_wait_seconds", null, current.getWaitHistogram());
+            sb.append("# TYPE library_pool_connections gauge\n");
+            sb.append("library_pool_connections{state=\"active\"} ").append(current.getActiveConnections()).append('\n');
+            sb.append("library_pool_connections{state=\"idle\"} ").append(current.getIdleConnections()).append('\n');
+            sb.append("# TYPE library_pool_max_connections gauge\n");
+            sb.append("library_pool_max_connections ").append(current.getMaxSize()).append('\n');
+            sb.append("# TYPE library_pool_borrow_timeouts_total counter\n");
+            sb.append("library_pool_borrow_timeouts_total ").append(current.getBorrowTimeouts()).append('\n');
+            sb.append("# TYPE library_pool_validation_failures_total counter\n");
+            sb.append("library_pool_validation_failures_total ").append(current.getValidationFailures()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendSummary(StringBuilder sb, String metric, String labels, LatencyHistogram histogram) {
+        String prefix = labels == null ? "" : labels + ",";
+        String suffix = labels == null ? "" : "{" + labels + "}";
+        for (double quantile : QUANTILES) {
+            sb.append(metric).append('{').append(prefix).append("quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.percentileMillis(quantile) / 1000.0).append('\n');
+        }
+        sb.append(metric).append("_sum").append(suffix).append(' ').append(histogram.getSumSeconds()).append('\n');
+        sb.append(metric).append("_count").append(suffix).append(' ').append(histogram.getCount()).append('\n');
+        sb.append(metric).append("_max").append(suffix).append(' ').append(histogram.getMaxMillis() / 1000.0).append('\n');
+    }
+}
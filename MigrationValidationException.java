@@ -0,0 +1,17 @@
+import java.sql.SQLException;
+
+/**
+ * Exception yang dilempar ketika file migrasi tidak sesuai dengan riwayat di schema_version,
+ * misalnya file yang sudah diaplikasikan diubah atau migrasi baru disisipkan sebelum versi terakhir
+ */
+public class MigrationValidationException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Konstruktor dengan pesan error
+     * @param message Pesan yang menjelaskan alasan exception
+     */
+    public MigrationValidationException(String message) {
+        super(message);
+    }
+}
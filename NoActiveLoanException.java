@@ -0,0 +1,14 @@
+/**
+ * Exception yang dilempar ketika tidak ada peminjaman aktif untuk buku dan anggota tertentu
+ */
+public class NoActiveLoanException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Konstruktor dengan pesan error
+     * @param message Pesan yang menjelaskan alasan exception
+     */
+    public NoActiveLoanException(String message) {
+        super(message);
+    }
+}
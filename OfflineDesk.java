@@ -0,0 +1,864 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mode offline untuk meja peminjaman: meja tetap melayani peminjaman dan pengembalian
+ * selama database tidak bisa dihubungi
+ * - Selama online, snapshot katalog dan ketersediaan (eksemplar tersedia per buku, peminjaman
+ *   aktif per anggota) disimpan berkala ke disk
+ * - Saat koneksi gagal, operasi dicatat ke OfflineJournal dan aturan peminjaman diperiksa terhadap
+ *   snapshot yang sudah dikurangi/ditambah operasi di jurnal. Hasil dari jurnal memakai transactionId -1.
+ * - Selama jurnal belum kosong, operasi baru juga masuk jurnal agar urutannya tetap terjaga
+ * - Thread latar belakang mencoba koneksi dengan jeda yang berlipat (dengan jitter) sampai
+ *   OFFLINE_PROBE_MAX_MS, sehingga banyak meja tidak menghubungi database serentak
+ * - Setelah database kembali, jurnal diputar ulang lewat BatchLoanService per potongan; posisi
+ *   pemutaran disimpan di tabel offline_replay di transaksi yang sama sehingga tidak ada operasi ganda
+ * - Operasi yang ditolak database saat diputar ulang (misalnya buku sudah dipinjam di meja lain)
+ *   adalah konflik: dicatat ke conflicts.log untuk ditindaklanjuti petugas, lalu dilewati.
+ *   Kegagalan sementara (koneksi putus, deadlock, lock wait timeout) bukan konflik; operasinya
+ *   tetap di jurnal dan diputar ulang pada percobaan berikutnya.
+ * - Setiap operasi mendapat nomor urut jurnal sebelum dicoba online, dan baris transaksinya menyimpan
+ *   ID jurnal beserta nomor itu (indeks unik). Operasi yang sudah tersimpan tepat saat koneksi putus
+ *   lalu dicatat lagi di jurnal dilewati saat diputar ulang, jadi tidak dipinjamkan/dikembalikan dua kali.
+ * - Peminjaman dan pengembalian di satu meja dijalankan bergantian agar nomor urut di jurnal tetap naik
+ */
+public class OfflineDesk implements AutoCloseable {
+    static final int SNAPSHOT_MAGIC = 0x4c425331; // "LBS1"
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    static final String SQL_READ_POSITION = "SELECT last_sequence FROM offline_replay WHERE journal_id = ?";
+    static final String SQL_SAVE_POSITION = "INSERT INTO offline_replay (journal_id, last_sequence) VALUES (?, ?) "
+            + "ON DUPLICATE KEY UPDATE last_sequence = VALUES(last_sequence)";
+    static final String SQL_COMMITTED_SEQUENCES =
+            "SELECT journal_sequence FROM transactions WHERE journal_id = ? AND journal_sequence BETWEEN ? AND ? "
+            + "UNION ALL SELECT return_journal_sequence FROM transactions "
+            + "WHERE return_journal_id = ? AND return_journal_sequence BETWEEN ? AND ?";
+    static final String SQL_ACTIVE_LOANS =
+            "SELECT member_id, active_loans FROM member_loan_summary WHERE active_loans > 0";
+
+    /**
+     * Isi snapshot di memori dalam array primitif, tanpa objek Book/Member per baris
+     * - Baris buku dan anggota disimpan sesuai urutan masuk; bookOrder/memberOrder memberi urutan
+     *   ID (urutan String Java) untuk membaca halaman setelah ID tertentu
+     * - Buku dicari lewat surrogate IdTable.BOOKS; peminjaman aktif diindeks surrogate anggota
+     */
+    private static final class Snapshot {
+        int bookCount;
+        int[] bookKeys = new int[16];
+        String[] titles = new String[16];
+        String[] authors = new String[16];
+        int[] available = new int[16];
+        int[] total = new int[16];
+        int[] bookOrder = new int[0];
+        /** Baris buku + 1 per surrogate buku, 0 jika tidak ada di snapshot */
+        int[] bookRow = new int[0];
+        int memberCount;
+        int[] memberKeys = new int[16];
+        String[] names = new String[16];
+        boolean[] staff = new boolean[16];
+        int[] memberOrder = new int[0];
+        /** Peminjaman aktif per surrogate anggota */
+        int[] loans = new int[0];
+
+        void addBook(Book book) {
+            if (bookCount == bookKeys.length) {
+                int capacity = bookCount * 2;
+                bookKeys = Arrays.copyOf(bookKeys, capacity);
+                titles = Arrays.copyOf(titles, capacity);
+                authors = Arrays.copyOf(authors, capacity);
+                available = Arrays.copyOf(available, capacity);
+                total = Arrays.copyOf(total, capacity);
+            }
+            int row = bookCount++;
+            bookKeys[row] = IdTable.BOOKS.intern(book.getId());
+            titles[row] = book.getTitle();
+            authors[row] = book.getAuthor();
+            available[row] = book.getAvailableCopies();
+            total[row] = book.getTotalCopies();
+        }
+
+        void addMember(Member member) {
+            if (memberCount == memberKeys.length) {
+                int capacity = memberCount * 2;
+                memberKeys = Arrays.copyOf(memberKeys, capacity);
+                names = Arrays.copyOf(names, capacity);
+                staff = Arrays.copyOf(staff, capacity);
+            }
+            int row = memberCount++;
+            memberKeys[row] = IdTable.MEMBERS.intern(member.getId());
+            names[row] = member.getName();
+            staff[row] = "Staff".equals(member.getType());
+        }
+
+        /**
+         * Membangun urutan ID dan posisi buku; dipanggil sekali setelah semua baris ditambahkan
+         */
+        void seal() {
+            bookOrder = idOrder(bookKeys, bookCount, IdTable.BOOKS);
+            memberOrder = idOrder(memberKeys, memberCount, IdTable.MEMBERS);
+            bookRow = new int[IdTable.BOOKS.size()];
+            for (int row = 0; row < bookCount; row++) {
+                bookRow[bookKeys[row]] = row + 1;
+            }
+        }
+
+        /**
+         * Baris buku di snapshot, atau -1 jika buku tidak ada
+         */
+        int book(String bookId) {
+            int key = IdTable.BOOKS.find(bookId);
+            return key >= 0 && key < bookRow.length ? bookRow[key] - 1 : -1;
+        }
+
+        int loansOf(String memberId) {
+            int key = IdTable.MEMBERS.find(memberId);
+            return key >= 0 && key < loans.length ? loans[key] : 0;
+        }
+
+        void setLoans(int memberKey, int count) {
+            loans = IdTable.ensure(loans, memberKey, 0);
+            loans[memberKey] = count;
+        }
+
+        Book bookAt(int row) {
+            Book book = new Book(IdTable.BOOKS.id(bookKeys[row]), titles[row], authors[row]);
+            book.setCopies(available[row], total[row]);
+            return book;
+        }
+
+        Member memberAt(int row) {
+            return Member.create(IdTable.MEMBERS.id(memberKeys[row]), names[row], staff[row] ? "Staff" : "Student");
+        }
+
+        /**
+         * Posisi pertama di order yang ID-nya lebih besar dari afterId
+         */
+        static int after(int[] order, int[] keys, IdTable ids, String afterId) {
+            int low = 0;
+            int high = order.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ids.id(keys[order[mid]]).compareTo(afterId) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Urutan baris menurut ID. Baris dari database sudah terurut menurut collation kolom,
+         * yang biasanya sama dengan urutan String Java, jadi pengurutan hanya dilakukan jika perlu.
+         */
+        private static int[] idOrder(int[] keys, int count, IdTable ids) {
+            int[] order = new int[count];
+            boolean sorted = true;
+            for (int row = 0; row < count; row++) {
+                order[row] = row;
+                if (row > 0 && ids.id(keys[row - 1]).compareTo(ids.id(keys[row])) > 0) {
+                    sorted = false;
+                }
+            }
+            if (!sorted) {
+                Integer[] rows = new Integer[count];
+                for (int row = 0; row < count; row++) {
+                    rows[row] = row;
+                }
+                Arrays.sort(rows, Comparator.comparing(row -> ids.id(keys[row])));
+                for (int i = 0; i < count; i++) {
+                    order[i] = rows[i];
+                }
+            }
+            return order;
+        }
+    }
+
+    private final Database db;
+    private final LoanService loanService;
+    private final BatchLoanService batch;
+    private final CatalogReader catalog;
+    private final OfflineJournal journal;
+    private final Path snapshotFile;
+    private final Path conflictsFile;
+    private final int replayBatch;
+    private final long probeMillis;
+    private final long probeMaxMillis;
+    private final long snapshotMillis;
+
+    // Offline view of the catalog, guarded by this
+    private Snapshot snapshot = new Snapshot();
+    private volatile boolean offline;
+    private volatile int conflicts;
+    // A snapshot left on disk by an earlier run is replaced on the first online tick
+    private boolean snapshotTaken;
+    private long lastSnapshotNanos;
+
+    private ScheduledExecutorService worker;
+    private long probeDelay;
+    // Held from reserving a sequence until the operation is committed online or journaled
+    private final Object sequenceLock = new Object();
+
+    /**
+     * Konstruktor untuk membuka jurnal dan snapshot di direktori tertentu
+     * @param db Sumber koneksi database
+     * @param loanService Layanan peminjaman untuk operasi online
+     * @param directory Direktori untuk journal.dat, snapshot.dat dan conflicts.log
+     * @param journalCapacity Ukuran file jurnal jika baru dibuat
+     * @throws IOException jika jurnal atau snapshot tidak bisa dibaca
+     */
+    public OfflineDesk(Database db, LoanService loanService, Path directory, int journalCapacity) throws IOException {
+        this.db = db;
+        this.loanService = loanService;
+        this.replayBatch = Integer.parseInt(Database.setting("OFFLINE_REPLAY_BATCH",
+                String.valueOf(BatchLoanService.DEFAULT_CHUNK_SIZE)));
+        this.batch = new BatchLoanService(db, loanService.getCache(), loanService.getHolds(), replayBatch);
+        this.catalog = new CatalogReader(db);
+        this.probeMillis = Long.parseLong(Database.setting("OFFLINE_PROBE_MS", "2000"));
+        this.probeMaxMillis = Long.parseLong(Database.setting("OFFLINE_PROBE_MAX_MS", "60000"));
+        this.snapshotMillis = Long.parseLong(Database.setting("OFFLINE_SNAPSHOT_MS", "600000"));
+        this.probeDelay = probeMillis;
+        Files.createDirectories(directory);
+        this.snapshotFile = directory.resolve("snapshot.dat");
+        this.conflictsFile = directory.resolve("conflicts.log");
+        this.journal = OfflineJournal.open(directory.resolve("journal.dat"), journalCapacity);
+        readSnapshot();
+        // Operations journaled before a restart are not in the snapshot yet
+        List<OfflineJournal.Entry> pending = journal.pending();
+        for (OfflineJournal.Entry entry : pending) {
+            apply(entry.getOperation());
+        }
+        offline = !pending.isEmpty();
+    }
+
+    /**
+     * Membuka mode offline dengan pengaturan dari system property/environment variable
+     * - OFFLINE_DIR (bawaan "offline") direktori jurnal, snapshot dan log konflik
+     * - OFFLINE_JOURNAL_BYTES (bawaan 8 MiB) ukuran file jurnal baru
+     * - OFFLINE_PROBE_MS (bawaan 2000) dan OFFLINE_PROBE_MAX_MS (bawaan 60000) jeda percobaan koneksi
+     * - OFFLINE_SNAPSHOT_MS (bawaan 600000) interval penyimpanan snapshot selama online
+     * - OFFLINE_REPLAY_BATCH (bawaan ukuran potongan BatchLoanService) operasi per commit saat diputar ulang
+     * @param db Sumber koneksi database
+     * @param loanService Layanan peminjaman untuk operasi online
+     * @return Mode offline yang belum dijalankan
+     * @throws IOException jika jurnal atau snapshot tidak bisa dibaca
+     */
+    public static OfflineDesk openFromSettings(Database db, LoanService loanService) throws IOException {
+        return new OfflineDesk(db, loanService, Paths.get(Database.setting("OFFLINE_DIR", "offline")),
+                Integer.parseInt(Database.setting("OFFLINE_JOURNAL_BYTES",
+                        String.valueOf(OfflineJournal.DEFAULT_CAPACITY))));
+    }
+
+    /**
+     * Memeriksa apakah error berarti database tidak bisa dihubungi, bukan penolakan atau error query
+     * @param e Error dari JDBC
+     * @return true untuk error koneksi (SQLState kelas 08)
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientConnectionException || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Meminjamkan buku secara online, atau mencatatnya di jurnal jika meja sedang offline
+     * @param book Buku yang akan dipinjam
+     * @param member Anggota yang meminjam
+     * @param date Tanggal peminjaman
+     * @return Hasil peminjaman; transactionId -1 jika dicatat di jurnal
+     * @throws BookNotAvailableException jika buku tidak tersedia
+     * @throws LoanLimitExceededException jika anggota sudah mencapai batas peminjaman
+     * @throws SQLException jika terjadi kesalahan pada database selain koneksi terputus
+     * @throws IOException jika jurnal penuh atau gagal ditulis
+     */
+    public LoanResult loan(Book book, Member member, LocalDate date)
+            throws BookNotAvailableException, LoanLimitExceededException, SQLException, IOException {
+        LoanOperation op = LoanOperation.loan(book.getId(), member.getId(), date);
+        synchronized (sequenceLock) {
+            long sequence = journal.reserve();
+            if (!offline) {
+                try {
+                    LoanResult result = loanService.loan(book, member, date, journal.getId(), sequence);
+                    applyOnline(op);
+                    return result;
+                } catch (SQLException e) {
+                    if (!isConnectionFailure(e)) {
+                        throw e;
+                    }
+                    goOffline(e);
+                }
+            }
+            return journalLoan(op, member, sequence);
+        }
+    }
+
+    /**
+     * Mengembalikan buku secara online, atau mencatatnya di jurnal jika meja sedang offline.
+     * Pengembalian offline selalu diterima karena bukunya sudah ada di meja; peminjaman yang
+     * tidak ditemukan saat diputar ulang dicatat sebagai konflik.
+     * @param book Buku yang dikembalikan
+     * @param member Anggota yang mengembalikan
+     * @param date Tanggal pengembalian
+     * @return Hasil pengembalian; transactionId -1 jika dicatat di jurnal
+     * @throws NoActiveLoanException jika tidak ada peminjaman aktif (hanya saat online)
+     * @throws SQLException jika terjadi kesalahan pada database selain koneksi terputus
+     * @throws IOException jika jurnal penuh atau gagal ditulis
+     */
+    public LoanResult returnBook(Book book, Member member, LocalDate date)
+            throws NoActiveLoanException, SQLException, IOException {
+        LoanOperation op = LoanOperation.ret(book.getId(), member.getId(), date);
+        synchronized (sequenceLock) {
+            long sequence = journal.reserve();
+            if (!offline) {
+                try {
+                    LoanResult result = loanService.returnBook(book, member, date, journal.getId(), sequence);
+                    applyOnline(op);
+                    return result;
+                } catch (SQLException e) {
+                    if (!isConnectionFailure(e)) {
+                        throw e;
+                    }
+                    goOffline(e);
+                }
+            }
+            synchronized (this) {
+                journalAndApply(op, sequence);
+            }
+        }
+        return new LoanResult(-1, book.getId(), member.getId(), date, null);
+    }
+
+    private synchronized LoanResult journalLoan(LoanOperation op, Member member, long sequence)
+            throws BookNotAvailableException, LoanLimitExceededException, IOException {
+        int row = snapshot.book(op.getBookId());
+        if (row < 0) {
+            throw new BookNotAvailableException("Book " + op.getBookId() + " is not in the offline snapshot");
+        }
+        if (snapshot.available[row] <= 0) {
+            throw new BookNotAvailableException("Book is not available for lending (offline)");
+        }
+        if (snapshot.loansOf(op.getMemberId()) >= member.getLoanLimit()) {
+            throw new LoanLimitExceededException("Member has reached their loan limit (offline)");
+        }
+        journalAndApply(op, sequence);
+        return new LoanResult(-1, op.getBookId(), op.getMemberId(), op.getDate(),
+                op.getDate().plusDays(member.getLoanPeriod()));
+    }
+
+    /**
+     * Dipanggil dengan kunci this
+     */
+    private void journalAndApply(LoanOperation op, long sequence) throws IOException {
+        journal.append(op, sequence);
+        apply(op);
+        offline = true;
+    }
+
+    /**
+     * Menerapkan operasi ke snapshot di memori; dipanggil dengan kunci this
+     */
+    private void apply(LoanOperation op) {
+        int row = snapshot.book(op.getBookId());
+        int delta = op.getType() == LoanOperation.Type.LOAN ? 1 : -1;
+        if (row >= 0) {
+            snapshot.available[row] = Math.min(snapshot.total[row], Math.max(0, snapshot.available[row] - delta));
+        }
+        int loans = Math.max(0, snapshot.loansOf(op.getMemberId()) + delta);
+        snapshot.setLoans(IdTable.MEMBERS.intern(op.getMemberId()), loans);
+    }
+
+    /**
+     * Operasi online meja ini juga diterapkan ke snapshot, agar snapshot tidak menawarkan
+     * buku yang baru saja dipinjamkan dari meja ini jika koneksi putus sebelum snapshot berikutnya
+     */
+    private synchronized void applyOnline(LoanOperation op) {
+        apply(op);
+    }
+
+    private void goOffline(SQLException cause) {
+        if (!offline) {
+            offline = true;
+            System.err.println("Database unreachable, desk is now recording offline: " + cause.getMessage());
+        }
+    }
+
+    /**
+     * Apakah meja sedang mencatat operasi ke jurnal
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Jumlah operasi di jurnal yang belum diputar ulang ke database
+     */
+    public int getPendingCount() {
+        return journal.pendingCount();
+    }
+
+    /**
+     * Jumlah konflik sejak aplikasi dimulai; rinciannya ada di conflicts.log
+     */
+    public int getConflictCount() {
+        return conflicts;
+    }
+
+    /**
+     * Lokasi log konflik pemutaran ulang
+     */
+    public Path getConflictsFile() {
+        return conflictsFile;
+    }
+
+    /**
+     * Sumber halaman buku untuk daftar di GUI: dari database, atau dari snapshot jika offline
+     * @param fallback Pembaca katalog online
+     * @return Sumber halaman buku
+     */
+    public LazyListModel.PageLoader<Book> bookPages(CatalogReader fallback) {
+        return (afterId, filter, limit) -> {
+            if (!offline) {
+                try {
+                    return fallback.readBooks(afterId, filter, limit);
+                } catch (SQLException e) {
+                    if (!isConnectionFailure(e)) {
+                        throw e;
+                    }
+                    goOffline(e);
+                }
+            }
+            return readBooks(afterId, filter, limit);
+        };
+    }
+
+    /**
+     * Sumber halaman anggota untuk daftar di GUI: dari database, atau dari snapshot jika offline
+     * @param fallback Pembaca katalog online
+     * @return Sumber halaman anggota
+     */
+    public LazyListModel.PageLoader<Member> memberPages(CatalogReader fallback) {
+        return (afterId, filter, limit) -> {
+            if (!offline) {
+                try {
+                    return fallback.readMembers(afterId, filter, limit);
+                } catch (SQLException e) {
+                    if (!isConnectionFailure(e)) {
+                        throw e;
+                    }
+                    goOffline(e);
+                }
+            }
+            return readMembers(afterId, filter, limit);
+        };
+    }
+
+    /**
+     * Membaca satu halaman buku dari snapshot, dengan aturan yang sama seperti CatalogReader.readBooks
+     */
+    synchronized List<Book> readBooks(String afterId, String prefix, int limit) {
+        String filter = prefix == null ? "" : prefix.toLowerCase();
+        List<Book> page = new ArrayList<>();
+        Snapshot s = snapshot;
+        for (int i = Snapshot.after(s.bookOrder, s.bookKeys, IdTable.BOOKS, afterId != null ? afterId : "");
+                i < s.bookOrder.length && page.size() < limit; i++) {
+            int row = s.bookOrder[i];
+            if (filter.isEmpty() || s.titles[row].toLowerCase().startsWith(filter)
+                    || s.authors[row].toLowerCase().startsWith(filter)) {
+                page.add(s.bookAt(row));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Membaca satu halaman anggota dari snapshot, dengan aturan yang sama seperti CatalogReader.readMembers
+     */
+    synchronized List<Member> readMembers(String afterId, String prefix, int limit) {
+        String filter = prefix == null ? "" : prefix.toLowerCase();
+        List<Member> page = new ArrayList<>();
+        Snapshot s = snapshot;
+        for (int i = Snapshot.after(s.memberOrder, s.memberKeys, IdTable.MEMBERS, afterId != null ? afterId : "");
+                i < s.memberOrder.length && page.size() < limit; i++) {
+            int row = s.memberOrder[i];
+            if (filter.isEmpty() || s.names[row].toLowerCase().startsWith(filter)
+                    || IdTable.MEMBERS.id(s.memberKeys[row]).toLowerCase().startsWith(filter)) {
+                page.add(s.memberAt(row));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Mulai memeriksa koneksi, memutar ulang jurnal dan menyimpan snapshot di latar belakang
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "offline-desk");
+            t.setDaemon(true);
+            return t;
+        });
+        worker.schedule(this::tick, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Menghentikan pekerjaan latar belakang
+     */
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        journal.close();
+    }
+
+    /**
+     * Satu putaran pekerjaan latar belakang; menjadwalkan putaran berikutnya sendiri agar
+     * jedanya bisa berlipat selama database tidak bisa dihubungi
+     */
+    private void tick() {
+        long delay = probeMillis;
+        try {
+            if (offline) {
+                catchUp();
+            }
+            if (!offline && (!isSnapshotTaken() || System.nanoTime() - lastSnapshotNanos
+                    >= TimeUnit.MILLISECONDS.toNanos(snapshotMillis))) {
+                takeSnapshot();
+            }
+            probeDelay = probeMillis;
+        } catch (SQLException e) {
+            if (isConnectionFailure(e)) {
+                goOffline(e);
+                // Full jitter: desks that lost the database together do not come back in lockstep
+                delay = probeDelay / 2 + ThreadLocalRandom.current().nextLong(probeDelay / 2 + 1);
+                probeDelay = Math.min(probeDelay * 2, probeMaxMillis);
+            } else {
+                System.err.println("Error replaying offline journal: " + e.getMessage());
+                delay = probeDelay;
+                probeDelay = Math.min(probeDelay * 2, probeMaxMillis);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing offline snapshot: " + e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            if (worker != null) {
+                worker.schedule(this::tick, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private synchronized boolean isSnapshotTaken() {
+        return snapshotTaken;
+    }
+
+    /**
+     * Memutar ulang seluruh jurnal ke database, lalu kembali online jika jurnal sudah kosong
+     * @return Jumlah operasi yang diputar ulang
+     * @throws SQLException jika database masih tidak bisa dihubungi atau operasi gagal sementara;
+     *         operasi yang belum diputar ulang tetap di jurnal
+     * @throws IOException jika log konflik tidak bisa ditulis
+     */
+    int catchUp() throws SQLException, IOException {
+        long replayed;
+        try (Connection conn = db.getConnection()) {
+            replayed = readPosition(conn);
+        }
+        journal.markReplayed(replayed);
+        int count = 0;
+        while (true) {
+            List<OfflineJournal.Entry> pending = journal.pending();
+            if (pending.isEmpty()) {
+                synchronized (this) {
+                    // Nothing can be journaled while this lock is held, so the journal stays empty
+                    if (journal.pendingCount() == 0) {
+                        offline = false;
+                        // The snapshot on disk predates the outage; replace it on this tick
+                        snapshotTaken = false;
+                        System.out.println("Database reachable again, replayed " + count
+                                + " offline operation(s)");
+                        return count;
+                    }
+                }
+                continue;
+            }
+            count += replay(pending.subList(0, Math.min(replayBatch, pending.size())));
+        }
+    }
+
+    /**
+     * Memutar ulang satu potongan jurnal
+     * @return Jumlah operasi yang sudah diputar ulang
+     */
+    private int replay(List<OfflineJournal.Entry> chunk) throws SQLException, IOException {
+        List<OfflineJournal.Entry> entries = withoutCommitted(chunk);
+        if (entries.isEmpty()) {
+            long last = chunk.get(chunk.size() - 1).getSequence();
+            try (Connection conn = db.getConnection()) {
+                savePosition(conn, last);
+            }
+            journal.markReplayed(last);
+            return 0;
+        }
+        List<LoanOperation> operations = new ArrayList<>(entries.size());
+        long[] sequences = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            sequences[i] = entries.get(i).getSequence();
+            operations.add(entries.get(i).getOperation().withJournalKey(journal.getId(), sequences[i]));
+        }
+        // Skipped entries after the last operation are covered by the final chunk's position
+        long last = chunk.get(chunk.size() - 1).getSequence();
+        List<BatchItemResult> results = batch.process(operations,
+                (conn, start, end) -> savePosition(conn, end == sequences.length ? last : sequences[end - 1]));
+        int done = 0;
+        while (done < results.size() && results.get(done).getStatus() != BatchItemResult.Status.ERROR) {
+            if (!results.get(done).isOk()) {
+                recordConflict(sequences[done], results.get(done));
+            }
+            done++;
+        }
+        if (done > 0) {
+            journal.markReplayed(done == results.size() ? last : sequences[done - 1]);
+        }
+        if (done < results.size()) {
+            BatchItemResult failed = results.get(done);
+            // A lost connection, or a deadlock or timeout the batch already retried, says nothing about the
+            // operation itself: keep it in the journal and replay it on a later tick
+            SQLException error = failed.getError();
+            if (error != null && (isConnectionFailure(error) || BatchLoanService.isRetryable(error)
+                    || error instanceof SQLTransientException)) {
+                throw error;
+            }
+            try (Connection conn = db.getConnection()) {
+                if (!conn.isValid(5)) {
+                    throw new SQLTransientConnectionException(failed.getMessage(), "08006", error);
+                }
+            }
+            // Only an operation the database refuses every time is skipped as a conflict
+            if (done == 0 && entries.size() == 1) {
+                recordConflict(sequences[0], failed);
+                try (Connection conn = db.getConnection()) {
+                    savePosition(conn, sequences[0]);
+                }
+                journal.markReplayed(sequences[0]);
+                return 1;
+            }
+            // Replay the failing operation on its own so only that one is skipped
+            return done + replay(entries.subList(done, done + 1));
+        }
+        return done;
+    }
+
+    /**
+     * Membuang operasi yang kuncinya sudah ada di tabel transactions: operasi itu sudah tersimpan
+     * ketika dicoba online, lalu dicatat di jurnal karena koneksi putus sebelum hasilnya diterima
+     */
+    private List<OfflineJournal.Entry> withoutCommitted(List<OfflineJournal.Entry> entries) throws SQLException {
+        Set<Long> committed = new HashSet<>();
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_COMMITTED_SEQUENCES)) {
+            for (int i = 0; i < 2; i++) {
+                pstmt.setString(i * 3 + 1, journal.getId());
+                pstmt.setLong(i * 3 + 2, entries.get(0).getSequence());
+                pstmt.setLong(i * 3 + 3, entries.get(entries.size() - 1).getSequence());
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    committed.add(rs.getLong(1));
+                }
+            }
+        }
+        if (committed.isEmpty()) {
+            return entries;
+        }
+        List<OfflineJournal.Entry> remaining = new ArrayList<>(entries.size());
+        for (OfflineJournal.Entry entry : entries) {
+            if (committed.contains(entry.getSequence())) {
+                System.out.println("Offline operation " + journal.getId() + ":" + entry.getSequence()
+                        + " was already committed before the connection dropped, skipping " + entry.getOperation());
+            } else {
+                remaining.add(entry);
+            }
+        }
+        return remaining;
+    }
+
+    private long readPosition(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_READ_POSITION)) {
+            pstmt.setString(1, journal.getId());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+    }
+
+    private void savePosition(Connection conn, long sequence) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_SAVE_POSITION)) {
+            pstmt.setString(1, journal.getId());
+            pstmt.setLong(2, sequence);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void recordConflict(long sequence, BatchItemResult result) throws IOException {
+        conflicts++;
+        String line = Instant.now() + "\t" + journal.getId() + ":" + sequence + "\t" + result.getOperation()
+                + "\t" + result.getStatus() + "\t" + (result.getMessage() != null ? result.getMessage() : "")
+                + System.lineSeparator();
+        System.err.println("Offline replay conflict: " + line.trim());
+        Files.write(conflictsFile, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Membaca katalog dan ketersediaan dari database lalu menyimpannya sebagai snapshot.
+     * Snapshot ditulis ke file sementara, di-fsync, lalu menggantikan snapshot lama sekaligus.
+     * @throws SQLException jika terjadi kesalahan pada database
+     * @throws IOException jika snapshot tidak bisa ditulis
+     */
+    void takeSnapshot() throws SQLException, IOException {
+        Snapshot fresh = new Snapshot();
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_ACTIVE_LOANS)) {
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    fresh.setLoans(IdTable.MEMBERS.intern(rs.getString(1)), rs.getInt(2));
+                }
+            }
+        }
+        catalog.streamBooks(STREAM_FETCH_SIZE, fresh::addBook);
+        catalog.streamMembers(STREAM_FETCH_SIZE, fresh::addMember);
+        fresh.seal();
+
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(System.currentTimeMillis());
+            for (int row : fresh.bookOrder) {
+                out.writeBoolean(true);
+                out.writeUTF(IdTable.BOOKS.id(fresh.bookKeys[row]));
+                out.writeUTF(fresh.titles[row]);
+                out.writeUTF(fresh.authors[row]);
+                out.writeInt(fresh.available[row]);
+                out.writeInt(fresh.total[row]);
+            }
+            out.writeBoolean(false);
+            for (int row : fresh.memberOrder) {
+                String memberId = IdTable.MEMBERS.id(fresh.memberKeys[row]);
+                out.writeBoolean(true);
+                out.writeUTF(memberId);
+                out.writeUTF(fresh.names[row]);
+                out.writeUTF(fresh.staff[row] ? "Staff" : "Student");
+                out.writeInt(fresh.loansOf(memberId));
+            }
+            out.writeBoolean(false);
+            out.flush();
+            channel.force(true);
+        }
+
+        synchronized (this) {
+            if (offline || journal.pendingCount() > 0) {
+                // The connection dropped while reading; the current view already includes the journal
+                Files.deleteIfExists(temp);
+                return;
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshot = fresh;
+            snapshotTaken = true;
+            lastSnapshotNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Membaca snapshot terakhir dari disk, jika ada
+     */
+    private void readSnapshot() throws IOException {
+        InputStream file;
+        try {
+            file = Files.newInputStream(snapshotFile);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not an offline snapshot: " + snapshotFile);
+            }
+            long takenAt = in.readLong();
+            Snapshot loaded = new Snapshot();
+            while (in.readBoolean()) {
+                Book book = new Book(in.readUTF(), in.readUTF(), in.readUTF());
+                int available = in.readInt();
+                book.setCopies(available, in.readInt());
+                loaded.addBook(book);
+            }
+            while (in.readBoolean()) {
+                Member member = Member.create(in.readUTF(), in.readUTF(), in.readUTF());
+                loaded.addMember(member);
+                int loans = in.readInt();
+                if (loans > 0) {
+                    loaded.setLoans(IdTable.MEMBERS.intern(member.getId()), loans);
+                }
+            }
+            loaded.seal();
+            snapshot = loaded;
+            System.out.println("Loaded offline snapshot from " + Instant.ofEpochMilli(takenAt) + " ("
+                    + loaded.bookCount + " books, " + loaded.memberCount + " members)");
+        } catch (EOFException e) {
+            // Never replaced by a partial write, so a short file means it was copied or truncated
+            throw new IOException("Offline snapshot is truncated: " + snapshotFile, e);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Jurnal tulis-di-depan (write-ahead) untuk peminjaman dan pengembalian yang dicatat meja
+ * selama database tidak bisa dihubungi
+ * - Satu file berukuran tetap yang di-memory-map; setiap catatan ditambahkan di akhir lalu di-force
+ *   ke disk sebelum append() kembali, sehingga operasi yang sudah dikonfirmasi ke petugas tidak hilang
+ * - Format catatan: panjang, CRC32, lalu nomor urut, jenis, tanggal, ID buku dan ID anggota.
+ *   Panjang ditulis terakhir dan catatan yang CRC-nya tidak cocok menandai akhir jurnal,
+ *   sehingga catatan yang terpotong saat crash diabaikan ketika jurnal dibuka kembali
+ * - Header menyimpan ID jurnal dan nomor urut terakhir yang sudah diputar ulang ke database;
+ *   setelah semua catatan diputar ulang, jurnal ditulis lagi dari awal. Nomor urut tidak pernah diulang.
+ * - Nomor urut bisa dipesan dengan reserve() sebelum operasi dicoba online, sehingga operasi yang
+ *   baru masuk jurnal setelah koneksi putus memakai kunci yang sama. Batas nomor yang sudah dipesan
+ *   disimpan di header per blok, jadi nomor yang dipakai online juga tidak diulang setelah restart.
+ * - File dikunci agar dua proses tidak menulis ke jurnal yang sama
+ */
+public class OfflineJournal implements AutoCloseable {
+    /** Ukuran file bawaan, cukup untuk sekitar 100 ribu operasi */
+    public static final int DEFAULT_CAPACITY = 8 * 1024 * 1024;
+
+    private static final int MAGIC = 0x4c424a31; // "LBJ1"
+    private static final int VERSION = 1;
+    // magic, version, journal id (two longs), replayed sequence, reserved ceiling; the rest is reserved
+    private static final int HEADER_BYTES = 64;
+    private static final int ID_OFFSET = 8;
+    private static final int REPLAYED_OFFSET = 24;
+    // Zero in journals created before reservations existed
+    private static final int RESERVED_OFFSET = 32;
+    private static final long RESERVE_BLOCK = 1024L;
+    // length and CRC in front of every payload
+    private static final int RECORD_OVERHEAD = 8;
+
+    /**
+     * Satu operasi di jurnal beserta nomor urutnya
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final LoanOperation operation;
+
+        Entry(long sequence, LoanOperation operation) {
+            this.sequence = sequence;
+            this.operation = operation;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public LoanOperation getOperation() {
+            return operation;
+        }
+    }
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final String id;
+    // Guarded by this
+    private final List<Entry> pending = new ArrayList<>();
+    // Highest sequence handed out, by append() or reserve()
+    private long lastSequence;
+    // Highest sequence written to the file
+    private long lastAppended;
+    private long reservedCeiling;
+    private long replayedSequence;
+    private int writePosition;
+
+    private OfflineJournal(FileChannel channel, FileLock lock, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.lock = lock;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an offline journal (version " + VERSION + ")");
+        }
+        this.id = new UUID(buffer.getLong(ID_OFFSET), buffer.getLong(ID_OFFSET + 8)).toString();
+        this.replayedSequence = buffer.getLong(REPLAYED_OFFSET);
+        this.reservedCeiling = buffer.getLong(RESERVED_OFFSET);
+        recover();
+    }
+
+    /**
+     * Membuka jurnal, atau membuatnya jika file belum ada
+     * @param file Lokasi file jurnal
+     * @param capacity Ukuran file jika jurnal baru dibuat
+     * @return Jurnal yang siap ditulis, berisi catatan yang belum diputar ulang
+     * @throws IOException jika file tidak bisa dibuka, sedang dipakai proses lain, atau bukan jurnal
+     */
+    public static OfflineJournal open(Path file, int capacity) throws IOException {
+        if (capacity < HEADER_BYTES * 2) {
+            throw new IllegalArgumentException("Journal capacity too small: " + capacity);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                throw new IOException("Offline journal is in use by another process: " + file);
+            }
+            boolean created = channel.size() == 0;
+            if (created) {
+                // Allocate the whole file up front so appends never grow it
+                channel.write(ByteBuffer.allocate(1), capacity - 1);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (created) {
+                UUID id = UUID.randomUUID();
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(ID_OFFSET, id.getMostSignificantBits());
+                buffer.putLong(ID_OFFSET + 8, id.getLeastSignificantBits());
+                buffer.putLong(REPLAYED_OFFSET, 0L);
+                buffer.putLong(RESERVED_OFFSET, 0L);
+                buffer.force();
+                channel.force(true);
+            }
+            return new OfflineJournal(channel, lock, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Membaca catatan dari awal sampai catatan pertama yang kosong, terpotong, atau lebih lama
+     * dari catatan sebelumnya (sisa isi lama setelah jurnal ditulis ulang dari awal)
+     */
+    private void recover() {
+        int position = HEADER_BYTES;
+        long previous = 0;
+        while (position + RECORD_OVERHEAD <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.capacity() - position - RECORD_OVERHEAD) {
+                break;
+            }
+            ByteBuffer payload = slice(position + RECORD_OVERHEAD, length);
+            if (checksum(payload) != buffer.getInt(position + 4)) {
+                break;
+            }
+            Entry entry = decode(payload);
+            if (entry.sequence <= previous) {
+                break;
+            }
+            previous = entry.sequence;
+            if (entry.sequence > replayedSequence) {
+                pending.add(entry);
+            }
+            position += RECORD_OVERHEAD + length;
+        }
+        writePosition = position;
+        lastAppended = Math.max(previous, replayedSequence);
+        // Numbers reserved before a restart may have been used online without reaching the file
+        lastSequence = Math.max(lastAppended, reservedCeiling);
+    }
+
+    /**
+     * ID jurnal, dipakai database untuk mengingat posisi pemutaran ulang meja ini
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Memesan nomor urut berikutnya tanpa menulis catatan, untuk dipakai sebagai kunci operasi online
+     * dan, jika koneksi putus, sebagai nomor urut catatannya di append(operation, sequence)
+     * @return Nomor urut yang tidak akan diberikan lagi
+     */
+    public synchronized long reserve() {
+        long sequence = lastSequence + 1;
+        if (sequence > reservedCeiling) {
+            // Persist a block ahead so most reservations cost no disk write
+            reservedCeiling = sequence + RESERVE_BLOCK - 1;
+            buffer.putLong(RESERVED_OFFSET, reservedCeiling);
+            buffer.force();
+        }
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Menambahkan operasi ke jurnal dengan nomor urut baru dan menunggu sampai tersimpan di disk
+     * @param operation Operasi peminjaman atau pengembalian
+     * @return Nomor urut operasi
+     * @throws IOException jika jurnal penuh atau gagal ditulis
+     */
+    public synchronized long append(LoanOperation operation) throws IOException {
+        return append(operation, reserve());
+    }
+
+    /**
+     * Menambahkan operasi ke jurnal dengan nomor urut dari reserve() dan menunggu sampai tersimpan di disk.
+     * Nomor urut harus lebih besar dari semua catatan yang sudah ada, karena pemutaran ulang
+     * mengandalkan urutannya.
+     * @param operation Operasi peminjaman atau pengembalian
+     * @param sequence Nomor urut yang sudah dipesan
+     * @return Nomor urut operasi
+     * @throws IOException jika jurnal penuh atau gagal ditulis
+     */
+    public synchronized long append(LoanOperation operation, long sequence) throws IOException {
+        if (sequence <= lastAppended || sequence > lastSequence) {
+            throw new IllegalArgumentException("Sequence " + sequence + " is out of order or was not reserved");
+        }
+        byte[] bookId = operation.getBookId().getBytes(StandardCharsets.UTF_8);
+        byte[] memberId = operation.getMemberId().getBytes(StandardCharsets.UTF_8);
+        int length = 8 + 1 + 8 + 2 + bookId.length + 2 + memberId.length;
+        // Room for the record plus the zero length that terminates it
+        if (writePosition + RECORD_OVERHEAD + length + 4 > buffer.capacity()) {
+            throw new IOException("Offline journal is full (" + pending.size() + " operations waiting to sync)");
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        payload.putLong(sequence);
+        payload.put((byte) operation.getType().ordinal());
+        payload.putLong(operation.getDate().toEpochDay());
+        payload.putShort((short) bookId.length).put(bookId);
+        payload.putShort((short) memberId.length).put(memberId);
+        payload.flip();
+        int crc = checksum(payload);
+
+        ByteBuffer target = buffer.duplicate();
+        target.position(writePosition + RECORD_OVERHEAD);
+        target.put(payload);
+        buffer.putInt(writePosition + 4, crc);
+        // Stale bytes from before the last rewind must never read as the next record
+        buffer.putInt(writePosition + RECORD_OVERHEAD + length, 0);
+        buffer.putInt(writePosition, length);
+        buffer.force();
+
+        writePosition += RECORD_OVERHEAD + length;
+        lastAppended = sequence;
+        pending.add(new Entry(sequence, operation));
+        return sequence;
+    }
+
+    /**
+     * Mendapatkan operasi yang belum diputar ulang ke database, berurutan
+     * @return Salinan daftar operasi
+     */
+    public synchronized List<Entry> pending() {
+        return new ArrayList<>(pending);
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Mencatat bahwa semua operasi sampai nomor urut tertentu sudah ada di database.
+     * Jika tidak ada lagi yang tertunda, jurnal ditulis ulang dari awal.
+     * @param sequence Nomor urut terakhir yang sudah diputar ulang
+     */
+    public synchronized void markReplayed(long sequence) {
+        if (sequence <= replayedSequence) {
+            return;
+        }
+        replayedSequence = sequence;
+        int done = 0;
+        while (done < pending.size() && pending.get(done).sequence <= sequence) {
+            done++;
+        }
+        pending.subList(0, done).clear();
+        buffer.putLong(REPLAYED_OFFSET, sequence);
+        buffer.force();
+        if (pending.isEmpty()) {
+            // The header is on disk first, so a crash here only leaves records that are skipped
+            buffer.putInt(HEADER_BYTES, 0);
+            buffer.force();
+            writePosition = HEADER_BYTES;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer slice(int position, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.limit(position + length);
+        return view.slice();
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static Entry decode(ByteBuffer payload) {
+        long sequence = payload.getLong();
+        LoanOperation.Type type = LoanOperation.Type.values()[payload.get()];
+        LocalDate date = LocalDate.ofEpochDay(payload.getLong());
+        String bookId = readString(payload);
+        String memberId = readString(payload);
+        return new Entry(sequence, new LoanOperation(type, bookId, memberId, date));
+    }
+
+    private static String readString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getShort() & 0xFFFF];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
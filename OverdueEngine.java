@@ -0,0 +1,374 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesin denda keterlambatan yang berjalan bertahap (incremental) dan terjadwal
+ * - Jendela jatuh tempo: peminjaman terbuka dengan due_date sebelum hari ini yang belum
+ *   pernah dinilai, dibaca berurutan (due_date, id) lewat indeks idx_transactions_due_open
+ * - Jendela perubahan: transaksi yang berubah sejak run terakhir (updated_at), untuk
+ *   menyelesaikan denda peminjaman yang dikembalikan terlambat dan menangkap peminjaman
+ *   yang dicatat dengan tanggal mundur
+ * - Posisi setiap jendela disimpan di job_watermarks dalam transaksi yang sama dengan denda
+ *   yang ditulis, sehingga run yang terputus dilanjutkan tanpa mengulang atau melewatkan baris
+ * - Tarif denda diambil dari Member.getDailyFine() sesuai tipe anggota
+ * - Tabel transactions hanya dibaca dengan consistent read tanpa lock; denda ditulis
+ *   dengan addBatch per potongan
+ * - Hanya satu node yang menjalankan engine pada satu waktu (GET_LOCK)
+ */
+public class OverdueEngine {
+    /** Jumlah baris bawaan per potongan (satu commit) */
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    private static final String JOB_DUE = "overdue.due";
+    private static final String JOB_CHANGES = "overdue.changes";
+    private static final String LOCK_PREFIX = "overdue_engine.";
+    /**
+     * Perubahan yang lebih baru dari ini dibaca pada run berikutnya karena transaksinya mungkin belum commit;
+     * dipakai juga oleh CirculationAnalytics
+     */
+    static final long CHANGE_LAG_MILLIS = 5000L;
+
+    // Each window is read with two keyset queries: rows sharing the mark's key after its id, then
+    // rows with a greater key. Both are plain index ranges, even when a bulk load gave millions of
+    // rows the same updated_at; a single (key > ? OR id > ?) condition is not.
+    private static final String WINDOW_COLUMNS =
+            "SELECT t.id, t.member_id, m.type, t.due_date, t.return_date, ";
+    static final String SQL_OVERDUE_TIES = WINDOW_COLUMNS + "t.due_date FROM transactions t "
+            + "JOIN members m ON m.id = t.member_id "
+            + "WHERE t.due_date = ? AND t.return_date IS NULL AND t.id > ? ORDER BY t.id LIMIT ?";
+    static final String SQL_OVERDUE_AFTER = WINDOW_COLUMNS + "t.due_date FROM transactions t "
+            + "JOIN members m ON m.id = t.member_id "
+            + "WHERE t.due_date > ? AND t.due_date < ? AND t.return_date IS NULL ORDER BY t.due_date, t.id LIMIT ?";
+    static final String SQL_CHANGED_TIES = WINDOW_COLUMNS + "t.updated_at FROM transactions t "
+            + "JOIN members m ON m.id = t.member_id "
+            + "WHERE t.updated_at = ? AND t.id > ? ORDER BY t.id LIMIT ?";
+    static final String SQL_CHANGED_AFTER = WINDOW_COLUMNS + "t.updated_at FROM transactions t "
+            + "JOIN members m ON m.id = t.member_id "
+            + "WHERE t.updated_at > ? AND t.updated_at < ? ORDER BY t.updated_at, t.id LIMIT ?";
+    static final String SQL_UPSERT_FINE =
+            "INSERT INTO fines (transaction_id, member_id, due_date, daily_rate, returned_on, amount) "
+            + "VALUES (?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE returned_on = VALUES(returned_on), amount = VALUES(amount)";
+    static final String SQL_READ_MARK =
+            "SELECT mark_time, mark_id FROM job_watermarks WHERE job = ?";
+    static final String SQL_SAVE_MARK =
+            "INSERT INTO job_watermarks (job, mark_time, mark_id) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE mark_time = VALUES(mark_time), mark_id = VALUES(mark_id)";
+    static final String SQL_ACCRUED_FINES =
+            "SELECT COALESCE(SUM(COALESCE(amount, daily_rate * GREATEST(DATEDIFF(?, due_date), 0))), 0) "
+            + "FROM fines WHERE member_id = ?";
+
+    /**
+     * Posisi terakhir sebuah jendela: kunci urut dan id transaksi
+     */
+    private static final class Mark {
+        final Timestamp time;
+        final long id;
+
+        Mark(Timestamp time, long id) {
+            this.time = time;
+            this.id = id;
+        }
+    }
+
+    private final Database db;
+    private final int chunkSize;
+    private final Map<String, Integer> ratesByType = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Konstruktor dengan ukuran potongan bawaan
+     * @param db Sumber koneksi database
+     */
+    public OverdueEngine(Database db) {
+        this(db, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Konstruktor dengan ukuran potongan tertentu
+     * @param db Sumber koneksi database
+     * @param chunkSize Jumlah baris yang dibaca dan ditulis per commit
+     */
+    public OverdueEngine(Database db, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.db = db;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Menjalankan satu putaran penilaian denda
+     * Run bersamaan, dari node ini maupun node lain, dicegah oleh GET_LOCK
+     * @param today Tanggal penilaian; peminjaman dengan due_date sebelum tanggal ini terlambat
+     * @return Jumlah baris denda yang ditulis, 0 jika node lain sedang menjalankan engine
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public int run(LocalDate today) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection conn = db.getConnection()) {
+            if (!tryLock(conn, LOCK_PREFIX)) {
+                System.out.println("Overdue run skipped: another node is running it");
+                return 0;
+            }
+            try {
+                conn.setAutoCommit(false);
+                try {
+                    Timestamp changedBefore = new Timestamp(serverTime(conn).getTime() - CHANGE_LAG_MILLIS);
+                    // Open loans due after this point are assessed by the due window below, not again as changes
+                    Timestamp dueCoveredFrom = readMark(conn, JOB_DUE).time;
+                    int overdue = scan(conn, JOB_DUE, SQL_OVERDUE_TIES, SQL_OVERDUE_AFTER,
+                            Timestamp.valueOf(today.atStartOfDay()), null, today);
+                    int changed = scan(conn, JOB_CHANGES, SQL_CHANGED_TIES, SQL_CHANGED_AFTER, changedBefore,
+                            dueCoveredFrom, today);
+                    System.out.println("Overdue run for " + today + ": " + overdue + " newly overdue, " + changed
+                            + " from changed loans in " + (System.nanoTime() - start) / 1_000_000L + " ms");
+                    return overdue + changed;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } finally {
+                unlock(conn, LOCK_PREFIX);
+            }
+        } finally {
+            Metrics.OVERDUE_RUN.recordSince(start);
+        }
+    }
+
+    /**
+     * Membaca satu jendela dari watermark-nya sampai batas atas, potongan demi potongan
+     * @param conn Koneksi dengan autocommit mati
+     * @param job Nama watermark di job_watermarks
+     * @param tiesSql Query baris dengan kunci sama dengan watermark (kunci, id, limit)
+     * @param afterSql Query baris dengan kunci lebih besar dari watermark (kunci, batas atas, limit)
+     * @param upperBound Batas atas eksklusif kunci urut
+     * @param skipOpenFrom Peminjaman terbuka dengan due_date sejak tanggal ini dilewati, null untuk tidak ada
+     * @param today Tanggal penilaian
+     * @return Jumlah baris denda yang ditulis
+     */
+    private int scan(Connection conn, String job, String tiesSql, String afterSql, Timestamp upperBound,
+            Timestamp skipOpenFrom, LocalDate today) throws SQLException {
+        Mark mark = readMark(conn, job);
+        int written = 0;
+        try (PreparedStatement ties = conn.prepareStatement(tiesSql);
+                PreparedStatement after = conn.prepareStatement(afterSql);
+                PreparedStatement upsert = conn.prepareStatement(SQL_UPSERT_FINE);
+                PreparedStatement saveMark = conn.prepareStatement(SQL_SAVE_MARK)) {
+            boolean atMark = true;
+            while (true) {
+                PreparedStatement select;
+                if (atMark) {
+                    select = ties;
+                    bindTime(select, 1, mark.time);
+                    select.setLong(2, mark.id);
+                } else {
+                    select = after;
+                    bindTime(select, 1, mark.time);
+                    bindTime(select, 2, upperBound);
+                }
+                select.setInt(3, chunkSize);
+                int rows = 0;
+                int pending = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        long id = rs.getLong(1);
+                        Timestamp due = rs.getTimestamp(4);
+                        Timestamp returned = rs.getTimestamp(5);
+                        mark = new Mark(rs.getTimestamp(6), id);
+                        if (due == null || !isOverdue(due, returned, today)
+                                || (returned == null && skipOpenFrom != null && !due.before(skipOpenFrom))) {
+                            continue;
+                        }
+                        addFine(upsert, id, rs.getString(2), rs.getString(3), due, returned);
+                        pending++;
+                    }
+                }
+                if (rows > 0) {
+                    if (pending > 0) {
+                        upsert.executeBatch();
+                    }
+                    saveMark.setString(1, job);
+                    bindTime(saveMark, 2, mark.time);
+                    saveMark.setLong(3, mark.id);
+                    saveMark.executeUpdate();
+                    conn.commit();
+                    written += pending;
+                }
+                if (rows == chunkSize) {
+                    // A full chunk may have stopped inside a group of equal keys
+                    atMark = true;
+                } else if (atMark) {
+                    atMark = false;
+                } else {
+                    break;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Mengikat timestamp sebagai teks agar milidetiknya tidak hilang
+     * Connector/J membuang pecahan detik jika server melaporkan versi MariaDB (5.5.5-10.x),
+     * sehingga keyset akan membaca ulang baris dengan updated_at yang sama
+     */
+    private static void bindTime(PreparedStatement pstmt, int index, Timestamp time) throws SQLException {
+        pstmt.setString(index, time.toString());
+    }
+
+    private static boolean isOverdue(Timestamp due, Timestamp returned, LocalDate today) {
+        LocalDate dueDate = due.toLocalDateTime().toLocalDate();
+        if (returned != null) {
+            return returned.toLocalDateTime().toLocalDate().isAfter(dueDate);
+        }
+        return dueDate.isBefore(today);
+    }
+
+    private void addFine(PreparedStatement upsert, long transactionId, String memberId, String memberType,
+            Timestamp due, Timestamp returned) throws SQLException {
+        int rate = dailyFine(memberType);
+        LocalDate dueDate = due.toLocalDateTime().toLocalDate();
+        upsert.setLong(1, transactionId);
+        upsert.setString(2, memberId);
+        upsert.setDate(3, java.sql.Date.valueOf(dueDate));
+        upsert.setInt(4, rate);
+        if (returned == null) {
+            // Still open: the fine keeps accruing from daily_rate and is fixed on return
+            upsert.setNull(5, java.sql.Types.DATE);
+            upsert.setNull(6, java.sql.Types.BIGINT);
+        } else {
+            LocalDate returnedOn = returned.toLocalDateTime().toLocalDate();
+            upsert.setDate(5, java.sql.Date.valueOf(returnedOn));
+            upsert.setLong(6, rate * ChronoUnit.DAYS.between(dueDate, returnedOn));
+        }
+        upsert.addBatch();
+    }
+
+    private int dailyFine(String memberType) {
+        return ratesByType.computeIfAbsent(memberType, type -> Member.create("", "", type).getDailyFine());
+    }
+
+    /**
+     * Total denda anggota: denda yang sudah selesai ditambah denda berjalan sampai tanggal tertentu
+     * @param memberId ID anggota
+     * @param asOf Tanggal perhitungan denda berjalan
+     * @return Total denda dalam rupiah
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public long getAccruedFines(String memberId, LocalDate asOf) throws SQLException {
+        try (Connection conn = db.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(SQL_ACCRUED_FINES)) {
+            pstmt.setDate(1, java.sql.Date.valueOf(asOf));
+            pstmt.setString(2, memberId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+    }
+
+    /**
+     * Mulai menjalankan engine secara berkala untuk tanggal hari ini
+     * @param periodMillis Interval antar run dalam milidetik
+     */
+    public synchronized void start(long periodMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "overdue-engine");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                run(LocalDate.now());
+            } catch (SQLException e) {
+                System.err.println("Error running overdue engine: " + e.getMessage());
+            } catch (RuntimeException e) {
+                // An exception escaping the task would cancel every later run without a trace
+                System.err.println("Error running overdue engine: " + e);
+                e.printStackTrace();
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Menghentikan run berkala
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static Mark readMark(Connection conn, String job) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_READ_MARK)) {
+            pstmt.setString(1, job);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getTimestamp(1) != null) {
+                    return new Mark(rs.getTimestamp(1), rs.getLong(2));
+                }
+            }
+        }
+        // First run starts before any date the schema can hold
+        return new Mark(Timestamp.valueOf("1000-01-01 00:00:00"), 0L);
+    }
+
+    /**
+     * Mengambil kunci GET_LOCK sebuah job berkala untuk database ini tanpa menunggu; kunci terikat
+     * pada sesi sehingga dilepas server jika node pemegangnya mati
+     * @param conn Koneksi yang dipakai selama job berjalan
+     * @param prefix Awalan nama kunci job
+     * @return true jika kunci didapat, false jika node lain sedang menjalankan job
+     */
+    static boolean tryLock(Connection conn, String prefix) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT GET_LOCK(" + DatabaseMigration.SQL_LOCK_NAME + ", 0)")) {
+            DatabaseMigration.bindLockName(pstmt, prefix);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    /**
+     * Melepas kunci dari tryLock(); kegagalan hanya dicatat
+     */
+    static void unlock(Connection conn, String prefix) {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT RELEASE_LOCK(" + DatabaseMigration.SQL_LOCK_NAME + ")")) {
+            DatabaseMigration.bindLockName(pstmt, prefix);
+            pstmt.executeQuery().close();
+        } catch (SQLException e) {
+            // The server drops the lock with the session anyway
+            System.err.println("Error releasing job lock " + prefix + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Waktu server database; batas jendela perubahan dihitung dari jam server, bukan jam node
+     */
+    static Timestamp serverTime(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT CURRENT_TIMESTAMP(3)")) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pemeriksaan regresi rencana eksekusi (EXPLAIN) untuk query-query panas peminjaman
+ * - Setiap query dijalankan dengan EXPLAIN pada database yang dikonfigurasi lewat DB_URL
+ * - Pemeriksaan gagal jika ada tabel yang dibaca dengan full table scan (type ALL)
+ *   atau full index scan (type index); hasil sementara UNION tidak dihitung
+ * Build menjalankannya otomatis pada fase verify modul benchmarks, terhadap skema benchmark
+ * yang sudah diisi data dan di-ANALYZE (mvn -f benchmarks/pom.xml verify). Bisa juga dijalankan
+ * manual terhadap database yang sudah dimigrasi dan berisi data:
+ *   java -cp ".:mysql-connector-j-8.1.0.jar" QueryPlanCheck
+ * Kode keluar 0 jika semua rencana baik, 1 jika ada pelanggaran, 2 jika terjadi error.
+ */
+public class QueryPlanCheck {
+
+    /**
+     * Query panas beserta contoh parameter untuk EXPLAIN
+     */
+    static final class HotQuery {
+        final String name;
+        final String sql;
+        final Object[] params;
+
+        HotQuery(String name, String sql, Object... params) {
+            this.name = name;
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    /**
+     * Daftar query panas. SQL diambil langsung dari kelas yang menjalankannya
+     * agar pemeriksaan selalu sesuai dengan kode yang berjalan.
+     * @return Daftar query yang diperiksa
+     */
+    static List<HotQuery> hotQueries() {
+        java.sql.Date today = new java.sql.Date(System.currentTimeMillis());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<HotQuery> queries = new ArrayList<>();
+        queries.add(new HotQuery("book prefix page", CatalogReader.SQL_BOOK_PREFIX_PAGE,
+                "java%", "", 200, "java%", "", 200, 200));
+        queries.add(new HotQuery("member prefix page", CatalogReader.SQL_MEMBER_PREFIX_PAGE,
+                "jok%", "", 200, "jok%", "", 200, 200));
+        queries.add(new HotQuery("active loans", LoanService.SQL_ACTIVE_LOANS, "M001"));
+        queries.add(new HotQuery("available copies", LoanService.SQL_AVAILABLE_COPIES, "B001"));
+        queries.add(new HotQuery("lock member and loans", LoanService.SQL_LOCK_MEMBER_AND_LOANS, "M001"));
+        queries.add(new HotQuery("summary loan", LoanService.SQL_SUMMARY_LOAN, today, today, "M001"));
+        queries.add(new HotQuery("summary return", LoanService.SQL_SUMMARY_RETURN, today, today, "M001"));
+        queries.add(new HotQuery("claim copy", LoanService.SQL_CLAIM_COPY, "B001"));
+        queries.add(new HotQuery("claim barcode", LoanService.SQL_CLAIM_BARCODE, "B001-1"));
+        queries.add(new HotQuery("lock open loan", LoanService.SQL_LOCK_OPEN_LOAN, "B001", "M001"));
+        queries.add(new HotQuery("close loan", LoanService.SQL_CLOSE_LOAN, today, null, null, 1L));
+        queries.add(new HotQuery("release copy", LoanService.SQL_RELEASE_COPY, "B001"));
+        queries.add(new HotQuery("release barcode", LoanService.SQL_RELEASE_BARCODE, "B001-1"));
+        queries.add(new HotQuery("batch lock members", BatchLoanService.lockMembersSql(2), "M001", "M002"));
+        queries.add(new HotQuery("batch lock books", BatchLoanService.lockBooksSql(2), "B001", "B002"));
+        queries.add(new HotQuery("batch open loans", BatchLoanService.lockOpenLoansSql(2), "B001", "B002"));
+        queries.add(new HotQuery("changed transactions", AvailabilityCache.SQL_CHANGED_TRANSACTIONS, now));
+        queries.add(new HotQuery("next waiting hold", HoldQueue.SQL_NEXT_WAITING, "B001"));
+        queries.add(new HotQuery("fulfill hold", HoldQueue.SQL_FULFILL, "B001", "M001", today));
+        queries.add(new HotQuery("holds due for expiry", HoldQueue.SQL_DUE_FOR_EXPIRY, today));
+        queries.add(new HotQuery("overdue window ties", OverdueEngine.SQL_OVERDUE_TIES, now, 0L, 5000));
+        queries.add(new HotQuery("overdue window", OverdueEngine.SQL_OVERDUE_AFTER, now, now, 5000));
+        queries.add(new HotQuery("changed loans window ties", OverdueEngine.SQL_CHANGED_TIES, now, 0L, 5000));
+        queries.add(new HotQuery("changed loans window", OverdueEngine.SQL_CHANGED_AFTER, now, now, 5000));
+        queries.add(new HotQuery("accrued fines", OverdueEngine.SQL_ACCRUED_FINES, today, "M001"));
+        queries.add(new HotQuery("active loan history", LoanHistory.SQL_ACTIVE, "M001", Long.MAX_VALUE, 21));
+        queries.add(new HotQuery("overdue loan history", LoanHistory.SQL_OVERDUE, "M001", today, Long.MAX_VALUE, 21));
+        queries.add(new HotQuery("returned history", LoanHistory.SQL_RETURNED_FIRST, "M001", 21));
+        queries.add(new HotQuery("returned history ties", LoanHistory.SQL_RETURNED_TIES, "M001", now, Long.MAX_VALUE, 21));
+        queries.add(new HotQuery("returned history after", LoanHistory.SQL_RETURNED_AFTER, "M001", now, 21));
+        queries.add(new HotQuery("rollup settled id", CirculationAnalytics.SQL_MAX_ID, 0L, now));
+        queries.add(new HotQuery("rollup loan chunk", CirculationAnalytics.SQL_LOAN_CHUNK, now, 0L, 20000L));
+        queries.add(new HotQuery("rollup return window", CirculationAnalytics.SQL_RETURN_WINDOW, now, now, now, 0L));
+        queries.add(new HotQuery("busiest titles", CirculationAnalytics.SQL_BUSIEST_TITLES, today, today, 10));
+        queries.add(new HotQuery("loan durations", CirculationAnalytics.SQL_DURATIONS, today, today));
+        queries.add(new HotQuery("hourly desk load", CirculationAnalytics.SQL_HOURLY, today, today));
+        return queries;
+    }
+
+    /**
+     * Menjalankan EXPLAIN untuk setiap query panas
+     * @param conn Koneksi ke database yang sudah dimigrasi
+     * @return Daftar pelanggaran, kosong jika semua rencana baik
+     * @throws SQLException jika terjadi kesalahan pada database
+     */
+    public static List<String> check(Connection conn) throws SQLException {
+        List<String> violations = new ArrayList<>();
+        for (HotQuery query : hotQueries()) {
+            String sql = "EXPLAIN " + query.sql.replace(" FOR UPDATE", "");
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < query.params.length; i++) {
+                    pstmt.setObject(i + 1, query.params[i]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String table = rs.getString("table");
+                        String type = rs.getString("type");
+                        String key = rs.getString("key");
+                        System.out.println(query.name + ": table=" + table + " type=" + type + " key=" + key);
+                        // <unionN,M> is the statement's own temporary result, which is always read in full
+                        boolean temporary = table != null && table.startsWith("<");
+                        if (!temporary && ("ALL".equals(type) || "index".equals(type))) {
+                            violations.add(query.name + " scans " + table + " (type=" + type + ")");
+                        }
+                    }
+                }
+            }
+        }
+        return violations;
+    }
+
+    public static void main(String[] args) {
+        Database db = new Database();
+        try (Connection conn = db.getConnection()) {
+            List<String> violations = check(conn);
+            if (violations.isEmpty()) {
+                System.out.println("All hot query plans use indexes");
+                db.close();
+                System.exit(0);
+            }
+            for (String violation : violations) {
+                System.err.println("Plan regression: " + violation);
+            }
+            db.close();
+            System.exit(1);
+        } catch (SQLException e) {
+            System.err.println("Error checking query plans: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+}
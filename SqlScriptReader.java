@@ -0,0 +1,189 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pembaca skrip SQL yang menghasilkan satu pernyataan setiap kali dipanggil
+ * - File dibaca per baris sehingga memori yang dipakai sebanding dengan satu
+ *   pernyataan, bukan seluruh file
+ * - Pemisah di dalam string ('...', "...") dan identifier (`...`) tidak memotong pernyataan
+ * - Komentar "-- ", "#" dan blok komentar dibuang, kecuali komentar eksekusi MySQL (slash-bintang-seru)
+ * - Mendukung perintah DELIMITER seperti klien mysql untuk isi prosedur dan trigger
+ */
+public class SqlScriptReader implements Closeable {
+    private static final String DEFAULT_DELIMITER = ";";
+
+    private final BufferedReader reader;
+    private final StringBuilder statement = new StringBuilder();
+    private String delimiter = DEFAULT_DELIMITER;
+    private String line;
+    private int pos;
+    private int lineNumber = 0;
+    private int statementLine = 0;
+    private char quote = 0;
+    private boolean inComment = false;
+    private boolean keepComment = false;
+    private boolean blank = true;
+
+    /**
+     * Konstruktor untuk membuat pembaca skrip
+     * @param source Sumber teks skrip SQL
+     */
+    public SqlScriptReader(Reader source) {
+        this.reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+    }
+
+    /**
+     * Membaca pernyataan SQL berikutnya
+     * @return Pernyataan tanpa pemisah dan tanpa spasi di awal/akhir, atau null jika skrip habis
+     * @throws IOException jika terjadi kesalahan membaca atau perintah DELIMITER tidak valid
+     */
+    public String next() throws IOException {
+        while (true) {
+            if (line == null || pos >= line.length()) {
+                if (line != null && !blank) {
+                    // Keep line breaks inside statements so string literals and error positions stay intact
+                    statement.append('\n');
+                }
+                line = reader.readLine();
+                pos = 0;
+                if (line == null) {
+                    return take();
+                }
+                lineNumber++;
+                if (blank && quote == 0 && !inComment && isDelimiterCommand(line)) {
+                    delimiter = line.trim().substring("DELIMITER".length()).trim();
+                    if (delimiter.isEmpty()) {
+                        throw new IOException("DELIMITER without a value at line " + lineNumber);
+                    }
+                    line = null;
+                    continue;
+                }
+            }
+            if (scanLine()) {
+                String sql = take();
+                if (sql != null) {
+                    return sql;
+                }
+            }
+        }
+    }
+
+    /**
+     * Nomor baris tempat pernyataan terakhir yang dikembalikan dimulai
+     */
+    public int getStatementLine() {
+        return statementLine;
+    }
+
+    /**
+     * Memindai baris saat ini mulai dari posisi terakhir
+     * @return true jika pemisah ditemukan, false jika baris habis
+     */
+    private boolean scanLine() {
+        int length = line.length();
+        while (pos < length) {
+            char c = line.charAt(pos);
+            char next = pos + 1 < length ? line.charAt(pos + 1) : 0;
+
+            if (inComment) {
+                if (keepComment) {
+                    statement.append(c);
+                }
+                if (c == '*' && next == '/') {
+                    if (keepComment) {
+                        statement.append(next);
+                    }
+                    inComment = false;
+                    pos += 2;
+                } else {
+                    pos++;
+                }
+                continue;
+            }
+
+            if (quote != 0) {
+                statement.append(c);
+                pos++;
+                if (c == '\\' && quote != '`' && pos < length) {
+                    statement.append(next);
+                    pos++;
+                } else if (c == quote) {
+                    if (next == quote) {
+                        // A doubled quote is an escaped quote, not the end of the literal
+                        statement.append(next);
+                        pos++;
+                    } else {
+                        quote = 0;
+                    }
+                }
+                continue;
+            }
+
+            if ((c == '-' && next == '-' && (pos + 2 == length || Character.isWhitespace(line.charAt(pos + 2))))
+                    || c == '#') {
+                pos = length;
+                continue;
+            }
+            if (c == '/' && next == '*') {
+                inComment = true;
+                keepComment = pos + 2 < length && line.charAt(pos + 2) == '!';
+                if (keepComment) {
+                    markStarted();
+                    statement.append("/*");
+                } else if (!blank) {
+                    // The comment separates tokens: SELECT/*x*/1 must not become SELECT1
+                    statement.append(' ');
+                }
+                pos += 2;
+                continue;
+            }
+            if (line.startsWith(delimiter, pos)) {
+                pos += delimiter.length();
+                return true;
+            }
+            if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            }
+            if (!Character.isWhitespace(c)) {
+                markStarted();
+            }
+            if (!blank) {
+                statement.append(c);
+            }
+            pos++;
+        }
+        return false;
+    }
+
+    private void markStarted() {
+        if (blank) {
+            blank = false;
+            statementLine = lineNumber;
+        }
+    }
+
+    /**
+     * Mengambil pernyataan yang terkumpul dan mengosongkan buffer
+     * @return Pernyataan, atau null jika buffer hanya berisi spasi
+     */
+    private String take() {
+        String sql = statement.toString().trim();
+        statement.setLength(0);
+        blank = true;
+        return sql.isEmpty() ? null : sql;
+    }
+
+    private static boolean isDelimiterCommand(String text) {
+        String trimmed = text.trim();
+        int keyword = "DELIMITER".length();
+        return trimmed.regionMatches(true, 0, "DELIMITER", 0, keyword)
+                && (trimmed.length() == keyword || Character.isWhitespace(trimmed.charAt(keyword)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
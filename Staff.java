@@ -7,6 +7,8 @@ public class Staff extends Member {
     private static final int LOAN_LIMIT = 5;
     /** Durasi maksimal peminjaman buku dalam hari untuk staff */
     private static final int LOAN_PERIOD = 30;
+    /** Denda per hari keterlambatan dalam rupiah untuk staff */
+    private static final int DAILY_FINE = 2000;
 
     /**
      * Konstruktor untuk membuat anggota staff baru
@@ -34,4 +36,13 @@ public class Staff extends Member {
     public int getLoanPeriod() {
         return LOAN_PERIOD;
     }
+
+    /**
+     * Mendapatkan denda per hari keterlambatan untuk staff
+     * @return Denda per hari dalam rupiah (Rp 2.000)
+     */
+    @Override
+    public int getDailyFine() {
+        return DAILY_FINE;
+    }
 }
\ No newline at end of file
@@ -7,6 +7,8 @@ public class Student extends Member {
     private static final int LOAN_LIMIT = 3;
     /** Durasi maksimal peminjaman buku dalam hari untuk mahasiswa */
     private static final int LOAN_PERIOD = 14;
+    /** Denda per hari keterlambatan dalam rupiah untuk mahasiswa */
+    private static final int DAILY_FINE = 1000;
 
     /**
      * Konstruktor untuk membuat anggota mahasiswa baru
@@ -34,4 +36,13 @@ public class Student extends Member {
     public int getLoanPeriod() {
         return LOAN_PERIOD;
     }
+
+    /**
+     * Mendapatkan denda per hari keterlambatan untuk mahasiswa
+     * @return Denda per hari dalam rupiah (Rp 1.000)
+     */
+    @Override
+    public int getDailyFine() {
+        return DAILY_FINE;
+    }
 }
\ No newline at end of file
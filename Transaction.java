@@ -1,14 +1,45 @@
-import java.sql.*;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import javax.swing.JOptionPane;
 
 /**
  * Kelas untuk mengelola transaksi peminjaman dan pengembalian buku di perpustakaan
+ * Logika peminjaman ada di LoanService; kelas ini hanya menampilkan hasilnya kepada pengguna
+ * - processLoan/processReturn berjalan langsung dan menampilkan dialog
+ * - submitLoan/submitReturn/submitHold berjalan di BackgroundTasks dan melaporkan hasil lewat Listener
+ * - Jika mode offline dipasang, submitLoan/submitReturn dicatat ke jurnal selama database tidak bisa dihubungi
  */
 public class Transaction {
+    /** Setelah batas ini pengguna diberi tahu bahwa operasi masih berjalan */
+    private static final long OPERATION_NOTICE_MILLIS =
+            Long.parseLong(Database.setting("GUI_OPERATION_NOTICE_MS", "5000"));
+
+    /**
+     * Penerima hasil transaksi latar belakang; dipanggil di EDT
+     */
+    public interface Listener {
+        /**
+         * @param success true jika transaksi berhasil
+         * @param message Pesan untuk ditampilkan kepada pengguna
+         */
+        void completed(boolean success, String message);
+
+        /**
+         * Transaksi melewati batas waktu tetapi masih berjalan; hasil akhir tetap dilaporkan
+         * @param message Pesan untuk ditampilkan kepada pengguna
+         */
+        void pending(String message);
+    }
+
     private Book book;
     private Member member;
     private String date;
-    private static Database db = new Database();
+    private static LoanService loanService = new LoanService(new Database());
+    private static volatile OfflineDesk offlineDesk;
 
     /**
      * Konstruktor untuk membuat transaksi baru
@@ -22,6 +53,22 @@ public class Transaction {
         this.date = date;
     }
 
+    /**
+     * Mendapatkan layanan peminjaman yang dipakai semua transaksi
+     * @return Layanan peminjaman
+     */
+    static LoanService getLoanService() {
+        return loanService;
+    }
+
+    /**
+     * Memasang mode offline untuk submitLoan/submitReturn
+     * @param desk Mode offline, atau null untuk selalu langsung ke database
+     */
+    static void useOfflineDesk(OfflineDesk desk) {
+        offlineDesk = desk;
+    }
+
     /**
      * Memproses peminjaman buku oleh anggota
      * - Memeriksa ketersediaan buku
@@ -31,52 +78,13 @@ public class Transaction {
      */
     public void processLoan() {
         try {
-            if (!book.isAvailable()) {
-                throw new BookNotAvailableException("Book is not available for lending");
-            }
-
-            // Check if member has reached their loan limit
-            int currentLoans = getCurrentLoans(member.getId());
-            if (currentLoans >= member.getLoanLimit()) {
-                throw new Exception("Member has reached their loan limit");
-            }
-
-            Connection conn = db.getConnection();
-            conn.setAutoCommit(false);
-
-            try {
-                // Insert transaction record
-                String insertSql = "INSERT INTO transactions (book_id, member_id, loan_date, due_date) VALUES (?, ?, ?, DATE_ADD(?, INTERVAL ? DAY))";
-                try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
-                    pstmt.setString(1, book.getId());
-                    pstmt.setString(2, member.getId());
-                    pstmt.setString(3, date);
-                    pstmt.setString(4, date);
-                    pstmt.setInt(5, member.getLoanPeriod());
-                    pstmt.executeUpdate();
-                }
-
-                // Update book availability
-                String updateSql = "UPDATE books SET available = false WHERE id = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
-                    pstmt.setString(1, book.getId());
-                    pstmt.executeUpdate();
-                }
-
-                conn.commit();
-                book.setAvailable(false);
-                JOptionPane.showMessageDialog(null, "Book successfully loaned");
-
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
-            }
-
-        } catch (BookNotAvailableException e) {
+            loanService.loan(book, member, LocalDate.parse(date));
+            JOptionPane.showMessageDialog(null, "Book successfully loaned");
+        } catch (BookNotAvailableException | LoanLimitExceededException e) {
             JOptionPane.showMessageDialog(null, e.getMessage(), "Loan Error", JOptionPane.ERROR_MESSAGE);
-        } catch (Exception e) {
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(null, "Invalid date: " + date, "Loan Error", JOptionPane.ERROR_MESSAGE);
+        } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Error processing loan: " + e.getMessage(), "Loan Error",
                     JOptionPane.ERROR_MESSAGE);
             e.printStackTrace();
@@ -90,42 +98,14 @@ public class Transaction {
      */
     public void processReturn() {
         try {
-            Connection conn = db.getConnection();
-            conn.setAutoCommit(false);
-
-            try {
-                // Update transaction record
-                String updateTransactionSql = "UPDATE transactions SET return_date = ? WHERE book_id = ? AND member_id = ? AND return_date IS NULL";
-                try (PreparedStatement pstmt = conn.prepareStatement(updateTransactionSql)) {
-                    pstmt.setString(1, date);
-                    pstmt.setString(2, book.getId());
-                    pstmt.setString(3, member.getId());
-                    int updated = pstmt.executeUpdate();
-
-                    if (updated == 0) {
-                        throw new Exception("No active loan found for this book and member");
-                    }
-                }
-
-                // Update book availability
-                String updateBookSql = "UPDATE books SET available = true WHERE id = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(updateBookSql)) {
-                    pstmt.setString(1, book.getId());
-                    pstmt.executeUpdate();
-                }
-
-                conn.commit();
-                book.setAvailable(true);
-                JOptionPane.showMessageDialog(null, "Book successfully returned");
-
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
-            }
-
-        } catch (Exception e) {
+            loanService.returnBook(book, member, LocalDate.parse(date));
+            JOptionPane.showMessageDialog(null, "Book successfully returned");
+        } catch (NoActiveLoanException e) {
+            JOptionPane.showMessageDialog(null, "Error processing return: " + e.getMessage(), "Return Error",
+                    JOptionPane.ERROR_MESSAGE);
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(null, "Invalid date: " + date, "Return Error", JOptionPane.ERROR_MESSAGE);
+        } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Error processing return: " + e.getMessage(), "Return Error",
                     JOptionPane.ERROR_MESSAGE);
             e.printStackTrace();
@@ -133,21 +113,142 @@ public class Transaction {
     }
 
     /**
-     * Mendapatkan jumlah buku yang sedang dipinjam oleh anggota
-     * @param memberId ID anggota yang akan diperiksa
-     * @return Jumlah buku yang sedang dipinjam
-     * @throws SQLException jika terjadi kesalahan pada database
+     * Memproses peminjaman di latar belakang tanpa memblokir EDT
+     * Operasi tidak dibatalkan saat batas waktu terlewati karena bisa saja sedang commit;
+     * pengguna diberi tahu dan hasil akhirnya tetap dilaporkan.
+     * @param tasks Pelaksana pekerjaan latar belakang
+     * @param listener Penerima hasil di EDT
+     * @return Future pekerjaan, atau null jika input tidak valid
      */
-    private int getCurrentLoans(String memberId) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM transactions WHERE member_id = ? AND return_date IS NULL";
-        try (PreparedStatement pstmt = db.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, memberId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-                return 0;
-            }
+    public Future<LoanResult> submitLoan(BackgroundTasks tasks, Listener listener) {
+        LocalDate parsed = validate(listener);
+        if (parsed == null) {
+            return null;
+        }
+        String label = "Loan of " + book.getId() + " to " + member.getId();
+        OfflineDesk desk = offlineDesk;
+        return tasks.submit(() -> desk != null ? desk.loan(book, member, parsed)
+                        : loanService.loan(book, member, parsed), OPERATION_NOTICE_MILLIS, false,
+                new BackgroundTasks.Callback<LoanResult>() {
+                    @Override
+                    public void succeeded(LoanResult result) {
+                        listener.completed(true, label + (isJournaled(result) ? " recorded offline" : " done")
+                                + ", due " + result.getDueDate());
+                    }
+
+                    @Override
+                    public void failed(Throwable error) {
+                        String hint = error instanceof BookNotAvailableException
+                                ? " (use Reserve Book to join the queue)" : "";
+                        listener.completed(false, label + " failed: " + describe(error) + hint);
+                    }
+
+                    @Override
+                    public void stillRunning() {
+                        listener.pending(label + " is still committing...");
+                    }
+                });
+    }
+
+    /**
+     * Memproses pengembalian di latar belakang tanpa memblokir EDT
+     * @param tasks Pelaksana pekerjaan latar belakang
+     * @param listener Penerima hasil di EDT
+     * @return Future pekerjaan, atau null jika input tidak valid
+     */
+    public Future<LoanResult> submitReturn(BackgroundTasks tasks, Listener listener) {
+        LocalDate parsed = validate(listener);
+        if (parsed == null) {
+            return null;
+        }
+        String label = "Return of " + book.getId() + " by " + member.getId();
+        OfflineDesk desk = offlineDesk;
+        return tasks.submit(() -> desk != null ? desk.returnBook(book, member, parsed)
+                        : loanService.returnBook(book, member, parsed), OPERATION_NOTICE_MILLIS, false,
+                new BackgroundTasks.Callback<LoanResult>() {
+                    @Override
+                    public void succeeded(LoanResult result) {
+                        if (isJournaled(result)) {
+                            listener.completed(true, label + " recorded offline");
+                            return;
+                        }
+                        HoldQueue.Hold next = loanService.getHolds().getReady(book.getId());
+                        listener.completed(true, next == null ? label + " done"
+                                : label + " done, held for " + next.getMemberId() + " until " + next.getExpiresAt());
+                    }
+
+                    @Override
+                    public void failed(Throwable error) {
+                        listener.completed(false, label + " failed: " + describe(error));
+                    }
+
+                    @Override
+                    public void stillRunning() {
+                        listener.pending(label + " is still committing...");
+                    }
+                });
+    }
+
+    /**
+     * Memesan buku yang sedang dipinjam di latar belakang; anggota masuk antrean dan buku
+     * disimpan untuknya saat dikembalikan
+     * @param tasks Pelaksana pekerjaan latar belakang
+     * @param listener Penerima hasil di EDT
+     * @return Future pekerjaan, atau null jika input tidak valid
+     */
+    public Future<Integer> submitHold(BackgroundTasks tasks, Listener listener) {
+        if (validate(listener) == null) {
+            return null;
+        }
+        String label = "Hold on " + book.getId() + " for " + member.getId();
+        return tasks.submit(() -> loanService.getHolds().place(book, member), OPERATION_NOTICE_MILLIS, false,
+                new BackgroundTasks.Callback<Integer>() {
+                    @Override
+                    public void succeeded(Integer position) {
+                        listener.completed(true, label + " placed, position " + position + " in queue");
+                    }
+
+                    @Override
+                    public void failed(Throwable error) {
+                        listener.completed(false, label + " failed: " + describe(error));
+                    }
+
+                    @Override
+                    public void stillRunning() {
+                        listener.pending(label + " is still committing...");
+                    }
+                });
+    }
+
+    private LocalDate validate(Listener listener) {
+        if (book == null || member == null) {
+            listener.completed(false, "Select a book and a member first");
+            return null;
+        }
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            listener.completed(false, "Invalid date: " + date);
+            return null;
+        }
+    }
+
+    private static boolean isJournaled(LoanResult result) {
+        return result.getTransactionId() < 0;
+    }
+
+    private static String describe(Throwable error) {
+        if (error instanceof SQLException) {
+            error.printStackTrace();
+            return "database error: " + error.getMessage();
+        }
+        if (error instanceof TimeoutException) {
+            return "timed out";
+        }
+        if (error instanceof IOException) {
+            error.printStackTrace();
+            return "offline journal error: " + error.getMessage();
         }
+        return error.getMessage();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,176 @@
+package com.library.benchmarks;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+
+/**
+ * Menjalankan database untuk benchmark dan mengisinya dengan data.
+ *
+ * <p>Bawaannya server MariaDB embedded di port bebas. Atur {@code bench.url} (URL server tanpa
+ * skema, misalnya {@code jdbc:mysql://localhost:3306/}) beserta {@code bench.user}/{@code bench.password}
+ * untuk memakai MySQL yang sudah ada.
+ *
+ * <p>Jumlah data: {@code bench.books} (bawaan 10000), {@code bench.members} (bawaan 1000)
+ * dan {@code bench.history} peminjaman yang sudah selesai (bawaan 100000).
+ */
+final class BenchmarkDatabase {
+    static final String SCHEMA = "library_bench";
+    static final String BOOK_PREFIX = "BK";
+    static final String MEMBER_PREFIX = "MB";
+
+    private static String serverUrl;
+    private static String user;
+    private static String password;
+    private static DB embedded;
+    private static boolean seeded;
+
+    private BenchmarkDatabase() {
+    }
+
+    static int books() {
+        return Integer.getInteger("bench.books", 10_000);
+    }
+
+    static int members() {
+        return Integer.getInteger("bench.members", 1_000);
+    }
+
+    static int history() {
+        return Integer.getInteger("bench.history", 100_000);
+    }
+
+    static String bookId(int index) {
+        return String.format("%s%07d", BOOK_PREFIX, index);
+    }
+
+    static String memberId(int index) {
+        return String.format("%s%06d", MEMBER_PREFIX, index);
+    }
+
+    static String migrationsPath() {
+        return new File(System.getProperty("bench.migrations", "../migrations")).getAbsolutePath();
+    }
+
+    /**
+     * Menjalankan server jika perlu, mengarahkan pengaturan {@code Database} ke {@link #SCHEMA},
+     * lalu memigrasi dan mengisi skema itu sekali per JVM.
+     */
+    static synchronized void start() throws Throwable {
+        if (seeded) {
+            return;
+        }
+        startServer();
+        // Migrating records into Metrics, which initializes Database; its settings must be in place first
+        System.setProperty("DB_URL", serverUrl + SCHEMA);
+        System.setProperty("DB_USER", user);
+        System.setProperty("DB_PASSWORD", password);
+        System.setProperty("DB_POOL_MIN", "8");
+        System.setProperty("DB_POOL_MAX", "64");
+        recreateSchema(SCHEMA);
+        try (Connection conn = connect(SCHEMA)) {
+            LibraryHandles.migrate(conn, migrationsPath());
+            seed(conn);
+        }
+        seeded = true;
+    }
+
+    static synchronized void startServer() throws Exception {
+        if (serverUrl != null) {
+            return;
+        }
+        String external = System.getProperty("bench.url");
+        if (external != null) {
+            serverUrl = external.endsWith("/") ? external : external + "/";
+            user = System.getProperty("bench.user", "root");
+            password = System.getProperty("bench.password", "");
+            return;
+        }
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0);
+        if ("root".equals(System.getProperty("user.name"))) {
+            // CI containers often run as root, which mysqld refuses without an explicit user
+            config.addArg("--user=root");
+        }
+        embedded = DB.newEmbeddedDB(config.build());
+        embedded.start();
+        serverUrl = "jdbc:mysql://localhost:" + config.getPort() + "/";
+        user = "root";
+        password = "";
+    }
+
+    static Connection connect(String schema) throws SQLException {
+        return DriverManager.getConnection(
+                serverUrl + schema + "?rewriteBatchedStatements=true&allowMultiQueries=false", user, password);
+    }
+
+    static void recreateSchema(String schema) throws SQLException {
+        try (Connection conn = connect("");
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP DATABASE IF EXISTS " + schema);
+            stmt.execute("CREATE DATABASE " + schema);
+        }
+    }
+
+    private static void seed(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO books (id, title, author, available) VALUES (?, ?, ?, 1)")) {
+            for (int i = 0; i < books(); i++) {
+                pstmt.setString(1, bookId(i));
+                pstmt.setString(2, "Benchmark Title " + i);
+                pstmt.setString(3, "Author " + (i % 997));
+                pstmt.addBatch();
+                if (i % 1000 == 999) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO members (id, name, type) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < members(); i++) {
+                pstmt.setString(1, memberId(i));
+                pstmt.setString(2, "Member " + i);
+                // Staff members have the higher loan limit, which leaves room for desk threads
+                pstmt.setString(3, "Staff");
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO transactions (book_id, member_id, loan_date, due_date, return_date) VALUES (?, ?, ?, ?, ?)")) {
+            LocalDate start = LocalDate.now().minusYears(2);
+            for (int i = 0; i < history(); i++) {
+                LocalDate loanDate = start.plusDays(i % 700);
+                pstmt.setString(1, bookId(i % books()));
+                pstmt.setString(2, memberId(i % members()));
+                pstmt.setDate(3, java.sql.Date.valueOf(loanDate));
+                pstmt.setDate(4, java.sql.Date.valueOf(loanDate.plusDays(30)));
+                pstmt.setDate(5, java.sql.Date.valueOf(loanDate.plusDays(7 + i % 30)));
+                pstmt.addBatch();
+                if (i % 1000 == 999) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+        // The seed bypasses the loan path, so build the per-member summary it would have kept;
+        // the migration already created rows for the members it inserted, so replace them
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("REPLACE INTO member_loan_summary (member_id, active_loans, total_loans, last_activity) "
+                    + "SELECT m.id, COALESCE(SUM(t.id IS NOT NULL AND t.return_date IS NULL), 0), COUNT(t.id), "
+                    + "DATE(MAX(COALESCE(t.return_date, t.loan_date))) "
+                    + "FROM members m LEFT JOIN transactions t ON t.member_id = m.id GROUP BY m.id");
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+    }
+}
@@ -0,0 +1,72 @@
+package com.library.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Menjalankan benchmark terpilih sekali per jumlah thread dan mencetak throughput serta latensi p99.
+ *
+ * <pre>
+ * mvn -f benchmarks/pom.xml package
+ * java -Dbench.threads=1,4,16,64 -Dbench.books=500000 -jar benchmarks/target/benchmarks.jar LoanBenchmark
+ * </pre>
+ *
+ * Argumen pertama adalah regex include JMH (bawaan: semua benchmark). Jumlah thread diambil dari
+ * {@code bench.threads} (bawaan 1,2,4,8,16,32,64). Semua system property {@code bench.*} diteruskan
+ * ke JVM benchmark hasil fork.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String include = args.length > 0 ? args[0] : ".*";
+        String[] threadCounts = System.getProperty("bench.threads", "1,2,4,8,16,32,64").split(",");
+
+        List<String> jvmArgs = new ArrayList<>();
+        for (Map.Entry<Object, Object> e : System.getProperties().entrySet()) {
+            String key = e.getKey().toString();
+            if (key.startsWith("bench.") && !key.equals("bench.migrations")) {
+                jvmArgs.add("-D" + key + "=" + e.getValue());
+            }
+        }
+        // Resolve here so forked JVMs find the migrations whatever their working directory
+        jvmArgs.add("-Dbench.migrations=" + new File(System.getProperty("bench.migrations",
+                new File("migrations").isDirectory() ? "migrations" : "../migrations")).getAbsolutePath());
+
+        List<String> report = new ArrayList<>();
+        for (String threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .jvmArgsAppend(jvmArgs.toArray(new String[0]));
+            Collection<RunResult> results = new Runner(options.build()).run();
+            for (RunResult run : results) {
+                Result<?> primary = run.getPrimaryResult();
+                String label = run.getParams().getBenchmark() + " threads=" + threads.trim()
+                        + " mode=" + run.getParams().getMode().shortLabel();
+                String line = String.format("%-90s %12.3f %s", label, primary.getScore(), primary.getScoreUnit());
+                if (primary.getStatistics().getN() > 0 && run.getParams().getMode().shortLabel().equals("sample")) {
+                    line += String.format("  p99=%.3f", primary.getStatistics().getPercentile(99));
+                }
+                report.add(line);
+            }
+        }
+
+        System.out.println();
+        System.out.println("Summary");
+        for (String line : report) {
+            System.out.println(line);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.library.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Pemuatan katalog seperti di {@code LibraryGUI}: satu halaman keyset untuk combo box, dan
+ * pembacaan streaming penuh yang setara dengan {@code loadBooks}/{@code loadMembers} lama.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogBenchmark {
+    @Param({ "200" })
+    public int pageSize;
+
+    @Param({ "1000" })
+    public int fetchSize;
+
+    Object reader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        BenchmarkDatabase.start();
+        reader = LibraryHandles.newCatalogReader(LibraryHandles.newDatabase());
+    }
+
+    @Benchmark
+    public Object bookPage() throws Throwable {
+        int start = ThreadLocalRandom.current().nextInt(BenchmarkDatabase.books());
+        return LibraryHandles.readBooks(reader, BenchmarkDatabase.bookId(start), "", pageSize);
+    }
+
+    @Benchmark
+    public Object bookSearch() throws Throwable {
+        int prefix = ThreadLocalRandom.current().nextInt(100);
+        return LibraryHandles.readBooks(reader, null, "Benchmark Title " + prefix, pageSize);
+    }
+
+    @Benchmark
+    public Object memberPage() throws Throwable {
+        int start = ThreadLocalRandom.current().nextInt(BenchmarkDatabase.members());
+        return LibraryHandles.readMembers(reader, BenchmarkDatabase.memberId(start), "", pageSize);
+    }
+
+    @Benchmark
+    public void loadAllBooks(Blackhole bh) throws Throwable {
+        LibraryHandles.streamBooks(reader, fetchSize, bh::consume);
+    }
+
+    @Benchmark
+    public void loadAllMembers(Blackhole bh) throws Throwable {
+        LibraryHandles.streamMembers(reader, fetchSize, bh::consume);
+    }
+}
@@ -0,0 +1,148 @@
+package com.library.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Jembatan ke kelas-kelas perpustakaan yang berada di unnamed package.
+ *
+ * <p>JMH menolak kelas benchmark di unnamed package, dan kode di package bernama tidak bisa
+ * meng-import dari sana, jadi benchmark memanggil kelas perpustakaan lewat method handle yang
+ * di-resolve sekali saat kelas dimuat. Biaya pemanggilan handle hanya beberapa nanodetik, jauh
+ * di bawah round trip JDBC yang diukur.
+ */
+final class LibraryHandles {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodHandle NEW_DATABASE;
+    private static final MethodHandle NEW_LOAN_SERVICE;
+    private static final MethodHandle NEW_BOOK;
+    private static final MethodHandle CREATE_MEMBER;
+    private static final MethodHandle LOAN;
+    private static final MethodHandle RETURN_BOOK;
+    private static final MethodHandle GET_CURRENT_LOANS;
+    private static final MethodHandle NEW_CATALOG_READER;
+    private static final MethodHandle READ_BOOKS;
+    private static final MethodHandle READ_MEMBERS;
+    private static final MethodHandle STREAM_BOOKS;
+    private static final MethodHandle STREAM_MEMBERS;
+    private static final MethodHandle NEW_MIGRATION;
+    private static final MethodHandle MIGRATE;
+    private static final MethodHandle CHECK_PLANS;
+
+    static {
+        try {
+            Class<?> database = load("Database");
+            Class<?> loanService = load("LoanService");
+            Class<?> book = load("Book");
+            Class<?> member = load("Member");
+            Class<?> catalogReader = load("CatalogReader");
+            Class<?> migration = load("DatabaseMigration");
+            Class<?> planCheck = load("QueryPlanCheck");
+
+            NEW_DATABASE = constructor(database);
+            NEW_LOAN_SERVICE = constructor(loanService, database);
+            NEW_BOOK = constructor(book, String.class, String.class, String.class);
+            CREATE_MEMBER = method(member, "create", String.class, String.class, String.class);
+            LOAN = method(loanService, "loan", book, member, LocalDate.class);
+            RETURN_BOOK = method(loanService, "returnBook", book, member, LocalDate.class);
+            GET_CURRENT_LOANS = method(loanService, "getCurrentLoans", String.class);
+            NEW_CATALOG_READER = constructor(catalogReader, database);
+            READ_BOOKS = method(catalogReader, "readBooks", String.class, String.class, int.class);
+            READ_MEMBERS = method(catalogReader, "readMembers", String.class, String.class, int.class);
+            STREAM_BOOKS = method(catalogReader, "streamBooks", int.class, Consumer.class);
+            STREAM_MEMBERS = method(catalogReader, "streamMembers", int.class, Consumer.class);
+            NEW_MIGRATION = constructor(migration, Connection.class, String.class);
+            MIGRATE = method(migration, "migrate");
+            CHECK_PLANS = method(planCheck, "check", Connection.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private LibraryHandles() {
+    }
+
+    /**
+     * Memuat kelas perpustakaan tanpa menginisialisasinya. {@code Database} membaca pengaturannya
+     * di static initializer, yang tidak boleh berjalan sebelum {@link BenchmarkDatabase} mengaturnya.
+     */
+    private static Class<?> load(String name) throws ClassNotFoundException {
+        return Class.forName(name, false, LibraryHandles.class.getClassLoader());
+    }
+
+    private static MethodHandle constructor(Class<?> type, Class<?>... params) throws ReflectiveOperationException {
+        Constructor<?> c = type.getDeclaredConstructor(params);
+        c.setAccessible(true);
+        return LOOKUP.unreflectConstructor(c);
+    }
+
+    private static MethodHandle method(Class<?> type, String name, Class<?>... params)
+            throws ReflectiveOperationException {
+        Method m = type.getDeclaredMethod(name, params);
+        m.setAccessible(true);
+        return LOOKUP.unreflect(m);
+    }
+
+    static Object newDatabase() throws Throwable {
+        return NEW_DATABASE.invoke();
+    }
+
+    static Object newLoanService(Object database) throws Throwable {
+        return NEW_LOAN_SERVICE.invoke(database);
+    }
+
+    static Object newBook(String id, String title, String author) throws Throwable {
+        return NEW_BOOK.invoke(id, title, author);
+    }
+
+    static Object createMember(String id, String name, String type) throws Throwable {
+        return CREATE_MEMBER.invoke(id, name, type);
+    }
+
+    static Object loan(Object service, Object book, Object member, LocalDate date) throws Throwable {
+        return LOAN.invoke(service, book, member, date);
+    }
+
+    static Object returnBook(Object service, Object book, Object member, LocalDate date) throws Throwable {
+        return RETURN_BOOK.invoke(service, book, member, date);
+    }
+
+    static int getCurrentLoans(Object service, String memberId) throws Throwable {
+        return (int) GET_CURRENT_LOANS.invoke(service, memberId);
+    }
+
+    static Object newCatalogReader(Object database) throws Throwable {
+        return NEW_CATALOG_READER.invoke(database);
+    }
+
+    static List<?> readBooks(Object reader, String afterId, String prefix, int limit) throws Throwable {
+        return (List<?>) READ_BOOKS.invoke(reader, afterId, prefix, limit);
+    }
+
+    static List<?> readMembers(Object reader, String afterId, String prefix, int limit) throws Throwable {
+        return (List<?>) READ_MEMBERS.invoke(reader, afterId, prefix, limit);
+    }
+
+    static void streamBooks(Object reader, int fetchSize, Consumer<Object> consumer) throws Throwable {
+        STREAM_BOOKS.invoke(reader, fetchSize, consumer);
+    }
+
+    static void streamMembers(Object reader, int fetchSize, Consumer<Object> consumer) throws Throwable {
+        STREAM_MEMBERS.invoke(reader, fetchSize, consumer);
+    }
+
+    static void migrate(Connection connection, String migrationsPath) throws Throwable {
+        MIGRATE.invoke(NEW_MIGRATION.invoke(connection, migrationsPath));
+    }
+
+    static List<?> checkPlans(Connection connection) throws Throwable {
+        return (List<?>) CHECK_PLANS.invoke(connection);
+    }
+}
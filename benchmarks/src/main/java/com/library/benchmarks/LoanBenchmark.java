@@ -0,0 +1,137 @@
+package com.library.benchmarks;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Jalur peminjaman, pengembalian dan hitungan peminjaman di {@code LoanService}.
+ *
+ * <p>Setiap thread benchmark berperan sebagai satu meja dengan anggota dan potongan katalognya
+ * sendiri, sehingga thread berebut pool koneksi dan database, bukan ditolak aturan peminjaman.
+ *
+ * <p>{@code Transaction.processLoan} tidak diukur langsung: method itu menampilkan dialog
+ * {@code JOptionPane} modal yang gagal di JVM headless, dan selain parsing tanggal hanya memanggil
+ * {@code LoanService.loan} yang diukur di sini. Butuh minimal {@link #MAX_DESKS} anggota dan buku.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class LoanBenchmark {
+    /** Batas atas jumlah thread meja; setiap meja memiliki setiap buku ke-MAX_DESKS */
+    static final int MAX_DESKS = 64;
+
+    @State(Scope.Benchmark)
+    public static class Library {
+        Object service;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Throwable {
+            // Desks map to members and books by index, so a smaller fixture would fail mid-run
+            if (BenchmarkDatabase.members() < MAX_DESKS || BenchmarkDatabase.books() < MAX_DESKS) {
+                throw new IllegalStateException("LoanBenchmark needs bench.members and bench.books of at least "
+                        + MAX_DESKS);
+            }
+            BenchmarkDatabase.start();
+            service = LibraryHandles.newLoanService(LibraryHandles.newDatabase());
+        }
+    }
+
+    /** Satu meja peminjaman: anggota dan potongan katalognya sendiri */
+    public abstract static class Desk {
+        private static final AtomicInteger NEXT_DESK = new AtomicInteger();
+
+        Object service;
+        Object member;
+        String memberId;
+        int desk;
+        int nextBook;
+        Object outstanding;
+
+        void open(Library library) throws Throwable {
+            service = library.service;
+            desk = NEXT_DESK.getAndIncrement() % MAX_DESKS;
+            memberId = BenchmarkDatabase.memberId(desk);
+            member = LibraryHandles.createMember(memberId, "Member " + desk, "Staff");
+            nextBook = desk;
+        }
+
+        Object nextBook() throws Throwable {
+            String id = BenchmarkDatabase.bookId(nextBook);
+            nextBook += MAX_DESKS;
+            if (nextBook >= BenchmarkDatabase.books()) {
+                nextBook = desk;
+            }
+            return LibraryHandles.newBook(id, "", "");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LoanDesk extends Desk {
+        @Setup(Level.Trial)
+        public void setUp(Library library) throws Throwable {
+            open(library);
+        }
+
+        /** Membuat meja tanpa peminjaman terbuka, sehingga peminjaman berikutnya diterima */
+        @Setup(Level.Invocation)
+        public void settle() throws Throwable {
+            if (outstanding != null) {
+                LibraryHandles.returnBook(service, outstanding, member, LocalDate.now());
+                outstanding = null;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ReturnDesk extends Desk {
+        @Setup(Level.Trial)
+        public void setUp(Library library) throws Throwable {
+            open(library);
+        }
+
+        /** Membuat meja dengan tepat satu peminjaman terbuka untuk dikembalikan */
+        @Setup(Level.Invocation)
+        public void settle() throws Throwable {
+            if (outstanding == null) {
+                Object book = nextBook();
+                LibraryHandles.loan(service, book, member, LocalDate.now());
+                outstanding = book;
+            }
+        }
+    }
+
+    @Benchmark
+    public Object processLoan(LoanDesk desk) throws Throwable {
+        Object book = desk.nextBook();
+        Object result = LibraryHandles.loan(desk.service, book, desk.member, LocalDate.now());
+        desk.outstanding = book;
+        return result;
+    }
+
+    @Benchmark
+    public Object processReturn(ReturnDesk desk) throws Throwable {
+        Object result = LibraryHandles.returnBook(desk.service, desk.outstanding, desk.member, LocalDate.now());
+        desk.outstanding = null;
+        return result;
+    }
+
+    @Benchmark
+    public int getCurrentLoans(LoanDesk desk) throws Throwable {
+        return LibraryHandles.getCurrentLoans(desk.service, desk.memberId);
+    }
+}
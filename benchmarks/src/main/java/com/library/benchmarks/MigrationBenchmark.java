@@ -0,0 +1,77 @@
+package com.library.benchmarks;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code DatabaseMigration.migrate()} pada skema kosong (semua migrasi diterapkan) dan pada
+ * skema yang sudah mutakhir (biaya startup yang dibayar setiap node).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@Threads(1)
+public class MigrationBenchmark {
+    static final String SCHEMA = "library_migrate";
+
+    @State(Scope.Thread)
+    public static class EmptySchema {
+        Connection conn;
+
+        @Setup(Level.Invocation)
+        public void setUp() throws Exception {
+            BenchmarkDatabase.startServer();
+            BenchmarkDatabase.recreateSchema(SCHEMA);
+            conn = BenchmarkDatabase.connect(SCHEMA);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws Exception {
+            conn.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MigratedSchema {
+        Connection conn;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Throwable {
+            BenchmarkDatabase.startServer();
+            BenchmarkDatabase.recreateSchema(SCHEMA);
+            conn = BenchmarkDatabase.connect(SCHEMA);
+            LibraryHandles.migrate(conn, BenchmarkDatabase.migrationsPath());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            conn.close();
+        }
+    }
+
+    @Benchmark
+    public void migrateEmpty(EmptySchema schema) throws Throwable {
+        LibraryHandles.migrate(schema.conn, BenchmarkDatabase.migrationsPath());
+    }
+
+    @Benchmark
+    public void migrateUpToDate(MigratedSchema schema) throws Throwable {
+        LibraryHandles.migrate(schema.conn, BenchmarkDatabase.migrationsPath());
+    }
+}
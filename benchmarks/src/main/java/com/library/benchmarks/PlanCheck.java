@@ -0,0 +1,62 @@
+package com.library.benchmarks;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Menjalankan QueryPlanCheck di fase verify build benchmark.
+ *
+ * <p>Rencana eksekusi diperiksa pada database benchmark yang sudah dimigrasi dan diisi
+ * ({@link BenchmarkDatabase}), bukan pada tiga baris data awal yang membuat optimizer memilih
+ * full table scan. ANALYZE TABLE dijalankan lebih dulu agar statistik indeks, dan dengan itu
+ * rencananya, stabil. Kode keluar 1 jika ada pelanggaran dan 2 jika terjadi error, sehingga build gagal.
+ *
+ * <pre>
+ * mvn -f benchmarks/pom.xml verify
+ * </pre>
+ */
+public final class PlanCheck {
+
+    private PlanCheck() {
+    }
+
+    public static void main(String[] args) {
+        List<?> violations;
+        try {
+            BenchmarkDatabase.start();
+            try (Connection conn = BenchmarkDatabase.connect(BenchmarkDatabase.SCHEMA)) {
+                analyze(conn);
+                violations = LibraryHandles.checkPlans(conn);
+            }
+        } catch (Throwable e) {
+            // Exit explicitly: the embedded server's process watcher would keep the JVM, and the build, alive
+            System.err.println("Error checking query plans: " + e);
+            e.printStackTrace();
+            System.exit(2);
+            return;
+        }
+        for (Object violation : violations) {
+            System.err.println("Plan regression: " + violation);
+        }
+        System.out.println(violations.isEmpty() ? "All hot query plans use indexes" : "Query plan check failed");
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    private static void analyze(Connection conn) throws Exception {
+        List<String> tables = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SHOW FULL TABLES WHERE Table_type = 'BASE TABLE'")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String table : tables) {
+                stmt.execute("ANALYZE TABLE `" + table + "`");
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+-- V10: Daily circulation rollups, filled incrementally by CirculationAnalytics
+
+-- Reports read only these tables, never transactions. Loans are counted on their loan day and
+-- returns on their return day; each run adds its deltas to the existing rows.
+CREATE TABLE IF NOT EXISTS circulation_daily_title (
+    day DATE NOT NULL,
+    book_id VARCHAR(50) NOT NULL,
+    loans INT NOT NULL DEFAULT 0,
+    returns INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, book_id)
+);
+
+-- loan_days is the sum of loan durations of the returns on that day, so the average duration is
+-- loan_days / returns over any range of days
+CREATE TABLE IF NOT EXISTS circulation_daily_member_type (
+    day DATE NOT NULL,
+    member_type VARCHAR(50) NOT NULL,
+    loans INT NOT NULL DEFAULT 0,
+    returns INT NOT NULL DEFAULT 0,
+    loan_days BIGINT NOT NULL DEFAULT 0,
+    late_returns INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, member_type)
+);
+
+-- Desk load by hour of day: loans by the time they were recorded, returns by the time the loan was closed
+CREATE TABLE IF NOT EXISTS circulation_hourly (
+    day DATE NOT NULL,
+    hour TINYINT NOT NULL,
+    loans INT NOT NULL DEFAULT 0,
+    returns INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, hour)
+);
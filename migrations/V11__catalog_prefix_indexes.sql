@@ -0,0 +1,8 @@
+-- V11: Index the catalog prefix filters
+
+-- The paged catalog filters books by a title or author prefix and members by a name prefix.
+-- Each column gets its own index (InnoDB appends the primary key, so id > ? is checked in the index);
+-- CatalogReader queries each column separately and combines the halves with UNION.
+CREATE INDEX idx_books_title ON books (title);
+CREATE INDEX idx_books_author ON books (author);
+CREATE INDEX idx_members_name ON members (name);
@@ -0,0 +1,16 @@
+-- V12: Idempotency keys for operations from offline desk journals
+
+-- A desk numbers each loan and return from its journal's sequence before sending it, and the
+-- operation's transaction row stores that journal id and sequence. An operation that committed just
+-- as the connection dropped is journaled again with the same key, so the replay can tell it already
+-- happened and skip it instead of lending or returning a second time.
+-- Loans by other clients leave the columns NULL, which the unique indexes allow any number of times.
+ALTER TABLE transactions
+    ADD COLUMN journal_id CHAR(36) NULL,
+    ADD COLUMN journal_sequence BIGINT NULL,
+    ADD COLUMN return_journal_id CHAR(36) NULL,
+    ADD COLUMN return_journal_sequence BIGINT NULL;
+
+-- Replay lookup: journal_id = ? AND journal_sequence BETWEEN ? AND ?
+CREATE UNIQUE INDEX uq_transactions_journal ON transactions (journal_id, journal_sequence);
+CREATE UNIQUE INDEX uq_transactions_return_journal ON transactions (return_journal_id, return_journal_sequence);
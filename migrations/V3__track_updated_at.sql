@@ -0,0 +1,13 @@
+-- V3: Keep updated_at current on every write and index it for incremental refresh
+
+UPDATE books SET updated_at = COALESCE(updated_at, created_at, CURRENT_TIMESTAMP);
+ALTER TABLE books MODIFY updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+CREATE INDEX idx_books_updated_at ON books (updated_at, id);
+
+UPDATE members SET updated_at = COALESCE(updated_at, created_at, CURRENT_TIMESTAMP);
+ALTER TABLE members MODIFY updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+CREATE INDEX idx_members_updated_at ON members (updated_at, id);
+
+UPDATE transactions SET updated_at = COALESCE(updated_at, created_at, CURRENT_TIMESTAMP);
+ALTER TABLE transactions MODIFY updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+CREATE INDEX idx_transactions_updated_at ON transactions (updated_at, id);
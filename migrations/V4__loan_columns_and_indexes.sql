@@ -0,0 +1,18 @@
+-- V4: Add the loan columns written by the lending code and index the hot transactions queries
+
+-- due_date and return_date were added by hand on older installs, so only add them when missing
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'transactions' AND column_name = 'due_date') = 0, 'ALTER TABLE transactions ADD due_date DATETIME NULL', 'DO 0');
+PREPARE add_column FROM @ddl;
+EXECUTE add_column;
+DEALLOCATE PREPARE add_column;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'transactions' AND column_name = 'return_date') = 0, 'ALTER TABLE transactions ADD return_date DATETIME NULL', 'DO 0');
+PREPARE add_column FROM @ddl;
+EXECUTE add_column;
+DEALLOCATE PREPARE add_column;
+
+-- Open loans of a member (loan limit check): covers member_id = ? AND return_date IS NULL
+CREATE INDEX idx_transactions_member_open ON transactions (member_id, return_date);
+
+-- Closing a loan (single and batch return): covers book_id = ? [AND member_id = ?] AND return_date IS NULL
+CREATE INDEX idx_transactions_book_open ON transactions (book_id, return_date, member_id);
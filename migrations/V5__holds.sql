@@ -0,0 +1,24 @@
+-- V5: Hold (reservation) queue for books that are currently on loan
+
+-- status: WAITING (in queue), READY (book kept aside until expires_at), FULFILLED, EXPIRED, CANCELLED
+CREATE TABLE IF NOT EXISTS holds (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    book_id VARCHAR(50) NOT NULL,
+    member_id VARCHAR(50) NOT NULL,
+    status VARCHAR(10) NOT NULL DEFAULT 'WAITING',
+    ready_at DATETIME NULL,
+    expires_at DATE NULL,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    FOREIGN KEY(book_id) REFERENCES books(id),
+    FOREIGN KEY(member_id) REFERENCES members(id)
+);
+
+-- Next holder of a book in arrival order: book_id = ? AND status = 'WAITING' ORDER BY id
+CREATE INDEX idx_holds_book_status ON holds (book_id, status, id);
+
+-- Expiry sweep: status = 'READY' AND expires_at < ?
+CREATE INDEX idx_holds_status_expires ON holds (status, expires_at);
+
+-- Duplicate check when placing a hold: member_id = ? AND book_id = ? AND status IN (...)
+CREATE INDEX idx_holds_member_book ON holds (member_id, book_id, status);
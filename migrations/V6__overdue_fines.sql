@@ -0,0 +1,31 @@
+-- V6: Fines for overdue loans, assessed incrementally by OverdueEngine
+
+-- Open loans by due date (overdue window scan): due_date range first so the keyset resumes with a range scan;
+-- return_date IS NULL is filtered inside the index
+CREATE INDEX idx_transactions_due_open ON transactions (due_date, return_date);
+
+-- One row per overdue loan. amount stays NULL while the loan is open; the accrued fine is
+-- daily_rate * days since due_date, so open fines never need rewriting as days pass.
+-- No foreign keys: their checks would take shared locks on transactions/members rows
+-- that the desk is updating while the engine runs.
+CREATE TABLE IF NOT EXISTS fines (
+    transaction_id INT PRIMARY KEY,
+    member_id VARCHAR(50) NOT NULL,
+    due_date DATE NOT NULL,
+    daily_rate INT NOT NULL,
+    returned_on DATE NULL,
+    amount BIGINT NULL,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
+);
+
+-- Accrued fines of a member: member_id = ?
+CREATE INDEX idx_fines_member ON fines (member_id, returned_on);
+
+-- Resume points of incremental jobs, keyed by job name
+CREATE TABLE IF NOT EXISTS job_watermarks (
+    job VARCHAR(50) PRIMARY KEY,
+    mark_time DATETIME(3) NULL,
+    mark_id BIGINT NOT NULL DEFAULT 0,
+    updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
+);
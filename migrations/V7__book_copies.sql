@@ -0,0 +1,28 @@
+-- V7: Multiple copies per title
+
+-- A title's availability is one counter on its books row, so checking it is a primary key read.
+-- available is kept equal to (available_copies > 0) by the statements that change the counter,
+-- so readers of the flag (cache sync, catalog, holds) keep working unchanged.
+-- Copies kept aside for a READY hold are not counted as available.
+ALTER TABLE books
+    ADD COLUMN total_copies INT NOT NULL DEFAULT 1,
+    ADD COLUMN available_copies INT NOT NULL DEFAULT 1;
+
+UPDATE books SET available_copies = 0 WHERE available = 0;
+
+-- Barcoded physical copies. on_loan is set by loans that scan a barcode and cleared by their return;
+-- loans made by title only leave it untouched, so the books counters stay the source of truth.
+CREATE TABLE IF NOT EXISTS book_copies (
+    barcode VARCHAR(50) PRIMARY KEY,
+    book_id VARCHAR(50) NOT NULL,
+    on_loan TINYINT(1) NOT NULL DEFAULT 0,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    FOREIGN KEY(book_id) REFERENCES books(id)
+);
+
+-- Copies of a title: book_id = ?
+CREATE INDEX idx_book_copies_book ON book_copies (book_id, on_loan);
+
+-- The copy handed out, NULL for loans made by title
+ALTER TABLE transactions ADD COLUMN copy_barcode VARCHAR(50) NULL;
@@ -0,0 +1,19 @@
+-- V8: Per-member loan summary, kept current by the loan and return paths
+
+-- One row per member. The loan path reads active_loans under the member row lock instead of
+-- counting open transactions, and both paths update the row in the same transaction as the loan.
+-- Members added later get their row on their first loan.
+CREATE TABLE IF NOT EXISTS member_loan_summary (
+    member_id VARCHAR(50) PRIMARY KEY,
+    active_loans INT NOT NULL DEFAULT 0,
+    total_loans BIGINT NOT NULL DEFAULT 0,
+    last_activity DATE NULL,
+    updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
+);
+
+INSERT INTO member_loan_summary (member_id, active_loans, total_loans, last_activity)
+SELECT m.id, COALESCE(SUM(t.id IS NOT NULL AND t.return_date IS NULL), 0), COUNT(t.id),
+       DATE(GREATEST(MAX(t.loan_date), COALESCE(MAX(t.return_date), MAX(t.loan_date))))
+FROM members m
+LEFT JOIN transactions t ON t.member_id = m.id
+GROUP BY m.id;
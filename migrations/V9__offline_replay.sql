@@ -0,0 +1,10 @@
+-- V9: Replay position of each desk's offline journal
+
+-- A desk that lent books while the database was unreachable replays its journal in chunks and
+-- stores the last replayed sequence in the same transaction as each chunk, so a replay that is
+-- interrupted and restarted never applies an operation twice.
+CREATE TABLE IF NOT EXISTS offline_replay (
+    journal_id CHAR(36) PRIMARY KEY,
+    last_sequence BIGINT NOT NULL,
+    replayed_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
+);